@@ -7,7 +7,7 @@ public class ToyPriceComparator implements Comparator<Toy> {
     @Override
     public int compare(Toy a, Toy b)
     {
-        return (int) (b.getPrice() - a.getPrice());
+        return Double.compare(b.getPrice(), a.getPrice());
     }
 
 }
\ No newline at end of file
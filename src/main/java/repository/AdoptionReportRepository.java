@@ -0,0 +1,49 @@
+package repository;
+
+import domain.Client.Client;
+import domain.Pet.Pet;
+
+import java.util.Optional;
+
+/**
+ * Repository of adoptions that computes the adoption reports itself (ex: with one JOIN + GROUP BY query),
+ * instead of the service loading every adoption and looking up its pet or client one by one.
+ *
+ * A report can only be computed when the repository can reach the pets/clients directly, see {@link #supportsJoin}.
+ */
+public interface AdoptionReportRepository {
+
+    /**
+     * @param repository
+     *            the repository the adoptions should be joined with.
+     * @return true if the reports can join the adoptions with the entities of the given repository
+     *         (e.g. both are tables of the same database, even behind a {@link DelegatingRepository}).
+     */
+    boolean supportsJoin(Repository<?, ?> repository);
+
+    /**
+     * @return true if there are no adoptions at all.
+     */
+    boolean isEmpty();
+
+    /**
+     * Finds the breed of the most adopted pets.
+     *
+     * @param petRepository
+     *            repository of the adopted pets, must be supported by {@link #supportsJoin}.
+     * @return an {@code Optional} - the breed, or empty if there are no adoptions.
+     */
+    Optional<String> mostAdoptedBreed(Repository<Long, Pet> petRepository);
+
+    /**
+     * Finds the client of the year, ranked the same way as {@code AdoptionService.getClientOfTheYear}
+     * (the client with the fewest adoptions made in the given year).
+     *
+     * @param clientRepository
+     *            repository of the clients, must be supported by {@link #supportsJoin}.
+     *        year
+     *            year of the adoptions.
+     * @return an {@code Optional} - the client, or empty if no adoptions were made in that year.
+     */
+    Optional<Client> clientOfTheYear(Repository<Long, Client> clientRepository, int year);
+}
@@ -0,0 +1,77 @@
+package repository;
+
+import domain.BaseEntity;
+import domain.validators.exceptions.ValidatorException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository that can apply many changes at once. The default methods apply the changes one by one;
+ * a repository whose single-entity writes are expensive (ex: a full rewrite of a file) overrides them
+ * so that a whole batch costs one write.
+ */
+public interface BatchRepository<ID, T extends BaseEntity<ID>> extends Repository<ID, T> {
+
+    /**
+     * Saves the given entities.
+     *
+     * @param entities
+     *            must not be null nor contain null.
+     * @return a {@code BatchResult} - the saved entities and the rejected ones (e.g. id already exists).
+     * @throws IllegalArgumentException
+     *             if an entity is null.
+     * @throws ValidatorException
+     *             if an entity is not valid.
+     */
+    default BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException {
+        List<T> applied = new ArrayList<>();
+        List<BatchResult.Failure<T>> failures = new ArrayList<>();
+        for (T entity : entities) {
+            if (save(entity).isPresent())
+                failures.add(new BatchResult.Failure<>(entity, BatchResult.ID_TAKEN));
+            else
+                applied.add(entity);
+        }
+        return new BatchResult<>(applied, failures);
+    }
+
+    /**
+     * Updates the given entities.
+     *
+     * @param entities
+     *            must not be null nor contain null.
+     * @return a {@code BatchResult} - the updated entities and the rejected ones (e.g. id does not exist).
+     * @throws IllegalArgumentException
+     *             if an entity is null.
+     * @throws ValidatorException
+     *             if an entity is not valid.
+     */
+    default BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException {
+        List<T> applied = new ArrayList<>();
+        List<BatchResult.Failure<T>> failures = new ArrayList<>();
+        for (T entity : entities) {
+            if (update(entity).isPresent())
+                failures.add(new BatchResult.Failure<>(entity, BatchResult.ID_MISSING));
+            else
+                applied.add(entity);
+        }
+        return new BatchResult<>(applied, failures);
+    }
+
+    /**
+     * Removes the entities with the given ids.
+     *
+     * @param ids
+     *            must not be null nor contain null.
+     * @return the removed entities; ids without an entity are skipped.
+     * @throws IllegalArgumentException
+     *             if an id is null.
+     */
+    default List<T> deleteAll(Iterable<ID> ids) {
+        List<T> removed = new ArrayList<>();
+        for (ID id : ids)
+            delete(id).ifPresent(removed::add);
+        return removed;
+    }
+}
@@ -0,0 +1,80 @@
+package repository;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome of a batch operation of a {@link BatchRepository}: the entities that were applied and the ones that
+ * were rejected, each with the reason (ex: id already taken on save, id missing on update, a constraint of the
+ * storage). A rejected entity does not stop the rest of the batch.
+ *
+ * @param <T> the entity type of the batch
+ */
+public class BatchResult<T> {
+
+    public static final String ID_TAKEN = "id already exists";
+    public static final String ID_MISSING = "id does not exist";
+
+    private final List<T> applied;
+    private final List<Failure<T>> failures;
+
+    public BatchResult(List<T> applied, List<Failure<T>> failures) {
+        this.applied = List.copyOf(applied);
+        this.failures = List.copyOf(failures);
+    }
+
+    /**
+     * @return the entities that were saved/updated, in batch order
+     */
+    public List<T> getApplied() {
+        return applied;
+    }
+
+    /**
+     * @return the entities that were left out, with the reason, in batch order
+     */
+    public List<Failure<T>> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the entities that were left out, in batch order
+     */
+    public List<T> getRejected() {
+        return failures.stream().map(Failure::getEntity).collect(Collectors.toList());
+    }
+
+    /**
+     * @return true if no entity was rejected
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * An entity left out of a batch and the reason why
+     */
+    public static class Failure<T> {
+
+        private final T entity;
+        private final String reason;
+
+        public Failure(T entity, String reason) {
+            this.entity = entity;
+            this.reason = reason;
+        }
+
+        public T getEntity() {
+            return entity;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Failure{entity=" + entity + ", reason='" + reason + "'}";
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package repository;
+
+import domain.BaseEntity;
+import domain.validators.exceptions.ValidatorException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps the most recently read entities of any repository in memory, so repeated findOne of the same ids (the
+ * popular toys, the regular clients) are map lookups instead of a read of the file, of the XML document or of the
+ * database every time.
+ *
+ * At most {@code capacity} entities are kept: caching one more evicts the least recently used one (a
+ * {@link LinkedHashMap} in access order). Only found entities are cached, a missing id is read from the wrapped
+ * repository every time, and findAll is not cached.
+ *
+ * Every write goes through to the wrapped repository, then the cached versions of the written ids are dropped,
+ * whatever the outcome of the write, so the next read gets what the wrapped repository really holds. Writes made
+ * directly on the wrapped repository are not seen, call {@link #clear} after them.
+ *
+ * Thread safe: the lock of the cache is held around the map operations only, never while the wrapped repository
+ * is read or written. A read that missed does not cache what it loaded if a write ended meanwhile, since it may
+ * have loaded the version before the write.
+ */
+public class CachingRepository<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T>, DelegatingRepository<ID, T> {
+
+    private final Repository<ID, T> repository;
+    private final int capacity;
+    private final Map<ID, T> cache;
+    // number of writes ended, to detect the ones ending while a read loads an entity
+    private long writes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param repository : Repository<ID, T> stores the entities
+     *        capacity : int maximum number of cached entities
+     * @throws IllegalArgumentException
+     *          if the capacity is not positive
+     */
+    public CachingRepository(Repository<ID, T> repository, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("CachingRepository: capacity must be positive");
+        this.repository = repository;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<ID, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ID, T> eldest) {
+                if (size() <= CachingRepository.this.capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public Repository<ID, T> getRepository() {
+        return repository;
+    }
+
+    @Override
+    public Optional<T> findOne(ID id) {
+        if (id == null)
+            return repository.findOne(null);
+
+        long writesBefore;
+        synchronized (cache) {
+            T cached = cache.get(id);
+            if (cached != null) {
+                hits++;
+                return Optional.of(cached);
+            }
+            misses++;
+            writesBefore = writes;
+        }
+
+        Optional<T> found = repository.findOne(id);
+        if (found.isPresent()) {
+            synchronized (cache) {
+                if (writes == writesBefore)
+                    cache.put(id, found.get());
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Iterable<T> findAll() {
+        return repository.findAll();
+    }
+
+    @Override
+    public Optional<T> save(T entity) throws ValidatorException {
+        try {
+            return repository.save(entity);
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public Optional<T> delete(ID id) {
+        try {
+            return repository.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<T> update(T entity) throws ValidatorException {
+        try {
+            return repository.update(entity);
+        } finally {
+            invalidate(entity);
+        }
+    }
+
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException {
+        if (!(repository instanceof BatchRepository))
+            return BatchRepository.super.saveAll(entities);
+        try {
+            return ((BatchRepository<ID, T>) repository).saveAll(entities);
+        } finally {
+            invalidateAll(idsOf(entities));
+        }
+    }
+
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException {
+        if (!(repository instanceof BatchRepository))
+            return BatchRepository.super.updateAll(entities);
+        try {
+            return ((BatchRepository<ID, T>) repository).updateAll(entities);
+        } finally {
+            invalidateAll(idsOf(entities));
+        }
+    }
+
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) {
+        if (!(repository instanceof BatchRepository))
+            return BatchRepository.super.deleteAll(ids);
+        try {
+            return ((BatchRepository<ID, T>) repository).deleteAll(ids);
+        } finally {
+            invalidateAll(ids);
+        }
+    }
+
+    private List<ID> idsOf(Iterable<T> entities) {
+        return StreamSupport.stream(entities.spliterator(), false)
+                .filter(Objects::nonNull)
+                .map(BaseEntity::getId)
+                .collect(Collectors.toList());
+    }
+
+    private void invalidate(T entity) {
+        if (entity != null)
+            invalidate(entity.getId());
+    }
+
+    private void invalidate(ID id) {
+        synchronized (cache) {
+            writes++;
+            cache.remove(id);
+        }
+    }
+
+    private void invalidateAll(Iterable<ID> ids) {
+        synchronized (cache) {
+            writes++;
+            ids.forEach(cache::remove);
+        }
+    }
+
+    /**
+     * Drop every cached entity (ex: after the wrapped repository was written directly); the statistics are kept
+     */
+    public void clear() {
+        synchronized (cache) {
+            writes++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the maximum number of cached entities
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of cached entities
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the number of findOne answered from the cache
+     */
+    public long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    /**
+     * @return the number of findOne that read the wrapped repository
+     */
+    public long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    /**
+     * @return the number of entities dropped to make room for others
+     */
+    public long getEvictions() {
+        synchronized (cache) {
+            return evictions;
+        }
+    }
+
+    /**
+     * @return the share of the findOne answered from the cache, between 0 and 1 (0 before the first findOne)
+     */
+    public double getHitRate() {
+        synchronized (cache) {
+            return hits + misses == 0 ? 0 : hits / (double) (hits + misses);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package repository;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe in memory repository, to be shared by services serving several threads.
+ *
+ * The entities are kept in a {@link ConcurrentHashMap}, which locks a single bin per write and lets reads run
+ * without locking, so threads working on different ids do not wait for each other. Every write is one atomic
+ * map operation: save is a put-if-absent, update a replace-if-present and delete a remove, so two threads
+ * saving the same id can never both succeed (unlike the get-then-put of {@link InMemoryRepository}).
+ * The validation runs before the map operation, outside of any lock.
+ *
+ * findAll returns a read-only, weakly consistent live view: nothing is copied, iterating it never throws
+ * ConcurrentModificationException, and it sees the writes done before the iteration started and possibly
+ * some done while it runs.
+ */
+public class ConcurrentInMemoryRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+
+    private final Validator<T> validator;
+    private final ConcurrentMap<ID, T> entities;
+
+    public ConcurrentInMemoryRepository(Validator<T> validator) {
+        this(validator, 16, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor of the class.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        expectedSize : int number of entities held without resizing the table
+     *        concurrencyLevel : int expected number of threads writing at the same time
+     */
+    public ConcurrentInMemoryRepository(Validator<T> validator, int expectedSize, int concurrencyLevel) {
+        this.validator = validator;
+        this.entities = new ConcurrentHashMap<>(expectedSize, 0.75f, concurrencyLevel);
+    }
+
+    private static <ID> ID checkId(ID id, String operation) throws InMemoryRepositoryException {
+        if (id == null)
+            throw new InMemoryRepositoryException("ConcurrentInMemoryRepository->" + operation + ": id must not be null");
+        return id;
+    }
+
+    private T check(T entity, String operation) throws InMemoryRepositoryException, ValidatorException {
+        if (entity == null)
+            throw new InMemoryRepositoryException("ConcurrentInMemoryRepository->" + operation
+                    + ": entity must not be null");
+        checkId(entity.getId(), operation);
+        validator.validate(entity);
+        return entity;
+    }
+
+    @Override
+    public Optional<T> findOne(ID id) throws InMemoryRepositoryException {
+        return Optional.ofNullable(entities.get(checkId(id, "findOne")));
+    }
+
+    @Override
+    public Iterable<T> findAll() {
+        return Collections.unmodifiableCollection(entities.values());
+    }
+
+    @Override
+    public Optional<T> save(T entity) throws ValidatorException, InMemoryRepositoryException {
+        check(entity, "save");
+        return Optional.ofNullable(entities.putIfAbsent(entity.getId(), entity));
+    }
+
+    @Override
+    public Optional<T> delete(ID id) throws InMemoryRepositoryException {
+        return Optional.ofNullable(entities.remove(checkId(id, "delete")));
+    }
+
+    @Override
+    public Optional<T> update(T entity) throws ValidatorException, InMemoryRepositoryException {
+        check(entity, "update");
+        return entities.replace(entity.getId(), entity) == null ? Optional.of(entity) : Optional.empty();
+    }
+
+    /**
+     * @return the number of entities
+     */
+    public int size() {
+        return entities.size();
+    }
+}
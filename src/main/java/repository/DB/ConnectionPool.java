@@ -0,0 +1,191 @@
+package repository.DB;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size pool of JDBC connections shared by the DBRepository* classes.
+ *
+ * At most {@code size} connections are borrowed at the same time; a borrower waits (up to the borrow timeout)
+ * when all of them are in use. Connections are opened lazily, on the first borrow that finds no idle one, and
+ * the most recently returned connection is handed out first, so a lightly loaded pool keeps reusing the same
+ * warm connections (and their cached statements). A connection that comes back closed or broken is dropped
+ * and replaced by a new one on a later borrow.
+ *
+ * Usage: {@code try (PooledConnection connection = pool.borrow()) { ... }}
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    public static final int DEFAULT_SIZE = 8;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 30_000;
+
+    private static ConnectionPool defaultPool;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int size;
+    private final int statementCacheSize;
+    private final long borrowTimeoutMillis;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    // incremented by every create/drop run through the pool, see PooledConnection#executeSchemaChange
+    private final AtomicLong schemaVersion = new AtomicLong();
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int size) {
+        this(url, user, password, size, DEFAULT_STATEMENT_CACHE_SIZE, DEFAULT_BORROW_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructor of the class. No connection is opened until the first borrow.
+     *
+     * @param url : String jdbc url of the database
+     *        user : String user name
+     *        password : String password
+     *        size : int maximum number of connections
+     *        statementCacheSize : int maximum number of prepared statements cached per connection
+     *        borrowTimeoutMillis : long how long a borrow waits for a free connection
+     * @throws IllegalArgumentException
+     *          if the size or the statement cache size is not positive
+     */
+    public ConnectionPool(String url, String user, String password, int size, int statementCacheSize,
+                          long borrowTimeoutMillis) {
+        if (size <= 0 || statementCacheSize <= 0)
+            throw new IllegalArgumentException("ConnectionPool: size and statementCacheSize must be positive");
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.size = size;
+        this.statementCacheSize = statementCacheSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(size);
+    }
+
+    /**
+     * @return the pool used by the DBRepository* classes when none is given, created on first use
+     *         from {@link DataSourceConfig#load()}
+     */
+    public static synchronized ConnectionPool getDefault() {
+        if (defaultPool == null || defaultPool.isClosed())
+            defaultPool = DataSourceConfig.load().createPool();
+        return defaultPool;
+    }
+
+    /**
+     * Borrow a connection, waiting for one to be returned if all of them are in use
+     *
+     * @return a connection that must be closed (given back) by the caller
+     * @throws SQLTransientConnectionException
+     *          if no connection became free within the borrow timeout
+     * @throws SQLException
+     *          if the pool is closed or a new connection can not be opened
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed)
+            throw new SQLException("ConnectionPool->borrow: the pool is closed");
+
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS))
+                throw new SQLTransientConnectionException("ConnectionPool->borrow: no connection available after "
+                        + borrowTimeoutMillis + " ms");
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("ConnectionPool->borrow: interrupted", error);
+        }
+
+        PooledConnection connection = idle.pollFirst();
+        if (connection == null) {
+            try {
+                connection = new PooledConnection(this, DriverManager.getConnection(url, user, password),
+                        statementCacheSize);
+                open.incrementAndGet();
+            } catch (SQLException | RuntimeException error) {
+                permits.release();
+                throw error;
+            }
+        }
+        connection.setBorrowed(true);
+        return connection;
+    }
+
+    /**
+     * Take back a borrowed connection: it is kept for the next borrower if it is still usable
+     */
+    void release(PooledConnection connection) {
+        if (!closed && connection.reset()) {
+            idle.addFirst(connection);
+            // close() may have drained the idle connections while this one was being added
+            if (closed)
+                drain();
+        } else {
+            connection.closePhysical();
+            open.decrementAndGet();
+        }
+        permits.release();
+    }
+
+    private void drain() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.closePhysical();
+            open.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the version of the schema, which changes every time a table is created or dropped through the pool
+     */
+    long getSchemaVersion() {
+        return schemaVersion.get();
+    }
+
+    /**
+     * Record a create or drop: the statements cached by every connection are prepared again on their next use
+     */
+    void schemaChanged() {
+        schemaVersion.incrementAndGet();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of physical connections currently open (idle or borrowed)
+     */
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    /**
+     * @return the number of open connections waiting to be borrowed
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close the idle connections; the borrowed ones are closed when they are given back
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drain();
+    }
+}
@@ -1,39 +1,71 @@
 package repository.DB;
 
-import domain.Adoption.Adoption;
 import domain.BaseEntity;
+import domain.Adoption.Adoption;
+import domain.Client.Client;
+import domain.Pet.Pet;
 import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
 import repository.DB.exceptions.DBRepositoryAdoptionException;
+import repository.BatchRepository;
+import repository.AdoptionReportRepository;
+import repository.BatchResult;
+import repository.DelegatingRepository;
+import repository.IndexedRepository;
 import repository.Repository;
+import repository.schema.AdoptionSchema;
+import repository.schema.SecondaryIndex;
 
-import java.sql.*;
-import java.util.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
-public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T>, IndexedRepository<ID, T>, AdoptionReportRepository {
 
-    private Validator<T> validator;
+    // the columns of the table, in the order of the insert
+    private static final String COLUMNS = "adoptionId, serialNumber, clientId, petId, adoptionYear";
 
-    String DB_URL;
+    // the indexed fields and their columns
+    private static final Map<SecondaryIndex<Adoption, ?>, String> INDEXES = Map.of(
+            AdoptionSchema.CLIENT_ID, "clientId",
+            AdoptionSchema.PET_ID, "petId",
+            AdoptionSchema.ADOPTION_YEAR, "adoptionYear");
+
+    private Validator<T> validator;
 
-    String USER;
-    String PASS;
+    private final ConnectionPool pool;
 
     public String tableName;
 
-    Connection conn;
+    private int batchSize = JdbcBatchExecutor.DEFAULT_BATCH_SIZE;
 
     public DBRepositoryAdoption(Validator<T> validator,String tableName) {
+        this(validator, tableName, ConnectionPool.getDefault());
+    }
+
+    /**
+     * Constructor of the class. Creates the table of the repository and the indexes of its foreign keys and
+     * of its year, unless they already exist.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        tableName : String name of the table
+     *        pool : ConnectionPool the connections are borrowed from
+     * @throws DBRepositoryAdoptionException
+     *          if the table can not be created
+     */
+    public DBRepositoryAdoption(Validator<T> validator, String tableName, ConnectionPool pool) {
         this.validator = validator;
         this.tableName = tableName;
-        try {
-
-            DB_URL = "jdbc:postgresql://localhost:5432/postgres";
-            USER = "postgres";
-            PASS = "infinite7";
-            conn = DriverManager.getConnection(DB_URL, USER, PASS);
+        this.pool = pool;
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement createTable = conn.prepareStatement(
-                    String.format("CREATE TABLE %s " +
+            connection.executeSchemaChange(
+                    String.format("CREATE TABLE IF NOT EXISTS %s " +
                             "(adoptionId INTEGER not NULL, " +
                             " serialNumber VARCHAR(255), " +
                             " clientId INTEGER, " +
@@ -42,8 +74,9 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
                             " PRIMARY KEY ( adoptionId ))"/* +
                             " FOREIGN KEY (clientId) REFERENCES Client(clientId)" +
                             " FOREIGN KEY (petId) REFERENCES Pet(petId))"*/,tableName));
-            createTable.execute();
-
+            for (String column : INDEXES.values())
+                connection.executeSchemaChange(String.format("CREATE INDEX IF NOT EXISTS %s_%s ON %s (%s)",
+                        tableName, column, tableName, column));
 
         }catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
@@ -58,22 +91,81 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
         this.tableName = tableName;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize : int number of rows sent with each executeBatch by saveAll/updateAll/deleteAll
+     */
+    public void setBatchSize(int batchSize) {
+        Optional.of(batchSize).filter(size -> size > 0).orElseThrow(() ->
+                new DBRepositoryAdoptionException("batch size must be positive")
+        );
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create an Adoption object from the current row of a result set
+     *
+     * @param rs : ResultSet positioned on a row of the table
+     * @return adoption : Adoption the generated Adoption
+     * @throws SQLException
+     *          if a column can not be read
+     */
+    private static Adoption createAdoptionFromRow(ResultSet rs) throws SQLException {
+        Adoption adoption = new Adoption(rs.getString("serialNumber"),
+                rs.getLong("clientId"), rs.getLong("petId"), rs.getInt("adoptionYear"));
+        adoption.setId(rs.getLong("adoptionId"));
+        return adoption;
+    }
+
+    /**
+     * Bind the parameters of the insert of an adoption
+     *
+     * @param stmt : PreparedStatement of the insert
+     *        adoption : Adoption whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindInsert(PreparedStatement stmt, Adoption adoption) throws SQLException {
+        stmt.setLong(1,adoption.getId());
+        stmt.setString(2,adoption.getSerialNumber());
+        stmt.setLong(3,adoption.getClientId());
+        stmt.setLong(4,adoption.getPetId());
+        stmt.setInt(5,adoption.getAdoptionYear());
+    }
+
+    /**
+     * Bind the parameters of the update of an adoption (the id comes last)
+     *
+     * @param stmt : PreparedStatement of the update
+     *        adoption : Adoption whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindUpdate(PreparedStatement stmt, Adoption adoption) throws SQLException {
+        stmt.setString(1,adoption.getSerialNumber());
+        stmt.setLong(2,adoption.getClientId());
+        stmt.setLong(3,adoption.getPetId());
+        stmt.setInt(4,adoption.getAdoptionYear());
+        stmt.setLong(5,adoption.getId());
+    }
 
     @Override
     public Optional<T> findOne(ID id) {
 
         Adoption adoption = null;
-        try {
-
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s WHERE adoptionId = %d",tableName,id));
+        try (PooledConnection connection = pool.borrow()) {
 
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE adoptionId = ?");
+            stmt.setObject(1, id);
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                adoption = new Adoption(rs.getString("serialNumber"),
-                        rs.getLong("clientId"), rs.getLong("petId"), rs.getInt("adoptionYear"));
-                adoption.setId(rs.getLong("adoptionId"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    adoption = createAdoptionFromRow(rs);
+                }
             }
         }catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
@@ -85,17 +177,13 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
     @Override
     public Iterable<T> findAll() {
         List<Adoption> entities = new ArrayList<>();
-        Adoption adoption;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s",tableName));
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                adoption = new Adoption(rs.getString("serialNumber"),
-                        rs.getLong("clientId"), rs.getLong("petId"), rs.getInt("adoptionYear"));
-                adoption.setId(rs.getLong("adoptionId"));
-                entities.add(adoption);
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createAdoptionFromRow(rs));
+                }
             }
         } catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
@@ -103,6 +191,92 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
         return (Iterable<T>) entities;
     }
 
+    @Override
+    public boolean isIndexed(SecondaryIndex<T, ?> index) {
+        return INDEXES.containsKey(index);
+    }
+
+    /**
+     * Find the adoptions with the given value of an indexed column, with a lookup in the index of the column
+     *
+     * @param index : SecondaryIndex<T, K> one of AdoptionSchema.CLIENT_ID, PET_ID, ADOPTION_YEAR
+     *        key : K value of the column
+     * @return the matching adoptions
+     * @throws DBRepositoryAdoptionException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key) throws DBRepositoryAdoptionException {
+        Optional.ofNullable(key).orElseThrow(() ->
+                new DBRepositoryAdoptionException("key must not be null")
+        );
+        return findWhere(column(index) + " = ?", key);
+    }
+
+    /**
+     * Find the adoptions whose indexed column is between the given values, with a range scan of the index
+     *
+     * @param index : SecondaryIndex<T, K> AdoptionSchema.ADOPTION_YEAR
+     *        from : K smallest value, included
+     *        to : K greatest value, included
+     * @return the matching adoptions, sorted by the column
+     * @throws DBRepositoryAdoptionException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to)
+            throws DBRepositoryAdoptionException {
+        Optional.of(index.isOrdered()).filter(bool -> bool == true).orElseThrow(() ->
+                new DBRepositoryAdoptionException("not an ordered index: " + index)
+        );
+        Optional.ofNullable(from).orElseThrow(() ->
+                new DBRepositoryAdoptionException("from must not be null")
+        );
+        Optional.ofNullable(to).orElseThrow(() ->
+                new DBRepositoryAdoptionException("to must not be null")
+        );
+        String column = column(index);
+        return findWhere(column + " BETWEEN ? AND ? ORDER BY " + column, from, to);
+    }
+
+    /**
+     * @return the column of the given index
+     * @throws DBRepositoryAdoptionException
+     *          if the index is not one of the table
+     */
+    private String column(SecondaryIndex<T, ?> index) throws DBRepositoryAdoptionException {
+        return Optional.ofNullable(INDEXES.get(index)).orElseThrow(() ->
+                new DBRepositoryAdoptionException("not an index of the adoptions: " + index)
+        );
+    }
+
+    /**
+     * Select the adoptions matching a condition
+     *
+     * @param condition : String where clause, with a ? for every parameter
+     *        parameters : Object... values of the parameters
+     * @return the selected adoptions
+     * @throws DBRepositoryAdoptionException
+     *          if some error regarding the database occurs
+     */
+    private List<T> findWhere(String condition, Object... parameters) throws DBRepositoryAdoptionException {
+        List<Adoption> entities = new ArrayList<>();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE " + condition);
+            for (int parameter = 0; parameter < parameters.length; parameter++)
+                stmt.setObject(parameter + 1, parameters[parameter]);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createAdoptionFromRow(rs));
+                }
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryAdoptionException(e.getMessage());
+        }
+        return (List<T>) entities;
+    }
 
     /**
      * Save an adoption to the repository
@@ -113,13 +287,13 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
      */
     public T saveToDB(Adoption adoption) throws DBRepositoryAdoptionException {
 
-        try {
+        try (PooledConnection connection = pool.borrow()) {
+            String sql = "insert into " + this.tableName +" values(?,?,?,?,?)";
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("insert into %s values(%d,%s,%d,%d,%d)",tableName,adoption.getId(),adoption.getSerialNumber(),
-                            adoption.getClientId(),adoption.getPetId(),adoption.getAdoptionYear()));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare(sql);
+            bindInsert(stmt, adoption);
 
+            stmt.executeUpdate();
 
         } catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
@@ -137,19 +311,16 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
      */
     public boolean checkUniqueId(T entity){
 
-        boolean ct = true;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s where adoptionId = %d",tableName,entity.getId()));
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT adoptionId FROM " + tableName + " WHERE adoptionId = ?");
+            stmt.setObject(1, entity.getId());
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ct = false;;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return !rs.next();
             }
         } catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
         }
-        return ct;
     }
 
     @Override
@@ -183,11 +354,11 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
         result.orElseThrow(() ->
                 new DBRepositoryAdoptionException("adoption with the given id could not be found")
         );
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("delete from %s where adoptionId=%d",tableName,id));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare("delete from " + tableName + " where adoptionId = ?");
+            stmt.setObject(1, id);
+            stmt.executeUpdate();
 
         } catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
@@ -199,20 +370,20 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
     /**
      * Update the given adoption in the database
      *
-     * @param adoption : Adoption to updated
+     * @param adoption : Adoption to update
      * @throws DBRepositoryAdoptionException
      *          if some error regarding the database occurs
      */
     public T updateDB(Adoption adoption) throws DBRepositoryAdoptionException {
 
-        try {
+        try (PooledConnection connection = pool.borrow()) {
+            String sql = "update " + this.tableName +" set serialNumber = ?, clientId = ?, petId = ?, adoptionYear = ? " +
+                    "where adoptionId = ?";
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("update %s set serialNumber = %s, clientId = %d," +
-                            " petId = %d, adoptionYear = %d where adoptionId = %d",tableName,adoption.getSerialNumber(),
-                            adoption.getClientId(),adoption.getPetId(),adoption.getAdoptionYear(),adoption.getId()));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare(sql);
+            bindUpdate(stmt, adoption);
 
+            stmt.executeUpdate();
         } catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
         }
@@ -244,17 +415,191 @@ public class DBRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repos
      *          if some error regarding the database occurs
      */
     public void dropTable() throws DBRepositoryAdoptionException {
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement dropTable = conn.prepareStatement(
+            connection.executeSchemaChange(
                     String.format("DROP TABLE IF EXISTS %s",tableName));
-            dropTable.execute();
 
+        } catch (Exception e) {
+            throw new DBRepositoryAdoptionException(e.getMessage());
+        }
+    }
+
+    /**
+     * Check every entity of a batch before anything is written
+     *
+     * @throws ValidatorException
+     *          if an entity is not valid
+     */
+    private List<T> validateAll(Iterable<T> entities) throws ValidatorException {
+        List<T> batch = new ArrayList<>();
+        for (T entity : entities) {
+            Optional.ofNullable(entity).orElseThrow(() ->
+                    new DBRepositoryAdoptionException("entity must not be null")
+            );
+            Optional.ofNullable(entity.getId()).orElseThrow(() ->
+                    new DBRepositoryAdoptionException("id must not be null")
+            );
+            validator.validate(entity);
+            batch.add(entity);
+        }
+        return batch;
+    }
+
+    /**
+     * Save many adoptions with JDBC batches inside one transaction. Every adoption is validated before anything
+     * is written; a taken id is detected from the primary key violation and reported, the other adoptions are
+     * still saved.
+     *
+     * @param entities : Iterable<T> adoptions to be saved
+     * @return the saved adoptions and the rejected ones, with the reason
+     * @throws DBRepositoryAdoptionException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, DBRepositoryAdoptionException {
+        List<T> batch = validateAll(entities);
+        String sql = "insert into " + tableName +" values(?,?,?,?,?)";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindInsert(stmt, (Adoption) entity), batchSize, null);
+        } catch (SQLException e) {
+            throw new DBRepositoryAdoptionException(e.getMessage());
+        }
+    }
+
+    /**
+     * Update many adoptions with JDBC batches inside one transaction. The adoptions whose id does not exist
+     * are reported, the others are still updated.
+     *
+     * @param entities : Iterable<T> adoptions to be updated
+     * @return the updated adoptions and the rejected ones, with the reason
+     * @throws DBRepositoryAdoptionException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, DBRepositoryAdoptionException {
+        List<T> batch = validateAll(entities);
+        String sql = "update " + tableName + " set serialNumber = ?, clientId = ?, petId = ?, adoptionYear = ? " +
+                "where adoptionId = ?";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindUpdate(stmt, (Adoption) entity), batchSize, BatchResult.ID_MISSING);
+        } catch (SQLException e) {
+            throw new DBRepositoryAdoptionException(e.getMessage());
+        }
+    }
+
+    /**
+     * Delete many adoptions with JDBC batches inside one transaction
+     *
+     * @param ids : Iterable<ID> ids of the adoptions to be deleted
+     * @return the deleted adoptions; ids without an adoption are skipped
+     * @throws DBRepositoryAdoptionException
+     *          if the transaction fails
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws DBRepositoryAdoptionException {
+        List<ID> batch = new ArrayList<>();
+        for (ID id : ids) {
+            Optional.ofNullable(id).orElseThrow(() ->
+                    new DBRepositoryAdoptionException("id must not be null")
+            );
+            batch.add(id);
+        }
+        try {
+            return (List<T>) (List<?>) JdbcBatchExecutor.delete(pool, tableName, COLUMNS, "adoptionId", batch,
+                    DBRepositoryAdoption::createAdoptionFromRow, batchSize);
+        } catch (SQLException e) {
+            throw new DBRepositoryAdoptionException(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean supportsJoin(Repository<?, ?> repository) {
+        return DelegatingRepository.unwrap(repository, DBRepositoryPet.class)
+                .map(pets -> pets.getPool() == pool)
+                .orElseGet(() -> DelegatingRepository.unwrap(repository, DBRepositoryClient.class)
+                        .filter(clients -> clients.getPool() == pool)
+                        .isPresent());
+    }
+
+    /**
+     * @return the table of the given pet/client repository
+     * @throws DBRepositoryAdoptionException
+     *          if the entities are not in the database of the adoptions
+     */
+    private String joinedTable(Repository<Long, ?> repository) throws DBRepositoryAdoptionException {
+        Optional.of(supportsJoin(repository)).filter(bool -> bool == true).orElseThrow(() ->
+                new DBRepositoryAdoptionException("the repository is not in the database of the adoptions")
+        );
+        return DelegatingRepository.unwrap(repository, DBRepositoryPet.class)
+                .map(pets -> pets.getTableName())
+                .orElseGet(() -> DelegatingRepository.unwrap(repository, DBRepositoryClient.class).get().getTableName());
+    }
 
+    @Override
+    public boolean isEmpty() throws DBRepositoryAdoptionException {
+        try (PooledConnection connection = pool.borrow()) {
+            try (ResultSet rs = connection.prepare("SELECT adoptionId FROM " + tableName + " LIMIT 1").executeQuery()) {
+                return !rs.next();
+            }
         } catch (Exception e) {
             throw new DBRepositoryAdoptionException(e.getMessage());
         }
     }
 
+    /**
+     * Find the most adopted breed with one query, grouping the adoptions joined with their pets by breed.
+     * Adoptions of a pet that no longer exists are not counted.
+     *
+     * @param petRepository : Repository<Long, Pet> on the same database
+     * @return the breed of the most adopted pets, empty if there are no adoptions
+     * @throws DBRepositoryAdoptionException
+     *          if some error regarding the database occurs
+     */
+    @Override
+    public Optional<String> mostAdoptedBreed(Repository<Long, Pet> petRepository) throws DBRepositoryAdoptionException {
+        String sql = "SELECT p.breed, COUNT(*) AS adoptions FROM " + tableName + " a " +
+                "JOIN " + joinedTable(petRepository) + " p ON p.petId = a.petId " +
+                "GROUP BY p.breed ORDER BY adoptions DESC, p.breed LIMIT 1";
+        try (PooledConnection connection = pool.borrow()) {
+            try (ResultSet rs = connection.prepare(sql).executeQuery()) {
+                return rs.next() ? Optional.ofNullable(rs.getString("breed")) : Optional.empty();
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryAdoptionException(e.getMessage());
+        }
+    }
 
+    /**
+     * Find the client of the year with one query, grouping the adoptions of the year joined with their clients
+     * by client. The clients are ranked like the in-memory report: the fewest adoptions first.
+     *
+     * @param clientRepository : Repository<Long, Client> on the same database
+     *        year : int year of the adoptions
+     * @return the client, empty if no adoptions were made in that year
+     * @throws DBRepositoryAdoptionException
+     *          if some error regarding the database occurs
+     */
+    @Override
+    public Optional<Client> clientOfTheYear(Repository<Long, Client> clientRepository, int year)
+            throws DBRepositoryAdoptionException {
+        String sql = "SELECT c.clientId, c.serialNumber, c.name, c.address, c.yearOfRegistration, " +
+                "COUNT(*) AS adoptions FROM " + tableName + " a " +
+                "JOIN " + joinedTable(clientRepository) + " c ON c.clientId = a.clientId " +
+                "WHERE a.adoptionYear = ? " +
+                "GROUP BY c.clientId, c.serialNumber, c.name, c.address, c.yearOfRegistration " +
+                "ORDER BY adoptions, c.clientId LIMIT 1";
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare(sql);
+            stmt.setInt(1, year);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Optional.of(DBRepositoryClient.createClientFromRow(rs)) : Optional.empty();
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryAdoptionException(e.getMessage());
+        }
+    }
 }
@@ -3,50 +3,71 @@ package repository.DB;
 import domain.BaseEntity;
 import domain.Client.Client;
 import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
 import repository.DB.exceptions.DBRepositoryClientException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.IndexedRepository;
+import repository.schema.ClientSchema;
+import repository.schema.SecondaryIndex;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T>, IndexedRepository<ID, T> {
 
-    private Validator<T> validator;
+    // the columns of the table, in the order of the insert
+    private static final String COLUMNS = "clientId, serialNumber, name, address, yearOfRegistration";
+
+    // the indexed fields and their columns
+    private static final Map<SecondaryIndex<Client, ?>, String> INDEXES = Map.of(
+            ClientSchema.YEAR_OF_REGISTRATION, "yearOfRegistration");
 
-    String DB_URL; //database url
+    private Validator<T> validator;
 
-    String USER;
-    String PASS;
+    private final ConnectionPool pool;
 
-    String tableName;
+    public String tableName;
 
-    Connection conn;
+    private int batchSize = JdbcBatchExecutor.DEFAULT_BATCH_SIZE;
 
     public DBRepositoryClient(Validator<T> validator,String tableName) {
+        this(validator, tableName, ConnectionPool.getDefault());
+    }
+
+    /**
+     * Constructor of the class. Creates the table of the repository and the index of its year,
+     * unless they already exist.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        tableName : String name of the table
+     *        pool : ConnectionPool the connections are borrowed from
+     * @throws DBRepositoryClientException
+     *          if the table can not be created
+     */
+    public DBRepositoryClient(Validator<T> validator, String tableName, ConnectionPool pool) {
         this.validator = validator;
         this.tableName = tableName;
-        try {
+        this.pool = pool;
+        try (PooledConnection connection = pool.borrow()) {
 
-            DB_URL = "jdbc:postgresql://localhost:5432/postgres";
-            USER = "postgres";
-            PASS = "infinite7";
-            conn = DriverManager.getConnection(DB_URL, USER, PASS);
-
-            PreparedStatement createTable = conn.prepareStatement(
-                    String.format("CREATE TABLE %s" +
+            connection.executeSchemaChange(
+                    String.format("CREATE TABLE IF NOT EXISTS %s" +
                             "(clientId INTEGER not NULL, " +
                             " serialNumber VARCHAR(255), " +
                             " name VARCHAR(255), " +
                             " address VARCHAR(255), " +
                             " yearOfRegistration INTEGER, " +
-                            " PRIMARY KEY ( clientId ))",this.tableName));
-            createTable.execute();
-
+                            " PRIMARY KEY ( clientId ))",tableName));
+            for (String column : INDEXES.values())
+                connection.executeSchemaChange(String.format("CREATE INDEX IF NOT EXISTS %s_%s ON %s (%s)",
+                        tableName, column, tableName, column));
 
         }catch (Exception e) {
             throw new DBRepositoryClientException(e.getMessage());
@@ -61,21 +82,88 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
         this.tableName = tableName;
     }
 
+    /**
+     * @return the pool the connections are borrowed from (repositories on the same pool share the database)
+     */
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize : int number of rows sent with each executeBatch by saveAll/updateAll/deleteAll
+     */
+    public void setBatchSize(int batchSize) {
+        Optional.of(batchSize).filter(size -> size > 0).orElseThrow(() ->
+                new DBRepositoryClientException("batch size must be positive")
+        );
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create a Client object from the current row of a result set
+     *
+     * @param rs : ResultSet positioned on a row of the table
+     * @return client : Client the generated Client
+     * @throws SQLException
+     *          if a column can not be read
+     */
+    static Client createClientFromRow(ResultSet rs) throws SQLException {
+        Client client = new Client(rs.getString("serialNumber"),
+                rs.getString("name"),  rs.getString("address"), rs.getInt("yearOfRegistration"));
+        client.setId(rs.getLong("clientId"));
+        return client;
+    }
+
+    /**
+     * Bind the parameters of the insert of a client
+     *
+     * @param stmt : PreparedStatement of the insert
+     *        client : Client whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindInsert(PreparedStatement stmt, Client client) throws SQLException {
+        stmt.setLong(1,client.getId());
+        stmt.setString(2,client.getSerialNumber());
+        stmt.setString(3,client.getName());
+        stmt.setString(4,client.getAddress());
+        stmt.setInt(5,client.getYearOfRegistration());
+    }
+
+    /**
+     * Bind the parameters of the update of a client (the id comes last)
+     *
+     * @param stmt : PreparedStatement of the update
+     *        client : Client whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindUpdate(PreparedStatement stmt, Client client) throws SQLException {
+        stmt.setString(1,client.getSerialNumber());
+        stmt.setString(2,client.getName());
+        stmt.setString(3,client.getAddress());
+        stmt.setInt(4,client.getYearOfRegistration());
+        stmt.setLong(5,client.getId());
+    }
 
     @Override
     public Optional<T> findOne(ID id) {
-        Client client = null;
-        try {
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s WHERE clientId = %d",tableName,id));
+        Client client = null;
+        try (PooledConnection connection = pool.borrow()) {
 
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE clientId = ?");
+            stmt.setObject(1, id);
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                client = new Client(rs.getString("serialNumber"),
-                        rs.getString("name"),  rs.getString("address"), rs.getInt("yearOfRegistration"));
-                client.setId(rs.getLong("clientId"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    client = createClientFromRow(rs);
+                }
             }
         }catch (Exception e) {
             throw new DBRepositoryClientException(e.getMessage());
@@ -87,17 +175,13 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
     @Override
     public Iterable<T> findAll() {
         List<Client> entities = new ArrayList<>();
-        Client client;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s",tableName));
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                client = new Client(rs.getString("serialNumber"),
-                        rs.getString("name"),  rs.getString("address"), rs.getInt("yearOfRegistration"));
-                client.setId(rs.getLong("clientId"));
-                entities.add(client);
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createClientFromRow(rs));
+                }
             }
         } catch (Exception e) {
             throw new DBRepositoryClientException(e.getMessage());
@@ -105,6 +189,92 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
         return (Iterable<T>) entities;
     }
 
+    @Override
+    public boolean isIndexed(SecondaryIndex<T, ?> index) {
+        return INDEXES.containsKey(index);
+    }
+
+    /**
+     * Find the clients with the given value of an indexed column, with a lookup in the index of the column
+     *
+     * @param index : SecondaryIndex<T, K> ClientSchema.YEAR_OF_REGISTRATION
+     *        key : K value of the column
+     * @return the matching clients
+     * @throws DBRepositoryClientException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key) throws DBRepositoryClientException {
+        Optional.ofNullable(key).orElseThrow(() ->
+                new DBRepositoryClientException("key must not be null")
+        );
+        return findWhere(column(index) + " = ?", key);
+    }
+
+    /**
+     * Find the clients whose indexed column is between the given values, with a range scan of the index
+     *
+     * @param index : SecondaryIndex<T, K> ClientSchema.YEAR_OF_REGISTRATION
+     *        from : K smallest value, included
+     *        to : K greatest value, included
+     * @return the matching clients, sorted by the column
+     * @throws DBRepositoryClientException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to)
+            throws DBRepositoryClientException {
+        Optional.of(index.isOrdered()).filter(bool -> bool == true).orElseThrow(() ->
+                new DBRepositoryClientException("not an ordered index: " + index)
+        );
+        Optional.ofNullable(from).orElseThrow(() ->
+                new DBRepositoryClientException("from must not be null")
+        );
+        Optional.ofNullable(to).orElseThrow(() ->
+                new DBRepositoryClientException("to must not be null")
+        );
+        String column = column(index);
+        return findWhere(column + " BETWEEN ? AND ? ORDER BY " + column, from, to);
+    }
+
+    /**
+     * @return the column of the given index
+     * @throws DBRepositoryClientException
+     *          if the index is not one of the table
+     */
+    private String column(SecondaryIndex<T, ?> index) throws DBRepositoryClientException {
+        return Optional.ofNullable(INDEXES.get(index)).orElseThrow(() ->
+                new DBRepositoryClientException("not an index of the clients: " + index)
+        );
+    }
+
+    /**
+     * Select the clients matching a condition
+     *
+     * @param condition : String where clause, with a ? for every parameter
+     *        parameters : Object... values of the parameters
+     * @return the selected clients
+     * @throws DBRepositoryClientException
+     *          if some error regarding the database occurs
+     */
+    private List<T> findWhere(String condition, Object... parameters) throws DBRepositoryClientException {
+        List<Client> entities = new ArrayList<>();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE " + condition);
+            for (int parameter = 0; parameter < parameters.length; parameter++)
+                stmt.setObject(parameter + 1, parameters[parameter]);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createClientFromRow(rs));
+                }
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryClientException(e.getMessage());
+        }
+        return (List<T>) entities;
+    }
 
     /**
      * Save a client to the repository
@@ -115,15 +285,11 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
      */
     public T saveToDB(Client client) throws DBRepositoryClientException {
 
-        try {
+        try (PooledConnection connection = pool.borrow()) {
             String sql = "insert into " + this.tableName +" values(?,?,?,?,?)";
 
-            PreparedStatement stmt=conn.prepareStatement(sql);
-            stmt.setLong(1,client.getId());
-            stmt.setString(2,client.getSerialNumber());
-            stmt.setString(3,client.getName());
-            stmt.setString(4,client.getAddress());
-            stmt.setInt(5,client.getYearOfRegistration());
+            PreparedStatement stmt = connection.prepare(sql);
+            bindInsert(stmt, client);
 
             stmt.executeUpdate();
 
@@ -143,19 +309,16 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
      */
     public boolean checkUniqueId(T entity){
 
-        boolean ct = true;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s where clientId = %d",tableName,entity.getId()));
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT clientId FROM " + tableName + " WHERE clientId = ?");
+            stmt.setObject(1, entity.getId());
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ct = false;;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return !rs.next();
             }
         } catch (Exception e) {
             throw new DBRepositoryClientException(e.getMessage());
         }
-        return ct;
     }
 
     @Override
@@ -189,11 +352,11 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
         result.orElseThrow(() ->
                 new DBRepositoryClientException("client with the given id could not be found")
         );
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("delete from %s where clientId=%d",tableName,id));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare("delete from " + tableName + " where clientId = ?");
+            stmt.setObject(1, id);
+            stmt.executeUpdate();
 
         } catch (Exception e) {
             throw new DBRepositoryClientException(e.getMessage());
@@ -205,26 +368,20 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
     /**
      * Update the given client in the database
      *
-     * @param client : Client to updated
+     * @param client : Client to update
      * @throws DBRepositoryClientException
      *          if some error regarding the database occurs
      */
     public T updateDB(Client client) throws DBRepositoryClientException {
 
-        try {
-            String sql = "update " + this.tableName +" set serialNumber = ?, name = ?, address = ?, " +
-                    "yearOfRegistration = ? where clientId = ?";
-
-            PreparedStatement stmt=conn.prepareStatement(sql);
-            stmt.setString(1,client.getSerialNumber());
-            stmt.setString(2,client.getName());
-            stmt.setString(3,client.getAddress());
-            stmt.setInt(4,client.getYearOfRegistration());
-            stmt.setLong(5,client.getId());
+        try (PooledConnection connection = pool.borrow()) {
+            String sql = "update " + this.tableName +" set serialNumber = ?, name = ?, address = ?, yearOfRegistration = ? " +
+                    "where clientId = ?";
 
+            PreparedStatement stmt = connection.prepare(sql);
+            bindUpdate(stmt, client);
 
             stmt.executeUpdate();
-
         } catch (Exception e) {
             throw new DBRepositoryClientException(e.getMessage());
         }
@@ -256,16 +413,103 @@ public class DBRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposit
      *          if some error regarding the database occurs
      */
     public void dropTable() throws DBRepositoryClientException {
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement dropTable = conn.prepareStatement(
+            connection.executeSchemaChange(
                     String.format("DROP TABLE IF EXISTS %s",tableName));
-            dropTable.execute();
 
         } catch (Exception e) {
             throw new DBRepositoryClientException(e.getMessage());
         }
     }
 
+    /**
+     * Check every entity of a batch before anything is written
+     *
+     * @throws ValidatorException
+     *          if an entity is not valid
+     */
+    private List<T> validateAll(Iterable<T> entities) throws ValidatorException {
+        List<T> batch = new ArrayList<>();
+        for (T entity : entities) {
+            Optional.ofNullable(entity).orElseThrow(() ->
+                    new DBRepositoryClientException("entity must not be null")
+            );
+            Optional.ofNullable(entity.getId()).orElseThrow(() ->
+                    new DBRepositoryClientException("id must not be null")
+            );
+            validator.validate(entity);
+            batch.add(entity);
+        }
+        return batch;
+    }
 
+    /**
+     * Save many clients with JDBC batches inside one transaction. Every client is validated before anything
+     * is written; a taken id is detected from the primary key violation and reported, the other clients are
+     * still saved.
+     *
+     * @param entities : Iterable<T> clients to be saved
+     * @return the saved clients and the rejected ones, with the reason
+     * @throws DBRepositoryClientException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, DBRepositoryClientException {
+        List<T> batch = validateAll(entities);
+        String sql = "insert into " + tableName +" values(?,?,?,?,?)";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindInsert(stmt, (Client) entity), batchSize, null);
+        } catch (SQLException e) {
+            throw new DBRepositoryClientException(e.getMessage());
+        }
+    }
+
+    /**
+     * Update many clients with JDBC batches inside one transaction. The clients whose id does not exist
+     * are reported, the others are still updated.
+     *
+     * @param entities : Iterable<T> clients to be updated
+     * @return the updated clients and the rejected ones, with the reason
+     * @throws DBRepositoryClientException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, DBRepositoryClientException {
+        List<T> batch = validateAll(entities);
+        String sql = "update " + tableName + " set serialNumber = ?, name = ?, address = ?, yearOfRegistration = ? " +
+                "where clientId = ?";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindUpdate(stmt, (Client) entity), batchSize, BatchResult.ID_MISSING);
+        } catch (SQLException e) {
+            throw new DBRepositoryClientException(e.getMessage());
+        }
+    }
+
+    /**
+     * Delete many clients with JDBC batches inside one transaction
+     *
+     * @param ids : Iterable<ID> ids of the clients to be deleted
+     * @return the deleted clients; ids without a client are skipped
+     * @throws DBRepositoryClientException
+     *          if the transaction fails
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws DBRepositoryClientException {
+        List<ID> batch = new ArrayList<>();
+        for (ID id : ids) {
+            Optional.ofNullable(id).orElseThrow(() ->
+                    new DBRepositoryClientException("id must not be null")
+            );
+            batch.add(id);
+        }
+        try {
+            return (List<T>) (List<?>) JdbcBatchExecutor.delete(pool, tableName, COLUMNS, "clientId", batch,
+                    DBRepositoryClient::createClientFromRow, batchSize);
+        } catch (SQLException e) {
+            throw new DBRepositoryClientException(e.getMessage());
+        }
+    }
 }
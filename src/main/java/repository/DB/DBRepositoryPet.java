@@ -3,49 +3,71 @@ package repository.DB;
 import domain.BaseEntity;
 import domain.Pet.Pet;
 import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
 import repository.DB.exceptions.DBRepositoryPetException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.IndexedRepository;
+import repository.schema.PetSchema;
+import repository.schema.SecondaryIndex;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T>, IndexedRepository<ID, T> {
+
+    // the columns of the table, in the order of the insert
+    private static final String COLUMNS = "petId, serialNumber, name, breed, birthDate";
+
+    // the indexed fields and their columns
+    private static final Map<SecondaryIndex<Pet, ?>, String> INDEXES = Map.of(
+            PetSchema.BIRTH_YEAR, "birthDate");
 
     private Validator<T> validator;
 
-    String DB_URL;
-    String USER;
-    String PASS;
+    private final ConnectionPool pool;
 
     public String tableName;
 
-    Connection conn;
+    private int batchSize = JdbcBatchExecutor.DEFAULT_BATCH_SIZE;
 
     public DBRepositoryPet(Validator<T> validator,String tableName) {
+        this(validator, tableName, ConnectionPool.getDefault());
+    }
+
+    /**
+     * Constructor of the class. Creates the table of the repository and the index of its year,
+     * unless they already exist.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        tableName : String name of the table
+     *        pool : ConnectionPool the connections are borrowed from
+     * @throws DBRepositoryPetException
+     *          if the table can not be created
+     */
+    public DBRepositoryPet(Validator<T> validator, String tableName, ConnectionPool pool) {
         this.validator = validator;
         this.tableName = tableName;
-        try {
-
-            DB_URL = "jdbc:postgresql://localhost:5432/postgres";
-            USER = "postgres";
-            PASS = "infinite7";
-            conn = DriverManager.getConnection(DB_URL, USER, PASS);
+        this.pool = pool;
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement createTable = conn.prepareStatement(
-                    String.format("CREATE TABLE %s " +
+            connection.executeSchemaChange(
+                    String.format("CREATE TABLE IF NOT EXISTS %s " +
                             "(petId INTEGER not NULL, " +
                             " serialNumber VARCHAR(255), " +
                             " name VARCHAR(255), " +
                             " breed VARCHAR(255), " +
                             " birthDate INTEGER, " +
                             " PRIMARY KEY ( petId ))",tableName));
-            createTable.execute();
-
+            for (String column : INDEXES.values())
+                connection.executeSchemaChange(String.format("CREATE INDEX IF NOT EXISTS %s_%s ON %s (%s)",
+                        tableName, column, tableName, column));
 
         }catch (Exception e) {
             throw new DBRepositoryPetException(e.getMessage());
@@ -60,22 +82,88 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
         this.tableName = tableName;
     }
 
+    /**
+     * @return the pool the connections are borrowed from (repositories on the same pool share the database)
+     */
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize : int number of rows sent with each executeBatch by saveAll/updateAll/deleteAll
+     */
+    public void setBatchSize(int batchSize) {
+        Optional.of(batchSize).filter(size -> size > 0).orElseThrow(() ->
+                new DBRepositoryPetException("batch size must be positive")
+        );
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create a Pet object from the current row of a result set
+     *
+     * @param rs : ResultSet positioned on a row of the table
+     * @return pet : Pet the generated Pet
+     * @throws SQLException
+     *          if a column can not be read
+     */
+    private static Pet createPetFromRow(ResultSet rs) throws SQLException {
+        Pet pet = new Pet(rs.getString("serialNumber"),
+                rs.getString("name"), rs.getString("breed"), rs.getInt("birthDate"));
+        pet.setId(rs.getLong("petId"));
+        return pet;
+    }
+
+    /**
+     * Bind the parameters of the insert of a pet
+     *
+     * @param stmt : PreparedStatement of the insert
+     *        pet : Pet whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindInsert(PreparedStatement stmt, Pet pet) throws SQLException {
+        stmt.setLong(1,pet.getId());
+        stmt.setString(2,pet.getSerialNumber());
+        stmt.setString(3,pet.getName());
+        stmt.setString(4,pet.getBreed());
+        stmt.setInt(5,pet.getBirthDate());
+    }
+
+    /**
+     * Bind the parameters of the update of a pet (the id comes last)
+     *
+     * @param stmt : PreparedStatement of the update
+     *        pet : Pet whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindUpdate(PreparedStatement stmt, Pet pet) throws SQLException {
+        stmt.setString(1,pet.getSerialNumber());
+        stmt.setString(2,pet.getName());
+        stmt.setString(3,pet.getBreed());
+        stmt.setInt(4,pet.getBirthDate());
+        stmt.setLong(5,pet.getId());
+    }
 
     @Override
     public Optional<T> findOne(ID id) {
 
         Pet pet = null;
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s WHERE petId = %d",tableName,id));
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE petId = ?");
+            stmt.setObject(1, id);
 
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                pet = new Pet(rs.getString("serialNumber"),
-                        rs.getString("name"), rs.getString("breed"), rs.getInt("birthDate"));
-                pet.setId(rs.getLong("petId"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    pet = createPetFromRow(rs);
+                }
             }
         }catch (Exception e) {
             throw new DBRepositoryPetException(e.getMessage());
@@ -87,17 +175,13 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
     @Override
     public Iterable<T> findAll() {
         List<Pet> entities = new ArrayList<>();
-        Pet pet;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s",tableName));
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                pet = new Pet(rs.getString("serialNumber"),
-                        rs.getString("name"), rs.getString("breed"), rs.getInt("birthDate"));
-                pet.setId(rs.getLong("petId"));
-                entities.add(pet);
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createPetFromRow(rs));
+                }
             }
         } catch (Exception e) {
             throw new DBRepositoryPetException(e.getMessage());
@@ -105,6 +189,92 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
         return (Iterable<T>) entities;
     }
 
+    @Override
+    public boolean isIndexed(SecondaryIndex<T, ?> index) {
+        return INDEXES.containsKey(index);
+    }
+
+    /**
+     * Find the pets with the given value of an indexed column, with a lookup in the index of the column
+     *
+     * @param index : SecondaryIndex<T, K> PetSchema.BIRTH_YEAR
+     *        key : K value of the column
+     * @return the matching pets
+     * @throws DBRepositoryPetException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key) throws DBRepositoryPetException {
+        Optional.ofNullable(key).orElseThrow(() ->
+                new DBRepositoryPetException("key must not be null")
+        );
+        return findWhere(column(index) + " = ?", key);
+    }
+
+    /**
+     * Find the pets whose indexed column is between the given values, with a range scan of the index
+     *
+     * @param index : SecondaryIndex<T, K> PetSchema.BIRTH_YEAR
+     *        from : K smallest value, included
+     *        to : K greatest value, included
+     * @return the matching pets, sorted by the column
+     * @throws DBRepositoryPetException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to)
+            throws DBRepositoryPetException {
+        Optional.of(index.isOrdered()).filter(bool -> bool == true).orElseThrow(() ->
+                new DBRepositoryPetException("not an ordered index: " + index)
+        );
+        Optional.ofNullable(from).orElseThrow(() ->
+                new DBRepositoryPetException("from must not be null")
+        );
+        Optional.ofNullable(to).orElseThrow(() ->
+                new DBRepositoryPetException("to must not be null")
+        );
+        String column = column(index);
+        return findWhere(column + " BETWEEN ? AND ? ORDER BY " + column, from, to);
+    }
+
+    /**
+     * @return the column of the given index
+     * @throws DBRepositoryPetException
+     *          if the index is not one of the table
+     */
+    private String column(SecondaryIndex<T, ?> index) throws DBRepositoryPetException {
+        return Optional.ofNullable(INDEXES.get(index)).orElseThrow(() ->
+                new DBRepositoryPetException("not an index of the pets: " + index)
+        );
+    }
+
+    /**
+     * Select the pets matching a condition
+     *
+     * @param condition : String where clause, with a ? for every parameter
+     *        parameters : Object... values of the parameters
+     * @return the selected pets
+     * @throws DBRepositoryPetException
+     *          if some error regarding the database occurs
+     */
+    private List<T> findWhere(String condition, Object... parameters) throws DBRepositoryPetException {
+        List<Pet> entities = new ArrayList<>();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE " + condition);
+            for (int parameter = 0; parameter < parameters.length; parameter++)
+                stmt.setObject(parameter + 1, parameters[parameter]);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createPetFromRow(rs));
+                }
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryPetException(e.getMessage());
+        }
+        return (List<T>) entities;
+    }
 
     /**
      * Save a pet to the repository
@@ -115,19 +285,14 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
      */
     public T saveToDB(Pet pet) throws DBRepositoryPetException {
 
-        try {
+        try (PooledConnection connection = pool.borrow()) {
             String sql = "insert into " + this.tableName +" values(?,?,?,?,?)";
 
-            PreparedStatement stmt=conn.prepareStatement(sql);
-            stmt.setLong(1,pet.getId());
-            stmt.setString(2,pet.getSerialNumber());
-            stmt.setString(3,pet.getName());
-            stmt.setString(4,pet.getBreed());
-            stmt.setInt(5,pet.getBirthDate());
+            PreparedStatement stmt = connection.prepare(sql);
+            bindInsert(stmt, pet);
 
             stmt.executeUpdate();
 
-
         } catch (Exception e) {
             throw new DBRepositoryPetException(e.getMessage());
         }
@@ -144,19 +309,16 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
      */
     public boolean checkUniqueId(T entity){
 
-        boolean ct = true;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s where petId = %d",tableName,entity.getId()));
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT petId FROM " + tableName + " WHERE petId = ?");
+            stmt.setObject(1, entity.getId());
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ct = false;;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return !rs.next();
             }
         } catch (Exception e) {
             throw new DBRepositoryPetException(e.getMessage());
         }
-        return ct;
     }
 
     @Override
@@ -190,11 +352,11 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
         result.orElseThrow(() ->
                 new DBRepositoryPetException("pet with the given id could not be found")
         );
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("delete from %s where petId=%d",tableName,id));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare("delete from " + tableName + " where petId = ?");
+            stmt.setObject(1, id);
+            stmt.executeUpdate();
 
         } catch (Exception e) {
             throw new DBRepositoryPetException(e.getMessage());
@@ -212,17 +374,12 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
      */
     public T updateDB(Pet pet) throws DBRepositoryPetException {
 
-        try {
-            String sql = "update " + this.tableName +" set serialNumber = ?, name = ?, breed = ?, " +
-                    "BirthDate = ? where petId = ?";
-
-            PreparedStatement stmt=conn.prepareStatement(sql);
-            stmt.setString(1,pet.getSerialNumber());
-            stmt.setString(2,pet.getName());
-            stmt.setString(3,pet.getBreed());
-            stmt.setInt(4,pet.getBirthDate());
-            stmt.setLong(5,pet.getId());
+        try (PooledConnection connection = pool.borrow()) {
+            String sql = "update " + this.tableName +" set serialNumber = ?, name = ?, breed = ?, birthDate = ? " +
+                    "where petId = ?";
 
+            PreparedStatement stmt = connection.prepare(sql);
+            bindUpdate(stmt, pet);
 
             stmt.executeUpdate();
         } catch (Exception e) {
@@ -256,17 +413,103 @@ public class DBRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository
      *          if some error regarding the database occurs
      */
     public void dropTable() throws DBRepositoryPetException {
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement dropTable = conn.prepareStatement(
+            connection.executeSchemaChange(
                     String.format("DROP TABLE IF EXISTS %s",tableName));
-            dropTable.execute();
-
 
         } catch (Exception e) {
             throw new DBRepositoryPetException(e.getMessage());
         }
     }
 
+    /**
+     * Check every entity of a batch before anything is written
+     *
+     * @throws ValidatorException
+     *          if an entity is not valid
+     */
+    private List<T> validateAll(Iterable<T> entities) throws ValidatorException {
+        List<T> batch = new ArrayList<>();
+        for (T entity : entities) {
+            Optional.ofNullable(entity).orElseThrow(() ->
+                    new DBRepositoryPetException("entity must not be null")
+            );
+            Optional.ofNullable(entity.getId()).orElseThrow(() ->
+                    new DBRepositoryPetException("id must not be null")
+            );
+            validator.validate(entity);
+            batch.add(entity);
+        }
+        return batch;
+    }
 
+    /**
+     * Save many pets with JDBC batches inside one transaction. Every pet is validated before anything
+     * is written; a taken id is detected from the primary key violation and reported, the other pets are
+     * still saved.
+     *
+     * @param entities : Iterable<T> pets to be saved
+     * @return the saved pets and the rejected ones, with the reason
+     * @throws DBRepositoryPetException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, DBRepositoryPetException {
+        List<T> batch = validateAll(entities);
+        String sql = "insert into " + tableName +" values(?,?,?,?,?)";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindInsert(stmt, (Pet) entity), batchSize, null);
+        } catch (SQLException e) {
+            throw new DBRepositoryPetException(e.getMessage());
+        }
+    }
+
+    /**
+     * Update many pets with JDBC batches inside one transaction. The pets whose id does not exist
+     * are reported, the others are still updated.
+     *
+     * @param entities : Iterable<T> pets to be updated
+     * @return the updated pets and the rejected ones, with the reason
+     * @throws DBRepositoryPetException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, DBRepositoryPetException {
+        List<T> batch = validateAll(entities);
+        String sql = "update " + tableName + " set serialNumber = ?, name = ?, breed = ?, birthDate = ? " +
+                "where petId = ?";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindUpdate(stmt, (Pet) entity), batchSize, BatchResult.ID_MISSING);
+        } catch (SQLException e) {
+            throw new DBRepositoryPetException(e.getMessage());
+        }
+    }
+
+    /**
+     * Delete many pets with JDBC batches inside one transaction
+     *
+     * @param ids : Iterable<ID> ids of the pets to be deleted
+     * @return the deleted pets; ids without a pet are skipped
+     * @throws DBRepositoryPetException
+     *          if the transaction fails
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws DBRepositoryPetException {
+        List<ID> batch = new ArrayList<>();
+        for (ID id : ids) {
+            Optional.ofNullable(id).orElseThrow(() ->
+                    new DBRepositoryPetException("id must not be null")
+            );
+            batch.add(id);
+        }
+        try {
+            return (List<T>) (List<?>) JdbcBatchExecutor.delete(pool, tableName, COLUMNS, "petId", batch,
+                    DBRepositoryPet::createPetFromRow, batchSize);
+        } catch (SQLException e) {
+            throw new DBRepositoryPetException(e.getMessage());
+        }
+    }
 }
@@ -1,39 +1,71 @@
 package repository.DB;
 
-import domain.Purchase.Purchase;
 import domain.BaseEntity;
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
 import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
 import repository.DB.exceptions.DBRepositoryPurchaseException;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.DelegatingRepository;
+import repository.PurchaseReportRepository;
+import repository.IndexedRepository;
 import repository.Repository;
-
-import java.sql.*;
-import java.util.*;
-
-public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+import repository.schema.PurchaseSchema;
+import repository.schema.SecondaryIndex;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T>, IndexedRepository<ID, T>, PurchaseReportRepository {
+
+    // the columns of the table, in the order of the insert
+    private static final String COLUMNS = "purchaseId, serialNumber, clientId, toyId, purchaseYear";
+
+    // the indexed fields and their columns
+    private static final Map<SecondaryIndex<Purchase, ?>, String> INDEXES = Map.of(
+            PurchaseSchema.CLIENT_ID, "clientId",
+            PurchaseSchema.TOY_ID, "toyId",
+            PurchaseSchema.PURCHASE_YEAR, "purchaseYear");
 
     private Validator<T> validator;
 
-    String DB_URL;
-
-    String USER;
-    String PASS;
+    private final ConnectionPool pool;
 
     public String tableName;
 
-    Connection conn;
+    private int batchSize = JdbcBatchExecutor.DEFAULT_BATCH_SIZE;
 
     public DBRepositoryPurchase(Validator<T> validator,String tableName) {
+        this(validator, tableName, ConnectionPool.getDefault());
+    }
+
+    /**
+     * Constructor of the class. Creates the table of the repository and the indexes of its foreign keys and
+     * of its year, unless they already exist.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        tableName : String name of the table
+     *        pool : ConnectionPool the connections are borrowed from
+     * @throws DBRepositoryPurchaseException
+     *          if the table can not be created
+     */
+    public DBRepositoryPurchase(Validator<T> validator, String tableName, ConnectionPool pool) {
         this.validator = validator;
         this.tableName = tableName;
-        try {
-
-            DB_URL = "jdbc:postgresql://localhost:5432/postgres";
-            USER = "postgres";
-            PASS = "infinite7";
-            conn = DriverManager.getConnection(DB_URL, USER, PASS);
+        this.pool = pool;
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement createTable = conn.prepareStatement(
-                    String.format("CREATE TABLE %s " +
+            connection.executeSchemaChange(
+                    String.format("CREATE TABLE IF NOT EXISTS %s " +
                             "(purchaseId INTEGER not NULL, " +
                             " serialNumber VARCHAR(255), " +
                             " clientId INTEGER, " +
@@ -42,8 +74,9 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
                             " PRIMARY KEY ( purchaseId ))"/* +
                             " FOREIGN KEY (clientId) REFERENCES Client(clientId)" +
                             " FOREIGN KEY (toyId) REFERENCES Toy(toyId))"*/,tableName));
-            createTable.execute();
-
+            for (String column : INDEXES.values())
+                connection.executeSchemaChange(String.format("CREATE INDEX IF NOT EXISTS %s_%s ON %s (%s)",
+                        tableName, column, tableName, column));
 
         }catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
@@ -58,22 +91,81 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
         this.tableName = tableName;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize : int number of rows sent with each executeBatch by saveAll/updateAll/deleteAll
+     */
+    public void setBatchSize(int batchSize) {
+        Optional.of(batchSize).filter(size -> size > 0).orElseThrow(() ->
+                new DBRepositoryPurchaseException("batch size must be positive")
+        );
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create a Purchase object from the current row of a result set
+     *
+     * @param rs : ResultSet positioned on a row of the table
+     * @return purchase : Purchase the generated Purchase
+     * @throws SQLException
+     *          if a column can not be read
+     */
+    private static Purchase createPurchaseFromRow(ResultSet rs) throws SQLException {
+        Purchase purchase = new Purchase(rs.getString("serialNumber"),
+                rs.getLong("clientId"), rs.getLong("toyId"), rs.getInt("purchaseYear"));
+        purchase.setId(rs.getLong("purchaseId"));
+        return purchase;
+    }
+
+    /**
+     * Bind the parameters of the insert of a purchase
+     *
+     * @param stmt : PreparedStatement of the insert
+     *        purchase : Purchase whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindInsert(PreparedStatement stmt, Purchase purchase) throws SQLException {
+        stmt.setLong(1,purchase.getId());
+        stmt.setString(2,purchase.getSerialNumber());
+        stmt.setLong(3,purchase.getClientId());
+        stmt.setLong(4,purchase.getToyId());
+        stmt.setInt(5,purchase.getPurchaseYear());
+    }
+
+    /**
+     * Bind the parameters of the update of a purchase (the id comes last)
+     *
+     * @param stmt : PreparedStatement of the update
+     *        purchase : Purchase whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindUpdate(PreparedStatement stmt, Purchase purchase) throws SQLException {
+        stmt.setString(1,purchase.getSerialNumber());
+        stmt.setLong(2,purchase.getClientId());
+        stmt.setLong(3,purchase.getToyId());
+        stmt.setInt(4,purchase.getPurchaseYear());
+        stmt.setLong(5,purchase.getId());
+    }
 
     @Override
     public Optional<T> findOne(ID id) {
 
         Purchase purchase = null;
-        try {
-
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s WHERE purchaseId = %d",tableName,id));
+        try (PooledConnection connection = pool.borrow()) {
 
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE purchaseId = ?");
+            stmt.setObject(1, id);
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                purchase = new Purchase(rs.getString("serialNumber"),
-                        rs.getLong("clientId"), rs.getLong("toyId"), rs.getInt("purchaseYear"));
-                purchase.setId(rs.getLong("purchaseId"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    purchase = createPurchaseFromRow(rs);
+                }
             }
         }catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
@@ -85,17 +177,13 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
     @Override
     public Iterable<T> findAll() {
         List<Purchase> entities = new ArrayList<>();
-        Purchase purchase;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s",tableName));
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                purchase = new Purchase(rs.getString("serialNumber"),
-                        rs.getLong("clientId"), rs.getLong("toyId"), rs.getInt("purchaseYear"));
-                purchase.setId(rs.getLong("purchaseId"));
-                entities.add(purchase);
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createPurchaseFromRow(rs));
+                }
             }
         } catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
@@ -103,9 +191,95 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
         return (Iterable<T>) entities;
     }
 
+    @Override
+    public boolean isIndexed(SecondaryIndex<T, ?> index) {
+        return INDEXES.containsKey(index);
+    }
+
+    /**
+     * Find the purchases with the given value of an indexed column, with a lookup in the index of the column
+     *
+     * @param index : SecondaryIndex<T, K> one of PurchaseSchema.CLIENT_ID, TOY_ID, PURCHASE_YEAR
+     *        key : K value of the column
+     * @return the matching purchases
+     * @throws DBRepositoryPurchaseException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key) throws DBRepositoryPurchaseException {
+        Optional.ofNullable(key).orElseThrow(() ->
+                new DBRepositoryPurchaseException("key must not be null")
+        );
+        return findWhere(column(index) + " = ?", key);
+    }
+
+    /**
+     * Find the purchases whose indexed column is between the given values, with a range scan of the index
+     *
+     * @param index : SecondaryIndex<T, K> PurchaseSchema.PURCHASE_YEAR
+     *        from : K smallest value, included
+     *        to : K greatest value, included
+     * @return the matching purchases, sorted by the column
+     * @throws DBRepositoryPurchaseException
+     *          if the column is not indexed or some error regarding the database occurs
+     */
+    @Override
+    public <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to)
+            throws DBRepositoryPurchaseException {
+        Optional.of(index.isOrdered()).filter(bool -> bool == true).orElseThrow(() ->
+                new DBRepositoryPurchaseException("not an ordered index: " + index)
+        );
+        Optional.ofNullable(from).orElseThrow(() ->
+                new DBRepositoryPurchaseException("from must not be null")
+        );
+        Optional.ofNullable(to).orElseThrow(() ->
+                new DBRepositoryPurchaseException("to must not be null")
+        );
+        String column = column(index);
+        return findWhere(column + " BETWEEN ? AND ? ORDER BY " + column, from, to);
+    }
+
+    /**
+     * @return the column of the given index
+     * @throws DBRepositoryPurchaseException
+     *          if the index is not one of the table
+     */
+    private String column(SecondaryIndex<T, ?> index) throws DBRepositoryPurchaseException {
+        return Optional.ofNullable(INDEXES.get(index)).orElseThrow(() ->
+                new DBRepositoryPurchaseException("not an index of the purchases: " + index)
+        );
+    }
 
     /**
-     * Save an purchase to the repository
+     * Select the purchases matching a condition
+     *
+     * @param condition : String where clause, with a ? for every parameter
+     *        parameters : Object... values of the parameters
+     * @return the selected purchases
+     * @throws DBRepositoryPurchaseException
+     *          if some error regarding the database occurs
+     */
+    private List<T> findWhere(String condition, Object... parameters) throws DBRepositoryPurchaseException {
+        List<Purchase> entities = new ArrayList<>();
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE " + condition);
+            for (int parameter = 0; parameter < parameters.length; parameter++)
+                stmt.setObject(parameter + 1, parameters[parameter]);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createPurchaseFromRow(rs));
+                }
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+        return (List<T>) entities;
+    }
+
+    /**
+     * Save a purchase to the repository
      *
      * @param purchase : Purchase to be saved to the repository
      * @throws DBRepositoryPurchaseException
@@ -113,13 +287,13 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
      */
     public T saveToDB(Purchase purchase) throws DBRepositoryPurchaseException {
 
-        try {
+        try (PooledConnection connection = pool.borrow()) {
+            String sql = "insert into " + this.tableName +" values(?,?,?,?,?)";
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("insert into %s values(%d,%s,%d,%d,%d)",tableName,purchase.getId(),purchase.getSerialNumber(),
-                            purchase.getClientId(),purchase.getToyId(),purchase.getPurchaseYear()));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare(sql);
+            bindInsert(stmt, purchase);
 
+            stmt.executeUpdate();
 
         } catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
@@ -137,19 +311,16 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
      */
     public boolean checkUniqueId(T entity){
 
-        boolean ct = true;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s where purchaseId = %d",tableName,entity.getId()));
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT purchaseId FROM " + tableName + " WHERE purchaseId = ?");
+            stmt.setObject(1, entity.getId());
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ct = false;;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return !rs.next();
             }
         } catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
         }
-        return ct;
     }
 
     @Override
@@ -183,11 +354,11 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
         result.orElseThrow(() ->
                 new DBRepositoryPurchaseException("purchase with the given id could not be found")
         );
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("delete from %s where purchaseId=%d",tableName,id));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare("delete from " + tableName + " where purchaseId = ?");
+            stmt.setObject(1, id);
+            stmt.executeUpdate();
 
         } catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
@@ -199,20 +370,20 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
     /**
      * Update the given purchase in the database
      *
-     * @param purchase : Purchase to updated
+     * @param purchase : Purchase to update
      * @throws DBRepositoryPurchaseException
      *          if some error regarding the database occurs
      */
     public T updateDB(Purchase purchase) throws DBRepositoryPurchaseException {
 
-        try {
+        try (PooledConnection connection = pool.borrow()) {
+            String sql = "update " + this.tableName +" set serialNumber = ?, clientId = ?, toyId = ?, purchaseYear = ? " +
+                    "where purchaseId = ?";
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("update %s set serialNumber = %s, clientId = %d," +
-                                    " toyId = %d, purchaseYear = %d where purchaseId = %d",tableName,purchase.getSerialNumber(),
-                            purchase.getClientId(),purchase.getToyId(),purchase.getPurchaseYear(),purchase.getId()));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare(sql);
+            bindUpdate(stmt, purchase);
 
+            stmt.executeUpdate();
         } catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
         }
@@ -244,17 +415,203 @@ public class DBRepositoryPurchase<ID, T extends BaseEntity<ID>> implements Repos
      *          if some error regarding the database occurs
      */
     public void dropTable() throws DBRepositoryPurchaseException {
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement dropTable = conn.prepareStatement(
+            connection.executeSchemaChange(
                     String.format("DROP TABLE IF EXISTS %s",tableName));
-            dropTable.execute();
 
+        } catch (Exception e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+    }
+
+    /**
+     * Check every entity of a batch before anything is written
+     *
+     * @throws ValidatorException
+     *          if an entity is not valid
+     */
+    private List<T> validateAll(Iterable<T> entities) throws ValidatorException {
+        List<T> batch = new ArrayList<>();
+        for (T entity : entities) {
+            Optional.ofNullable(entity).orElseThrow(() ->
+                    new DBRepositoryPurchaseException("entity must not be null")
+            );
+            Optional.ofNullable(entity.getId()).orElseThrow(() ->
+                    new DBRepositoryPurchaseException("id must not be null")
+            );
+            validator.validate(entity);
+            batch.add(entity);
+        }
+        return batch;
+    }
+
+    /**
+     * Save many purchases with JDBC batches inside one transaction. Every purchase is validated before anything
+     * is written; a taken id is detected from the primary key violation and reported, the other purchases are
+     * still saved.
+     *
+     * @param entities : Iterable<T> purchases to be saved
+     * @return the saved purchases and the rejected ones, with the reason
+     * @throws DBRepositoryPurchaseException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, DBRepositoryPurchaseException {
+        List<T> batch = validateAll(entities);
+        String sql = "insert into " + tableName +" values(?,?,?,?,?)";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindInsert(stmt, (Purchase) entity), batchSize, null);
+        } catch (SQLException e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+    }
+
+    /**
+     * Update many purchases with JDBC batches inside one transaction. The purchases whose id does not exist
+     * are reported, the others are still updated.
+     *
+     * @param entities : Iterable<T> purchases to be updated
+     * @return the updated purchases and the rejected ones, with the reason
+     * @throws DBRepositoryPurchaseException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, DBRepositoryPurchaseException {
+        List<T> batch = validateAll(entities);
+        String sql = "update " + tableName + " set serialNumber = ?, clientId = ?, toyId = ?, purchaseYear = ? " +
+                "where purchaseId = ?";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindUpdate(stmt, (Purchase) entity), batchSize, BatchResult.ID_MISSING);
+        } catch (SQLException e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+    }
+
+    /**
+     * Delete many purchases with JDBC batches inside one transaction
+     *
+     * @param ids : Iterable<ID> ids of the purchases to be deleted
+     * @return the deleted purchases; ids without a purchase are skipped
+     * @throws DBRepositoryPurchaseException
+     *          if the transaction fails
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws DBRepositoryPurchaseException {
+        List<ID> batch = new ArrayList<>();
+        for (ID id : ids) {
+            Optional.ofNullable(id).orElseThrow(() ->
+                    new DBRepositoryPurchaseException("id must not be null")
+            );
+            batch.add(id);
+        }
+        try {
+            return (List<T>) (List<?>) JdbcBatchExecutor.delete(pool, tableName, COLUMNS, "purchaseId", batch,
+                    DBRepositoryPurchase::createPurchaseFromRow, batchSize);
+        } catch (SQLException e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean supportsJoin(Repository<?, ?> repository) {
+        return DelegatingRepository.unwrap(repository, DBRepositoryToy.class)
+                .filter(toys -> toys.getPool() == pool)
+                .isPresent();
+    }
+
+    /**
+     * @return the table of the given toy repository
+     * @throws DBRepositoryPurchaseException
+     *          if the toys are not in the database of the purchases
+     */
+    private String toyTable(Repository<Long, Toy> toyRepository) throws DBRepositoryPurchaseException {
+        Optional.of(supportsJoin(toyRepository)).filter(bool -> bool == true).orElseThrow(() ->
+                new DBRepositoryPurchaseException("the toys are not in the database of the purchases")
+        );
+        return DelegatingRepository.unwrap(toyRepository, DBRepositoryToy.class).get().getTableName();
+    }
 
+    @Override
+    public boolean isEmpty() throws DBRepositoryPurchaseException {
+        try (PooledConnection connection = pool.borrow()) {
+            try (ResultSet rs = connection.prepare("SELECT purchaseId FROM " + tableName + " LIMIT 1").executeQuery()) {
+                return !rs.next();
+            }
         } catch (Exception e) {
             throw new DBRepositoryPurchaseException(e.getMessage());
         }
     }
 
+    /**
+     * Count the purchases of a year with one query, answered from the index of the purchaseYear column
+     *
+     * @param year : int year of the purchases
+     * @return the number of purchases made in that year
+     * @throws DBRepositoryPurchaseException
+     *          if some error regarding the database occurs
+     */
+    @Override
+    public long purchasesIn(int year) throws DBRepositoryPurchaseException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT COUNT(*) AS purchases FROM " + tableName
+                    + " WHERE purchaseYear = ?");
+            stmt.setInt(1, year);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong("purchases");
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+    }
+
+    /**
+     * Find the most popular material with one query, grouping the purchases joined with their toys by material.
+     * Purchases of a toy that no longer exists are not counted.
+     *
+     * @param toyRepository : Repository<Long, Toy> on the same database
+     * @return the material of the most purchased toys, empty if there are no purchases
+     * @throws DBRepositoryPurchaseException
+     *          if some error regarding the database occurs
+     */
+    @Override
+    public Optional<String> mostPopularMaterial(Repository<Long, Toy> toyRepository) throws DBRepositoryPurchaseException {
+        String sql = "SELECT t.material, COUNT(*) AS purchases FROM " + tableName + " p " +
+                "JOIN " + toyTable(toyRepository) + " t ON t.toyId = p.toyId " +
+                "GROUP BY t.material ORDER BY purchases DESC, t.material LIMIT 1";
+        try (PooledConnection connection = pool.borrow()) {
+            try (ResultSet rs = connection.prepare(sql).executeQuery()) {
+                return rs.next() ? Optional.ofNullable(rs.getString("material")) : Optional.empty();
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+    }
 
+    /**
+     * Compute the average weight of the purchased toys with one query over the purchases joined with their toys
+     *
+     * @param toyRepository : Repository<Long, Toy> on the same database
+     * @return the total weight divided by the number of purchases, empty if there are no purchases
+     * @throws DBRepositoryPurchaseException
+     *          if some error regarding the database occurs
+     */
+    @Override
+    public OptionalLong averagePurchasedToyWeight(Repository<Long, Toy> toyRepository) throws DBRepositoryPurchaseException {
+        String sql = "SELECT SUM(t.weight) AS weight, COUNT(*) AS purchases FROM " + tableName + " p " +
+                "JOIN " + toyTable(toyRepository) + " t ON t.toyId = p.toyId";
+        try (PooledConnection connection = pool.borrow()) {
+            try (ResultSet rs = connection.prepare(sql).executeQuery()) {
+                // the division is left to java, so the result is truncated exactly like the in-memory report
+                if (!rs.next() || rs.getLong("purchases") == 0)
+                    return OptionalLong.empty();
+                return OptionalLong.of(rs.getLong("weight") / rs.getLong("purchases"));
+            }
+        } catch (Exception e) {
+            throw new DBRepositoryPurchaseException(e.getMessage());
+        }
+    }
 }
@@ -3,42 +3,52 @@ package repository.DB;
 import domain.BaseEntity;
 import domain.Toy.Toy;
 import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
 import repository.DB.exceptions.DBRepositoryToyException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
 
-    private Validator<T> validator;
+    // the columns of the table, in the order of the insert
+    private static final String COLUMNS = "toyId, serialNumber, name, weight, material, price";
 
-    String DB_URL;
+    private Validator<T> validator;
 
-    String USER;
-    String PASS;
+    private final ConnectionPool pool;
 
     public String tableName;
 
-    Connection conn;
+    private int batchSize = JdbcBatchExecutor.DEFAULT_BATCH_SIZE;
 
     public DBRepositoryToy(Validator<T> validator,String tableName) {
+        this(validator, tableName, ConnectionPool.getDefault());
+    }
+
+    /**
+     * Constructor of the class. Creates the table of the repository, unless it already exists.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        tableName : String name of the table
+     *        pool : ConnectionPool the connections are borrowed from
+     * @throws DBRepositoryToyException
+     *          if the table can not be created
+     */
+    public DBRepositoryToy(Validator<T> validator, String tableName, ConnectionPool pool) {
         this.validator = validator;
         this.tableName = tableName;
-        try {
+        this.pool = pool;
+        try (PooledConnection connection = pool.borrow()) {
 
-            DB_URL = "jdbc:postgresql://localhost:5432/postgres";
-            USER = "postgres";
-            PASS = "infinite7";
-            conn = DriverManager.getConnection(DB_URL, USER, PASS);
-
-            PreparedStatement createTable = conn.prepareStatement(
-                    String.format("CREATE TABLE %s " +
+            connection.executeSchemaChange(
+                    String.format("CREATE TABLE IF NOT EXISTS %s " +
                             "(toyId INTEGER not NULL, " +
                             " serialNumber VARCHAR(255), " +
                             " name VARCHAR(255), " +
@@ -46,8 +56,6 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
                             " material VARCHAR(255), " +
                             " price INTEGER, " +
                             " PRIMARY KEY ( toyId ))",tableName));
-            createTable.execute();
-
 
         }catch (Exception e) {
             throw new DBRepositoryToyException(e.getMessage());
@@ -62,23 +70,91 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
         this.tableName = tableName;
     }
 
+    /**
+     * @return the pool the connections are borrowed from (repositories on the same pool share the database)
+     */
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize : int number of rows sent with each executeBatch by saveAll/updateAll/deleteAll
+     */
+    public void setBatchSize(int batchSize) {
+        Optional.of(batchSize).filter(size -> size > 0).orElseThrow(() ->
+                new DBRepositoryToyException("batch size must be positive")
+        );
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create a Toy object from the current row of a result set
+     *
+     * @param rs : ResultSet positioned on a row of the table
+     * @return toy : Toy the generated Toy
+     * @throws SQLException
+     *          if a column can not be read
+     */
+    private static Toy createToyFromRow(ResultSet rs) throws SQLException {
+        Toy toy = new Toy(rs.getString("serialNumber"),
+                rs.getString("name"), rs.getInt("weight"),
+                rs.getString("material"),rs.getDouble("price"));
+        toy.setId(rs.getLong("toyId"));
+        return toy;
+    }
+
+    /**
+     * Bind the parameters of the insert of a toy
+     *
+     * @param stmt : PreparedStatement of the insert
+     *        toy : Toy whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindInsert(PreparedStatement stmt, Toy toy) throws SQLException {
+        stmt.setLong(1,toy.getId());
+        stmt.setString(2,toy.getSerialNumber());
+        stmt.setString(3,toy.getName());
+        stmt.setInt(4,toy.getWeight());
+        stmt.setString(5,toy.getMaterial());
+        stmt.setDouble(6,toy.getPrice());
+    }
+
+    /**
+     * Bind the parameters of the update of a toy (the id comes last)
+     *
+     * @param stmt : PreparedStatement of the update
+     *        toy : Toy whose fields are bound
+     * @throws SQLException
+     *          if a parameter can not be set
+     */
+    private static void bindUpdate(PreparedStatement stmt, Toy toy) throws SQLException {
+        stmt.setString(1,toy.getSerialNumber());
+        stmt.setString(2,toy.getName());
+        stmt.setInt(3,toy.getWeight());
+        stmt.setString(4,toy.getMaterial());
+        stmt.setDouble(5,toy.getPrice());
+        stmt.setLong(6,toy.getId());
+    }
 
     @Override
     public Optional<T> findOne(ID id) {
 
         Toy toy = null;
-        try {
-
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s WHERE toyId = %d",tableName,id));
+        try (PooledConnection connection = pool.borrow()) {
 
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName
+                    + " WHERE toyId = ?");
+            stmt.setObject(1, id);
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                toy = new Toy(rs.getString("serialNumber"),
-                        rs.getString("name"), rs.getInt("weight"),
-                        rs.getString("material"),rs.getDouble("price"));
-                toy.setId(rs.getLong("toyId"));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    toy = createToyFromRow(rs);
+                }
             }
         }catch (Exception e) {
             throw new DBRepositoryToyException(e.getMessage());
@@ -90,18 +166,13 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
     @Override
     public Iterable<T> findAll() {
         List<Toy> entities = new ArrayList<>();
-        Toy toy;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s",tableName));
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                toy = new Toy(rs.getString("serialNumber"),
-                        rs.getString("name"), rs.getInt("weight"),
-                        rs.getString("material"),rs.getDouble("price"));
-                toy.setId(rs.getLong("toyId"));
-                entities.add(toy);
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT " + COLUMNS + " FROM " + tableName);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entities.add(createToyFromRow(rs));
+                }
             }
         } catch (Exception e) {
             throw new DBRepositoryToyException(e.getMessage());
@@ -111,7 +182,7 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
 
 
     /**
-     * Save an toy to the repository
+     * Save a toy to the repository
      *
      * @param toy : Toy to be saved to the repository
      * @throws DBRepositoryToyException
@@ -119,22 +190,14 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
      */
     public T saveToDB(Toy toy) throws DBRepositoryToyException {
 
-        try {
-
-
+        try (PooledConnection connection = pool.borrow()) {
             String sql = "insert into " + this.tableName +" values(?,?,?,?,?,?)";
 
-            PreparedStatement stmt=conn.prepareStatement(sql);
-            stmt.setLong(1,toy.getId());
-            stmt.setString(2,toy.getSerialNumber());
-            stmt.setString(3,toy.getName());
-            stmt.setInt(4,toy.getWeight());
-            stmt.setString(5,toy.getMaterial());
-            stmt.setDouble(6,toy.getPrice());
+            PreparedStatement stmt = connection.prepare(sql);
+            bindInsert(stmt, toy);
 
             stmt.executeUpdate();
 
-
         } catch (Exception e) {
             throw new DBRepositoryToyException(e.getMessage());
         }
@@ -151,19 +214,16 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
      */
     public boolean checkUniqueId(T entity){
 
-        boolean ct = true;
-        try {
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("SELECT * FROM %s where toyId = %d",tableName,entity.getId()));
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement stmt = connection.prepare("SELECT toyId FROM " + tableName + " WHERE toyId = ?");
+            stmt.setObject(1, entity.getId());
 
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                ct = false;;
+            try (ResultSet rs = stmt.executeQuery()) {
+                return !rs.next();
             }
         } catch (Exception e) {
             throw new DBRepositoryToyException(e.getMessage());
         }
-        return ct;
     }
 
     @Override
@@ -197,11 +257,11 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
         result.orElseThrow(() ->
                 new DBRepositoryToyException("toy with the given id could not be found")
         );
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement stmt = conn.prepareStatement(
-                    String.format("delete from %s where toyId=%d",tableName,id));
-            stmt.execute();
+            PreparedStatement stmt = connection.prepare("delete from " + tableName + " where toyId = ?");
+            stmt.setObject(1, id);
+            stmt.executeUpdate();
 
         } catch (Exception e) {
             throw new DBRepositoryToyException(e.getMessage());
@@ -213,25 +273,18 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
     /**
      * Update the given toy in the database
      *
-     * @param toy : Toy to updated
+     * @param toy : Toy to update
      * @throws DBRepositoryToyException
      *          if some error regarding the database occurs
      */
     public T updateDB(Toy toy) throws DBRepositoryToyException {
 
-        try {
-
-            String sql = "update " + this.tableName +" set serialNumber = ?, name = ?, weight = ?, " +
-                    "material = ?, price = ? where toyId = ?";
-
-            PreparedStatement stmt=conn.prepareStatement(sql);
-            stmt.setString(1,toy.getSerialNumber());
-            stmt.setString(2,toy.getName());
-            stmt.setInt(3,toy.getWeight());
-            stmt.setString(4,toy.getMaterial());
-            stmt.setDouble(5,toy.getPrice());
-            stmt.setLong(6,toy.getId());
+        try (PooledConnection connection = pool.borrow()) {
+            String sql = "update " + this.tableName +" set serialNumber = ?, name = ?, weight = ?, material = ?, price = ? " +
+                    "where toyId = ?";
 
+            PreparedStatement stmt = connection.prepare(sql);
+            bindUpdate(stmt, toy);
 
             stmt.executeUpdate();
         } catch (Exception e) {
@@ -265,17 +318,103 @@ public class DBRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository
      *          if some error regarding the database occurs
      */
     public void dropTable() throws DBRepositoryToyException {
-        try {
+        try (PooledConnection connection = pool.borrow()) {
 
-            PreparedStatement dropTable = conn.prepareStatement(
+            connection.executeSchemaChange(
                     String.format("DROP TABLE IF EXISTS %s",tableName));
-            dropTable.execute();
-
 
         } catch (Exception e) {
             throw new DBRepositoryToyException(e.getMessage());
         }
     }
 
+    /**
+     * Check every entity of a batch before anything is written
+     *
+     * @throws ValidatorException
+     *          if an entity is not valid
+     */
+    private List<T> validateAll(Iterable<T> entities) throws ValidatorException {
+        List<T> batch = new ArrayList<>();
+        for (T entity : entities) {
+            Optional.ofNullable(entity).orElseThrow(() ->
+                    new DBRepositoryToyException("entity must not be null")
+            );
+            Optional.ofNullable(entity.getId()).orElseThrow(() ->
+                    new DBRepositoryToyException("id must not be null")
+            );
+            validator.validate(entity);
+            batch.add(entity);
+        }
+        return batch;
+    }
 
+    /**
+     * Save many toys with JDBC batches inside one transaction. Every toy is validated before anything
+     * is written; a taken id is detected from the primary key violation and reported, the other toys are
+     * still saved.
+     *
+     * @param entities : Iterable<T> toys to be saved
+     * @return the saved toys and the rejected ones, with the reason
+     * @throws DBRepositoryToyException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, DBRepositoryToyException {
+        List<T> batch = validateAll(entities);
+        String sql = "insert into " + tableName +" values(?,?,?,?,?,?)";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindInsert(stmt, (Toy) entity), batchSize, null);
+        } catch (SQLException e) {
+            throw new DBRepositoryToyException(e.getMessage());
+        }
+    }
+
+    /**
+     * Update many toys with JDBC batches inside one transaction. The toys whose id does not exist
+     * are reported, the others are still updated.
+     *
+     * @param entities : Iterable<T> toys to be updated
+     * @return the updated toys and the rejected ones, with the reason
+     * @throws DBRepositoryToyException
+     *          if the transaction fails as a whole
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, DBRepositoryToyException {
+        List<T> batch = validateAll(entities);
+        String sql = "update " + tableName + " set serialNumber = ?, name = ?, weight = ?, material = ?, price = ? " +
+                "where toyId = ?";
+        try {
+            return JdbcBatchExecutor.execute(pool, sql, batch,
+                    (stmt, entity) -> bindUpdate(stmt, (Toy) entity), batchSize, BatchResult.ID_MISSING);
+        } catch (SQLException e) {
+            throw new DBRepositoryToyException(e.getMessage());
+        }
+    }
+
+    /**
+     * Delete many toys with JDBC batches inside one transaction
+     *
+     * @param ids : Iterable<ID> ids of the toys to be deleted
+     * @return the deleted toys; ids without a toy are skipped
+     * @throws DBRepositoryToyException
+     *          if the transaction fails
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws DBRepositoryToyException {
+        List<ID> batch = new ArrayList<>();
+        for (ID id : ids) {
+            Optional.ofNullable(id).orElseThrow(() ->
+                    new DBRepositoryToyException("id must not be null")
+            );
+            batch.add(id);
+        }
+        try {
+            return (List<T>) (List<?>) JdbcBatchExecutor.delete(pool, tableName, COLUMNS, "toyId", batch,
+                    DBRepositoryToy::createToyFromRow, batchSize);
+        } catch (SQLException e) {
+            throw new DBRepositoryToyException(e.getMessage());
+        }
+    }
 }
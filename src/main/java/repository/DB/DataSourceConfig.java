@@ -0,0 +1,171 @@
+package repository.DB;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Where the DBRepository* classes connect to: jdbc url, user, password and the size of the connection pool.
+ *
+ * The settings are read, each one overriding the previous, from:
+ *  - the "db.properties" resource on the classpath
+ *  - the properties file named by the system property "db.config"
+ *  - the environment variables DB_URL, DB_USER, DB_PASSWORD, DB_POOL_SIZE
+ *  - the system properties "db.url", "db.user", "db.password", "db.pool.size"
+ * (the property keys are "db.url", "db.user", "db.password" and "db.pool.size" in every file).
+ * Without any of them, an embedded H2 database stored under data/db is used, so no server is needed.
+ */
+public class DataSourceConfig {
+
+    public static final String URL = "db.url";
+    public static final String USER = "db.user";
+    public static final String PASSWORD = "db.password";
+    public static final String POOL_SIZE = "db.pool.size";
+
+    public static final String CONFIG_FILE = "db.config";
+    public static final String RESOURCE = "db.properties";
+
+    public static final String EMBEDDED_URL = "jdbc:h2:./data/db/petshop";
+    public static final String EMBEDDED_USER = "sa";
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int poolSize;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param url : String jdbc url of the database
+     *        user : String user name
+     *        password : String password
+     *        poolSize : int maximum number of connections
+     * @throws IllegalArgumentException
+     *          if the url is missing or the pool size is not positive
+     */
+    public DataSourceConfig(String url, String user, String password, int poolSize) {
+        Optional.ofNullable(url).filter(value -> !value.isBlank()).orElseThrow(() ->
+                new IllegalArgumentException("DataSourceConfig: the jdbc url is missing")
+        );
+        Optional.of(poolSize).filter(size -> size > 0).orElseThrow(() ->
+                new IllegalArgumentException("DataSourceConfig: the pool size must be positive")
+        );
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return the configuration of the embedded H2 database stored under data/db
+     */
+    public static DataSourceConfig embedded() {
+        return new DataSourceConfig(EMBEDDED_URL, EMBEDDED_USER, "", ConnectionPool.DEFAULT_SIZE);
+    }
+
+    /**
+     * Read the configuration from the classpath resource, the "db.config" file, the environment and
+     * the system properties (see the class comment)
+     *
+     * @return the configuration; the embedded database if nothing is configured
+     * @throws IllegalArgumentException
+     *          if a file can not be read or a value is not valid
+     */
+    public static DataSourceConfig load() {
+        Properties properties = new Properties();
+        try (InputStream resource = DataSourceConfig.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (resource != null)
+                properties.load(resource);
+        } catch (IOException error) {
+            throw new IllegalArgumentException("DataSourceConfig: could not read " + RESOURCE, error);
+        }
+
+        String file = System.getProperty(CONFIG_FILE);
+        if (file != null) {
+            Path path = Paths.get(file);
+            try (Reader reader = Files.newBufferedReader(path)) {
+                properties.load(reader);
+            } catch (IOException error) {
+                throw new IllegalArgumentException("DataSourceConfig: could not read " + path, error);
+            }
+        }
+
+        return fromProperties(properties, System.getenv(), System.getProperties());
+    }
+
+    /**
+     * Build the configuration from already read settings
+     *
+     * @param file : Properties read from the configuration files
+     *        environment : Map<String, String> environment variables (DB_URL, ...)
+     *        system : Properties system properties (db.url, ...)
+     * @return the configuration; the embedded database for the missing url/user/password
+     * @throws IllegalArgumentException
+     *          if the pool size is not a positive number
+     */
+    public static DataSourceConfig fromProperties(Properties file, Map<String, String> environment, Properties system) {
+        Properties merged = new Properties();
+        merged.putAll(file);
+        for (String key : new String[]{URL, USER, PASSWORD, POOL_SIZE}) {
+            String variable = key.substring(key.indexOf('.') + 1).replace('.', '_').toUpperCase();
+            Optional.ofNullable(environment.get("DB_" + variable)).ifPresent(value -> merged.setProperty(key, value));
+            Optional.ofNullable(system.getProperty(key)).ifPresent(value -> merged.setProperty(key, value));
+        }
+
+        String url = merged.getProperty(URL, EMBEDDED_URL);
+        String user = merged.getProperty(USER, url.equals(EMBEDDED_URL) ? EMBEDDED_USER : "");
+        String password = merged.getProperty(PASSWORD, "");
+        String poolSize = merged.getProperty(POOL_SIZE, Integer.toString(ConnectionPool.DEFAULT_SIZE));
+        try {
+            return new DataSourceConfig(url, user, password, Integer.parseInt(poolSize.trim()));
+        } catch (NumberFormatException error) {
+            throw new IllegalArgumentException("DataSourceConfig: invalid " + POOL_SIZE + " " + poolSize, error);
+        }
+    }
+
+    /**
+     * @return a new pool of connections to the configured database (closed by the caller)
+     */
+    public ConnectionPool createPool() {
+        return new ConnectionPool(url, user, password, poolSize);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return true if the database runs inside this process (H2), false for a database server
+     */
+    public boolean isEmbedded() {
+        return url.startsWith("jdbc:h2:");
+    }
+
+    @Override
+    public String toString() {
+        // the password is left out on purpose, this ends up in messages and logs
+        return "DataSourceConfig{" +
+                "url='" + url + '\'' +
+                ", user='" + user + '\'' +
+                ", poolSize=" + poolSize +
+                '}';
+    }
+}
@@ -0,0 +1,192 @@
+package repository.DB;
+
+import repository.BatchResult;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bulk writes for the DBRepository* classes, run with JDBC batches inside a single transaction.
+ *
+ * The rows are sent in chunks of {@code batchSize} with {@code addBatch}/{@code executeBatch}, each chunk
+ * behind a savepoint. When a chunk fails (ex: a duplicate key), it is rolled back to its savepoint and replayed
+ * row by row, each row behind its own savepoint, so that only the failing rows are left out and reported;
+ * the rest of the batch is committed. Duplicate keys are recognised from the constraint violation
+ * (SQLState 23505) instead of being looked up before every insert.
+ */
+final class JdbcBatchExecutor {
+
+    /**
+     * SQLState of a unique or primary key violation
+     */
+    static final String UNIQUE_VIOLATION = "23505";
+
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Binds the parameters of one row
+     */
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement statement, T entity) throws SQLException;
+    }
+
+    /**
+     * Builds one entity from the current row of a result set
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private JdbcBatchExecutor() {
+    }
+
+    /**
+     * Run one parameterised statement for every entity, in batches, inside one transaction
+     *
+     * @param pool : ConnectionPool the connection is borrowed from
+     *        sql : String parameterised insert/update
+     *        entities : List<T> entities, bound in order
+     *        binder : Binder<T> binding the parameters of one entity
+     *        batchSize : int number of rows per executeBatch
+     *        missingReason : String reason reported for a row that changed nothing (ex: an update of a missing id),
+     *                        null if such a row counts as applied
+     * @return the applied entities and the failing ones, with the reason
+     * @throws SQLException
+     *          if the transaction fails as a whole (nothing is committed)
+     */
+    static <T> BatchResult<T> execute(ConnectionPool pool, String sql, List<T> entities, Binder<T> binder,
+                                      int batchSize, String missingReason) throws SQLException {
+        List<T> applied = new ArrayList<>();
+        List<BatchResult.Failure<T>> failures = new ArrayList<>();
+        if (entities.isEmpty())
+            return new BatchResult<>(applied, failures);
+
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement statement = pooled.prepare(sql);
+                for (int from = 0; from < entities.size(); from += batchSize) {
+                    List<T> chunk = entities.subList(from, Math.min(entities.size(), from + batchSize));
+                    Savepoint savepoint = connection.setSavepoint();
+                    int[] counts;
+                    try {
+                        for (T entity : chunk) {
+                            binder.bind(statement, entity);
+                            statement.addBatch();
+                        }
+                        counts = statement.executeBatch();
+                    } catch (BatchUpdateException error) {
+                        statement.clearBatch();
+                        connection.rollback(savepoint);
+                        for (T entity : chunk)
+                            executeRow(connection, statement, binder, entity, missingReason, applied, failures);
+                        continue;
+                    }
+                    connection.releaseSavepoint(savepoint);
+                    for (int row = 0; row < chunk.size(); row++)
+                        collect(chunk.get(row), counts[row], missingReason, applied, failures);
+                }
+                connection.commit();
+                return new BatchResult<>(applied, failures);
+            } catch (SQLException | RuntimeException error) {
+                connection.rollback();
+                throw error;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Delete the rows with the given ids, in batches, inside one transaction
+     *
+     * The deleted entities are read first, with one select per chunk. The select always has {@code batchSize}
+     * parameters (a shorter chunk repeats its first id), so a single statement is prepared and cached.
+     *
+     * @param pool : ConnectionPool the connection is borrowed from
+     *        tableName : String name of the table
+     *        columns : String columns read by the mapper, separated by commas
+     *        idColumn : String name of the id column
+     *        ids : List<?> ids of the rows to be deleted
+     *        mapper : RowMapper<T> building the deleted entities
+     *        batchSize : int number of rows per statement
+     * @return the deleted entities; ids without a row are skipped
+     * @throws SQLException
+     *          if the transaction fails (nothing is deleted)
+     */
+    static <T> List<T> delete(ConnectionPool pool, String tableName, String columns, String idColumn, List<?> ids,
+                              RowMapper<T> mapper, int batchSize) throws SQLException {
+        if (ids.isEmpty())
+            return Collections.emptyList();
+
+        List<T> removed = new ArrayList<>();
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement delete = pooled.prepare("delete from " + tableName + " where " + idColumn + " = ?");
+                PreparedStatement select = pooled.prepare("SELECT " + columns + " FROM " + tableName + " WHERE "
+                        + idColumn + " IN (" + String.join(",", Collections.nCopies(batchSize, "?")) + ")");
+                for (int from = 0; from < ids.size(); from += batchSize) {
+                    List<?> chunk = ids.subList(from, Math.min(ids.size(), from + batchSize));
+
+                    // the deleted entities are returned, so read them first
+                    for (int index = 0; index < batchSize; index++)
+                        select.setObject(index + 1, chunk.get(index < chunk.size() ? index : 0));
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next())
+                            removed.add(mapper.map(rs));
+                    }
+
+                    for (Object id : chunk) {
+                        delete.setObject(1, id);
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+                connection.commit();
+                return removed;
+            } catch (SQLException | RuntimeException error) {
+                connection.rollback();
+                throw error;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static <T> void executeRow(Connection connection, PreparedStatement statement, Binder<T> binder, T entity,
+                                       String missingReason, List<T> applied, List<BatchResult.Failure<T>> failures)
+            throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            binder.bind(statement, entity);
+            int count = statement.executeUpdate();
+            connection.releaseSavepoint(savepoint);
+            collect(entity, count, missingReason, applied, failures);
+        } catch (SQLException error) {
+            connection.rollback(savepoint);
+            failures.add(new BatchResult.Failure<>(entity, UNIQUE_VIOLATION.equals(error.getSQLState())
+                    ? BatchResult.ID_TAKEN : error.getMessage()));
+        }
+    }
+
+    private static <T> void collect(T entity, int count, String missingReason, List<T> applied,
+                                    List<BatchResult.Failure<T>> failures) {
+        // SUCCESS_NO_INFO (the driver does not report counts) means the row went through
+        if (count == 0 && missingReason != null)
+            failures.add(new BatchResult.Failure<>(entity, missingReason));
+        else
+            applied.add(entity);
+    }
+}
@@ -0,0 +1,153 @@
+package repository.DB;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}. Closing it gives it back to the pool instead of
+ * closing the physical connection.
+ *
+ * The prepared statements are cached per connection, keyed by their sql text: a repository asks for the
+ * same parameterised statement every time and only binds new parameters, so the driver parses and plans
+ * it once per connection. The least recently used statement is closed when the cache is full; the rest
+ * are closed with the physical connection. Result sets are not cached and must be closed by the caller.
+ *
+ * A statement prepared before a table was dropped and created again may still describe the old table, so the
+ * creates and drops go through {@link #executeSchemaChange}: every connection of the pool then drops its cached
+ * statements on its next {@link #prepare}.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private boolean borrowed;
+    // version of the schema the cached statements were prepared against
+    private long schemaVersion;
+
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.schemaVersion = pool.getSchemaVersion();
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= statementCacheSize)
+                    return false;
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the cached statement for the given sql, preparing it on first use
+     *
+     * @param sql : String parameterised sql (ex: "SELECT petId, name FROM pets WHERE petId = ?")
+     * @return the statement, with its parameters cleared
+     * @throws SQLException
+     *          if the statement can not be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        long currentVersion = pool.getSchemaVersion();
+        if (currentVersion != schemaVersion) {
+            clearStatements();
+            schemaVersion = currentVersion;
+        }
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            statement.clearParameters();
+            return statement;
+        }
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Run a statement changing the schema (ex: a CREATE TABLE or a DROP TABLE), without caching it
+     *
+     * @param sql : String the statement
+     * @throws SQLException
+     *          if the statement fails
+     */
+    public void executeSchemaChange(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } finally {
+            pool.schemaChanged();
+        }
+    }
+
+    /**
+     * @return the physical connection, for transactions and one-off statements (which must be closed by the caller)
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return the number of cached statements
+     */
+    public int getCachedStatements() {
+        return statements.size();
+    }
+
+    void setBorrowed(boolean borrowed) {
+        this.borrowed = borrowed;
+    }
+
+    /**
+     * Roll back an unfinished transaction and restore auto-commit, so the next borrower gets a clean connection
+     *
+     * @return true if the connection can be used again
+     */
+    boolean reset() {
+        try {
+            if (connection.isClosed())
+                return false;
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException error) {
+            return false;
+        }
+    }
+
+    /**
+     * Close the cached statements and the physical connection
+     */
+    void closePhysical() {
+        clearStatements();
+        closeQuietly(connection);
+    }
+
+    private void clearStatements() {
+        statements.values().forEach(PooledConnection::closeQuietly);
+        statements.clear();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * Give the connection back to the pool; closing it twice has no effect
+     */
+    @Override
+    public void close() {
+        if (!borrowed)
+            return;
+        borrowed = false;
+        pool.release(this);
+    }
+}
@@ -0,0 +1,37 @@
+package repository;
+
+import domain.BaseEntity;
+
+import java.util.Optional;
+
+/**
+ * Repository that adds a behaviour (indexes, a cache...) on top of another repository, which stores the entities.
+ *
+ * The optional features of a repository (ex: {@link IndexedRepository}, the report repositories) are found with
+ * instanceof checks, which would fail on a decorator: {@link #unwrap} looks for them through the decorators.
+ */
+public interface DelegatingRepository<ID, T extends BaseEntity<ID>> extends Repository<ID, T> {
+
+    /**
+     * @return the wrapped repository
+     */
+    Repository<ID, T> getRepository();
+
+    /**
+     * Find the given repository, or the first repository it wraps, that has the given type.
+     * What is found must only be read: a write made on a wrapped repository is not seen by its decorators.
+     *
+     * @param repository : Repository<?, ?> the repository, possibly a decorator
+     *        type : Class<R> the wanted type (ex: IndexedRepository.class)
+     * @return the repository of the given type, empty if there is none in the chain of decorators
+     */
+    static <R> Optional<R> unwrap(Repository<?, ?> repository, Class<R> type) {
+        Repository<?, ?> current = repository;
+        while (!type.isInstance(current)) {
+            if (!(current instanceof DelegatingRepository))
+                return Optional.empty();
+            current = ((DelegatingRepository<?, ?>) current).getRepository();
+        }
+        return Optional.of(type.cast(current));
+    }
+}
@@ -4,11 +4,10 @@ import domain.BaseEntity;
 import domain.validators.Validator;
 import domain.validators.exceptions.ValidatorException;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 public class FileRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T>  {
     private Map<ID, T> entities;
@@ -27,10 +26,13 @@ public class FileRepository<ID, T extends BaseEntity<ID>> implements Repository<
         return Optional.ofNullable(entities.get(id));
     }
 
+    /**
+     * @return a read-only live view of the entities, nothing is copied: it reflects the later changes of the
+     *         repository and must not be iterated while the repository is being modified (copy it first)
+     */
     @Override
     public Iterable<T> findAll() {
-        Set<T> allEntities = entities.entrySet().stream().map(entry -> entry.getValue()).collect(Collectors.toSet());
-        return allEntities;
+        return Collections.unmodifiableCollection(entities.values());
     }
 
     @Override
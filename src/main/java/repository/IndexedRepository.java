@@ -0,0 +1,48 @@
+package repository;
+
+import domain.BaseEntity;
+import repository.schema.SecondaryIndex;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository that maintains secondary indexes, so the entities with a given value of an indexed field
+ * (ex: the adoptions of a pet) are found without scanning findAll, and the entities whose field is within a range
+ * (ex: the adoptions of 2019-2021) too when the index is ordered.
+ */
+public interface IndexedRepository<ID, T extends BaseEntity<ID>> extends Repository<ID, T> {
+
+    /**
+     * @return true if the repository maintains the given index, so {@link #findBy} can be used with it
+     */
+    boolean isIndexed(SecondaryIndex<T, ?> index);
+
+    /**
+     * Find the entities whose indexed field has the given value.
+     *
+     * @param index
+     *            must be one of the indexes of the repository.
+     * @param key
+     *            must not be null.
+     * @return the matching entities, an empty collection if there are none.
+     * @throws IllegalArgumentException
+     *             if the key is null or the repository does not maintain the index.
+     */
+    <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key);
+
+    /**
+     * Find the entities whose indexed field is between the given values.
+     *
+     * @param index
+     *            must be an ordered index of the repository.
+     * @param from
+     *            smallest value, included; must not be null.
+     * @param to
+     *            greatest value, included; must not be null.
+     * @return the matching entities, sorted by the indexed field; an empty list if there are none (or from > to).
+     * @throws IllegalArgumentException
+     *             if a bound is null or the repository does not maintain the index ordered.
+     */
+    <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to);
+}
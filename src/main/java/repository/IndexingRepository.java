@@ -0,0 +1,197 @@
+package repository;
+
+import domain.BaseEntity;
+import domain.validators.exceptions.ValidatorException;
+import repository.schema.SecondaryIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Adds secondary indexes to any repository: the entities are stored by the wrapped repository and, for every
+ * declared index, a hash map from the indexed value to the entities having it is kept beside it, so
+ * {@link #findBy} costs O(number of matches) instead of a scan of findAll. The map of an ordered index is a skip
+ * list sorted by value instead, so {@link #findBetween} costs O(log n + number of matches).
+ *
+ * The indexes are built from findAll when the decorator is created and are kept in sync by every write made
+ * through it; writes made directly on the wrapped repository are not seen. Besides the index maps, the
+ * indexed version of every entity is kept by id, so an update or a delete finds the old keys to unindex
+ * without reading the wrapped repository again.
+ *
+ * The writes are serialized (the index must change together with the repository) and the lookups do not lock.
+ * The batch operations are forwarded as batches when the wrapped repository is a {@link BatchRepository}.
+ */
+public class IndexingRepository<ID, T extends BaseEntity<ID>>
+        implements BatchRepository<ID, T>, IndexedRepository<ID, T>, DelegatingRepository<ID, T> {
+
+    private final Repository<ID, T> repository;
+    // index -> indexed value -> id -> entity
+    private final Map<SecondaryIndex<T, ?>, Map<Object, Map<ID, T>>> indexes = new HashMap<>();
+    private final Map<ID, T> indexed = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor of the class.
+     *
+     * @param repository : Repository<ID, T> stores the entities
+     *        indexes : SecondaryIndex<T, ?>... the indexes to maintain
+     */
+    @SafeVarargs
+    public IndexingRepository(Repository<ID, T> repository, SecondaryIndex<T, ?>... indexes) {
+        this.repository = repository;
+        for (SecondaryIndex<T, ?> index : indexes)
+            this.indexes.put(index, index.isOrdered() ? new ConcurrentSkipListMap<>() : new ConcurrentHashMap<>());
+        repository.findAll().forEach(this::index);
+    }
+
+    @Override
+    public Repository<ID, T> getRepository() {
+        return repository;
+    }
+
+    private void index(T entity) {
+        T previous = indexed.put(entity.getId(), entity);
+        if (previous != null)
+            unindexKeys(previous);
+        indexes.forEach((index, entries) -> {
+            Object key = index.keyOf(entity);
+            if (key != null)
+                entries.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(entity.getId(), entity);
+        });
+    }
+
+    private void unindex(ID id) {
+        T previous = indexed.remove(id);
+        if (previous != null)
+            unindexKeys(previous);
+    }
+
+    private void unindexKeys(T entity) {
+        indexes.forEach((index, entries) -> {
+            Object key = index.keyOf(entity);
+            if (key != null)
+                entries.computeIfPresent(key, (k, entities) -> {
+                    entities.remove(entity.getId());
+                    return entities.isEmpty() ? null : entities;
+                });
+        });
+    }
+
+    /**
+     * Index again the current version of the entity, after a write whose outcome is not known for sure
+     * (ex: a save of a taken id, which some repositories apply anyway)
+     */
+    private void reindex(ID id) {
+        Optional<T> current = repository.findOne(id);
+        if (current.isPresent())
+            index(current.get());
+        else
+            unindex(id);
+    }
+
+    @Override
+    public boolean isIndexed(SecondaryIndex<T, ?> index) {
+        return indexes.containsKey(index);
+    }
+
+    /**
+     * @return a copy of the matching entities
+     */
+    @Override
+    public <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key) {
+        Map<Object, Map<ID, T>> entries = indexes.get(index);
+        if (entries == null)
+            throw new IllegalArgumentException("IndexingRepository->findBy: not an index of the repository " + index);
+        if (key == null)
+            throw new IllegalArgumentException("IndexingRepository->findBy: key must not be null");
+        Map<ID, T> entities = entries.get(key);
+        return entities == null ? Collections.emptyList() : new ArrayList<>(entities.values());
+    }
+
+    @Override
+    public <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to) {
+        Map<Object, Map<ID, T>> entries = indexes.get(index);
+        if (entries == null || !index.isOrdered())
+            throw new IllegalArgumentException("IndexingRepository->findBetween: not an ordered index of the repository "
+                    + index);
+        if (from == null || to == null)
+            throw new IllegalArgumentException("IndexingRepository->findBetween: bounds must not be null");
+
+        List<T> found = new ArrayList<>();
+        if (from.compareTo(to) <= 0)
+            ((NavigableMap<Object, Map<ID, T>>) entries).subMap(from, true, to, true)
+                    .values()
+                    .forEach(entities -> found.addAll(entities.values()));
+        return found;
+    }
+
+    @Override
+    public Optional<T> findOne(ID id) {
+        return repository.findOne(id);
+    }
+
+    @Override
+    public Iterable<T> findAll() {
+        return repository.findAll();
+    }
+
+    @Override
+    public synchronized Optional<T> save(T entity) throws ValidatorException {
+        Optional<T> existing = repository.save(entity);
+        if (existing.isPresent())
+            reindex(entity.getId());
+        else
+            index(entity);
+        return existing;
+    }
+
+    @Override
+    public synchronized Optional<T> delete(ID id) {
+        Optional<T> removed = repository.delete(id);
+        if (removed.isPresent())
+            unindex(id);
+        return removed;
+    }
+
+    @Override
+    public synchronized Optional<T> update(T entity) throws ValidatorException {
+        Optional<T> missing = repository.update(entity);
+        if (!missing.isPresent() && indexed.containsKey(entity.getId()))
+            index(entity);
+        return missing;
+    }
+
+    @Override
+    public synchronized BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException {
+        if (!(repository instanceof BatchRepository))
+            return BatchRepository.super.saveAll(entities);
+        BatchResult<T> result = ((BatchRepository<ID, T>) repository).saveAll(entities);
+        result.getApplied().forEach(this::index);
+        return result;
+    }
+
+    @Override
+    public synchronized BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException {
+        if (!(repository instanceof BatchRepository))
+            return BatchRepository.super.updateAll(entities);
+        BatchResult<T> result = ((BatchRepository<ID, T>) repository).updateAll(entities);
+        result.getApplied().forEach(this::index);
+        return result;
+    }
+
+    @Override
+    public synchronized List<T> deleteAll(Iterable<ID> ids) {
+        if (!(repository instanceof BatchRepository))
+            return BatchRepository.super.deleteAll(ids);
+        List<T> removed = ((BatchRepository<ID, T>) repository).deleteAll(ids);
+        removed.forEach(entity -> unindex(entity.getId()));
+        return removed;
+    }
+}
@@ -0,0 +1,103 @@
+package repository;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+
+import java.util.Optional;
+
+/**
+ * In memory repository for entities with {@code Long} ids, backed by a {@link LongObjectMap}.
+ *
+ * Compared to {@link InMemoryRepository} (a {@code HashMap<Long, T>}), no {@code Long} key nor map node is
+ * kept per entity, which roughly halves the heap taken by the index, and the lookups by a primitive id
+ * ({@link #findOne(long)}, {@link #delete(long)}) do not box it.
+ *
+ * Not thread safe, like InMemoryRepository.
+ */
+public class LongKeyedRepository<T extends BaseEntity<Long>> implements Repository<Long, T> {
+
+    private final Validator<T> validator;
+    private final LongObjectMap<T> entities;
+
+    public LongKeyedRepository(Validator<T> validator) {
+        this(validator, 16);
+    }
+
+    /**
+     * Constructor of the class.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        expectedSize : int number of entities held without growing the table
+     */
+    public LongKeyedRepository(Validator<T> validator, int expectedSize) {
+        this.validator = validator;
+        this.entities = new LongObjectMap<>(expectedSize);
+    }
+
+    private static long idOf(Long id, String operation) throws InMemoryRepositoryException {
+        if (id == null)
+            throw new InMemoryRepositoryException("LongKeyedRepository->" + operation + ": id must not be null");
+        return id;
+    }
+
+    private T check(T entity, String operation) throws InMemoryRepositoryException, ValidatorException {
+        if (entity == null)
+            throw new InMemoryRepositoryException("LongKeyedRepository->" + operation + ": entity must not be null");
+        idOf(entity.getId(), operation);
+        validator.validate(entity);
+        return entity;
+    }
+
+    @Override
+    public Optional<T> findOne(Long id) throws InMemoryRepositoryException {
+        return findOne(idOf(id, "findOne"));
+    }
+
+    /**
+     * Find the entity with the given primitive id, without boxing it
+     */
+    public Optional<T> findOne(long id) {
+        return Optional.ofNullable(entities.get(id));
+    }
+
+    /**
+     * @return a read-only live view of the entities, nothing is copied: it reflects the later changes of the
+     *         repository and must not be iterated while the repository is being modified (copy it first)
+     */
+    @Override
+    public Iterable<T> findAll() {
+        return entities.valuesView();
+    }
+
+    @Override
+    public Optional<T> save(T entity) throws ValidatorException, InMemoryRepositoryException {
+        check(entity, "save");
+        return Optional.ofNullable(entities.putIfAbsent(entity.getId(), entity));
+    }
+
+    @Override
+    public Optional<T> delete(Long id) throws InMemoryRepositoryException {
+        return delete(idOf(id, "delete"));
+    }
+
+    /**
+     * Remove the entity with the given primitive id, without boxing it
+     */
+    public Optional<T> delete(long id) {
+        return Optional.ofNullable(entities.remove(id));
+    }
+
+    @Override
+    public Optional<T> update(T entity) throws ValidatorException, InMemoryRepositoryException {
+        check(entity, "update");
+        return entities.replace(entity.getId(), entity) == null ? Optional.of(entity) : Optional.empty();
+    }
+
+    /**
+     * @return the number of entities
+     */
+    public int size() {
+        return entities.size();
+    }
+}
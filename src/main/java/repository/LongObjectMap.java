@@ -0,0 +1,291 @@
+package repository;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Hash table from primitive {@code long} keys to objects, with open addressing (linear probing).
+ *
+ * The keys live in a {@code long[]} and the values in a parallel {@code Object[]}, so an entry costs two
+ * array slots instead of a {@code Long} and a {@code HashMap.Node}, and no key is boxed on a lookup.
+ * A slot is free when its value is null (null values are not allowed). The home slot of a key is taken from
+ * the high bits of the key multiplied by the golden ratio, which spreads consecutive ids over the whole table.
+ * Removals shift the following entries of the probe sequence back instead of leaving tombstones, so lookups
+ * never slow down after many deletes. The table doubles when it is more than 3/4 full.
+ *
+ * Not thread safe.
+ */
+public class LongObjectMap<V> {
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int shift;
+    private int resizeAt;
+    // number of structural changes (entries added or removed), to detect them during an iteration of the view
+    private int modCount;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Constructor of the class.
+     *
+     * @param expectedSize : int number of entries the table holds without growing
+     * @throws IllegalArgumentException
+     *          if the expected size is negative
+     */
+    public LongObjectMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("LongObjectMap: expectedSize must not be negative");
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / 0.75));
+        if (needed > MAX_CAPACITY)
+            throw new IllegalArgumentException("LongObjectMap: too many entries " + expectedSize);
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(capacity - 1);
+        resizeAt = capacity - (capacity >>> 2);
+    }
+
+    private int home(long key) {
+        return (int) ((key * GOLDEN_RATIO) >>> shift);
+    }
+
+    /**
+     * @return the slot holding the key, or the free slot where it would be inserted
+     */
+    private int slot(long key) {
+        int slot = home(key);
+        while (values[slot] != null && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * @return the value of the key, null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[slot(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[slot(key)] != null;
+    }
+
+    /**
+     * Associate the value to the key, replacing the previous value
+     *
+     * @return the previous value, null if there was none
+     * @throws IllegalArgumentException
+     *          if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("LongObjectMap->put: value must not be null");
+
+        int slot = slot(key);
+        V previous = (V) values[slot];
+        values[slot] = value;
+        if (previous == null)
+            added(slot, key);
+        return previous;
+    }
+
+    /**
+     * Associate the value to the key, unless the key already has one
+     *
+     * @return the current value of the key, null if the value was added
+     * @throws IllegalArgumentException
+     *          if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("LongObjectMap->putIfAbsent: value must not be null");
+
+        int slot = slot(key);
+        if (values[slot] != null)
+            return (V) values[slot];
+        values[slot] = value;
+        added(slot, key);
+        return null;
+    }
+
+    /**
+     * Replace the value of the key, only if the key already has one
+     *
+     * @return the previous value, null if the key had none (nothing is added)
+     * @throws IllegalArgumentException
+     *          if the value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V replace(long key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("LongObjectMap->replace: value must not be null");
+
+        int slot = slot(key);
+        V previous = (V) values[slot];
+        if (previous != null)
+            values[slot] = value;
+        return previous;
+    }
+
+    private void added(int slot, long key) {
+        keys[slot] = key;
+        modCount++;
+        if (++size > resizeAt)
+            grow();
+    }
+
+    private void grow() {
+        if (keys.length == MAX_CAPACITY)
+            throw new IllegalStateException("LongObjectMap: the table is full");
+
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(keys.length << 1);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != null) {
+                int target = slot(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    /**
+     * Remove the key and its value
+     *
+     * @return the removed value, null if the key had none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slot(key);
+        V removed = (V) values[slot];
+        if (removed == null)
+            return null;
+
+        // move back the entries that probed past the freed slot, so every key stays reachable from its home slot
+        int hole = slot;
+        for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = home(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove every entry, keeping the current capacity
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Apply the action to every value, in table order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values)
+            if (value != null)
+                action.accept((V) value);
+    }
+
+    /**
+     * @return a read-only live view of the values, in table order; nothing is copied. Its iterators fail with
+     *         a ConcurrentModificationException if an entry is added or removed while they are used.
+     */
+    public Collection<V> valuesView() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+
+        private final int expectedModCount = modCount;
+        private final Object[] table = values;
+        private int next = advance(0);
+
+        private int advance(int slot) {
+            while (slot < table.length && table[slot] == null)
+                slot++;
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < table.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next >= table.length)
+                throw new NoSuchElementException();
+            V value = (V) table[next];
+            next = advance(next + 1);
+            return value;
+        }
+    }
+
+    /**
+     * @return a copy of the values, in table order
+     */
+    public List<V> values() {
+        List<V> copy = new ArrayList<>(size);
+        forEachValue(copy::add);
+        return copy;
+    }
+}
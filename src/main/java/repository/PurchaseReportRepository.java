@@ -0,0 +1,55 @@
+package repository;
+
+import domain.Toy.Toy;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Repository of purchases that computes the store reports itself (ex: with one JOIN + GROUP BY query),
+ * instead of the service loading every purchase and looking up its toy one by one.
+ *
+ * A report can only be computed when the repository can reach the toys directly, see {@link #supportsJoin}.
+ */
+public interface PurchaseReportRepository {
+
+    /**
+     * @param repository
+     *            the repository the purchases should be joined with.
+     * @return true if the reports can join the purchases with the entities of the given repository
+     *         (e.g. both are tables of the same database, even behind a {@link DelegatingRepository}).
+     */
+    boolean supportsJoin(Repository<?, ?> repository);
+
+    /**
+     * @return true if there are no purchases at all.
+     */
+    boolean isEmpty();
+
+    /**
+     * Counts the purchases made in a year, without loading them.
+     *
+     * @param year
+     *            year of the purchases.
+     * @return the number of purchases made in that year.
+     */
+    long purchasesIn(int year);
+
+    /**
+     * Finds the material of the most purchased toys.
+     *
+     * @param toyRepository
+     *            repository of the purchased toys, must be supported by {@link #supportsJoin}.
+     * @return an {@code Optional} - the material, or empty if there are no purchases.
+     */
+    Optional<String> mostPopularMaterial(Repository<Long, Toy> toyRepository);
+
+    /**
+     * Computes the average weight of the purchased toys (integer division, a toy counts once per purchase).
+     *
+     * @param toyRepository
+     *            repository of the purchased toys, must be supported by {@link #supportsJoin}.
+     * @return an {@code OptionalLong} - the average weight, or empty if there are no purchases.
+     */
+    OptionalLong averagePurchasedToyWeight(Repository<Long, Toy> toyRepository);
+}
@@ -0,0 +1,329 @@
+package repository;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Defers the writes of a repository whose single writes are expensive (ex: the csv and xml repositories, which
+ * rewrite their whole file on every write) and applies them later, in batches.
+ *
+ * The entities of the wrapped repository are loaded once, into an in memory view. Every write is validated and
+ * applied to the view at once, so reads see it immediately, and the id is marked as pending. A flush writes the
+ * final state of every pending id, however many times it changed since the previous flush: saved then updated
+ * twice is one save of the last version, saved then deleted is nothing. The changes are written with at most one
+ * deleteAll, one updateAll and one saveAll when the wrapped repository is a {@link BatchRepository}, one by one
+ * otherwise. A flush happens when {@code maxPending} ids are pending (in the thread that made the last write),
+ * every {@code flushIntervalMillis} (in a background thread), on {@link #flush} and on {@link #close}.
+ *
+ * Durability is bounded by the flush policy: once {@link #flush} or {@link #close} returns, the changes are as
+ * durable as the wrapped repository makes them; until then they only exist in memory, and a crash of the process
+ * loses them, that is at most the changes of the last {@code maxPending} ids and of the last
+ * {@code flushIntervalMillis}. A flush that fails half way keeps the changes it did not write pending, and the
+ * next flush tries them again. The writes never fail because of a flush: a failed automatic flush (the one made
+ * by a write or in the background) is kept, see {@link #getLastFailure}, and reported by the next {@link #flush}
+ * or {@link #close}.
+ *
+ * The wrapped repository lags behind the view and must not be read nor written directly while this decorator is
+ * in use. For the same reason this is not a {@link DelegatingRepository}: its features (indexes, report queries)
+ * would answer from the lagging state; wrap this decorator with an {@link IndexingRepository} to index the view.
+ *
+ * Thread safe: the reads, the writes and the flushes are serialized.
+ */
+public class WriteBehindRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T>, Closeable {
+
+    private static final int DEFAULT_MAX_PENDING = 256;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final Repository<ID, T> repository;
+    private final Validator<T> validator;
+    private final int maxPending;
+    private final ScheduledExecutorService flusher;
+
+    private final Map<ID, T> view = new LinkedHashMap<>();
+    // pending id -> whether the wrapped repository holds it (as of the last flush)
+    private final Map<ID, Boolean> pending = new LinkedHashMap<>();
+    private boolean closed = false;
+    private long flushedChanges;
+    // failure of the last automatic flush, not reported yet
+    private RuntimeException lastFailure;
+
+    public WriteBehindRepository(Repository<ID, T> repository, Validator<T> validator) {
+        this(repository, validator, DEFAULT_MAX_PENDING, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Constructor of the class. Loads the entities of the wrapped repository.
+     *
+     * @param repository : Repository<ID, T> stores the entities
+     *        validator : Validator<T> used on every save/update, before the change is accepted
+     *        maxPending : int number of pending ids that triggers a flush
+     *        flushIntervalMillis : long time between two background flushes, 0 for no background flush
+     * @throws IllegalArgumentException
+     *          if maxPending is not positive or flushIntervalMillis is negative
+     */
+    public WriteBehindRepository(Repository<ID, T> repository, Validator<T> validator, int maxPending,
+                                 long flushIntervalMillis) {
+        if (maxPending <= 0)
+            throw new IllegalArgumentException("WriteBehindRepository: maxPending must be positive");
+        if (flushIntervalMillis < 0)
+            throw new IllegalArgumentException("WriteBehindRepository: flushIntervalMillis must not be negative");
+        this.repository = repository;
+        this.validator = validator;
+        this.maxPending = maxPending;
+        repository.findAll().forEach(entity -> view.put(entity.getId(), entity));
+
+        if (flushIntervalMillis == 0) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "write-behind-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushAutomatically, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the wrapped repository, which does not hold the pending changes yet
+     */
+    public Repository<ID, T> getRepository() {
+        return repository;
+    }
+
+    private static <ID> ID checkId(ID id, String operation) throws InMemoryRepositoryException {
+        if (id == null)
+            throw new InMemoryRepositoryException("WriteBehindRepository->" + operation + ": id must not be null");
+        return id;
+    }
+
+    private T check(T entity, String operation) throws InMemoryRepositoryException, ValidatorException {
+        if (closed)
+            throw new InMemoryRepositoryException("WriteBehindRepository->" + operation + ": the repository is closed");
+        if (entity == null)
+            throw new InMemoryRepositoryException("WriteBehindRepository->" + operation + ": entity must not be null");
+        checkId(entity.getId(), operation);
+        validator.validate(entity);
+        return entity;
+    }
+
+    @Override
+    public synchronized Optional<T> findOne(ID id) throws InMemoryRepositoryException {
+        return Optional.ofNullable(view.get(checkId(id, "findOne")));
+    }
+
+    /**
+     * @return a copy of the entities, with the pending changes
+     */
+    @Override
+    public synchronized Iterable<T> findAll() {
+        return new ArrayList<>(view.values());
+    }
+
+    @Override
+    public synchronized Optional<T> save(T entity) throws ValidatorException, InMemoryRepositoryException {
+        check(entity, "save");
+        T existing = view.get(entity.getId());
+        if (existing != null)
+            return Optional.of(existing);
+        changed(entity.getId(), false);
+        view.put(entity.getId(), entity);
+        flushIfFull();
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<T> delete(ID id) throws InMemoryRepositoryException {
+        checkId(id, "delete");
+        if (closed)
+            throw new InMemoryRepositoryException("WriteBehindRepository->delete: the repository is closed");
+        if (!view.containsKey(id))
+            return Optional.empty();
+        changed(id, true);
+        T removed = view.remove(id);
+        flushIfFull();
+        return Optional.of(removed);
+    }
+
+    @Override
+    public synchronized Optional<T> update(T entity) throws ValidatorException, InMemoryRepositoryException {
+        check(entity, "update");
+        if (!view.containsKey(entity.getId()))
+            return Optional.of(entity);
+        changed(entity.getId(), true);
+        view.put(entity.getId(), entity);
+        flushIfFull();
+        return Optional.empty();
+    }
+
+    /**
+     * Mark the id as pending; the view is still in the state of the wrapped repository for an id that is not
+     * pending yet, which tells whether the wrapped repository holds it
+     */
+    private void changed(ID id, boolean stored) {
+        pending.putIfAbsent(id, stored);
+    }
+
+    private void flushIfFull() {
+        if (pending.size() >= maxPending)
+            flushAutomatically();
+    }
+
+    private synchronized void flushAutomatically() {
+        try {
+            write();
+        } catch (RuntimeException e) {
+            lastFailure = e; // the changes not written are still pending, the next flush will try them again
+        }
+    }
+
+    /**
+     * @return the failure of the last automatic flush (made by a write or in the background) since the last
+     *         {@link #flush} or {@link #close}, empty if there was none
+     */
+    public synchronized Optional<RuntimeException> getLastFailure() {
+        return Optional.ofNullable(lastFailure);
+    }
+
+    /**
+     * Write the pending changes to the wrapped repository
+     *
+     * @return the number of changes written (saves, updates and deletes)
+     * @throws RepositoryException
+     *          if the wrapped repository fails, the changes not written stay pending; or if it rejects a change
+     *          (it was written directly: a saved id exists, an updated id does not), the rejected changes are
+     *          dropped, since trying them again can not succeed; or if an automatic flush failed since the last
+     *          flush, once the pending changes are written
+     * @throws ValidatorException
+     *          if the wrapped repository finds an entity not valid, its change stays pending
+     */
+    public synchronized int flush() throws RepositoryException, ValidatorException {
+        RuntimeException failure = lastFailure;
+        lastFailure = null;
+        int written;
+        try {
+            written = write();
+        } catch (RuntimeException e) {
+            if (failure != null)
+                e.addSuppressed(failure);
+            throw e;
+        }
+        if (failure != null)
+            throw new RepositoryException("WriteBehindRepository->flush: an earlier flush failed: "
+                    + failure.getMessage(), failure);
+        return written;
+    }
+
+    private int write() throws RepositoryException, ValidatorException {
+        List<ID> deletes = new ArrayList<>();
+        List<T> updates = new ArrayList<>();
+        List<T> saves = new ArrayList<>();
+        pending.forEach((id, stored) -> {
+            T current = view.get(id);
+            if (current == null && stored)
+                deletes.add(id);
+            else if (current != null && stored)
+                updates.add(current);
+            else if (current != null)
+                saves.add(current);
+        });
+        // pending ids saved then deleted need no write
+        pending.entrySet().removeIf(entry -> !entry.getValue() && !view.containsKey(entry.getKey()));
+
+        List<T> rejected = new ArrayList<>();
+        if (!deletes.isEmpty()) {
+            deleteAll(deletes);
+            deletes.forEach(pending::remove);
+        }
+        if (!updates.isEmpty()) {
+            rejected.addAll(updateAll(updates));
+            updates.forEach(entity -> pending.remove(entity.getId()));
+        }
+        if (!saves.isEmpty()) {
+            rejected.addAll(saveAll(saves));
+            saves.forEach(entity -> pending.remove(entity.getId()));
+        }
+
+        int written = deletes.size() + updates.size() + saves.size() - rejected.size();
+        flushedChanges += written;
+        if (!rejected.isEmpty())
+            throw new RepositoryException("WriteBehindRepository->flush: the repository rejected the changes of the ids "
+                    + rejected.stream().map(entity -> String.valueOf(entity.getId())).collect(Collectors.joining(", ")));
+        return written;
+    }
+
+    private void deleteAll(List<ID> ids) {
+        if (repository instanceof BatchRepository)
+            ((BatchRepository<ID, T>) repository).deleteAll(ids);
+        else
+            ids.forEach(repository::delete);
+    }
+
+    /**
+     * @return the entities the wrapped repository rejected
+     */
+    private List<T> updateAll(List<T> entities) throws ValidatorException {
+        if (repository instanceof BatchRepository)
+            return ((BatchRepository<ID, T>) repository).updateAll(entities).getRejected();
+        List<T> rejected = new ArrayList<>();
+        for (T entity : entities)
+            repository.update(entity).ifPresent(rejected::add);
+        return rejected;
+    }
+
+    /**
+     * @return the entities the wrapped repository rejected
+     */
+    private List<T> saveAll(List<T> entities) throws ValidatorException {
+        if (repository instanceof BatchRepository)
+            return ((BatchRepository<ID, T>) repository).saveAll(entities).getRejected();
+        List<T> rejected = new ArrayList<>();
+        for (T entity : entities)
+            if (repository.save(entity).isPresent())
+                rejected.add(entity);
+        return rejected;
+    }
+
+    /**
+     * @return the number of ids whose changes are not written yet
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of changes written to the wrapped repository so far
+     */
+    public synchronized long getFlushedChanges() {
+        return flushedChanges;
+    }
+
+    /**
+     * Stop the background flushes and write the pending changes; the repository can still be read, not written
+     *
+     * @throws RepositoryException
+     *          if the pending changes can not be written or an automatic flush failed, see {@link #flush}
+     */
+    @Override
+    public void close() throws RepositoryException {
+        if (flusher != null)
+            flusher.shutdown();
+        synchronized (this) {
+            closed = true;
+            flush();
+        }
+    }
+}
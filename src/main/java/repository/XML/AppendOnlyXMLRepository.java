@@ -0,0 +1,290 @@
+package repository.XML;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.Repository;
+import repository.XML.exceptions.XMLRepositoryException;
+import repository.schema.EntitySchema;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Xml repository that never rewrites its document for a single change.
+ *
+ * The document has the layout of the XMLRepository* files (root element named after the collection,
+ * one element per entity). A save or an update writes the element of the entity over the closing root tag
+ * and writes the closing tag again after it; a delete appends a tombstone ({@code <deleted><id>..</id></deleted>}).
+ * The last element of an id wins. The file stays a well-formed document after every operation.
+ *
+ * The live entities are kept in memory, loaded with one streaming pass when the repository is opened.
+ * Superseded elements and tombstones are garbage; when they outnumber both the configured minimum and
+ * the given ratio of the elements in the file, the document is compacted (rewritten with the live
+ * entities only) right after the write that crossed the threshold.
+ * If the last append was interrupted (no closing root tag), the torn element is dropped when the file is opened.
+ */
+public class AppendOnlyXMLRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T>, Closeable {
+
+    private static final double DEFAULT_GARBAGE_RATIO = 0.5;
+    private static final int DEFAULT_MIN_GARBAGE_ELEMENTS = 1000;
+
+    private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    private static final String INDENT = "    ";
+
+    private final Validator<T> validator;
+    private final EntitySchema<T> schema;
+    private final Path file;
+    private final double garbageRatio;
+    private final int minGarbageElements;
+
+    private final String closingTag;
+    private final Map<ID, T> entities = new LinkedHashMap<>();
+    private final XMLElementSink sink;
+
+    private FileChannel channel;
+    private long closingTagOffset;
+    private int elements;
+
+    public AppendOnlyXMLRepository(Validator<T> validator, EntitySchema<T> schema, String fileName) {
+        this(validator, schema, fileName, DEFAULT_GARBAGE_RATIO, DEFAULT_MIN_GARBAGE_ELEMENTS);
+    }
+
+    /**
+     * Constructor of the class. Opens (or creates) the document and loads the live entities from it.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        schema : EntitySchema<T> describing the elements
+     *        fileName : String path of the xml file (ex: data/xml/append/pets.xml)
+     *        garbageRatio : double fraction of the elements that may be garbage before a compaction
+     *        minGarbageElements : int compaction never happens for fewer garbage elements than this
+     * @throws XMLRepositoryException
+     *          if the document can not be opened or read
+     */
+    public AppendOnlyXMLRepository(Validator<T> validator, EntitySchema<T> schema, String fileName,
+                                   double garbageRatio, int minGarbageElements) throws XMLRepositoryException {
+        this.validator = validator;
+        this.schema = schema;
+        this.file = Path.of(fileName);
+        this.garbageRatio = garbageRatio;
+        this.minGarbageElements = minGarbageElements;
+        this.closingTag = "</" + schema.getCollectionName() + ">";
+        this.sink = new XMLElementSink(schema);
+
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            if (Files.notExists(file) || Files.size(file) == 0)
+                Files.writeString(file, PROLOG + "<" + schema.getCollectionName() + ">\n" + closingTag,
+                        StandardCharsets.UTF_8);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            closingTagOffset = recover();
+            load();
+        } catch (IOException | XMLStreamException error) {
+            throw new XMLRepositoryException("AppendOnlyXMLRepository: could not open " + fileName + ": "
+                    + error.getMessage(), error);
+        }
+    }
+
+    public String getFileName() {
+        return file.toString();
+    }
+
+    /**
+     * @return the number of superseded elements and tombstones in the document
+     */
+    public synchronized int getGarbageElements() {
+        return elements - entities.size();
+    }
+
+    /**
+     * Find the closing root tag at the end of the document. If it is missing (torn append), the document is
+     * cut after the last complete element and the closing tag is written again.
+     *
+     * @return the offset of the closing root tag
+     */
+    private long recover() throws IOException, XMLStreamException {
+        long closing = XMLDocumentAppender.findClosingTag(channel, closingTag);
+        if (closing >= 0)
+            return closing;
+
+        String end = XMLDocumentAppender.tail(channel);
+        int lastElement = Math.max(indexAfter(end, "</" + schema.getEntityName() + ">"),
+                indexAfter(end, "</" + XMLStreamEntityReader.TOMBSTONE + ">"));
+        lastElement = Math.max(lastElement, indexAfter(end, "<" + schema.getCollectionName() + ">"));
+        if (lastElement < 0)
+            throw new XMLStreamException("no closing " + closingTag + " and no complete element at the end of " + file);
+
+        long offset = channel.size() - end.length() + lastElement;
+        XMLDocumentAppender.append(channel, offset, "\n" + closingTag);
+        return offset + 1;
+    }
+
+    /**
+     * @return the index right after the last occurrence of the tag, -1 if there is none
+     */
+    private static int indexAfter(String text, String tag) {
+        int index = text.lastIndexOf(tag);
+        return index < 0 ? -1 : index + tag.length();
+    }
+
+    /**
+     * Stream the whole document once and keep the last version of every live entity
+     */
+    private void load() throws IOException, XMLStreamException {
+        Map<String, T> live = new LinkedHashMap<>();
+        int[] count = {0};
+        XMLStreamEntityReader.forEach(file, schema, entity -> {
+            count[0]++;
+            live.put(String.valueOf(entity.getId()), entity);
+        }, id -> {
+            count[0]++;
+            live.remove(id);
+        });
+        entities.clear();
+        live.values().forEach(entity -> entities.put(entity.getId(), entity));
+        elements = count[0];
+    }
+
+    private String toElement(T entity) {
+        schema.write(entity, sink.reset());
+        return sink.getElement();
+    }
+
+    private String toTombstone(ID id) {
+        String idName = schema.getFieldNames().get(0);
+        return "<" + XMLStreamEntityReader.TOMBSTONE + "><" + idName + ">" + id + "</" + idName + "></"
+                + XMLStreamEntityReader.TOMBSTONE + ">";
+    }
+
+    /**
+     * Write one element over the closing root tag, followed by the closing tag
+     */
+    private void append(String element) throws XMLRepositoryException {
+        try {
+            long end = XMLDocumentAppender.append(channel, closingTagOffset, INDENT + element + "\n" + closingTag);
+            closingTagOffset = end - closingTag.length();
+            elements++;
+        } catch (IOException error) {
+            throw new XMLRepositoryException("AppendOnlyXMLRepository->append: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Compact the document if the garbage passed the thresholds
+     */
+    private void compactIfNeeded() throws XMLRepositoryException {
+        int garbage = elements - entities.size();
+        if (garbage >= minGarbageElements && garbage >= elements * garbageRatio)
+            compact();
+    }
+
+    /**
+     * Rewrite the document with the live entities only. The new document is written to a temporary
+     * file that replaces the original one, so a failed compaction leaves the old document intact.
+     *
+     * @throws XMLRepositoryException
+     *          if the document can not be written
+     */
+    public synchronized void compact() throws XMLRepositoryException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                writer.write(PROLOG + "<" + schema.getCollectionName() + ">\n");
+                for (T entity : entities.values()) {
+                    writer.write(INDENT);
+                    writer.write(toElement(entity));
+                    writer.write("\n");
+                }
+                writer.write(closingTag);
+            }
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            closingTagOffset = channel.size() - closingTag.length();
+            elements = entities.size();
+        } catch (IOException error) {
+            try {
+                if (!channel.isOpen())
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException reopen) {
+                error.addSuppressed(reopen);
+            }
+            throw new XMLRepositoryException("AppendOnlyXMLRepository->compact: " + error.getMessage(), error);
+        }
+    }
+
+    @Override
+    public synchronized Optional<T> findOne(ID id) throws XMLRepositoryException {
+        if (id == null)
+            throw new XMLRepositoryException("AppendOnlyXMLRepository->findOne: id cannot be null");
+
+        return Optional.ofNullable(entities.get(id));
+    }
+
+    @Override
+    public synchronized Iterable<T> findAll() {
+        return List.copyOf(entities.values());
+    }
+
+    @Override
+    public synchronized Optional<T> save(T entity) throws ValidatorException, XMLRepositoryException {
+        if (entity == null)
+            throw new XMLRepositoryException("AppendOnlyXMLRepository->save: entity must not be null");
+
+        validator.validate(entity);
+        T existing = entities.get(entity.getId());
+        if (existing != null)
+            return Optional.of(existing);
+
+        append(toElement(entity));
+        entities.put(entity.getId(), entity);
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<T> delete(ID id) throws XMLRepositoryException {
+        if (id == null)
+            throw new XMLRepositoryException("AppendOnlyXMLRepository->delete: id must not be null");
+
+        if (!entities.containsKey(id))
+            return Optional.empty();
+
+        append(toTombstone(id));
+        T removed = entities.remove(id);
+        compactIfNeeded();
+        return Optional.of(removed);
+    }
+
+    @Override
+    public synchronized Optional<T> update(T entity) throws ValidatorException, XMLRepositoryException {
+        if (entity == null)
+            throw new XMLRepositoryException("AppendOnlyXMLRepository->update: entity must not be null");
+
+        validator.validate(entity);
+        if (!entities.containsKey(entity.getId()))
+            return Optional.of(entity);
+
+        append(toElement(entity));
+        entities.put(entity.getId(), entity);
+        compactIfNeeded();
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
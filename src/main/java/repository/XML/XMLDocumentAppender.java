@@ -0,0 +1,78 @@
+package repository.XML;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Adds elements at the end of an xml document without parsing or rewriting it: the new content is
+ * written over the closing root tag, followed by the closing tag again.
+ */
+class XMLDocumentAppender {
+
+    /**
+     * How far from the end of the file the closing root tag is looked for
+     */
+    private static final int TAIL = 1 << 16;
+
+    private XMLDocumentAppender() {
+    }
+
+    /**
+     * Append content right before the closing root tag of a document
+     *
+     * @param file : Path of the xml file
+     *        closingTag : String closing tag of the root element (ex: "</pets>")
+     *        content : String to be inserted (ex: a serialised pet element)
+     * @throws IOException
+     *          if the file can not be written or does not end with the closing tag
+     */
+    static void append(Path file, String closingTag, String content) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = findClosingTag(channel, closingTag);
+            if (offset < 0)
+                throw new IOException(file + " does not end with " + closingTag);
+            append(channel, offset, content + closingTag);
+        }
+    }
+
+    /**
+     * Write bytes at the given offset and cut the file right after them
+     *
+     * @return the offset right after the written bytes
+     */
+    static long append(FileChannel channel, long offset, String content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        long position = offset;
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        channel.truncate(position);
+        return position;
+    }
+
+    /**
+     * @return the offset of the closing root tag, -1 if the document does not end with it (only whitespace may follow)
+     */
+    static long findClosingTag(FileChannel channel, String closingTag) throws IOException {
+        String end = tail(channel);
+        int closing = end.lastIndexOf(closingTag);
+        if (closing < 0 || !end.substring(closing + closingTag.length()).isBlank())
+            return -1;
+        return channel.size() - end.length() + closing;
+    }
+
+    /**
+     * @return the last bytes of the file, one char per byte (the tags looked for are ASCII)
+     */
+    static String tail(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int length = (int) Math.min(size, TAIL);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, size - length + buffer.position()) >= 0) {
+        }
+        return new String(buffer.array(), 0, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,305 @@
+package repository.XML;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import repository.BatchResult;
+import repository.schema.EntitySchema;
+import repository.schema.FieldSink;
+import repository.schema.FieldSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Batch operations for the xml files of the XMLRepository* classes, each one costing a single write
+ * whatever the size of the batch.
+ *
+ * Saves only need the ids already in the file (one streaming pass) and are appended together before the
+ * closing root tag. Updates and deletes parse the document object model once, index the entity elements
+ * by id, apply every change to the model and serialise it once (to a temporary file that replaces the original,
+ * so a failed write leaves the old document intact).
+ */
+class XMLDocumentBatch<T extends BaseEntity<?>> {
+
+    private final Path file;
+    private final EntitySchema<T> schema;
+    private final Document document;
+    private final Map<String, Element> elements = new LinkedHashMap<>();
+
+    private XMLDocumentBatch(Path file, EntitySchema<T> schema) throws IOException {
+        this.file = file;
+        this.schema = schema;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file.toFile());
+        } catch (SAXException | ParserConfigurationException error) {
+            throw new IOException("could not parse " + file + ": " + error.getMessage(), error);
+        }
+
+        String idName = schema.getFieldNames().get(0);
+        for (Node node = document.getDocumentElement().getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element && ((Element) node).getTagName().equals(schema.getEntityName())) {
+                Node id = ((Element) node).getElementsByTagName(idName).item(0);
+                if (id != null)
+                    elements.put(id.getTextContent().trim(), (Element) node);
+            }
+        }
+    }
+
+    /**
+     * Save the entities that are valid and whose id is free, with one append
+     *
+     * @param file : Path of the xml file
+     *        schema : EntitySchema<T> describing the elements
+     *        validator : Validator<T> applied to every entity before anything is written
+     *        entities : Iterable<T> entities to be saved
+     * @return the saved entities and the ones whose id was taken (in the file or earlier in the batch)
+     * @throws ValidatorException
+     *          if an entity is not valid, nothing is written
+     * @throws IOException
+     *          if the file can not be read or written
+     */
+    static <T extends BaseEntity<?>> BatchResult<T> saveAll(Path file, EntitySchema<T> schema, Validator<T> validator,
+                                                            Iterable<T> entities) throws ValidatorException, IOException {
+        List<T> batch = validateAll(validator, entities);
+
+        Set<Object> taken = new HashSet<>();
+        try {
+            XMLStreamEntityReader.forEach(file, schema, entity -> taken.add(entity.getId()));
+        } catch (XMLStreamException error) {
+            throw new IOException(error.getMessage(), error);
+        }
+
+        List<T> applied = new ArrayList<>();
+        List<BatchResult.Failure<T>> failures = new ArrayList<>();
+        XMLElementSink sink = new XMLElementSink(schema);
+        StringBuilder content = new StringBuilder();
+        for (T entity : batch) {
+            if (taken.add(entity.getId())) {
+                schema.write(entity, sink.reset());
+                content.append(sink.getElement());
+                applied.add(entity);
+            } else {
+                failures.add(new BatchResult.Failure<>(entity, BatchResult.ID_TAKEN));
+            }
+        }
+        if (!applied.isEmpty())
+            XMLDocumentAppender.append(file, "</" + schema.getCollectionName() + ">", content.toString());
+        return new BatchResult<>(applied, failures);
+    }
+
+    /**
+     * Replace the elements of the entities in place, with one parse and one write
+     *
+     * @param file : Path of the xml file
+     *        schema : EntitySchema<T> describing the elements
+     *        validator : Validator<T> applied to every entity before anything is written
+     *        entities : Iterable<T> entities to be updated
+     * @return the updated entities and the ones whose id is not in the file
+     * @throws ValidatorException
+     *          if an entity is not valid, nothing is written
+     * @throws IOException
+     *          if the file can not be parsed or written
+     */
+    static <T extends BaseEntity<?>> BatchResult<T> updateAll(Path file, EntitySchema<T> schema, Validator<T> validator,
+                                                              Iterable<T> entities) throws ValidatorException, IOException {
+        List<T> batch = validateAll(validator, entities);
+
+        XMLDocumentBatch<T> document = new XMLDocumentBatch<>(file, schema);
+        List<T> applied = new ArrayList<>();
+        List<BatchResult.Failure<T>> failures = new ArrayList<>();
+        for (T entity : batch) {
+            if (document.replace(entity))
+                applied.add(entity);
+            else
+                failures.add(new BatchResult.Failure<>(entity, BatchResult.ID_MISSING));
+        }
+        if (!applied.isEmpty())
+            document.write();
+        return new BatchResult<>(applied, failures);
+    }
+
+    /**
+     * Remove the elements with the given ids, with one parse and one write
+     *
+     * @param file : Path of the xml file
+     *        schema : EntitySchema<T> describing the elements
+     *        ids : Iterable<?> ids of the entities to be removed
+     * @return the removed entities; ids that are not in the file are skipped
+     * @throws IllegalArgumentException
+     *          if an id is null
+     * @throws IOException
+     *          if the file can not be parsed or written
+     */
+    static <T extends BaseEntity<?>> List<T> deleteAll(Path file, EntitySchema<T> schema, Iterable<?> ids)
+            throws IOException {
+        List<Object> batch = new ArrayList<>();
+        for (Object id : ids)
+            batch.add(Optional.ofNullable(id).orElseThrow(() -> new IllegalArgumentException("id must not be null")));
+
+        XMLDocumentBatch<T> document = new XMLDocumentBatch<>(file, schema);
+        List<T> removed = new ArrayList<>();
+        for (Object id : batch)
+            document.remove(String.valueOf(id)).ifPresent(removed::add);
+        if (!removed.isEmpty())
+            document.write();
+        return removed;
+    }
+
+    /**
+     * Remove every entity element, with one parse and one write
+     *
+     * @return the removed entities
+     * @throws IOException
+     *          if the file can not be parsed or written
+     */
+    static <T extends BaseEntity<?>> List<T> clear(Path file, EntitySchema<T> schema) throws IOException {
+        XMLDocumentBatch<T> document = new XMLDocumentBatch<>(file, schema);
+        List<T> removed = new ArrayList<>();
+        for (String id : List.copyOf(document.elements.keySet()))
+            document.remove(id).ifPresent(removed::add);
+        if (!removed.isEmpty())
+            document.write();
+        return removed;
+    }
+
+    private static <T> List<T> validateAll(Validator<T> validator, Iterable<T> entities) throws ValidatorException {
+        List<T> batch = new ArrayList<>();
+        for (T entity : entities) {
+            Optional.ofNullable(entity).orElseThrow(() -> new IllegalArgumentException("entity must not be null"));
+            validator.validate(entity);
+            batch.add(entity);
+        }
+        return batch;
+    }
+
+    private Optional<T> remove(String id) {
+        Element element = elements.remove(id);
+        if (element == null)
+            return Optional.empty();
+
+        element.getParentNode().removeChild(element);
+        return Optional.of(schema.read(new ElementFieldSource(element)));
+    }
+
+    private boolean replace(T entity) {
+        String id = String.valueOf(entity.getId());
+        Element element = elements.get(id);
+        if (element == null)
+            return false;
+
+        ElementFieldSink sink = new ElementFieldSink(document.createElement(schema.getEntityName()));
+        schema.write(entity, sink);
+        element.getParentNode().replaceChild(sink.element, element);
+        elements.put(id, sink.element);
+        return true;
+    }
+
+    private void write() throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".batch");
+        try {
+            TransformerFactory.newInstance().newTransformer()
+                    .transform(new DOMSource(document), new StreamResult(temporary.toFile()));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (TransformerException error) {
+            Files.deleteIfExists(temporary);
+            throw new IOException("could not write " + file + ": " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * {@link FieldSource} over the child elements of an entity element, looked up by field name
+     */
+    private final class ElementFieldSource implements FieldSource {
+
+        private final Element element;
+        private int field;
+
+        private ElementFieldSource(Element element) {
+            this.element = element;
+        }
+
+        private String next() {
+            String name = schema.getFieldNames().get(field++);
+            Node child = element.getElementsByTagName(name).item(0);
+            if (child == null)
+                throw new IllegalArgumentException("missing <" + name + "> in <" + schema.getEntityName() + ">");
+            return child.getTextContent();
+        }
+
+        @Override
+        public long readLong() {
+            return Long.parseLong(next().trim());
+        }
+
+        @Override
+        public int readInt() {
+            return Integer.parseInt(next().trim());
+        }
+
+        @Override
+        public double readDouble() {
+            return Double.parseDouble(next().trim());
+        }
+
+        @Override
+        public String readString() {
+            return next();
+        }
+    }
+
+    /**
+     * {@link FieldSink} adding one child element per field to an entity element
+     */
+    private final class ElementFieldSink implements FieldSink {
+
+        private final Element element;
+        private int field;
+
+        private ElementFieldSink(Element element) {
+            this.element = element;
+        }
+
+        @Override
+        public void writeLong(long value) {
+            writeString(Long.toString(value));
+        }
+
+        @Override
+        public void writeInt(int value) {
+            writeString(Integer.toString(value));
+        }
+
+        @Override
+        public void writeDouble(double value) {
+            writeString(Double.toString(value));
+        }
+
+        @Override
+        public void writeString(String value) {
+            Element child = document.createElement(schema.getFieldNames().get(field++));
+            child.setTextContent(value);
+            element.appendChild(child);
+        }
+    }
+}
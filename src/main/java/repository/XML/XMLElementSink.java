@@ -0,0 +1,104 @@
+package repository.XML;
+
+import domain.BaseEntity;
+import repository.schema.EntitySchema;
+import repository.schema.FieldSink;
+
+import java.util.List;
+
+/**
+ * {@link FieldSink} writing an entity as a single-line xml element, one child element per field
+ * (ex: {@code <pet><id>1</id><serialNumber>10233</serialNumber>...</pet>}).
+ */
+class XMLElementSink implements FieldSink {
+
+    private final String entityName;
+    private final List<String> names;
+    private final StringBuilder element = new StringBuilder(128);
+    private int field;
+
+    XMLElementSink(EntitySchema<?> schema) {
+        this.entityName = schema.getEntityName();
+        this.names = schema.getFieldNames();
+    }
+
+    /**
+     * @return the single-line element of the entity
+     */
+    static <T extends BaseEntity<?>> String toElement(EntitySchema<T> schema, T entity) {
+        XMLElementSink sink = new XMLElementSink(schema);
+        schema.write(entity, sink.reset());
+        return sink.getElement();
+    }
+
+    XMLElementSink reset() {
+        element.setLength(0);
+        element.append('<').append(entityName).append('>');
+        field = 0;
+        return this;
+    }
+
+    /**
+     * @return the element written since the last reset, closing tag included
+     */
+    String getElement() {
+        return element.toString() + "</" + entityName + ">";
+    }
+
+    private void open() {
+        element.append('<').append(names.get(field)).append('>');
+    }
+
+    private void close() {
+        element.append("</").append(names.get(field++)).append('>');
+    }
+
+    @Override
+    public void writeLong(long value) {
+        open();
+        element.append(value);
+        close();
+    }
+
+    @Override
+    public void writeInt(int value) {
+        open();
+        element.append(value);
+        close();
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        open();
+        element.append(value);
+        close();
+    }
+
+    @Override
+    public void writeString(String value) {
+        open();
+        for (int i = 0; i < value.length(); i++) {
+            char current = value.charAt(i);
+            switch (current) {
+                case '&':
+                    element.append("&amp;");
+                    break;
+                case '<':
+                    element.append("&lt;");
+                    break;
+                case '>':
+                    element.append("&gt;");
+                    break;
+                case '\r':
+                    element.append("&#13;");
+                    break;
+                case '\n':
+                    element.append("&#10;");
+                    break;
+                default:
+                    element.append(current);
+            }
+        }
+        close();
+    }
+}
@@ -11,14 +11,18 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
 import repository.XML.exceptions.XMLRepositoryAdoptionException;
 import repository.XML.exceptions.XMLRepositoryAdoptionException;
 import repository.XML.exceptions.XMLRepositoryAdoptionException;
+import repository.schema.EntitySchema;
+import repository.schema.AdoptionSchema;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -27,10 +31,13 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final AdoptionSchema SCHEMA = new AdoptionSchema();
 
     private Validator<T> validator;
     private String fileName; // ex: text.xml
@@ -49,31 +56,19 @@ public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repo
     }
 
     /**
-     * Save a adoption to the repository
+     * Save a adoption to the repository. The adoption element is written right before the closing root tag,
+     * the rest of the document is neither parsed nor rewritten.
      *
      * @param adoption : Adoption to be saved to the repository
      * @throws XMLRepositoryAdoptionException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be written
      */
     public T saveToXML(Adoption adoption) throws XMLRepositoryAdoptionException {
         try {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse("data/xml/" + fileName + ".xml");
-
-            addAdoptionToDom(adoption, document);
-
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-
-            transformer.transform(
-                    new DOMSource(document),
-                    new StreamResult(new File("data/xml/" + fileName + ".xml"))
-            );
-
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">",
+                    XMLElementSink.toElement(SCHEMA, adoption));
             return (T) adoption;
-
-        } catch(ParserConfigurationException | SAXException | IOException | TransformerException e){
+        } catch (IOException e) {
             throw new XMLRepositoryAdoptionException(e.getMessage());
         }
     }
@@ -146,50 +141,71 @@ public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repo
     }
 
     /**
-     * Load adoptions from the xml file
+     * Load adoptions from the xml file. The file is streamed with {@link XMLStreamEntityReader},
+     * no document object model is built.
      *
      * @throws XMLRepositoryAdoptionException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be read or parsed
      */
     public List<Adoption> loadFromXML() throws XMLRepositoryAdoptionException{
         try {
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document root = db.parse("data/xml/" + fileName + ".xml");
-            Element adoptionsRoot = root.getDocumentElement();
-            NodeList adoptionList = adoptionsRoot.getChildNodes();
-            List<Adoption> adoptions = new ArrayList<>();
-            for (int i = 0; i < adoptionList.getLength(); ++i) {
-                if (!(adoptionList.item(i) instanceof Element))
-                    continue;
-                Adoption adoption = createAdoptionFromNode((Element) adoptionList.item(i));
-                adoptions.add(adoption);
-            }
-            return adoptions;
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+            return XMLStreamEntityReader.read(getPath(), SCHEMA);
+        } catch (XMLStreamException | IOException e) {
             throw new XMLRepositoryAdoptionException("XMLRepositoryAdoptionException: " + e.getMessage());
         }
     }
 
     /**
-     * Save a list of adoptions to the repository
+     * Find a adoption in the xml file. The file is streamed and the reading stops at the first adoption with the given id.
+     *
+     * @param id : ID of the adoption
+     * @return an Optional with the adoption, empty if there is none
+     * @throws XMLRepositoryAdoptionException
+     *          if the file can not be read or parsed
+     */
+    public Optional<Adoption> findInXML(ID id) throws XMLRepositoryAdoptionException {
+        try {
+            return XMLStreamEntityReader.find(getPath(), SCHEMA, adoption -> adoption.getId().equals(id));
+        } catch (XMLStreamException | IOException e) {
+            throw new XMLRepositoryAdoptionException("XMLRepositoryAdoptionException: " + e.getMessage());
+        }
+    }
+
+    private Path getPath() {
+        return Path.of("data/xml/" + fileName + ".xml");
+    }
+
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save a list of adoptions to the repository. All the adoption elements are written before the closing root tag
+     * with a single append.
      *
      * @param entities : List<Adoption> to be saved to the repository
      * @throws XMLRepositoryAdoptionException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveEntitiesToXML(List<Adoption> entities) throws XMLRepositoryAdoptionException {
-        entities.forEach(this::saveToXML);
+        try {
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">", entities.stream()
+                    .map(adoption -> XMLElementSink.toElement(SCHEMA, adoption))
+                    .collect(Collectors.joining()));
+        } catch (IOException e) {
+            throw new XMLRepositoryAdoptionException(e.getMessage());
+        }
     }
 
     /**
-     * Save a map of adoptions to the repository
+     * Save a map of adoptions to the repository with a single append
      *
      * @param entities : Map<ID, Adoption> to be saved to the repository
      * @throws XMLRepositoryAdoptionException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveMapToXML(Map<ID, Adoption> entities) throws XMLRepositoryAdoptionException {
-        entities.forEach((key, value) -> saveToXML(value));
+        saveEntitiesToXML(new ArrayList<>(entities.values()));
     }
 
     /**
@@ -204,14 +220,17 @@ public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repo
     }
 
     /**
-     * Deletes all entries in the repository
+     * Deletes all entries in the repository, with one parse and one write of the document
      *
      * @throws XMLRepositoryAdoptionException
-     *         if some error from saveToXML method arises
+     *         if the file can not be parsed or written
      */
     public void deleteAll() throws XMLRepositoryAdoptionException{
-        List<Adoption> adoptions = this.loadFromXML();
-        adoptions.forEach(adoption -> this.deleteAdoption((ID) adoption.getId()));
+        try {
+            XMLDocumentBatch.clear(getPath(), SCHEMA);
+        } catch (IOException e) {
+            throw new XMLRepositoryAdoptionException(e.getMessage());
+        }
     }
 
     /**
@@ -250,9 +269,7 @@ public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repo
     @Override
     public Optional<T> findOne(ID id) {
 
-        List<Adoption> entities = this.loadFromXML();
-        Map<ID, Adoption> map = this.convertListToMap(entities);
-        return (Optional<T>) Optional.ofNullable(map.get(id));
+        return (Optional<T>) this.findInXML(id);
     }
 
     @Override
@@ -274,10 +291,9 @@ public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repo
         validator.validate(entity); // throws directly
 
         // check id taken
-        List<Adoption> entities = this.loadFromXML();
-        result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        result = (Optional<T>) this.findInXML(entity.getId());
 
-        result.orElse(saveToXML((Adoption)entity));
+        result.orElseGet(() -> saveToXML((Adoption) entity));
 
         return result; // saved correctly
     }
@@ -289,10 +305,7 @@ public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repo
                 new IllegalArgumentException("id must not be null")
         );
 
-        List<Adoption> entities = this.loadFromXML();
-        Map<ID, Adoption> map = this.convertListToMap(entities);
-
-        Adoption result = map.remove(id);
+        Adoption result = this.findInXML(id).orElse(null);
 
         try {
             this.deleteAdoption(id);
@@ -310,20 +323,64 @@ public class XMLRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repo
 
         validator.validate(entity);
 
-        List<Adoption> entities = this.loadFromXML();
-        Map<ID, Adoption> map = this.convertListToMap(entities);
-
-
-        Optional<T> result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        // fail to update? return entity
+        return this.findInXML(entity.getId())
+                .map(existing -> {
+                    this.deleteAdoption(entity.getId());
+                    this.saveToXML((Adoption) entity);
+                    return Optional.<T>empty();
+                })
+                .orElse(Optional.of(entity));
+    }
 
-        result.orElseGet(() -> {
-            this.deleteAdoption(entity.getId());
-            this.saveToXML((Adoption) entity);
-            return null;
-        });
+    /**
+     * Save many adoptions with a single append. Every adoption is validated before anything is written.
+     *
+     * @param entities : Iterable<T> adoptions to be saved
+     * @return the saved adoptions and the ones whose id was taken
+     * @throws XMLRepositoryAdoptionException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.saveAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryAdoptionException(e.getMessage());
+        }
+    }
 
+    /**
+     * Update many adoptions with one parse and one write of the document. The adoption elements are replaced in place.
+     *
+     * @param entities : Iterable<T> adoptions to be updated
+     * @return the updated adoptions and the ones whose id does not exist
+     * @throws XMLRepositoryAdoptionException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.updateAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryAdoptionException(e.getMessage());
+        }
+    }
 
-        // fail to update? return entity
-        return result;
+    /**
+     * Delete many adoptions with one parse and one write of the document
+     *
+     * @param ids : Iterable<ID> ids of the adoptions to be deleted
+     * @return the deleted adoptions
+     * @throws XMLRepositoryAdoptionException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws IllegalArgumentException {
+        try {
+            return XMLDocumentBatch.deleteAll(getPath(), schema(), ids);
+        } catch (IOException e) {
+            throw new XMLRepositoryAdoptionException(e.getMessage());
+        }
     }
 }
@@ -9,12 +9,16 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
 import repository.XML.exceptions.XMLRepositoryClientException;
+import repository.schema.EntitySchema;
+import repository.schema.ClientSchema;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -23,10 +27,13 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final ClientSchema SCHEMA = new ClientSchema();
 
     private Validator<T> validator;
     private String fileName; // ex: text.xml
@@ -45,31 +52,19 @@ public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposi
     }
 
     /**
-     * Save a client to the repository
+     * Save a client to the repository. The client element is written right before the closing root tag,
+     * the rest of the document is neither parsed nor rewritten.
      *
      * @param client : Client to be saved to the repository
      * @throws XMLRepositoryClientException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be written
      */
     public T saveToXML(Client client) throws XMLRepositoryClientException {
         try {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse("data/xml/" + fileName + ".xml");
-
-            addClientToDom(client, document);
-
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-
-            transformer.transform(
-                    new DOMSource(document),
-                    new StreamResult(new File("data/xml/" + fileName + ".xml"))
-            );
-
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">",
+                    XMLElementSink.toElement(SCHEMA, client));
             return (T) client;
-
-        } catch(ParserConfigurationException | SAXException | IOException | TransformerException e){
+        } catch (IOException e) {
             throw new XMLRepositoryClientException(e.getMessage());
         }
     }
@@ -143,50 +138,71 @@ public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposi
     }
 
     /**
-     * Load clients from the xml file
+     * Load clients from the xml file. The file is streamed with {@link XMLStreamEntityReader},
+     * no document object model is built.
      *
      * @throws XMLRepositoryClientException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be read or parsed
      */
     public List<Client> loadFromXML() throws XMLRepositoryClientException{
         try {
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document root = db.parse("data/xml/" + fileName + ".xml");
-            Element clientsRoot = root.getDocumentElement();
-            NodeList clientList = clientsRoot.getChildNodes();
-            List<Client> clients = new ArrayList<>();
-            for (int i = 0; i < clientList.getLength(); ++i) {
-                if (!(clientList.item(i) instanceof Element))
-                    continue;
-                Client client = createClientFromNode((Element) clientList.item(i));
-                clients.add(client);
-            }
-            return clients;
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+            return XMLStreamEntityReader.read(getPath(), SCHEMA);
+        } catch (XMLStreamException | IOException e) {
             throw new XMLRepositoryClientException("XMLRepositoryClientException: " + e.getMessage());
         }
     }
 
     /**
-     * Save a list of clients to the repository
+     * Find a client in the xml file. The file is streamed and the reading stops at the first client with the given id.
+     *
+     * @param id : ID of the client
+     * @return an Optional with the client, empty if there is none
+     * @throws XMLRepositoryClientException
+     *          if the file can not be read or parsed
+     */
+    public Optional<Client> findInXML(ID id) throws XMLRepositoryClientException {
+        try {
+            return XMLStreamEntityReader.find(getPath(), SCHEMA, client -> client.getId().equals(id));
+        } catch (XMLStreamException | IOException e) {
+            throw new XMLRepositoryClientException("XMLRepositoryClientException: " + e.getMessage());
+        }
+    }
+
+    private Path getPath() {
+        return Path.of("data/xml/" + fileName + ".xml");
+    }
+
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save a list of clients to the repository. All the client elements are written before the closing root tag
+     * with a single append.
      *
      * @param entities : List<Client> to be saved to the repository
      * @throws XMLRepositoryClientException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveEntitiesToXML(List<Client> entities) throws XMLRepositoryClientException {
-        entities.forEach(this::saveToXML);
+        try {
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">", entities.stream()
+                    .map(client -> XMLElementSink.toElement(SCHEMA, client))
+                    .collect(Collectors.joining()));
+        } catch (IOException e) {
+            throw new XMLRepositoryClientException(e.getMessage());
+        }
     }
 
     /**
-     * Save a map of clients to the repository
+     * Save a map of clients to the repository with a single append
      *
      * @param entities : Map<ID, Client> to be saved to the repository
      * @throws XMLRepositoryClientException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveMapToXML(Map<ID, Client> entities) throws XMLRepositoryClientException {
-        entities.forEach((key, value) -> saveToXML(value));
+        saveEntitiesToXML(new ArrayList<>(entities.values()));
     }
 
     /**
@@ -201,14 +217,17 @@ public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposi
     }
 
     /**
-     * Deletes all entries in the repository
+     * Deletes all entries in the repository, with one parse and one write of the document
      *
      * @throws XMLRepositoryClientException
-     *         if some error from saveToXML method arises
+     *         if the file can not be parsed or written
      */
     public void deleteAll() throws XMLRepositoryClientException{
-        List<Client> clients = this.loadFromXML();
-        clients.forEach(client -> this.deleteClient((ID) client.getId()));
+        try {
+            XMLDocumentBatch.clear(getPath(), SCHEMA);
+        } catch (IOException e) {
+            throw new XMLRepositoryClientException(e.getMessage());
+        }
     }
 
     /**
@@ -247,9 +266,7 @@ public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposi
     @Override
     public Optional<T> findOne(ID id) {
 
-        List<Client> entities = this.loadFromXML();
-        Map<ID, Client> map = this.convertListToMap(entities);
-        return (Optional<T>) Optional.ofNullable(map.get(id));
+        return (Optional<T>) this.findInXML(id);
     }
 
     @Override
@@ -271,10 +288,9 @@ public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposi
         validator.validate(entity); // throws directly
 
         // check id taken
-        List<Client> entities = this.loadFromXML();
-        result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        result = (Optional<T>) this.findInXML(entity.getId());
 
-        result.orElse(saveToXML((Client)entity));
+        result.orElseGet(() -> saveToXML((Client) entity));
 
         return result; // saved correctly
     }
@@ -286,10 +302,7 @@ public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposi
                 new IllegalArgumentException("id must not be null")
         );
 
-        List<Client> entities = this.loadFromXML();
-        Map<ID, Client> map = this.convertListToMap(entities);
-
-        Client result = map.remove(id);
+        Client result = this.findInXML(id).orElse(null);
 
         try {
             this.deleteClient(id);
@@ -307,20 +320,64 @@ public class XMLRepositoryClient<ID, T extends BaseEntity<ID>> implements Reposi
 
         validator.validate(entity);
 
-        List<Client> entities = this.loadFromXML();
-        Map<ID, Client> map = this.convertListToMap(entities);
-
-
-        Optional<T> result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        // fail to update? return entity
+        return this.findInXML(entity.getId())
+                .map(existing -> {
+                    this.deleteClient(entity.getId());
+                    this.saveToXML((Client) entity);
+                    return Optional.<T>empty();
+                })
+                .orElse(Optional.of(entity));
+    }
 
-        result.orElseGet(() -> {
-            this.deleteClient(entity.getId());
-            this.saveToXML((Client) entity);
-            return null;
-        });
+    /**
+     * Save many clients with a single append. Every client is validated before anything is written.
+     *
+     * @param entities : Iterable<T> clients to be saved
+     * @return the saved clients and the ones whose id was taken
+     * @throws XMLRepositoryClientException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.saveAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryClientException(e.getMessage());
+        }
+    }
 
+    /**
+     * Update many clients with one parse and one write of the document. The client elements are replaced in place.
+     *
+     * @param entities : Iterable<T> clients to be updated
+     * @return the updated clients and the ones whose id does not exist
+     * @throws XMLRepositoryClientException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.updateAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryClientException(e.getMessage());
+        }
+    }
 
-        // fail to update? return entity
-        return result;
+    /**
+     * Delete many clients with one parse and one write of the document
+     *
+     * @param ids : Iterable<ID> ids of the clients to be deleted
+     * @return the deleted clients
+     * @throws XMLRepositoryClientException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws IllegalArgumentException {
+        try {
+            return XMLDocumentBatch.deleteAll(getPath(), schema(), ids);
+        } catch (IOException e) {
+            throw new XMLRepositoryClientException(e.getMessage());
+        }
     }
 }
@@ -10,12 +10,16 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 import repository.InMemoryRepositoryException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
 import repository.XML.exceptions.XMLRepositoryPetException;
+import repository.schema.EntitySchema;
+import repository.schema.PetSchema;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -24,10 +28,13 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final PetSchema SCHEMA = new PetSchema();
 
     private Validator<T> validator;
     private String fileName; // ex: text.xml
@@ -46,31 +53,19 @@ public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repositor
     }
 
     /**
-     * Save a pet to the repository
+     * Save a pet to the repository. The pet element is written right before the closing root tag,
+     * the rest of the document is neither parsed nor rewritten.
      *
      * @param pet : Pet to be saved to the repository
      * @throws XMLRepositoryPetException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be written
      */
     public T saveToXML(Pet pet) throws XMLRepositoryPetException {
         try {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse("data/xml/" + fileName + ".xml");
-
-            addPetToDom(pet, document);
-
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-
-            transformer.transform(
-                    new DOMSource(document),
-                    new StreamResult(new File("data/xml/" + fileName + ".xml"))
-            );
-
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">",
+                    XMLElementSink.toElement(SCHEMA, pet));
             return (T) pet;
-
-        } catch(ParserConfigurationException | SAXException | IOException | TransformerException e){
+        } catch (IOException e) {
             throw new XMLRepositoryPetException(e.getMessage());
         }
     }
@@ -143,50 +138,71 @@ public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repositor
     }
 
     /**
-     * Load pets from the xml file
+     * Load pets from the xml file. The file is streamed with {@link XMLStreamEntityReader},
+     * no document object model is built.
      *
      * @throws XMLRepositoryPetException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be read or parsed
      */
     public List<Pet> loadFromXML() throws XMLRepositoryPetException{
         try {
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document root = db.parse("data/xml/" + fileName + ".xml");
-            Element petsRoot = root.getDocumentElement();
-            NodeList petList = petsRoot.getChildNodes();
-            List<Pet> pets = new ArrayList<>();
-            for (int i = 0; i < petList.getLength(); ++i) {
-                if (!(petList.item(i) instanceof Element))
-                    continue;
-                Pet pet = createPetFromNode((Element) petList.item(i));
-                pets.add(pet);
-            }
-            return pets;
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+            return XMLStreamEntityReader.read(getPath(), SCHEMA);
+        } catch (XMLStreamException | IOException e) {
             throw new XMLRepositoryPetException("XMLRepositoryPetException: " + e.getMessage());
         }
     }
 
     /**
-     * Save a list of pets to the repository
+     * Find a pet in the xml file. The file is streamed and the reading stops at the first pet with the given id.
+     *
+     * @param id : ID of the pet
+     * @return an Optional with the pet, empty if there is none
+     * @throws XMLRepositoryPetException
+     *          if the file can not be read or parsed
+     */
+    public Optional<Pet> findInXML(ID id) throws XMLRepositoryPetException {
+        try {
+            return XMLStreamEntityReader.find(getPath(), SCHEMA, pet -> pet.getId().equals(id));
+        } catch (XMLStreamException | IOException e) {
+            throw new XMLRepositoryPetException("XMLRepositoryPetException: " + e.getMessage());
+        }
+    }
+
+    private Path getPath() {
+        return Path.of("data/xml/" + fileName + ".xml");
+    }
+
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save a list of pets to the repository. All the pet elements are written before the closing root tag
+     * with a single append.
      *
      * @param entities : List<Pet> to be saved to the repository
      * @throws XMLRepositoryPetException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveEntitiesToXML(List<Pet> entities) throws XMLRepositoryPetException {
-        entities.forEach(this::saveToXML);
+        try {
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">", entities.stream()
+                    .map(pet -> XMLElementSink.toElement(SCHEMA, pet))
+                    .collect(Collectors.joining()));
+        } catch (IOException e) {
+            throw new XMLRepositoryPetException(e.getMessage());
+        }
     }
 
     /**
-     * Save a map of pets to the repository
+     * Save a map of pets to the repository with a single append
      *
      * @param entities : Map<ID, Pet> to be saved to the repository
      * @throws XMLRepositoryPetException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveMapToXML(Map<ID, Pet> entities) throws XMLRepositoryPetException {
-        entities.forEach((key, value) -> saveToXML(value));
+        saveEntitiesToXML(new ArrayList<>(entities.values()));
     }
 
     /**
@@ -201,14 +217,17 @@ public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repositor
     }
 
     /**
-     * Deletes all entries in the repository
+     * Deletes all entries in the repository, with one parse and one write of the document
      *
      * @throws XMLRepositoryPetException
-     *         if some error from saveToXML method arises
+     *         if the file can not be parsed or written
      */
     public void deleteAll() throws XMLRepositoryPetException{
-        List<Pet> pets = this.loadFromXML();
-        pets.forEach(pet -> this.deletePet((ID) pet.getId()));
+        try {
+            XMLDocumentBatch.clear(getPath(), SCHEMA);
+        } catch (IOException e) {
+            throw new XMLRepositoryPetException(e.getMessage());
+        }
     }
 
     /**
@@ -247,9 +266,7 @@ public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repositor
     @Override
     public Optional<T> findOne(ID id) {
 
-        List<Pet> entities = this.loadFromXML();
-        Map<ID, Pet> map = this.convertListToMap(entities);
-        return (Optional<T>) Optional.ofNullable(map.get(id));
+        return (Optional<T>) this.findInXML(id);
     }
 
     @Override
@@ -271,10 +288,9 @@ public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repositor
         validator.validate(entity); // throws directly
 
         // check id taken
-        List<Pet> entities = this.loadFromXML();
-        result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        result = (Optional<T>) this.findInXML(entity.getId());
 
-        result.orElse(saveToXML((Pet)entity));
+        result.orElseGet(() -> saveToXML((Pet) entity));
 
         return result; // saved correctly
     }
@@ -286,10 +302,7 @@ public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repositor
                 new IllegalArgumentException("id must not be null")
         );
 
-        List<Pet> entities = this.loadFromXML();
-        Map<ID, Pet> map = this.convertListToMap(entities);
-
-        Pet result = map.remove(id);
+        Pet result = this.findInXML(id).orElse(null);
 
         try {
             this.deletePet(id);
@@ -307,20 +320,64 @@ public class XMLRepositoryPet<ID, T extends BaseEntity<ID>> implements Repositor
 
         validator.validate(entity);
 
-        List<Pet> entities = this.loadFromXML();
-        Map<ID, Pet> map = this.convertListToMap(entities);
-
-
-        Optional<T> result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        // fail to update? return entity
+        return this.findInXML(entity.getId())
+                .map(existing -> {
+                    this.deletePet(entity.getId());
+                    this.saveToXML((Pet) entity);
+                    return Optional.<T>empty();
+                })
+                .orElse(Optional.of(entity));
+    }
 
-        result.orElseGet(() -> {
-            this.deletePet(entity.getId());
-            this.saveToXML((Pet) entity);
-            return null;
-        });
+    /**
+     * Save many pets with a single append. Every pet is validated before anything is written.
+     *
+     * @param entities : Iterable<T> pets to be saved
+     * @return the saved pets and the ones whose id was taken
+     * @throws XMLRepositoryPetException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.saveAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryPetException(e.getMessage());
+        }
+    }
 
+    /**
+     * Update many pets with one parse and one write of the document. The pet elements are replaced in place.
+     *
+     * @param entities : Iterable<T> pets to be updated
+     * @return the updated pets and the ones whose id does not exist
+     * @throws XMLRepositoryPetException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.updateAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryPetException(e.getMessage());
+        }
+    }
 
-        // fail to update? return entity
-        return result;
+    /**
+     * Delete many pets with one parse and one write of the document
+     *
+     * @param ids : Iterable<ID> ids of the pets to be deleted
+     * @return the deleted pets
+     * @throws XMLRepositoryPetException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws IllegalArgumentException {
+        try {
+            return XMLDocumentBatch.deleteAll(getPath(), schema(), ids);
+        } catch (IOException e) {
+            throw new XMLRepositoryPetException(e.getMessage());
+        }
     }
 }
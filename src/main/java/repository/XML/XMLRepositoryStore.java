@@ -9,12 +9,16 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
 import repository.XML.exceptions.XMLRepositoryStoreException;
+import repository.schema.EntitySchema;
+import repository.schema.PurchaseSchema;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -23,10 +27,13 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final PurchaseSchema SCHEMA = new PurchaseSchema();
 
     private Validator<T> validator;
     private String fileName; // ex: text.xml
@@ -45,31 +52,19 @@ public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposit
     }
 
     /**
-     * Save a purchase to the repository
+     * Save a purchase to the repository. The purchase element is written right before the closing root tag,
+     * the rest of the document is neither parsed nor rewritten.
      *
      * @param purchase : Purchase to be saved to the repository
      * @throws XMLRepositoryStoreException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be written
      */
     public T saveToXML(Purchase purchase) throws XMLRepositoryStoreException {
         try {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse("data/xml/" + fileName + ".xml");
-
-            addPurchaseToDom(purchase, document);
-
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-
-            transformer.transform(
-                    new DOMSource(document),
-                    new StreamResult(new File("data/xml/" + fileName + ".xml"))
-            );
-
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">",
+                    XMLElementSink.toElement(SCHEMA, purchase));
             return (T) purchase;
-
-        } catch(ParserConfigurationException | SAXException | IOException | TransformerException e){
+        } catch (IOException e) {
             throw new XMLRepositoryStoreException(e.getMessage());
         }
     }
@@ -142,50 +137,71 @@ public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposit
     }
 
     /**
-     * Load purchases from the xml file
+     * Load purchases from the xml file. The file is streamed with {@link XMLStreamEntityReader},
+     * no document object model is built.
      *
      * @throws XMLRepositoryStoreException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be read or parsed
      */
     public List<Purchase> loadFromXML() throws XMLRepositoryStoreException{
         try {
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document root = db.parse("data/xml/" + fileName + ".xml");
-            Element purchasesRoot = root.getDocumentElement();
-            NodeList purchaseList = purchasesRoot.getChildNodes();
-            List<Purchase> purchases = new ArrayList<>();
-            for (int i = 0; i < purchaseList.getLength(); ++i) {
-                if (!(purchaseList.item(i) instanceof Element))
-                    continue;
-                Purchase purchase = createPurchaseFromNode((Element) purchaseList.item(i));
-                purchases.add(purchase);
-            }
-            return purchases;
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+            return XMLStreamEntityReader.read(getPath(), SCHEMA);
+        } catch (XMLStreamException | IOException e) {
             throw new XMLRepositoryStoreException("XMLRepositoryStoreException: " + e.getMessage());
         }
     }
 
     /**
-     * Save a list of purchases to the repository
+     * Find a purchase in the xml file. The file is streamed and the reading stops at the first purchase with the given id.
+     *
+     * @param id : ID of the purchase
+     * @return an Optional with the purchase, empty if there is none
+     * @throws XMLRepositoryStoreException
+     *          if the file can not be read or parsed
+     */
+    public Optional<Purchase> findInXML(ID id) throws XMLRepositoryStoreException {
+        try {
+            return XMLStreamEntityReader.find(getPath(), SCHEMA, purchase -> purchase.getId().equals(id));
+        } catch (XMLStreamException | IOException e) {
+            throw new XMLRepositoryStoreException("XMLRepositoryStoreException: " + e.getMessage());
+        }
+    }
+
+    private Path getPath() {
+        return Path.of("data/xml/" + fileName + ".xml");
+    }
+
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save a list of purchases to the repository. All the purchase elements are written before the closing root tag
+     * with a single append.
      *
      * @param entities : List<Purchase> to be saved to the repository
      * @throws XMLRepositoryStoreException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveEntitiesToXML(List<Purchase> entities) throws XMLRepositoryStoreException {
-        entities.forEach(this::saveToXML);
+        try {
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">", entities.stream()
+                    .map(purchase -> XMLElementSink.toElement(SCHEMA, purchase))
+                    .collect(Collectors.joining()));
+        } catch (IOException e) {
+            throw new XMLRepositoryStoreException(e.getMessage());
+        }
     }
 
     /**
-     * Save a map of purchases to the repository
+     * Save a map of purchases to the repository with a single append
      *
      * @param entities : Map<ID, Purchase> to be saved to the repository
      * @throws XMLRepositoryStoreException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveMapToXML(Map<ID, Purchase> entities) throws XMLRepositoryStoreException {
-        entities.forEach((key, value) -> saveToXML(value));
+        saveEntitiesToXML(new ArrayList<>(entities.values()));
     }
 
     /**
@@ -200,14 +216,17 @@ public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposit
     }
 
     /**
-     * Deletes all entries in the repository
+     * Deletes all entries in the repository, with one parse and one write of the document
      *
      * @throws XMLRepositoryStoreException
-     *         if some error from saveToXML method arises
+     *         if the file can not be parsed or written
      */
     public void deleteAll() throws XMLRepositoryStoreException{
-        List<Purchase> purchases = this.loadFromXML();
-        purchases.forEach(purchase -> this.deletePurchase((ID) purchase.getId()));
+        try {
+            XMLDocumentBatch.clear(getPath(), SCHEMA);
+        } catch (IOException e) {
+            throw new XMLRepositoryStoreException(e.getMessage());
+        }
     }
 
     /**
@@ -246,9 +265,7 @@ public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposit
     @Override
     public Optional<T> findOne(ID id) {
 
-        List<Purchase> entities = this.loadFromXML();
-        Map<ID, Purchase> map = this.convertListToMap(entities);
-        return (Optional<T>) Optional.ofNullable(map.get(id));
+        return (Optional<T>) this.findInXML(id);
     }
 
     @Override
@@ -270,10 +287,9 @@ public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposit
         validator.validate(entity); // throws directly
 
         // check id taken
-        List<Purchase> entities = this.loadFromXML();
-        result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        result = (Optional<T>) this.findInXML(entity.getId());
 
-        result.orElse(saveToXML((Purchase)entity));
+        result.orElseGet(() -> saveToXML((Purchase) entity));
 
         return result; // saved correctly
     }
@@ -285,10 +301,7 @@ public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposit
                 new IllegalArgumentException("id must not be null")
         );
 
-        List<Purchase> entities = this.loadFromXML();
-        Map<ID, Purchase> map = this.convertListToMap(entities);
-
-        Purchase result = map.remove(id);
+        Purchase result = this.findInXML(id).orElse(null);
 
         try {
             this.deletePurchase(id);
@@ -306,20 +319,64 @@ public class XMLRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposit
 
         validator.validate(entity);
 
-        List<Purchase> entities = this.loadFromXML();
-        Map<ID, Purchase> map = this.convertListToMap(entities);
-
-
-        Optional<T> result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        // fail to update? return entity
+        return this.findInXML(entity.getId())
+                .map(existing -> {
+                    this.deletePurchase(entity.getId());
+                    this.saveToXML((Purchase) entity);
+                    return Optional.<T>empty();
+                })
+                .orElse(Optional.of(entity));
+    }
 
-        result.orElseGet(() -> {
-            this.deletePurchase(entity.getId());
-            this.saveToXML((Purchase) entity);
-            return null;
-        });
+    /**
+     * Save many purchases with a single append. Every purchase is validated before anything is written.
+     *
+     * @param entities : Iterable<T> purchases to be saved
+     * @return the saved purchases and the ones whose id was taken
+     * @throws XMLRepositoryStoreException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.saveAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryStoreException(e.getMessage());
+        }
+    }
 
+    /**
+     * Update many purchases with one parse and one write of the document. The purchase elements are replaced in place.
+     *
+     * @param entities : Iterable<T> purchases to be updated
+     * @return the updated purchases and the ones whose id does not exist
+     * @throws XMLRepositoryStoreException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.updateAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryStoreException(e.getMessage());
+        }
+    }
 
-        // fail to update? return entity
-        return result;
+    /**
+     * Delete many purchases with one parse and one write of the document
+     *
+     * @param ids : Iterable<ID> ids of the purchases to be deleted
+     * @return the deleted purchases
+     * @throws XMLRepositoryStoreException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws IllegalArgumentException {
+        try {
+            return XMLDocumentBatch.deleteAll(getPath(), schema(), ids);
+        } catch (IOException e) {
+            throw new XMLRepositoryStoreException(e.getMessage());
+        }
     }
 }
@@ -11,14 +11,18 @@ import org.w3c.dom.Node;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
 import repository.XML.exceptions.XMLRepositoryToyException;
 import repository.XML.exceptions.XMLRepositoryToyException;
 import repository.XML.exceptions.XMLRepositoryToyException;
+import repository.schema.EntitySchema;
+import repository.schema.ToySchema;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -27,10 +31,13 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final ToySchema SCHEMA = new ToySchema();
 
     private Validator<T> validator;
     private String fileName; // ex: text.xml
@@ -49,31 +56,19 @@ public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repositor
     }
 
     /**
-     * Save a toy to the repository
+     * Save a toy to the repository. The toy element is written right before the closing root tag,
+     * the rest of the document is neither parsed nor rewritten.
      *
      * @param toy : Toy to be saved to the repository
      * @throws XMLRepositoryToyException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be written
      */
     public T saveToXML(Toy toy) throws XMLRepositoryToyException {
         try {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document document = documentBuilder.parse("data/xml/" + fileName + ".xml");
-
-            addToyToDom(toy, document);
-
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-
-            transformer.transform(
-                    new DOMSource(document),
-                    new StreamResult(new File("data/xml/" + fileName + ".xml"))
-            );
-
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">",
+                    XMLElementSink.toElement(SCHEMA, toy));
             return (T) toy;
-
-        } catch(ParserConfigurationException | SAXException | IOException | TransformerException e){
+        } catch (IOException e) {
             throw new XMLRepositoryToyException(e.getMessage());
         }
     }
@@ -148,50 +143,71 @@ public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repositor
     }
 
     /**
-     * Load toys from the xml file
+     * Load toys from the xml file. The file is streamed with {@link XMLStreamEntityReader},
+     * no document object model is built.
      *
      * @throws XMLRepositoryToyException
-     *          if some error regarding the document builder occurs
+     *          if the file can not be read or parsed
      */
     public List<Toy> loadFromXML() throws XMLRepositoryToyException{
         try {
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document root = db.parse("data/xml/" + fileName + ".xml");
-            Element toysRoot = root.getDocumentElement();
-            NodeList toyList = toysRoot.getChildNodes();
-            List<Toy> toys = new ArrayList<>();
-            for (int i = 0; i < toyList.getLength(); ++i) {
-                if (!(toyList.item(i) instanceof Element))
-                    continue;
-                Toy toy = createToyFromNode((Element) toyList.item(i));
-                toys.add(toy);
-            }
-            return toys;
-        } catch (ParserConfigurationException | SAXException | IOException e) {
+            return XMLStreamEntityReader.read(getPath(), SCHEMA);
+        } catch (XMLStreamException | IOException e) {
             throw new XMLRepositoryToyException("XMLRepositoryToyException: " + e.getMessage());
         }
     }
 
     /**
-     * Save a list of toys to the repository
+     * Find a toy in the xml file. The file is streamed and the reading stops at the first toy with the given id.
+     *
+     * @param id : ID of the toy
+     * @return an Optional with the toy, empty if there is none
+     * @throws XMLRepositoryToyException
+     *          if the file can not be read or parsed
+     */
+    public Optional<Toy> findInXML(ID id) throws XMLRepositoryToyException {
+        try {
+            return XMLStreamEntityReader.find(getPath(), SCHEMA, toy -> toy.getId().equals(id));
+        } catch (XMLStreamException | IOException e) {
+            throw new XMLRepositoryToyException("XMLRepositoryToyException: " + e.getMessage());
+        }
+    }
+
+    private Path getPath() {
+        return Path.of("data/xml/" + fileName + ".xml");
+    }
+
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save a list of toys to the repository. All the toy elements are written before the closing root tag
+     * with a single append.
      *
      * @param entities : List<Toy> to be saved to the repository
      * @throws XMLRepositoryToyException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveEntitiesToXML(List<Toy> entities) throws XMLRepositoryToyException {
-        entities.forEach(this::saveToXML);
+        try {
+            XMLDocumentAppender.append(getPath(), "</" + SCHEMA.getCollectionName() + ">", entities.stream()
+                    .map(toy -> XMLElementSink.toElement(SCHEMA, toy))
+                    .collect(Collectors.joining()));
+        } catch (IOException e) {
+            throw new XMLRepositoryToyException(e.getMessage());
+        }
     }
 
     /**
-     * Save a map of toys to the repository
+     * Save a map of toys to the repository with a single append
      *
      * @param entities : Map<ID, Toy> to be saved to the repository
      * @throws XMLRepositoryToyException
-     *          if some error from saveToXML method arises
+     *          if the file can not be written
      */
     public void saveMapToXML(Map<ID, Toy> entities) throws XMLRepositoryToyException {
-        entities.forEach((key, value) -> saveToXML(value));
+        saveEntitiesToXML(new ArrayList<>(entities.values()));
     }
 
     /**
@@ -206,14 +222,17 @@ public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repositor
     }
 
     /**
-     * Deletes all entries in the repository
+     * Deletes all entries in the repository, with one parse and one write of the document
      *
      * @throws XMLRepositoryToyException
-     *         if some error from saveToXML method arises
+     *         if the file can not be parsed or written
      */
     public void deleteAll() throws XMLRepositoryToyException{
-        List<Toy> toys = this.loadFromXML();
-        toys.forEach(toy -> this.deleteToy((ID) toy.getId()));
+        try {
+            XMLDocumentBatch.clear(getPath(), SCHEMA);
+        } catch (IOException e) {
+            throw new XMLRepositoryToyException(e.getMessage());
+        }
     }
 
     /**
@@ -252,9 +271,7 @@ public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repositor
     @Override
     public Optional<T> findOne(ID id) {
 
-        List<Toy> entities = this.loadFromXML();
-        Map<ID, Toy> map = this.convertListToMap(entities);
-        return (Optional<T>) Optional.ofNullable(map.get(id));
+        return (Optional<T>) this.findInXML(id);
     }
 
     @Override
@@ -276,10 +293,9 @@ public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repositor
         validator.validate(entity); // throws directly
 
         // check id taken
-        List<Toy> entities = this.loadFromXML();
-        result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        result = (Optional<T>) this.findInXML(entity.getId());
 
-        result.orElse(saveToXML((Toy)entity));
+        result.orElseGet(() -> saveToXML((Toy) entity));
 
         return result; // saved correctly
     }
@@ -291,10 +307,7 @@ public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repositor
                 new IllegalArgumentException("id must not be null")
         );
 
-        List<Toy> entities = this.loadFromXML();
-        Map<ID, Toy> map = this.convertListToMap(entities);
-
-        Toy result = map.remove(id);
+        Toy result = this.findInXML(id).orElse(null);
 
         try {
             this.deleteToy(id);
@@ -312,20 +325,64 @@ public class XMLRepositoryToy<ID, T extends BaseEntity<ID>> implements Repositor
 
         validator.validate(entity);
 
-        List<Toy> entities = this.loadFromXML();
-        Map<ID, Toy> map = this.convertListToMap(entities);
-
-
-        Optional<T> result = (Optional<T>) entities.stream().filter(v -> v.getId() == entity.getId()).findAny();
+        // fail to update? return entity
+        return this.findInXML(entity.getId())
+                .map(existing -> {
+                    this.deleteToy(entity.getId());
+                    this.saveToXML((Toy) entity);
+                    return Optional.<T>empty();
+                })
+                .orElse(Optional.of(entity));
+    }
 
-        result.orElseGet(() -> {
-            this.deleteToy(entity.getId());
-            this.saveToXML((Toy) entity);
-            return null;
-        });
+    /**
+     * Save many toys with a single append. Every toy is validated before anything is written.
+     *
+     * @param entities : Iterable<T> toys to be saved
+     * @return the saved toys and the ones whose id was taken
+     * @throws XMLRepositoryToyException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.saveAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryToyException(e.getMessage());
+        }
+    }
 
+    /**
+     * Update many toys with one parse and one write of the document. The toy elements are replaced in place.
+     *
+     * @param entities : Iterable<T> toys to be updated
+     * @return the updated toys and the ones whose id does not exist
+     * @throws XMLRepositoryToyException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws IllegalArgumentException, ValidatorException {
+        try {
+            return XMLDocumentBatch.updateAll(getPath(), schema(), validator, entities);
+        } catch (IOException e) {
+            throw new XMLRepositoryToyException(e.getMessage());
+        }
+    }
 
-        // fail to update? return entity
-        return result;
+    /**
+     * Delete many toys with one parse and one write of the document
+     *
+     * @param ids : Iterable<ID> ids of the toys to be deleted
+     * @return the deleted toys
+     * @throws XMLRepositoryToyException
+     *          if the file can not be parsed or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws IllegalArgumentException {
+        try {
+            return XMLDocumentBatch.deleteAll(getPath(), schema(), ids);
+        } catch (IOException e) {
+            throw new XMLRepositoryToyException(e.getMessage());
+        }
     }
 }
@@ -0,0 +1,288 @@
+package repository.XML;
+
+import domain.BaseEntity;
+import repository.schema.EntitySchema;
+import repository.schema.FieldSource;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Streaming (StAX) reader for the xml files of the XMLRepository* classes.
+ *
+ * The file is read event by event with an {@link XMLStreamReader}: only the fields of the current
+ * entity element are kept, the entity is built from them with its {@link EntitySchema} and handed over
+ * before the next element is read. Nothing else is retained, so memory does not grow with the size of
+ * the file, and a search can stop at the first matching entity instead of reading the whole document.
+ *
+ * Expected layout: a root element, one child element per entity (named {@link EntitySchema#getEntityName()})
+ * and one child element per field, in any order. Other elements at the entity level are skipped, except
+ * the tombstones ({@code <deleted><id>..</id></deleted>}) of {@link AppendOnlyXMLRepository} when they are asked for.
+ */
+public class XMLStreamEntityReader {
+
+    /**
+     * One configured factory per thread: creating a factory is expensive (service lookup),
+     * while the JDK does not document its factory as safe for concurrent use
+     */
+    private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    /**
+     * Name of the element recording the deletion of an entity
+     */
+    public static final String TOMBSTONE = "deleted";
+
+    private XMLStreamEntityReader() {
+    }
+
+    /**
+     * Read every entity of an xml file
+     *
+     * @param file : Path of the xml file
+     *        schema : EntitySchema<T> describing the fields
+     * @return a list with the entities, in document order
+     * @throws IOException
+     *          if the file can not be read
+     * @throws XMLStreamException
+     *          if the document is malformed or a field is missing/invalid
+     */
+    public static <T extends BaseEntity<?>> List<T> read(Path file, EntitySchema<T> schema)
+            throws IOException, XMLStreamException {
+        List<T> entities = new ArrayList<>();
+        forEach(file, schema, entities::add);
+        return entities;
+    }
+
+    /**
+     * Stream every entity of an xml file to the given consumer, without keeping them
+     *
+     * @param file : Path of the xml file
+     *        schema : EntitySchema<T> describing the fields
+     *        consumer : Consumer<T> receiving the entities, in document order
+     * @throws IOException
+     *          if the file can not be read
+     * @throws XMLStreamException
+     *          if the document is malformed or a field is missing/invalid
+     */
+    public static <T extends BaseEntity<?>> void forEach(Path file, EntitySchema<T> schema, Consumer<T> consumer)
+            throws IOException, XMLStreamException {
+        forEach(file, schema, consumer, null);
+    }
+
+    /**
+     * Stream every entity and every tombstone of an xml file, in document order
+     *
+     * @param file : Path of the xml file
+     *        schema : EntitySchema<T> describing the fields
+     *        consumer : Consumer<T> receiving the entities
+     *        tombstones : Consumer<String> receiving the text of the id of every tombstone, null to skip them
+     * @throws IOException
+     *          if the file can not be read
+     * @throws XMLStreamException
+     *          if the document is malformed or a field is missing/invalid
+     */
+    public static <T extends BaseEntity<?>> void forEach(Path file, EntitySchema<T> schema, Consumer<T> consumer,
+                                                         Consumer<String> tombstones)
+            throws IOException, XMLStreamException {
+        scan(file, schema, entity -> {
+            consumer.accept(entity);
+            return false;
+        }, tombstones);
+    }
+
+    /**
+     * Find the first entity of an xml file that matches a predicate; the rest of the file is not read
+     *
+     * @param file : Path of the xml file
+     *        schema : EntitySchema<T> describing the fields
+     *        predicate : Predicate<T> tested on every entity, in document order
+     * @return an Optional with the first matching entity, empty if there is none
+     * @throws IOException
+     *          if the file can not be read
+     * @throws XMLStreamException
+     *          if the document is malformed or a field is missing/invalid
+     */
+    public static <T extends BaseEntity<?>> Optional<T> find(Path file, EntitySchema<T> schema, Predicate<T> predicate)
+            throws IOException, XMLStreamException {
+        return Optional.ofNullable(scan(file, schema, predicate, null));
+    }
+
+    /**
+     * Find the entity with the given id
+     *
+     * @see #find(Path, EntitySchema, Predicate)
+     */
+    public static <ID, T extends BaseEntity<ID>> Optional<T> findById(Path file, EntitySchema<T> schema, ID id)
+            throws IOException, XMLStreamException {
+        return find(file, schema, entity -> id.equals(entity.getId()));
+    }
+
+    /**
+     * Build the entities one by one and pass them to the visitor until it returns true
+     * (and the tombstones to the tombstone visitor, when there is one)
+     *
+     * @return the entity for which the visitor returned true, null if it never did
+     */
+    private static <T extends BaseEntity<?>> T scan(Path file, EntitySchema<T> schema, Predicate<T> visitor,
+                                                    Consumer<String> tombstones)
+            throws IOException, XMLStreamException {
+        List<String> names = schema.getFieldNames();
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < names.size(); i++)
+            positions.put(names.get(i), i);
+        String entityName = schema.getEntityName();
+
+        String[] values = new String[names.size()];
+        StringBuilder text = new StringBuilder();
+        ValuesFieldSource source = new ValuesFieldSource(values, names, entityName);
+
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            XMLStreamReader reader = FACTORY.get().createXMLStreamReader(input);
+            try {
+                int depth = 0;
+                boolean inEntity = false;
+                boolean inTombstone = false;
+                int field = -1;
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            depth++;
+                            if (depth == 2 && reader.getLocalName().equals(entityName)) {
+                                inEntity = true;
+                                Arrays.fill(values, null);
+                            } else if (depth == 2 && tombstones != null && reader.getLocalName().equals(TOMBSTONE)) {
+                                inTombstone = true;
+                                Arrays.fill(values, null);
+                            } else if (depth == 3 && (inEntity || inTombstone)) {
+                                field = positions.getOrDefault(reader.getLocalName(), -1);
+                                text.setLength(0);
+                            }
+                            break;
+                        case XMLStreamConstants.CHARACTERS:
+                        case XMLStreamConstants.CDATA:
+                            if (field >= 0)
+                                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            if (depth == 3 && field >= 0) {
+                                values[field] = text.toString();
+                                field = -1;
+                            } else if (depth == 2 && inEntity) {
+                                inEntity = false;
+                                T entity;
+                                try {
+                                    entity = schema.read(source.reset());
+                                } catch (IllegalArgumentException error) {
+                                    throw new XMLStreamException(error.getMessage(), reader.getLocation(), error);
+                                }
+                                if (visitor.test(entity))
+                                    return entity;
+                            } else if (depth == 2 && inTombstone) {
+                                inTombstone = false;
+                                if (values[0] == null)
+                                    throw new XMLStreamException("missing <" + names.get(0) + "> in <" + TOMBSTONE + ">",
+                                            reader.getLocation());
+                                tombstones.accept(values[0].trim());
+                            }
+                            depth--;
+                            break;
+                        default:
+                    }
+                }
+                return null;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * {@link FieldSource} over the texts collected for the fields of one entity element
+     */
+    private static final class ValuesFieldSource implements FieldSource {
+
+        private final String[] values;
+        private final List<String> names;
+        private final String entityName;
+        private int field;
+
+        private ValuesFieldSource(String[] values, List<String> names, String entityName) {
+            this.values = values;
+            this.names = names;
+            this.entityName = entityName;
+        }
+
+        private ValuesFieldSource reset() {
+            field = 0;
+            return this;
+        }
+
+        private String next() {
+            String value = values[field++];
+            if (value == null)
+                throw new IllegalArgumentException("missing <" + names.get(field - 1) + "> in <" + entityName + ">");
+            return value;
+        }
+
+        private IllegalArgumentException invalid(String value) {
+            return new IllegalArgumentException("invalid <" + names.get(field - 1) + "> \"" + value + "\" in <"
+                    + entityName + ">");
+        }
+
+        @Override
+        public long readLong() {
+            String value = next();
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException error) {
+                throw invalid(value);
+            }
+        }
+
+        @Override
+        public int readInt() {
+            String value = next();
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException error) {
+                throw invalid(value);
+            }
+        }
+
+        @Override
+        public double readDouble() {
+            String value = next();
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException error) {
+                throw invalid(value);
+            }
+        }
+
+        @Override
+        public String readString() {
+            return next();
+        }
+    }
+}
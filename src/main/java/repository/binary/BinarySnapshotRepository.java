@@ -0,0 +1,166 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.Repository;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.EntitySchema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Repository backed by a {@link ColumnarSnapshot} file.
+ *
+ * The snapshot is loaded into an in-memory id index that answers every read; every change writes
+ * a new snapshot from the index. Like {@link repository.file.IndexedFileRepository}, the snapshot is
+ * loaded again if its modification time or size changed since the repository last read or wrote it
+ * (ex: after running {@link SnapshotConverter}). A missing file is an empty repository.
+ */
+public class BinarySnapshotRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+
+    private final Validator<T> validator;
+    private final EntitySchema<T> schema;
+    private final Path file;
+
+    private final Map<ID, T> index = new LinkedHashMap<>();
+
+    private FileTime lastModified;
+    private long size = -1;
+
+    /**
+     * Constructor of the class. The snapshot is loaded lazily, on the first operation.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        schema : EntitySchema<T> describing the columns
+     *        fileName : String path of the snapshot (ex: data/binary/toys.snapshot)
+     */
+    public BinarySnapshotRepository(Validator<T> validator, EntitySchema<T> schema, String fileName) {
+        this.validator = validator;
+        this.schema = schema;
+        this.file = Path.of(fileName);
+    }
+
+    public String getFileName() {
+        return this.file.toString();
+    }
+
+    /**
+     * Reload the index if the snapshot was modified since it was last read or written by this repository
+     *
+     * @throws BinaryRepositoryException
+     *          if the snapshot can not be read
+     */
+    private void refresh() throws BinaryRepositoryException {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            long currentSize = Files.size(file);
+            if (currentSize != size || !modified.equals(lastModified))
+                load();
+        } catch (NoSuchFileException error) {
+            if (size != -1)
+                index.clear();
+            lastModified = null;
+            size = -1;
+        } catch (IOException error) {
+            throw new BinaryRepositoryException("BinarySnapshotRepository->refresh: " + error.getMessage(), error);
+        }
+    }
+
+    private void load() throws IOException {
+        index.clear();
+        for (T entity : ColumnarSnapshot.read(file, schema))
+            if (index.putIfAbsent(entity.getId(), entity) != null)
+                throw new BinaryRepositoryException("BinarySnapshotRepository: duplicate id " + entity.getId()
+                        + " in " + file);
+        stamp();
+    }
+
+    private void stamp() throws IOException {
+        lastModified = Files.getLastModifiedTime(file);
+        size = Files.size(file);
+    }
+
+    /**
+     * Write the whole index as a new snapshot. If the write fails, the index no longer matches the file,
+     * so it is discarded and the next operation loads the snapshot again.
+     */
+    private void persist() throws BinaryRepositoryException {
+        try {
+            ColumnarSnapshot.write(file, schema, index.values());
+            stamp();
+        } catch (IOException error) {
+            index.clear();
+            lastModified = null;
+            size = -2;
+            throw new BinaryRepositoryException("BinarySnapshotRepository->persist: " + error.getMessage(), error);
+        }
+    }
+
+    @Override
+    public synchronized Optional<T> findOne(ID id) throws BinaryRepositoryException {
+        if (id == null)
+            throw new BinaryRepositoryException("BinarySnapshotRepository->findOne: id cannot be null");
+
+        refresh();
+        return Optional.ofNullable(index.get(id));
+    }
+
+    @Override
+    public synchronized Iterable<T> findAll() throws BinaryRepositoryException {
+        refresh();
+        return List.copyOf(index.values());
+    }
+
+    @Override
+    public synchronized Optional<T> save(T entity) throws ValidatorException, BinaryRepositoryException {
+        if (entity == null)
+            throw new BinaryRepositoryException("BinarySnapshotRepository->save: entity must not be null");
+
+        validator.validate(entity);
+        refresh();
+
+        T existing = index.get(entity.getId());
+        if (existing != null)
+            return Optional.of(existing);
+
+        index.put(entity.getId(), entity);
+        persist();
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<T> delete(ID id) throws BinaryRepositoryException {
+        if (id == null)
+            throw new BinaryRepositoryException("BinarySnapshotRepository->delete: id must not be null");
+
+        refresh();
+        T removed = index.remove(id);
+        if (removed != null)
+            persist();
+        return Optional.ofNullable(removed);
+    }
+
+    @Override
+    public synchronized Optional<T> update(T entity) throws ValidatorException, BinaryRepositoryException {
+        if (entity == null)
+            throw new BinaryRepositoryException("BinarySnapshotRepository->update: entity must not be null");
+
+        validator.validate(entity);
+        refresh();
+        if (!index.containsKey(entity.getId()))
+            return Optional.of(entity);
+
+        index.put(entity.getId(), entity);
+        persist();
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,135 @@
+package repository.binary;
+
+import java.util.Arrays;
+
+/**
+ * Scan and aggregate primitives over the primitive columns of a {@link ColumnTable} or a {@link ColumnarRepository}.
+ *
+ * Every primitive is a counted loop over the first {@code size} entries of one array, with no object and no call
+ * per row, so the values are read sequentially from the cache lines and the JIT unrolls the loops (and vectorises
+ * the sums and counts). The variants taking {@code rows} read the values of a joined column at the rows found by
+ * {@link ColumnarRepository#rowsOf}, skipping the rows that were not found (-1).
+ *
+ * Like the comparators of the domain, the arg-min/arg-max primitives keep the first of equal values.
+ */
+public final class ColumnScan {
+
+    private ColumnScan() {
+    }
+
+    /**
+     * @return the number of values equal to the given one
+     */
+    public static int count(int[] values, int size, int value) {
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (values[i] == value)
+                count++;
+        return count;
+    }
+
+    /**
+     * @return the sum of the values
+     */
+    public static long sum(int[] values, int size) {
+        long sum = 0;
+        for (int i = 0; i < size; i++)
+            sum += values[i];
+        return sum;
+    }
+
+    /**
+     * @return the index of the first largest value, -1 if size is 0
+     */
+    public static int argMax(int[] values, int size) {
+        int best = -1;
+        for (int i = 0; i < size; i++)
+            if (best < 0 || values[i] > values[best])
+                best = i;
+        return best;
+    }
+
+    /**
+     * @return the indexes of the values between from and to (both included), in increasing order
+     */
+    public static int[] rowsBetween(long[] values, int size, long from, long to) {
+        int[] rows = new int[16];
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (values[i] >= from && values[i] <= to) {
+                if (count == rows.length)
+                    rows = Arrays.copyOf(rows, count * 2);
+                rows[count++] = i;
+            }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * @return the indexes of the values between from and to (both included), in increasing order
+     */
+    public static int[] rowsBetween(int[] values, int size, long from, long to) {
+        int[] rows = new int[16];
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (values[i] >= from && values[i] <= to) {
+                if (count == rows.length)
+                    rows = Arrays.copyOf(rows, count * 2);
+                rows[count++] = i;
+            }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * @return the number of rows found, the number of rows that are not -1
+     */
+    public static int countFound(int[] rows, int size) {
+        int count = 0;
+        for (int i = 0; i < size; i++)
+            if (rows[i] >= 0)
+                count++;
+        return count;
+    }
+
+    /**
+     * @return the sum of the values at the rows found
+     */
+    public static long sumAt(int[] values, int[] rows, int size) {
+        long sum = 0;
+        for (int i = 0; i < size; i++)
+            if (rows[i] >= 0)
+                sum += values[rows[i]];
+        return sum;
+    }
+
+    /**
+     * @return the index i (in rows) of the first largest values[rows[i]], -1 if no row was found
+     */
+    public static int argMaxAt(int[] values, int[] rows, int size) {
+        int best = -1;
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            int row = rows[i];
+            if (row >= 0 && (best < 0 || values[row] > max)) {
+                best = i;
+                max = values[row];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the index i (in rows) of the first largest values[rows[i]], -1 if no row was found
+     */
+    public static int argMaxAt(double[] values, int[] rows, int size) {
+        int best = -1;
+        double max = 0;
+        for (int i = 0; i < size; i++) {
+            int row = rows[i];
+            if (row >= 0 && (best < 0 || values[row] > max)) {
+                best = i;
+                max = values[row];
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,335 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.EntitySchema;
+import repository.schema.FieldSink;
+import repository.schema.FieldSource;
+import repository.schema.FieldType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column-oriented copy of a list of entities: one array per field of the {@link EntitySchema}.
+ *
+ * LONG, INT and DOUBLE fields are kept in long[], int[] and double[] arrays, STRING fields in a
+ * dictionary-encoded {@link StringColumn}. Row r of the table is made of the r-th value of every column.
+ *
+ * @param <T> the entity type described by the schema
+ */
+public class ColumnTable<T extends BaseEntity<?>> {
+
+    private final EntitySchema<T> schema;
+    private final FieldType[] types;
+    private final Object[] columns;
+    private int rowCount;
+
+    private final ColumnSink sink = new ColumnSink();
+
+    /**
+     * Create an empty table
+     *
+     * @param schema : EntitySchema<T> describing the columns
+     *        capacity : int expected number of rows
+     */
+    public ColumnTable(EntitySchema<T> schema, int capacity) {
+        this.schema = schema;
+        this.types = schema.getFieldTypes().toArray(new FieldType[0]);
+        this.columns = new Object[types.length];
+        int initial = Math.max(capacity, 16);
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case LONG:
+                    columns[c] = new long[initial];
+                    break;
+                case INT:
+                    columns[c] = new int[initial];
+                    break;
+                case DOUBLE:
+                    columns[c] = new double[initial];
+                    break;
+                case STRING:
+                    columns[c] = new StringColumn(initial);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Wrap columns that were already decoded (ex: by {@link ColumnarSnapshot#read})
+     *
+     * @param schema : EntitySchema<T> describing the columns
+     *        columns : Object[] one long[], int[], double[] or StringColumn per field
+     *        rowCount : int number of rows stored in the columns
+     */
+    ColumnTable(EntitySchema<T> schema, Object[] columns, int rowCount) {
+        this.schema = schema;
+        this.types = schema.getFieldTypes().toArray(new FieldType[0]);
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Build a table holding the given entities, in iteration order
+     */
+    public static <T extends BaseEntity<?>> ColumnTable<T> of(EntitySchema<T> schema, Iterable<T> entities) {
+        ColumnTable<T> table = new ColumnTable<>(schema, entities instanceof List ? ((List<T>) entities).size() : 16);
+        entities.forEach(table::add);
+        return table;
+    }
+
+    public EntitySchema<T> getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the index of the column of the given field
+     * @throws BinaryRepositoryException
+     *          if the schema has no such field
+     */
+    public int columnOf(String field) {
+        int column = schema.getFieldNames().indexOf(field);
+        if (column < 0)
+            throw new BinaryRepositoryException("ColumnTable: " + schema.getEntityName() + " has no field " + field);
+        return column;
+    }
+
+    public FieldType getType(int column) {
+        return types[column];
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Append one entity as the last row of the table
+     */
+    public void add(T entity) {
+        if (rowCount == capacity())
+            grow();
+        write(rowCount, entity, "add");
+        rowCount++;
+    }
+
+    /**
+     * Replace the values of one row by the fields of an entity
+     *
+     * @param row : int index of the row, between 0 and getRowCount() - 1
+     *        entity : T the new values of the row
+     */
+    public void set(int row, T entity) {
+        if (row < 0 || row >= rowCount)
+            throw new BinaryRepositoryException("ColumnTable->set: row " + row + " out of bounds");
+        write(row, entity, "set");
+    }
+
+    private void write(int row, T entity, String operation) {
+        sink.row = row;
+        sink.column = 0;
+        schema.write(entity, sink);
+        if (sink.column != types.length)
+            throw new BinaryRepositoryException("ColumnTable->" + operation + ": schema " + schema.getEntityName()
+                    + " wrote " + sink.column + " fields instead of " + types.length);
+    }
+
+    /**
+     * Remove one row by moving the last row into it, so the columns stay dense (the order of the rows changes)
+     *
+     * @param row : int index of the row, between 0 and getRowCount() - 1
+     */
+    public void remove(int row) {
+        if (row < 0 || row >= rowCount)
+            throw new BinaryRepositoryException("ColumnTable->remove: row " + row + " out of bounds");
+        int last = rowCount - 1;
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case LONG:
+                    ((long[]) columns[c])[row] = ((long[]) columns[c])[last];
+                    break;
+                case INT:
+                    ((int[]) columns[c])[row] = ((int[]) columns[c])[last];
+                    break;
+                case DOUBLE:
+                    ((double[]) columns[c])[row] = ((double[]) columns[c])[last];
+                    break;
+                case STRING:
+                    ((StringColumn) columns[c]).remove(row);
+                    break;
+            }
+        }
+        rowCount--;
+    }
+
+    /**
+     * Decode one row back into an entity
+     *
+     * @param row : int index of the row, between 0 and getRowCount() - 1
+     * @return a new entity built from the values of the row
+     */
+    public T get(int row) {
+        if (row < 0 || row >= rowCount)
+            throw new BinaryRepositoryException("ColumnTable->get: row " + row + " out of bounds");
+        return schema.read(new RowSource(row));
+    }
+
+    /**
+     * Decode every row back into an entity
+     *
+     * @return a list with the entities, in row order
+     */
+    public List<T> toList() {
+        List<T> entities = new ArrayList<>(rowCount);
+        RowSource source = new RowSource(0);
+        for (int r = 0; r < rowCount; r++) {
+            source.row = r;
+            source.column = 0;
+            entities.add(schema.read(source));
+        }
+        return entities;
+    }
+
+    /**
+     * @return the raw values of a LONG column; only the first getRowCount() entries are meaningful
+     */
+    public long[] longColumn(int column) {
+        return (long[]) column(column, FieldType.LONG);
+    }
+
+    /**
+     * @return the raw values of an INT column; only the first getRowCount() entries are meaningful
+     */
+    public int[] intColumn(int column) {
+        return (int[]) column(column, FieldType.INT);
+    }
+
+    /**
+     * @return the raw values of a DOUBLE column; only the first getRowCount() entries are meaningful
+     */
+    public double[] doubleColumn(int column) {
+        return (double[]) column(column, FieldType.DOUBLE);
+    }
+
+    public StringColumn stringColumn(int column) {
+        return (StringColumn) column(column, FieldType.STRING);
+    }
+
+    private Object column(int column, FieldType expected) {
+        if (types[column] != expected)
+            throw new BinaryRepositoryException("ColumnTable: column " + schema.getFieldNames().get(column)
+                    + " is " + types[column] + ", not " + expected);
+        return columns[column];
+    }
+
+    private int capacity() {
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case LONG:
+                    return ((long[]) columns[c]).length;
+                case INT:
+                    return ((int[]) columns[c]).length;
+                case DOUBLE:
+                    return ((double[]) columns[c]).length;
+                default:
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, rowCount * 2);
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case LONG:
+                    columns[c] = Arrays.copyOf((long[]) columns[c], capacity);
+                    break;
+                case INT:
+                    columns[c] = Arrays.copyOf((int[]) columns[c], capacity);
+                    break;
+                case DOUBLE:
+                    columns[c] = Arrays.copyOf((double[]) columns[c], capacity);
+                    break;
+                default:
+            }
+        }
+    }
+
+    /**
+     * {@link FieldSink} writing the fields of an entity into one row of the columns, the row after the last one
+     * when the entity is added
+     */
+    private final class ColumnSink implements FieldSink {
+
+        private int row;
+        private int column;
+
+        private FieldType next(FieldType written) {
+            if (column >= types.length || types[column] != written)
+                throw new BinaryRepositoryException("ColumnTable: unexpected " + written + " field #" + column);
+            return written;
+        }
+
+        @Override
+        public void writeLong(long value) {
+            next(FieldType.LONG);
+            ((long[]) columns[column++])[row] = value;
+        }
+
+        @Override
+        public void writeInt(int value) {
+            next(FieldType.INT);
+            ((int[]) columns[column++])[row] = value;
+        }
+
+        @Override
+        public void writeDouble(double value) {
+            next(FieldType.DOUBLE);
+            ((double[]) columns[column++])[row] = value;
+        }
+
+        @Override
+        public void writeString(String value) {
+            next(FieldType.STRING);
+            StringColumn strings = (StringColumn) columns[column++];
+            if (row < strings.size())
+                strings.set(row, value);
+            else
+                strings.add(value);
+        }
+    }
+
+    /**
+     * {@link FieldSource} reading the values of one row, column by column
+     */
+    private final class RowSource implements FieldSource {
+
+        private int row;
+        private int column;
+
+        private RowSource(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public long readLong() {
+            return longColumn(column++)[row];
+        }
+
+        @Override
+        public int readInt() {
+            return intColumn(column++)[row];
+        }
+
+        @Override
+        public double readDouble() {
+            return doubleColumn(column++)[row];
+        }
+
+        @Override
+        public String readString() {
+            return stringColumn(column++).get(row);
+        }
+    }
+}
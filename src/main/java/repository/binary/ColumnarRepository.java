@@ -0,0 +1,279 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.IndexedRepository;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.EntitySchema;
+import repository.schema.FieldType;
+import repository.schema.SecondaryIndex;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * In memory repository for entities with {@code Long} ids, stored column by column (struct of arrays) in a
+ * {@link ColumnTable}: one long[], int[] or double[] per primitive field of the {@link EntitySchema}, one
+ * dictionary-encoded {@link StringColumn} per String field.
+ *
+ * The columns are kept dense: a delete moves the last row into the deleted one. So a report touching one or two
+ * fields of every entity reads one or two primitive arrays from start to end, with the primitives of
+ * {@link ColumnScan}, instead of following a reference to every entity. The ids are mapped to their rows by an
+ * {@link OffHeapLongIndex}, which also answers the joins ({@link #rowsOf}).
+ *
+ * Every LONG or INT field other than the id counts as a secondary index (see {@link IndexedRepository}), without
+ * any index structure: {@link #findBy} and {@link #findBetween} scan its column and build the matching entities
+ * only, which keeps a single copy of the table.
+ *
+ * No entity is kept: {@link #findOne} and the iterators of {@link #findAll} build a new one from its row on every
+ * access. Not thread safe, like {@link repository.LongKeyedRepository}.
+ */
+public class ColumnarRepository<T extends BaseEntity<Long>> implements IndexedRepository<Long, T> {
+
+    private final Validator<T> validator;
+    private final ColumnTable<T> table;
+    private final OffHeapLongIndex rows;
+    // number of entities added or removed, to detect them during an iteration of findAll
+    private int modCount;
+
+    public ColumnarRepository(Validator<T> validator, EntitySchema<T> schema) {
+        this(validator, schema, 16);
+    }
+
+    /**
+     * Constructor of the class.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        schema : EntitySchema<T> describing the columns, the first one being the LONG id
+     *        expectedSize : int number of entities held without growing the columns
+     * @throws IllegalArgumentException
+     *          if the id is not a LONG field
+     */
+    public ColumnarRepository(Validator<T> validator, EntitySchema<T> schema, int expectedSize) {
+        if (schema.getFieldTypes().isEmpty() || schema.getFieldTypes().get(0) != FieldType.LONG)
+            throw new IllegalArgumentException("ColumnarRepository: the id of " + schema.getEntityName()
+                    + " must be a LONG field");
+        this.validator = validator;
+        this.table = new ColumnTable<>(schema, expectedSize);
+        this.rows = new OffHeapLongIndex(expectedSize);
+    }
+
+    private static long idOf(Long id, String operation) throws BinaryRepositoryException {
+        if (id == null)
+            throw new BinaryRepositoryException("ColumnarRepository->" + operation + ": id must not be null");
+        return id;
+    }
+
+    private T check(T entity, String operation) throws BinaryRepositoryException, ValidatorException {
+        if (entity == null)
+            throw new BinaryRepositoryException("ColumnarRepository->" + operation + ": entity must not be null");
+        idOf(entity.getId(), operation);
+        validator.validate(entity);
+        return entity;
+    }
+
+    @Override
+    public Optional<T> findOne(Long id) throws BinaryRepositoryException {
+        return findOne(idOf(id, "findOne"));
+    }
+
+    /**
+     * Find the entity with the given primitive id, without boxing it
+     */
+    public Optional<T> findOne(long id) {
+        int row = rows.get(id);
+        return row < 0 ? Optional.empty() : Optional.of(table.get(row));
+    }
+
+    /**
+     * @return a read-only live view of the entities, in row order: every entity is built when the iterator
+     *         reaches it, nothing is copied. Its iterators fail with a ConcurrentModificationException if an entity
+     *         is saved or deleted while they are used.
+     */
+    @Override
+    public Iterable<T> findAll() {
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new RowIterator();
+            }
+
+            @Override
+            public int size() {
+                return table.getRowCount();
+            }
+        };
+    }
+
+    @Override
+    public Optional<T> save(T entity) throws ValidatorException, BinaryRepositoryException {
+        check(entity, "save");
+        int existing = rows.get(entity.getId());
+        if (existing >= 0)
+            return Optional.of(table.get(existing));
+
+        table.add(entity);
+        rows.putIfAbsent(entity.getId(), table.getRowCount() - 1);
+        modCount++;
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<T> delete(Long id) throws BinaryRepositoryException {
+        return delete(idOf(id, "delete"));
+    }
+
+    /**
+     * Remove the entity with the given primitive id, without boxing it
+     */
+    public Optional<T> delete(long id) {
+        int row = rows.remove(id);
+        if (row < 0)
+            return Optional.empty();
+        T removed = table.get(row);
+        int last = table.getRowCount() - 1;
+        if (row != last)
+            rows.replace(table.longColumn(0)[last], row);
+        table.remove(row);
+        modCount++;
+        return Optional.of(removed);
+    }
+
+    @Override
+    public Optional<T> update(T entity) throws ValidatorException, BinaryRepositoryException {
+        check(entity, "update");
+        int row = rows.get(entity.getId());
+        if (row < 0)
+            return Optional.of(entity);
+        table.set(row, entity);
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isIndexed(SecondaryIndex<T, ?> index) {
+        int column = table.getSchema().getFieldNames().indexOf(index.getName());
+        return column > 0 && (table.getType(column) == FieldType.LONG || table.getType(column) == FieldType.INT);
+    }
+
+    /**
+     * @return the matching entities, in row order
+     */
+    @Override
+    public <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key) {
+        if (!isIndexed(index))
+            throw new IllegalArgumentException("ColumnarRepository->findBy: not an index of the repository " + index);
+        if (key == null)
+            throw new IllegalArgumentException("ColumnarRepository->findBy: key must not be null");
+        long value = ((Number) key).longValue();
+        return IntStream.of(rowsBetween(table.columnOf(index.getName()), value, value))
+                .mapToObj(table::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to) {
+        if (!isIndexed(index) || !index.isOrdered())
+            throw new IllegalArgumentException("ColumnarRepository->findBetween: not an ordered index of the repository "
+                    + index);
+        if (from == null || to == null)
+            throw new IllegalArgumentException("ColumnarRepository->findBetween: bounds must not be null");
+
+        int column = table.columnOf(index.getName());
+        return IntStream.of(rowsBetween(column, ((Number) from).longValue(), ((Number) to).longValue()))
+                .boxed()
+                .sorted(Comparator.comparingLong(row -> valueAt(column, row)))
+                .map(table::get)
+                .collect(Collectors.toList());
+    }
+
+    private int[] rowsBetween(int column, long from, long to) {
+        return table.getType(column) == FieldType.LONG
+                ? ColumnScan.rowsBetween(table.longColumn(column), table.getRowCount(), from, to)
+                : ColumnScan.rowsBetween(table.intColumn(column), table.getRowCount(), from, to);
+    }
+
+    private long valueAt(int column, int row) {
+        return table.getType(column) == FieldType.LONG ? table.longColumn(column)[row] : table.intColumn(column)[row];
+    }
+
+    /**
+     * @return the number of entities, which is also the number of meaningful entries of every column
+     */
+    public int size() {
+        return table.getRowCount();
+    }
+
+    /**
+     * Build the entity of one row
+     *
+     * @param row : int index of the row, between 0 and size() - 1
+     */
+    public T get(int row) {
+        return table.get(row);
+    }
+
+    /**
+     * @return the values of a LONG field by row; a live array, only the first size() entries are meaningful and it
+     *         must not be kept across a save (the column may be reallocated) or modified
+     */
+    public long[] longColumn(String field) {
+        return table.longColumn(table.columnOf(field));
+    }
+
+    /**
+     * @return the values of an INT field by row, see {@link #longColumn}
+     */
+    public int[] intColumn(String field) {
+        return table.intColumn(table.columnOf(field));
+    }
+
+    /**
+     * @return the values of a DOUBLE field by row, see {@link #longColumn}
+     */
+    public double[] doubleColumn(String field) {
+        return table.doubleColumn(table.columnOf(field));
+    }
+
+    /**
+     * Find the rows of the given ids, to read the columns of the entities a foreign key column refers to
+     *
+     * @param ids : long[] ids to look for (ex: the toyId column of the purchases)
+     *        size : int number of ids to look for
+     * @return the row of every id, -1 for the ids that are not in the repository
+     */
+    public int[] rowsOf(long[] ids, int size) {
+        int[] found = new int[size];
+        for (int i = 0; i < size; i++)
+            found[i] = rows.get(ids[i]);
+        return found;
+    }
+
+    private final class RowIterator implements Iterator<T> {
+
+        private final int expectedModCount = modCount;
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+            return next < table.getRowCount();
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next >= table.getRowCount())
+                throw new NoSuchElementException();
+            return table.get(next++);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.EntitySchema;
+import repository.schema.FieldType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary, column-oriented snapshot of the entities of one type.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   int    magic ("COLS")
+ *   int    format version
+ *   int    length of the entity name, followed by its UTF-8 bytes (ex: "toy")
+ *   int    field count, followed by one byte per field (the FieldType ordinal)
+ *   int    row count
+ *   one block per field, in schema order:
+ *     LONG / INT / DOUBLE : row count values of 8 / 4 / 8 bytes
+ *     STRING              : int dictionary size, every distinct value as (int length, UTF-8 bytes),
+ *                           then byte code width (1, 2 or 4) and row count codes of that width
+ * </pre>
+ * The numeric blocks are copied into long[], int[] and double[] arrays with a single bulk get each,
+ * so loading a snapshot does not parse anything but the string dictionaries.
+ */
+public class ColumnarSnapshot {
+
+    static final int MAGIC = 0x534C4F43;
+    static final int VERSION = 1;
+
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private ColumnarSnapshot() {
+    }
+
+    /**
+     * Write the given entities to a snapshot file. The snapshot is written to a temporary file
+     * that atomically replaces the target, so a failed write never leaves a truncated snapshot behind.
+     *
+     * @param file : Path of the snapshot
+     *        schema : EntitySchema<T> describing the columns
+     *        entities : Iterable<T> the entities, in the order they will be read back
+     * @throws IOException
+     *          if the file can not be written
+     */
+    public static <T extends BaseEntity<?>> void write(Path file, EntitySchema<T> schema, Iterable<T> entities)
+            throws IOException {
+        write(file, ColumnTable.of(schema, entities));
+    }
+
+    /**
+     * Write the rows of a table to a snapshot file, see {@link #write(Path, EntitySchema, Iterable)}
+     */
+    public static <T extends BaseEntity<?>> void write(Path file, ColumnTable<T> table) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output output = new Output(channel);
+            EntitySchema<T> schema = table.getSchema();
+            List<FieldType> types = schema.getFieldTypes();
+            int rows = table.getRowCount();
+
+            output.putInt(MAGIC);
+            output.putInt(VERSION);
+            output.putString(schema.getEntityName());
+            output.putInt(types.size());
+            for (FieldType type : types)
+                output.putByte((byte) type.ordinal());
+            output.putInt(rows);
+
+            for (int c = 0; c < types.size(); c++) {
+                switch (types.get(c)) {
+                    case LONG:
+                        output.putLongs(table.longColumn(c), rows);
+                        break;
+                    case INT:
+                        output.putInts(table.intColumn(c), rows);
+                        break;
+                    case DOUBLE:
+                        output.putDoubles(table.doubleColumn(c), rows);
+                        break;
+                    case STRING:
+                        putStringColumn(output, table.stringColumn(c), rows);
+                        break;
+                }
+            }
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void putStringColumn(Output output, StringColumn column, int rows) throws IOException {
+        List<String> dictionary = column.getDictionary();
+        output.putInt(dictionary.size());
+        for (String value : dictionary)
+            output.putString(value);
+
+        int width = codeWidth(dictionary.size());
+        output.putByte((byte) width);
+        int[] codes = column.getCodes();
+        for (int r = 0; r < rows; r++) {
+            if (width == 1)
+                output.putByte((byte) codes[r]);
+            else if (width == 2)
+                output.putShort((short) codes[r]);
+            else
+                output.putInt(codes[r]);
+        }
+    }
+
+    /**
+     * @return the number of bytes needed to store the codes of a dictionary of the given size
+     */
+    static int codeWidth(int dictionarySize) {
+        if (dictionarySize <= 1 << 8)
+            return 1;
+        if (dictionarySize <= 1 << 16)
+            return 2;
+        return 4;
+    }
+
+    /**
+     * Read every entity of a snapshot file
+     *
+     * @param file : Path of the snapshot
+     *        schema : EntitySchema<T> describing the columns
+     * @return a list with the entities, in snapshot order
+     * @throws IOException
+     *          if the file can not be read
+     * @throws BinaryRepositoryException
+     *          if the file is not a snapshot of the given schema
+     */
+    public static <T extends BaseEntity<?>> List<T> read(Path file, EntitySchema<T> schema) throws IOException {
+        return readTable(file, schema).toList();
+    }
+
+    /**
+     * Read a snapshot file into columns, without building the entities
+     *
+     * @param file : Path of the snapshot
+     *        schema : EntitySchema<T> describing the columns
+     * @return the decoded columns
+     * @throws IOException
+     *          if the file can not be read
+     * @throws BinaryRepositoryException
+     *          if the file is not a snapshot of the given schema
+     */
+    public static <T extends BaseEntity<?>> ColumnTable<T> readTable(Path file, EntitySchema<T> schema)
+            throws IOException {
+        ByteBuffer buffer = readFully(file);
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new BinaryRepositoryException("ColumnarSnapshot: " + file + " is not a snapshot");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new BinaryRepositoryException("ColumnarSnapshot: unsupported version " + version + " in " + file);
+            String entityName = getString(buffer);
+            if (!entityName.equals(schema.getEntityName()))
+                throw new BinaryRepositoryException("ColumnarSnapshot: " + file + " holds " + entityName
+                        + " entities, not " + schema.getEntityName());
+
+            List<FieldType> types = schema.getFieldTypes();
+            int fieldCount = buffer.getInt();
+            if (fieldCount != types.size())
+                throw new BinaryRepositoryException("ColumnarSnapshot: " + file + " has " + fieldCount
+                        + " columns instead of " + types.size());
+            for (FieldType type : types)
+                if (buffer.get() != type.ordinal())
+                    throw new BinaryRepositoryException("ColumnarSnapshot: column types of " + file
+                            + " do not match the " + schema.getEntityName() + " schema");
+
+            int rows = buffer.getInt();
+            if (rows < 0 || rows > buffer.remaining())
+                throw new BinaryRepositoryException("ColumnarSnapshot: invalid row count " + rows + " in " + file);
+            Object[] columns = new Object[types.size()];
+            for (int c = 0; c < types.size(); c++) {
+                switch (types.get(c)) {
+                    case LONG:
+                        long[] longs = new long[rows];
+                        buffer.asLongBuffer().get(longs);
+                        buffer.position(buffer.position() + rows * Long.BYTES);
+                        columns[c] = longs;
+                        break;
+                    case INT:
+                        int[] ints = new int[rows];
+                        buffer.asIntBuffer().get(ints);
+                        buffer.position(buffer.position() + rows * Integer.BYTES);
+                        columns[c] = ints;
+                        break;
+                    case DOUBLE:
+                        double[] doubles = new double[rows];
+                        buffer.asDoubleBuffer().get(doubles);
+                        buffer.position(buffer.position() + rows * Double.BYTES);
+                        columns[c] = doubles;
+                        break;
+                    case STRING:
+                        columns[c] = getStringColumn(buffer, rows, file);
+                        break;
+                }
+            }
+            return new ColumnTable<>(schema, columns, rows);
+        } catch (BufferUnderflowException error) {
+            throw new BinaryRepositoryException("ColumnarSnapshot: " + file + " is truncated", error);
+        }
+    }
+
+    private static StringColumn getStringColumn(ByteBuffer buffer, int rows, Path file) {
+        int size = buffer.getInt();
+        if (size < 0)
+            throw new BinaryRepositoryException("ColumnarSnapshot: invalid dictionary size in " + file);
+        List<String> dictionary = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            dictionary.add(getString(buffer));
+
+        int width = buffer.get();
+        int[] codes = new int[rows];
+        if (width == 1) {
+            for (int r = 0; r < rows; r++)
+                codes[r] = buffer.get() & 0xFF;
+        } else if (width == 2) {
+            for (int r = 0; r < rows; r++)
+                codes[r] = buffer.getShort() & 0xFFFF;
+        } else if (width == 4) {
+            buffer.asIntBuffer().get(codes);
+            buffer.position(buffer.position() + rows * Integer.BYTES);
+        } else {
+            throw new BinaryRepositoryException("ColumnarSnapshot: invalid code width " + width + " in " + file);
+        }
+        for (int code : codes)
+            if (code < 0 || code >= size)
+                throw new BinaryRepositoryException("ColumnarSnapshot: invalid string code " + code + " in " + file);
+        return new StringColumn(dictionary, codes, rows);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining())
+            throw new BufferUnderflowException();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Read the whole file into a single heap buffer
+     */
+    private static ByteBuffer readFully(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8)
+                throw new BinaryRepositoryException("ColumnarSnapshot: " + file + " is larger than 2GB");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Buffered little-endian writer on top of a FileChannel
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        private void putByte(byte value) throws IOException {
+            ensure(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        private void putShort(short value) throws IOException {
+            ensure(Short.BYTES);
+            buffer.putShort(value);
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void putLongs(long[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensure(Long.BYTES);
+                int length = Math.min(buffer.remaining() / Long.BYTES, count - offset);
+                buffer.asLongBuffer().put(values, offset, length);
+                buffer.position(buffer.position() + length * Long.BYTES);
+                offset += length;
+            }
+        }
+
+        private void putInts(int[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensure(Integer.BYTES);
+                int length = Math.min(buffer.remaining() / Integer.BYTES, count - offset);
+                buffer.asIntBuffer().put(values, offset, length);
+                buffer.position(buffer.position() + length * Integer.BYTES);
+                offset += length;
+            }
+        }
+
+        private void putDoubles(double[] values, int count) throws IOException {
+            for (int offset = 0; offset < count; ) {
+                ensure(Double.BYTES);
+                int length = Math.min(buffer.remaining() / Double.BYTES, count - offset);
+                buffer.asDoubleBuffer().put(values, offset, length);
+                buffer.position(buffer.position() + length * Double.BYTES);
+                offset += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.Repository;
+import repository.binary.WriteAheadLog.Operation;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.EntitySchema;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In memory repository that survives a restart: the entities live in a {@link ConcurrentHashMap}, so reads and
+ * writes run at memory speed, and every change is also appended to a {@link WriteAheadLog} ({@code <name>.wal})
+ * before the write returns.
+ *
+ * A write applies the change to the map and appends its record under one lock, so the log holds the changes in the
+ * order they were applied; then, without the lock, it waits for the record to be forced to the disk. The writers
+ * waiting meanwhile share the next force (group commit): with many writers, the cost of a write tends to one
+ * sequential append instead of one fsync. The change is visible to the readers before it is durable, but a write
+ * only returns once it is.
+ *
+ * Every {@code snapshotEvery} changes, a background thread writes the entities to a {@link ColumnarSnapshot}
+ * ({@code <name>.snapshot}) and empties the log; the writers wait during the snapshot. On startup the snapshot is
+ * loaded and the log replayed on top of it (the records are idempotent: a crash between the snapshot and the reset
+ * of the log only replays changes the snapshot already holds). A record torn by a crash is dropped: the write it
+ * belonged to had not returned. A failed background snapshot loses nothing, the log still holds every change: it
+ * is kept until a snapshot succeeds, see {@link #getLastSnapshotFailure}.
+ *
+ * If the log can not be written, the write fails with a BinaryRepositoryException and so do the later writes, since
+ * the map may hold changes the disk does not; reopening the repository recovers the durable state.
+ */
+public class DurableInMemoryRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T>, Closeable {
+
+    private static final int DEFAULT_SNAPSHOT_EVERY = 10_000;
+
+    private final Validator<T> validator;
+    private final EntitySchema<T> schema;
+    private final Path snapshotFile;
+    private final int snapshotEvery;
+    private final WriteAheadLog<T> log;
+
+    private final Map<ID, T> entities = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final ExecutorService snapshotter;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean(false);
+
+    private long changesSinceSnapshot;
+    private long lastRecord;
+    private boolean closed = false;
+    // failure of the last snapshot, null once a snapshot succeeds
+    private volatile BinaryRepositoryException lastSnapshotFailure;
+
+    public DurableInMemoryRepository(Validator<T> validator, EntitySchema<T> schema, String fileName) {
+        this(validator, schema, fileName, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    /**
+     * Constructor of the class. Loads the snapshot and replays the log.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        schema : EntitySchema<T> describing the entities
+     *        fileName : String path of the files without their extension (ex: data/wal/toys for data/wal/toys.wal
+     *                   and data/wal/toys.snapshot)
+     *        snapshotEvery : int number of changes between two snapshots
+     * @throws BinaryRepositoryException
+     *          if the snapshot or the log can not be read
+     */
+    public DurableInMemoryRepository(Validator<T> validator, EntitySchema<T> schema, String fileName,
+                                     int snapshotEvery) throws BinaryRepositoryException {
+        if (snapshotEvery <= 0)
+            throw new IllegalArgumentException("DurableInMemoryRepository: snapshotEvery must be positive");
+        this.validator = validator;
+        this.schema = schema;
+        this.snapshotFile = Path.of(fileName + ".snapshot");
+        this.snapshotEvery = snapshotEvery;
+        this.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-" + snapshotFile.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            if (Files.exists(snapshotFile))
+                for (T entity : ColumnarSnapshot.read(snapshotFile, schema))
+                    entities.put(entity.getId(), entity);
+            log = new WriteAheadLog<>(Path.of(fileName + ".wal"), schema);
+            changesSinceSnapshot = log.replay((operation, entity) -> {
+                if (operation == Operation.DELETE)
+                    entities.remove(entity.getId());
+                else
+                    entities.put(entity.getId(), entity);
+            });
+        } catch (IOException error) {
+            throw new BinaryRepositoryException("DurableInMemoryRepository: could not open " + fileName + ": "
+                    + error.getMessage(), error);
+        }
+    }
+
+    private static <ID> ID checkId(ID id, String operation) throws BinaryRepositoryException {
+        if (id == null)
+            throw new BinaryRepositoryException("DurableInMemoryRepository->" + operation + ": id cannot be null");
+        return id;
+    }
+
+    private T check(T entity, String operation) throws BinaryRepositoryException, ValidatorException {
+        if (entity == null)
+            throw new BinaryRepositoryException("DurableInMemoryRepository->" + operation + ": entity cannot be null");
+        checkId(entity.getId(), operation);
+        validator.validate(entity);
+        return entity;
+    }
+
+    @Override
+    public Optional<T> findOne(ID id) throws BinaryRepositoryException {
+        return Optional.ofNullable(entities.get(checkId(id, "findOne")));
+    }
+
+    /**
+     * @return a read-only, weakly consistent live view of the entities, see {@link repository.ConcurrentInMemoryRepository}
+     */
+    @Override
+    public Iterable<T> findAll() {
+        return Collections.unmodifiableCollection(entities.values());
+    }
+
+    @Override
+    public Optional<T> save(T entity) throws ValidatorException, BinaryRepositoryException {
+        check(entity, "save");
+        long record;
+        synchronized (writeLock) {
+            checkOpen("save");
+            T existing = entities.get(entity.getId());
+            if (existing != null)
+                return Optional.of(existing);
+            record = log(Operation.SAVE, entity);
+            entities.put(entity.getId(), entity);
+        }
+        commit(record, "save");
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<T> delete(ID id) throws BinaryRepositoryException {
+        checkId(id, "delete");
+        long record;
+        T removed;
+        synchronized (writeLock) {
+            checkOpen("delete");
+            removed = entities.get(id);
+            if (removed == null)
+                return Optional.empty();
+            record = log(Operation.DELETE, removed);
+            entities.remove(id);
+        }
+        commit(record, "delete");
+        return Optional.of(removed);
+    }
+
+    @Override
+    public Optional<T> update(T entity) throws ValidatorException, BinaryRepositoryException {
+        check(entity, "update");
+        long record;
+        synchronized (writeLock) {
+            checkOpen("update");
+            if (!entities.containsKey(entity.getId()))
+                return Optional.of(entity);
+            record = log(Operation.UPDATE, entity);
+            entities.put(entity.getId(), entity);
+        }
+        commit(record, "update");
+        return Optional.empty();
+    }
+
+    private void checkOpen(String operation) throws BinaryRepositoryException {
+        if (closed)
+            throw new BinaryRepositoryException("DurableInMemoryRepository->" + operation + ": the repository is closed");
+    }
+
+    /**
+     * Append the record of a change; the write lock must be held
+     */
+    private long log(Operation operation, T entity) {
+        lastRecord = log.append(operation, entity);
+        if (++changesSinceSnapshot >= snapshotEvery)
+            scheduleSnapshot();
+        return lastRecord;
+    }
+
+    private void commit(long record, String operation) throws BinaryRepositoryException {
+        try {
+            log.commit(record);
+        } catch (IOException error) {
+            throw new BinaryRepositoryException("DurableInMemoryRepository->" + operation + ": the change is not durable: "
+                    + error.getMessage(), error);
+        }
+    }
+
+    private void scheduleSnapshot() {
+        if (snapshotScheduled.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (BinaryRepositoryException e) {
+                    // the log still holds every change, the next snapshot will try again
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Write every entity to the snapshot and empty the log, so the next startup replays fewer records.
+     * Writers wait for the snapshot to finish; if it fails, the log and the previous snapshot stay valid.
+     *
+     * @throws BinaryRepositoryException
+     *          if the snapshot can not be written or the log emptied
+     */
+    public void snapshot() throws BinaryRepositoryException {
+        synchronized (writeLock) {
+            if (closed)
+                return;
+            try {
+                // every change must be on disk before the log that holds it is emptied
+                log.commit(lastRecord);
+                ColumnarSnapshot.write(snapshotFile, schema, List.copyOf(entities.values()));
+                log.reset();
+                changesSinceSnapshot = 0;
+                lastSnapshotFailure = null;
+            } catch (IOException error) {
+                lastSnapshotFailure = new BinaryRepositoryException("DurableInMemoryRepository->snapshot: "
+                        + error.getMessage(), error);
+                throw lastSnapshotFailure;
+            }
+        }
+    }
+
+    /**
+     * @return the failure of the last snapshot (taken in the background or not), empty if it succeeded
+     */
+    public Optional<BinaryRepositoryException> getLastSnapshotFailure() {
+        return Optional.ofNullable(lastSnapshotFailure);
+    }
+
+    /**
+     * @return the number of entities
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * @return the number of changes in the log, replayed on the next startup unless a snapshot is taken first
+     */
+    public long getChangesSinceSnapshot() {
+        synchronized (writeLock) {
+            return changesSinceSnapshot;
+        }
+    }
+
+    /**
+     * @return the number of forces of the log to the disk so far; fewer than the writes when writers shared them
+     */
+    public long getLogForces() {
+        return log.getForces();
+    }
+
+    /**
+     * Take a last snapshot, stop the snapshots and close the log
+     *
+     * @throws IOException
+     *          if the snapshot can not be written or the log closed
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        snapshot();
+        synchronized (writeLock) {
+            closed = true;
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package repository.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Hash table from primitive {@code long} keys to {@code int} row numbers, kept outside of the Java heap.
+ *
+ * Same layout as {@link repository.LongObjectMap} (open addressing, linear probing, golden ratio hashing,
+ * removals shifting the following entries back), but every slot is 12 bytes of direct memory: the key and the
+ * row number plus one (0 marks a free slot, so a freshly allocated page is an empty table). The slots are split
+ * in pages of at most 2^20 slots, so the table is not limited by the 2GB of a single buffer, and the garbage
+ * collector only ever sees a few page objects whatever the number of keys.
+ *
+ * Not thread safe.
+ */
+final class OffHeapLongIndex {
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int PAGE_BITS = 20;
+    private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+    private static final long MIN_CAPACITY = 64;
+    private static final long MAX_CAPACITY = 1L << 32;
+
+    private ByteBuffer[] pages;
+    private long capacity;
+    private long mask;
+    private int shift;
+    private long size;
+    private long resizeAt;
+
+    OffHeapLongIndex(long expectedSize) {
+        long needed = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / 0.75));
+        if (needed > MAX_CAPACITY)
+            throw new IllegalArgumentException("OffHeapLongIndex: too many keys " + expectedSize);
+        allocate(Long.highestOneBit(needed - 1) << 1);
+    }
+
+    private void allocate(long capacity) {
+        int pageSlots = (int) Math.min(capacity, 1L << PAGE_BITS);
+        pages = new ByteBuffer[(int) (capacity / pageSlots)];
+        for (int page = 0; page < pages.length; page++)
+            pages[page] = ByteBuffer.allocateDirect(pageSlots * SLOT_BYTES).order(ByteOrder.nativeOrder());
+        this.capacity = capacity;
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(capacity - 1);
+        resizeAt = capacity - (capacity >>> 2);
+    }
+
+    private long home(long key) {
+        return (key * GOLDEN_RATIO) >>> shift;
+    }
+
+    private ByteBuffer page(long slot) {
+        return pages[(int) (slot >>> PAGE_BITS)];
+    }
+
+    private static int offset(long slot) {
+        return (int) (slot & PAGE_MASK) * SLOT_BYTES;
+    }
+
+    private long keyAt(long slot) {
+        return page(slot).getLong(offset(slot));
+    }
+
+    /**
+     * @return the row number stored in the slot plus one, 0 if the slot is free
+     */
+    private int entryAt(long slot) {
+        return page(slot).getInt(offset(slot) + Long.BYTES);
+    }
+
+    private void set(long slot, long key, int entry) {
+        ByteBuffer page = page(slot);
+        int offset = offset(slot);
+        page.putLong(offset, key);
+        page.putInt(offset + Long.BYTES, entry);
+    }
+
+    /**
+     * @return the slot holding the key, or the free slot where it would be inserted
+     */
+    private long slot(long key) {
+        long slot = home(key);
+        while (entryAt(slot) != 0 && keyAt(slot) != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * @return the row of the key, -1 if there is none
+     */
+    int get(long key) {
+        return entryAt(slot(key)) - 1;
+    }
+
+    /**
+     * Associate the row to the key, unless the key already has one
+     *
+     * @return the current row of the key, -1 if the row was added
+     * @throws IllegalArgumentException
+     *          if the row is negative
+     */
+    int putIfAbsent(long key, int row) {
+        if (row < 0)
+            throw new IllegalArgumentException("OffHeapLongIndex->putIfAbsent: row must not be negative");
+
+        long slot = slot(key);
+        int entry = entryAt(slot);
+        if (entry != 0)
+            return entry - 1;
+        set(slot, key, row + 1);
+        if (++size > resizeAt)
+            grow();
+        return -1;
+    }
+
+    /**
+     * Replace the row of the key, only if the key already has one
+     *
+     * @return the previous row of the key, -1 if the key had none (nothing is added)
+     * @throws IllegalArgumentException
+     *          if the row is negative
+     */
+    int replace(long key, int row) {
+        if (row < 0)
+            throw new IllegalArgumentException("OffHeapLongIndex->replace: row must not be negative");
+
+        long slot = slot(key);
+        int entry = entryAt(slot);
+        if (entry != 0)
+            set(slot, key, row + 1);
+        return entry - 1;
+    }
+
+    private void grow() {
+        if (capacity == MAX_CAPACITY)
+            throw new IllegalStateException("OffHeapLongIndex: the table is full");
+
+        ByteBuffer[] oldPages = pages;
+        long oldCapacity = capacity;
+        allocate(capacity << 1);
+        int oldPageSlots = (int) Math.min(oldCapacity, 1L << PAGE_BITS);
+        for (ByteBuffer page : oldPages) {
+            for (int slot = 0; slot < oldPageSlots; slot++) {
+                int entry = page.getInt(slot * SLOT_BYTES + Long.BYTES);
+                if (entry != 0) {
+                    long key = page.getLong(slot * SLOT_BYTES);
+                    set(slot(key), key, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the key
+     *
+     * @return the row of the removed key, -1 if the key had none
+     */
+    int remove(long key) {
+        long slot = slot(key);
+        int removed = entryAt(slot);
+        if (removed == 0)
+            return -1;
+
+        // move back the entries that probed past the freed slot, so every key stays reachable from its home slot
+        long hole = slot;
+        for (long next = (slot + 1) & mask; entryAt(next) != 0; next = (next + 1) & mask) {
+            long home = home(keyAt(next));
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                set(hole, keyAt(next), entryAt(next));
+                hole = next;
+            }
+        }
+        set(hole, 0, 0);
+        size--;
+        return removed - 1;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return the bytes of direct memory taken by the table
+     */
+    long getAllocatedBytes() {
+        return capacity * SLOT_BYTES;
+    }
+}
@@ -0,0 +1,550 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.IndexedRepository;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.EntitySchema;
+import repository.schema.FieldSink;
+import repository.schema.FieldSource;
+import repository.schema.FieldType;
+import repository.schema.SecondaryIndex;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * In memory repository for entities with {@code Long} ids whose rows live outside of the Java heap, meant for the
+ * large tables of small records (adoptions, purchases).
+ *
+ * Every entity is encoded by its {@link EntitySchema} into a fixed-width row of a slab, a direct buffer of
+ * {@code rowsPerSlab} rows; a new slab is allocated when the last one is full, and the rows of the deleted
+ * entities are reused. The ids are mapped to their rows by an {@link OffHeapLongIndex}, outside of the heap too.
+ * No entity is kept: {@link #findOne} and the iterators of {@link #findAll} decode a new one from its row on every
+ * access, so the heap only holds the entities in use, and the garbage collector never has to walk the table.
+ *
+ * The secondary indexes given to the constructor (LONG or INT fields, ex: the foreign keys and the year of the
+ * adoptions) are kept in the rows too: the rows with the same key form a doubly linked chain, whose first row is
+ * found by an {@link OffHeapLongIndex} of the keys, so a lookup costs O(number of matches) and a write O(1) per
+ * index. An ordered index also keeps its distinct keys sorted on the heap, one entry per distinct value (ex: a
+ * year), not per entity.
+ *
+ * Row layout (native byte order):
+ * <pre>
+ *   byte   1 if the row holds an entity, 0 if it is free
+ *   the fields in schema order: LONG / INT / DOUBLE as 8 / 4 / 8 bytes,
+ *   STRING as (unsigned short length, UTF-8 bytes padded to maxStringBytes)
+ *   for every secondary index: the previous and the next row with the same key, as 4 + 4 bytes (-1 for none)
+ * </pre>
+ * A String field longer than maxStringBytes once encoded is refused with a BinaryRepositoryException.
+ *
+ * Not thread safe, like {@link repository.LongKeyedRepository}.
+ */
+public class OffHeapRepository<T extends BaseEntity<Long>> implements IndexedRepository<Long, T> {
+
+    private static final int DEFAULT_MAX_STRING_BYTES = 32;
+    private static final int DEFAULT_ROWS_PER_SLAB = 1 << 16;
+
+    private final Validator<T> validator;
+    private final EntitySchema<T> schema;
+    private final int maxStringBytes;
+    // bytes of the used flag and of the fields, then of a whole row with the links of the indexes
+    private final int dataBytes;
+    private final int rowBytes;
+    private final int rowsPerSlab;
+    private final Map<SecondaryIndex<T, ?>, RowChains> chains = new HashMap<>();
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final OffHeapLongIndex index;
+    private final RowSink sink;
+    private final RowSource source = new RowSource();
+    // rows used so far (the next row of the last slab), and the freed rows below it
+    private int rows;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+    // number of entities added or removed, to detect them during an iteration of findAll
+    private int modCount;
+
+    @SafeVarargs
+    public OffHeapRepository(Validator<T> validator, EntitySchema<T> schema, SecondaryIndex<T, ?>... indexes) {
+        this(validator, schema, DEFAULT_MAX_STRING_BYTES, DEFAULT_ROWS_PER_SLAB, indexes);
+    }
+
+    /**
+     * Constructor of the class. No memory is taken for the rows until the first save.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        schema : EntitySchema<T> describing the fields, the first one being the LONG id
+     *        maxStringBytes : int room of every String field, in UTF-8 bytes
+     *        rowsPerSlab : int number of rows allocated at once
+     *        indexes : SecondaryIndex<T, ?>... the indexes to maintain, on LONG or INT fields of the schema
+     * @throws IllegalArgumentException
+     *          if the id is not a LONG field, maxStringBytes is not in [0, 65535], a slab would exceed 2GB or an
+     *          index is not on a LONG or INT field
+     */
+    @SafeVarargs
+    public OffHeapRepository(Validator<T> validator, EntitySchema<T> schema, int maxStringBytes, int rowsPerSlab,
+                             SecondaryIndex<T, ?>... indexes) {
+        List<FieldType> types = schema.getFieldTypes();
+        if (types.isEmpty() || types.get(0) != FieldType.LONG)
+            throw new IllegalArgumentException("OffHeapRepository: the id of " + schema.getEntityName()
+                    + " must be a LONG field");
+        if (maxStringBytes < 0 || maxStringBytes > 0xFFFF)
+            throw new IllegalArgumentException("OffHeapRepository: maxStringBytes must be in [0, 65535]");
+
+        int width = 1;
+        for (FieldType type : types)
+            width += widthOf(type, maxStringBytes);
+        this.dataBytes = width;
+        for (SecondaryIndex<T, ?> index : indexes) {
+            int field = schema.getFieldNames().indexOf(index.getName());
+            if (field < 0 || (types.get(field) != FieldType.LONG && types.get(field) != FieldType.INT))
+                throw new IllegalArgumentException("OffHeapRepository: " + index + " is not on a LONG or INT field of "
+                        + schema.getEntityName());
+            int fieldOffset = 1;
+            for (int previous = 0; previous < field; previous++)
+                fieldOffset += widthOf(types.get(previous), maxStringBytes);
+            chains.put(index, new RowChains(index.isOrdered(), types.get(field), fieldOffset, width));
+            width += 2 * Integer.BYTES;
+        }
+        if (rowsPerSlab <= 0 || (long) rowsPerSlab * width > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("OffHeapRepository: " + rowsPerSlab + " rows of " + width
+                    + " bytes do not fit in a slab");
+
+        this.validator = validator;
+        this.schema = schema;
+        this.maxStringBytes = maxStringBytes;
+        this.rowBytes = width;
+        this.rowsPerSlab = rowsPerSlab;
+        this.index = new OffHeapLongIndex(rowsPerSlab);
+        this.sink = new RowSink(dataBytes);
+    }
+
+    private static int widthOf(FieldType type, int maxStringBytes) {
+        switch (type) {
+            case LONG:
+                return Long.BYTES;
+            case INT:
+                return Integer.BYTES;
+            case DOUBLE:
+                return Double.BYTES;
+            default:
+                return Short.BYTES + maxStringBytes;
+        }
+    }
+
+    private static long idOf(Long id, String operation) throws BinaryRepositoryException {
+        if (id == null)
+            throw new BinaryRepositoryException("OffHeapRepository->" + operation + ": id must not be null");
+        return id;
+    }
+
+    private T check(T entity, String operation) throws BinaryRepositoryException, ValidatorException {
+        if (entity == null)
+            throw new BinaryRepositoryException("OffHeapRepository->" + operation + ": entity must not be null");
+        idOf(entity.getId(), operation);
+        validator.validate(entity);
+        return entity;
+    }
+
+    private ByteBuffer slabOf(int row) {
+        return slabs.get(row / rowsPerSlab);
+    }
+
+    private int offsetOf(int row) {
+        return (row % rowsPerSlab) * rowBytes;
+    }
+
+    /**
+     * Decode the entity of a used row
+     */
+    private T read(int row) {
+        source.buffer = slabOf(row);
+        source.position = offsetOf(row) + 1;
+        return schema.read(source);
+    }
+
+    /**
+     * Copy the fields encoded by the sink into the given row, leaving the links of the indexes as they are
+     */
+    private void write(int row) {
+        ByteBuffer slab = slabOf(row);
+        slab.position(offsetOf(row));
+        slab.put(sink.buffer.array(), 0, dataBytes);
+    }
+
+    /**
+     * @return a free row, allocating a new slab if every row is used
+     */
+    private int allocateRow() {
+        if (freeCount > 0)
+            return freeRows[--freeCount];
+        if (rows == Integer.MAX_VALUE)
+            throw new BinaryRepositoryException("OffHeapRepository: too many " + schema.getCollectionName());
+        if (rows == (long) slabs.size() * rowsPerSlab)
+            slabs.add(ByteBuffer.allocateDirect(rowsPerSlab * rowBytes).order(ByteOrder.nativeOrder()));
+        return rows++;
+    }
+
+    private void freeRow(int row) {
+        slabOf(row).put(offsetOf(row), (byte) 0);
+        if (freeCount == freeRows.length)
+            freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        freeRows[freeCount++] = row;
+    }
+
+    @Override
+    public Optional<T> findOne(Long id) throws BinaryRepositoryException {
+        return findOne(idOf(id, "findOne"));
+    }
+
+    /**
+     * Find the entity with the given primitive id, without boxing it
+     */
+    public Optional<T> findOne(long id) {
+        int row = index.get(id);
+        return row < 0 ? Optional.empty() : Optional.of(read(row));
+    }
+
+    /**
+     * @return a read-only live view of the entities, in row order: every entity is decoded when the iterator
+     *         reaches it, nothing is copied. Its iterators fail with a ConcurrentModificationException if an entity
+     *         is saved or deleted while they are used.
+     */
+    @Override
+    public Iterable<T> findAll() {
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new RowIterator();
+            }
+
+            @Override
+            public int size() {
+                return OffHeapRepository.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Optional<T> save(T entity) throws ValidatorException, BinaryRepositoryException {
+        check(entity, "save");
+        int existing = index.get(entity.getId());
+        if (existing >= 0)
+            return Optional.of(read(existing));
+
+        sink.encode(entity, "save");
+        int row = allocateRow();
+        write(row);
+        index.putIfAbsent(entity.getId(), row);
+        for (RowChains chain : chains.values())
+            chain.link(row);
+        modCount++;
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<T> delete(Long id) throws BinaryRepositoryException {
+        return delete(idOf(id, "delete"));
+    }
+
+    /**
+     * Remove the entity with the given primitive id, without boxing it
+     */
+    public Optional<T> delete(long id) {
+        int row = index.remove(id);
+        if (row < 0)
+            return Optional.empty();
+        T removed = read(row);
+        for (RowChains chain : chains.values())
+            chain.unlink(row);
+        freeRow(row);
+        modCount++;
+        return Optional.of(removed);
+    }
+
+    @Override
+    public Optional<T> update(T entity) throws ValidatorException, BinaryRepositoryException {
+        check(entity, "update");
+        int row = index.get(entity.getId());
+        if (row < 0)
+            return Optional.of(entity);
+        // encoded first, so a refused entity leaves the row as it was
+        sink.encode(entity, "update");
+        for (RowChains chain : chains.values())
+            chain.unlink(row);
+        write(row);
+        for (RowChains chain : chains.values())
+            chain.link(row);
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isIndexed(SecondaryIndex<T, ?> index) {
+        return chains.containsKey(index);
+    }
+
+    /**
+     * @return a copy of the matching entities, decoded from their rows
+     */
+    @Override
+    public <K> Collection<T> findBy(SecondaryIndex<T, K> index, K key) {
+        RowChains chain = chains.get(index);
+        if (chain == null)
+            throw new IllegalArgumentException("OffHeapRepository->findBy: not an index of the repository " + index);
+        if (key == null)
+            throw new IllegalArgumentException("OffHeapRepository->findBy: key must not be null");
+        List<T> found = new ArrayList<>();
+        chain.collect(((Number) key).longValue(), found);
+        return found;
+    }
+
+    @Override
+    public <K extends Comparable<? super K>> List<T> findBetween(SecondaryIndex<T, K> index, K from, K to) {
+        RowChains chain = chains.get(index);
+        if (chain == null || !index.isOrdered())
+            throw new IllegalArgumentException("OffHeapRepository->findBetween: not an ordered index of the repository "
+                    + index);
+        if (from == null || to == null)
+            throw new IllegalArgumentException("OffHeapRepository->findBetween: bounds must not be null");
+
+        List<T> found = new ArrayList<>();
+        if (from.compareTo(to) <= 0)
+            for (long key : chain.keys.subSet(((Number) from).longValue(), true, ((Number) to).longValue(), true))
+                chain.collect(key, found);
+        return found;
+    }
+
+    /**
+     * @return the number of entities
+     */
+    public int size() {
+        return (int) index.size();
+    }
+
+    /**
+     * @return the bytes of direct memory taken by the slabs, the id index and the heads of the secondary indexes
+     */
+    public long getOffHeapBytes() {
+        long bytes = (long) slabs.size() * rowsPerSlab * rowBytes + index.getAllocatedBytes();
+        for (RowChains chain : chains.values())
+            bytes += chain.heads.getAllocatedBytes();
+        return bytes;
+    }
+
+    /**
+     * One secondary index: the rows with the same key linked in a chain through the links of the index in every
+     * row, the first row of every key found by an off-heap hash table
+     */
+    private final class RowChains {
+
+        private final FieldType type;
+        private final int fieldOffset;
+        private final int linkOffset;
+        private final OffHeapLongIndex heads;
+        // the distinct keys of an ordered index, null for an index by equality only
+        private final NavigableSet<Long> keys;
+
+        private RowChains(boolean ordered, FieldType type, int fieldOffset, int linkOffset) {
+            this.type = type;
+            this.fieldOffset = fieldOffset;
+            this.linkOffset = linkOffset;
+            // grows with the number of distinct keys, which may be a handful (ex: years)
+            this.heads = new OffHeapLongIndex(0);
+            this.keys = ordered ? new TreeSet<>() : null;
+        }
+
+        private long keyOf(int row) {
+            int offset = offsetOf(row) + fieldOffset;
+            return type == FieldType.LONG ? slabOf(row).getLong(offset) : slabOf(row).getInt(offset);
+        }
+
+        private int previous(int row) {
+            return slabOf(row).getInt(offsetOf(row) + linkOffset);
+        }
+
+        private int next(int row) {
+            return slabOf(row).getInt(offsetOf(row) + linkOffset + Integer.BYTES);
+        }
+
+        private void setPrevious(int row, int previous) {
+            slabOf(row).putInt(offsetOf(row) + linkOffset, previous);
+        }
+
+        private void setNext(int row, int next) {
+            slabOf(row).putInt(offsetOf(row) + linkOffset + Integer.BYTES, next);
+        }
+
+        /**
+         * Put the row first in the chain of its key
+         */
+        private void link(int row) {
+            long key = keyOf(row);
+            int head = heads.get(key);
+            setPrevious(row, -1);
+            setNext(row, head);
+            if (head >= 0) {
+                setPrevious(head, row);
+                heads.replace(key, row);
+            } else {
+                heads.putIfAbsent(key, row);
+                if (keys != null)
+                    keys.add(key);
+            }
+        }
+
+        /**
+         * Take the row out of the chain of its key, before its key changes or the row is freed
+         */
+        private void unlink(int row) {
+            long key = keyOf(row);
+            int previous = previous(row);
+            int next = next(row);
+            if (next >= 0)
+                setPrevious(next, previous);
+            if (previous >= 0) {
+                setNext(previous, next);
+            } else if (next >= 0) {
+                heads.replace(key, next);
+            } else {
+                heads.remove(key);
+                if (keys != null)
+                    keys.remove(key);
+            }
+        }
+
+        private void collect(long key, Collection<T> found) {
+            for (int row = heads.get(key); row >= 0; row = next(row))
+                found.add(read(row));
+        }
+    }
+
+    private final class RowIterator implements Iterator<T> {
+
+        private final int expectedModCount = modCount;
+        private int next = advance(0);
+
+        private int advance(int row) {
+            while (row < rows && slabOf(row).get(offsetOf(row)) == 0)
+                row++;
+            return row;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < rows;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next >= rows)
+                throw new NoSuchElementException();
+            T entity = read(next);
+            next = advance(next + 1);
+            return entity;
+        }
+    }
+
+    /**
+     * {@link FieldSink} encoding one entity into a heap buffer of the size of a row, marked as used
+     */
+    private final class RowSink implements FieldSink {
+
+        private final ByteBuffer buffer;
+        private String operation;
+
+        private RowSink(int rowBytes) {
+            this.buffer = ByteBuffer.allocate(rowBytes).order(ByteOrder.nativeOrder());
+        }
+
+        private void encode(T entity, String operation) throws BinaryRepositoryException {
+            this.operation = operation;
+            buffer.clear();
+            buffer.put((byte) 1);
+            schema.write(entity, this);
+        }
+
+        @Override
+        public void writeLong(long value) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public void writeInt(int value) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public void writeDouble(double value) {
+            buffer.putDouble(value);
+        }
+
+        @Override
+        public void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > maxStringBytes)
+                throw new BinaryRepositoryException("OffHeapRepository->" + operation + ": \"" + value
+                        + "\" takes more than " + maxStringBytes + " bytes");
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+            buffer.position(buffer.position() + maxStringBytes - bytes.length);
+        }
+    }
+
+    /**
+     * {@link FieldSource} decoding the fields of a row of a slab
+     */
+    private final class RowSource implements FieldSource {
+
+        private ByteBuffer buffer;
+        private int position;
+
+        @Override
+        public long readLong() {
+            long value = buffer.getLong(position);
+            position += Long.BYTES;
+            return value;
+        }
+
+        @Override
+        public int readInt() {
+            int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        @Override
+        public double readDouble() {
+            double value = buffer.getDouble(position);
+            position += Double.BYTES;
+            return value;
+        }
+
+        @Override
+        public String readString() {
+            int length = buffer.getShort(position) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++)
+                bytes[i] = buffer.get(position + Short.BYTES + i);
+            position += Short.BYTES + maxStringBytes;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import repository.Repository;
+import repository.RepositoryException;
+import repository.XML.XMLStreamEntityReader;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.file.ParallelCsvLoader;
+import repository.schema.AdoptionSchema;
+import repository.schema.ClientSchema;
+import repository.schema.EntitySchema;
+import repository.schema.PetSchema;
+import repository.schema.PurchaseSchema;
+import repository.schema.ToySchema;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Converts the csv files of the FileRepository* classes and the xml files of the XMLRepository* classes
+ * into {@link ColumnarSnapshot} files.
+ *
+ * Run with: java -cp build/classes/java/main repository.binary.SnapshotConverter csv|xml [sourceDirectory] [targetDirectory]
+ * (defaults: data/file or data/xml, and data/binary). Every entity file (pets, clients, toys, adoptions, purchases)
+ * found in the source directory is converted to a .snapshot file with the same name.
+ */
+public class SnapshotConverter {
+
+    private static final List<EntitySchema<?>> SCHEMAS = List.of(
+            new PetSchema(), new ClientSchema(), new ToySchema(), new AdoptionSchema(), new PurchaseSchema());
+
+    private SnapshotConverter() {
+    }
+
+    /**
+     * Convert a csv file laid out as described by the schema
+     *
+     * @param csv : Path of the csv file (ex: data/file/toys.csv)
+     *        schema : EntitySchema<T> describing the columns
+     *        snapshot : Path of the snapshot to be written
+     * @return the number of converted entities
+     * @throws IOException
+     *          if a file can not be read or written
+     */
+    public static <T extends BaseEntity<?>> int fromCsv(Path csv, EntitySchema<T> schema, Path snapshot)
+            throws IOException {
+        List<T> entities = ParallelCsvLoader.read(csv, schema);
+        ColumnarSnapshot.write(snapshot, schema, entities);
+        return entities.size();
+    }
+
+    /**
+     * Convert an xml file laid out like the ones of the XMLRepository* classes: a root element named
+     * after the collection, one element per entity and one child element per field
+     *
+     * @param xml : Path of the xml file (ex: data/xml/toys.xml)
+     *        schema : EntitySchema<T> describing the fields
+     *        snapshot : Path of the snapshot to be written
+     * @return the number of converted entities
+     * @throws IOException
+     *          if a file can not be read or written
+     * @throws BinaryRepositoryException
+     *          if the xml file can not be parsed
+     */
+    public static <T extends BaseEntity<?>> int fromXml(Path xml, EntitySchema<T> schema, Path snapshot)
+            throws IOException {
+        List<T> entities;
+        try {
+            entities = XMLStreamEntityReader.read(xml, schema);
+        } catch (XMLStreamException error) {
+            throw new BinaryRepositoryException("SnapshotConverter->fromXml: " + error.getMessage(), error);
+        }
+        ColumnarSnapshot.write(snapshot, schema, entities);
+        return entities.size();
+    }
+
+    /**
+     * Convert the content of any repository (ex: a database repository)
+     *
+     * @param repository : Repository<?, T> the entities are read from
+     *        schema : EntitySchema<T> describing the columns
+     *        snapshot : Path of the snapshot to be written
+     * @return the number of converted entities
+     * @throws IOException
+     *          if the snapshot can not be written
+     */
+    public static <T extends BaseEntity<?>> int fromRepository(Repository<?, T> repository, EntitySchema<T> schema,
+                                                             Path snapshot) throws IOException {
+        ColumnTable<T> table = ColumnTable.of(schema, repository.findAll());
+        ColumnarSnapshot.write(snapshot, table);
+        return table.getRowCount();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || !(args[0].equals("csv") || args[0].equals("xml"))) {
+            System.out.println("Usage: SnapshotConverter csv|xml [sourceDirectory] [targetDirectory]");
+            return;
+        }
+        boolean csv = args[0].equals("csv");
+        Path source = Path.of(args.length > 1 ? args[1] : csv ? "data/file" : "data/xml");
+        Path target = Path.of(args.length > 2 ? args[2] : "data/binary");
+
+        for (EntitySchema<?> schema : SCHEMAS) {
+            Path input = source.resolve(schema.getCollectionName() + (csv ? ".csv" : ".xml"));
+            Path output = target.resolve(schema.getCollectionName() + ".snapshot");
+            if (!input.toFile().isFile()) {
+                System.out.println("Skipped " + input + ": no such file");
+                continue;
+            }
+            try {
+                int count = csv ? fromCsv(input, schema, output) : fromXml(input, schema, output);
+                System.out.println("Converted " + count + " " + schema.getCollectionName() + " from " + input
+                        + " to " + output);
+            } catch (RepositoryException error) {
+                System.out.println("Could not convert " + input + ": " + error.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package repository.binary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary-encoded String column: every distinct value is stored once in the dictionary,
+ * every row only keeps the int code of its value.
+ *
+ * The rows using every code are counted, so the values no row uses any more (replaced or removed) are known;
+ * once they are more than a quarter of the rows, the dictionary is compacted: they are dropped and the other
+ * values renumbered. So the dictionary never holds much more than the values in use, and the cost of a
+ * compaction is spread over the updates and removals that made it necessary.
+ */
+public class StringColumn {
+
+    private static final int MIN_UNUSED = 16;
+
+    private final List<String> dictionary;
+    private final Map<String, Integer> codesByValue;
+    // number of rows using every code, and number of codes no row uses
+    private int[] references;
+    private int unused;
+    private int[] codes;
+    private int size;
+
+    public StringColumn(int capacity) {
+        this.dictionary = new ArrayList<>();
+        this.codesByValue = new HashMap<>();
+        this.references = new int[16];
+        this.codes = new int[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Build a column from an already encoded dictionary and codes (ex: read from a snapshot)
+     */
+    public StringColumn(List<String> dictionary, int[] codes, int size) {
+        this.dictionary = new ArrayList<>(dictionary);
+        this.codesByValue = new HashMap<>(dictionary.size() * 4 / 3 + 1);
+        for (int i = 0; i < dictionary.size(); i++)
+            codesByValue.put(dictionary.get(i), i);
+        this.codes = codes;
+        this.size = size;
+        this.references = new int[Math.max(dictionary.size(), 16)];
+        for (int row = 0; row < size; row++)
+            references[codes[row]]++;
+        for (int code = 0; code < dictionary.size(); code++)
+            if (references[code] == 0)
+                unused++;
+    }
+
+    /**
+     * @return the code of the given value, adding it to the dictionary if needed (unused until a row takes it)
+     */
+    public int encode(String value) {
+        Integer code = codesByValue.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codesByValue.put(value, code);
+            if (code == references.length)
+                references = Arrays.copyOf(references, code * 2);
+            unused++;
+        }
+        return code;
+    }
+
+    /**
+     * @return the code of the given value, counting one more row using it
+     */
+    private int reference(String value) {
+        int code = encode(value);
+        if (references[code]++ == 0)
+            unused--;
+        return code;
+    }
+
+    private void release(int code) {
+        if (--references[code] == 0)
+            unused++;
+    }
+
+    /**
+     * @return the code of the given value, -1 if the value is not in the dictionary
+     */
+    public int codeOf(String value) {
+        return codesByValue.getOrDefault(value, -1);
+    }
+
+    public void add(String value) {
+        if (size == codes.length)
+            codes = Arrays.copyOf(codes, Math.max(16, size * 2));
+        codes[size++] = reference(value);
+    }
+
+    public String get(int row) {
+        return dictionary.get(codes[row]);
+    }
+
+    /**
+     * Replace the value of a row; the codes may change, see {@link #compactIfNeeded}
+     */
+    public void set(int row, String value) {
+        int previous = codes[row];
+        codes[row] = reference(value);
+        release(previous);
+        compactIfNeeded();
+    }
+
+    /**
+     * Remove a row by moving the last row into it, so the codes stay dense; the codes may change, see
+     * {@link #compactIfNeeded}
+     */
+    public void remove(int row) {
+        release(codes[row]);
+        codes[row] = codes[--size];
+        compactIfNeeded();
+    }
+
+    /**
+     * Compact the dictionary if the values no row uses are more than a quarter of the rows: a compaction reads
+     * every row, and at least size / 4 updates or removals happened since the previous one
+     */
+    private void compactIfNeeded() {
+        if (unused > Math.max(MIN_UNUSED, size / 4))
+            compact();
+    }
+
+    /**
+     * Drop the values no row uses from the dictionary, and renumber the others keeping their order
+     */
+    private void compact() {
+        int[] renumbered = new int[dictionary.size()];
+        List<String> kept = new ArrayList<>(dictionary.size() - unused);
+        codesByValue.clear();
+        for (int code = 0; code < dictionary.size(); code++) {
+            if (references[code] > 0) {
+                renumbered[code] = kept.size();
+                // kept.size() <= code: the count at the new place was already read
+                references[kept.size()] = references[code];
+                codesByValue.put(dictionary.get(code), kept.size());
+                kept.add(dictionary.get(code));
+            }
+        }
+        Arrays.fill(references, kept.size(), dictionary.size(), 0);
+        dictionary.clear();
+        dictionary.addAll(kept);
+        for (int row = 0; row < size; row++)
+            codes[row] = renumbered[codes[row]];
+        unused = 0;
+    }
+
+    /**
+     * @return the values by code, with the values no row uses any more until the next compaction
+     */
+    public List<String> getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the codes array; only the first size() entries are meaningful
+     */
+    public int[] getCodes() {
+        return codes;
+    }
+
+    public int size() {
+        return size;
+    }
+}
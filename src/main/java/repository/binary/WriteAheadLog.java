@@ -0,0 +1,345 @@
+package repository.binary;
+
+import domain.BaseEntity;
+import repository.schema.EntitySchema;
+import repository.schema.FieldSink;
+import repository.schema.FieldSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of the changes made to a {@link DurableInMemoryRepository}.
+ *
+ * Record layout (little-endian):
+ * <pre>
+ *   int    payload length
+ *   int    CRC32 of the payload
+ *   payload:
+ *     byte   operation (the Operation ordinal)
+ *     the fields of the entity in schema order: LONG / INT / DOUBLE as 8 / 4 / 8 bytes,
+ *     STRING as (int length, UTF-8 bytes)
+ * </pre>
+ * A delete carries the removed entity, so the ids never need an encoding of their own.
+ *
+ * Group commit: {@link #append} only copies a record into a memory buffer and numbers it, {@link #commit} waits until
+ * the record is on disk. The first committing thread that finds no write in progress writes the whole buffer (its
+ * own record and every record appended meanwhile) with one write and one force, then wakes up the threads whose
+ * records it wrote. The records appended during a force are written by the next one, so concurrent writers share
+ * the forces instead of paying one each.
+ *
+ * {@link #replay} reads the records in order and stops at the first incomplete or corrupt one (a write torn by a
+ * crash), which is cut off so that the next records follow the last valid one. Once a write or a force failed, the
+ * log can not tell which records reached the disk: every later commit fails.
+ */
+final class WriteAheadLog<T extends BaseEntity<?>> implements Closeable {
+
+    enum Operation { SAVE, UPDATE, DELETE }
+
+    private static final int HEADER = 2 * Integer.BYTES;
+
+    private final Path file;
+    private final EntitySchema<T> schema;
+    private final FileChannel channel;
+    private final RecordSink sink = new RecordSink();
+    private final CRC32 crc = new CRC32();
+
+    // records appended and not written yet, and the buffer of the write in progress
+    private Batch pending = new Batch();
+    private Batch spare = new Batch();
+    private long appended;
+    private long durable;
+    private boolean writing = false;
+    private IOException failure;
+    private long forces;
+
+    /**
+     * Open (or create) the log
+     *
+     * @param file : Path of the log
+     *        schema : EntitySchema<T> describing the entities of the records
+     * @throws IOException
+     *          if the log can not be opened
+     */
+    WriteAheadLog(Path file, EntitySchema<T> schema) throws IOException {
+        this.file = file;
+        this.schema = schema;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Apply every valid record of the log, in order, and cut off the torn record at its end, if any
+     *
+     * @param consumer : BiConsumer<Operation, T> applying one record
+     * @return the number of records applied
+     * @throws IOException
+     *          if the log can not be read or truncated
+     */
+    synchronized long replay(BiConsumer<Operation, T> consumer) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE - 8)
+            throw new IOException("WriteAheadLog: " + file + " is larger than 2GB, it should have been snapshotted");
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+        buffer.flip();
+
+        long records = 0;
+        int valid = 0;
+        RecordSource source = new RecordSource(buffer);
+        while (buffer.remaining() >= HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining())
+                break;
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum)
+                break;
+
+            int end = buffer.position() + length;
+            Operation operation = Operation.values()[buffer.get()];
+            T entity = schema.read(source);
+            if (buffer.position() != end)
+                throw new IOException("WriteAheadLog: record at " + valid + " of " + file + " does not match the schema");
+            consumer.accept(operation, entity);
+            records++;
+            valid = end;
+        }
+
+        if (valid < size) {
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        channel.position(valid);
+        return records;
+    }
+
+    /**
+     * Copy a record into the memory buffer; it is on disk once {@link #commit} returns for its number
+     *
+     * @param operation : Operation the change
+     *        entity : T the saved, updated or deleted entity
+     * @return the number of the record
+     */
+    synchronized long append(Operation operation, T entity) {
+        sink.start();
+        sink.buffer.put((byte) operation.ordinal());
+        schema.write(entity, sink);
+        ByteBuffer record = sink.finish(crc);
+        pending.write(record.array(), 0, record.limit());
+        return ++appended;
+    }
+
+    /**
+     * Wait until the given record is on disk, writing it (and every other pending record) if no other thread is
+     * already writing
+     *
+     * @param record : long number of the record, returned by append
+     * @throws IOException
+     *          if the record could not be written, or an earlier write failed
+     */
+    void commit(long record) throws IOException {
+        Batch batch;
+        long last;
+        synchronized (this) {
+            while (durable < record && writing && failure == null)
+                await();
+            if (failure != null)
+                throw new IOException("WriteAheadLog: " + file + " failed earlier: " + failure.getMessage(), failure);
+            if (durable >= record)
+                return;
+
+            writing = true;
+            batch = pending;
+            pending = spare;
+            last = appended;
+        }
+
+        IOException error = null;
+        try {
+            ByteBuffer bytes = batch.view();
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (this) {
+            batch.reset();
+            spare = batch;
+            writing = false;
+            forces++;
+            if (error == null)
+                durable = last;
+            else
+                failure = error;
+            notifyAll();
+        }
+        if (error != null)
+            throw error;
+    }
+
+    private void await() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("WriteAheadLog: interrupted while waiting for a commit");
+        }
+    }
+
+    /**
+     * Empty the log, once a snapshot holds every change it recorded. Every appended record must be committed.
+     *
+     * @throws IOException
+     *          if the log can not be truncated
+     */
+    synchronized void reset() throws IOException {
+        if (writing || pending.size() > 0)
+            throw new IllegalStateException("WriteAheadLog->reset: records are not committed");
+        channel.truncate(0);
+        channel.force(true);
+        channel.position(0);
+    }
+
+    /**
+     * @return the number of forces of the log to the disk so far
+     */
+    synchronized long getForces() {
+        return forces;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * {@link ByteArrayOutputStream} whose content can be written without a copy
+     */
+    private static final class Batch extends ByteArrayOutputStream {
+
+        private ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    /**
+     * {@link FieldSink} encoding one record into a growing buffer, after room for its header
+     */
+    private static final class RecordSink implements FieldSink {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+
+        private void start() {
+            buffer.clear();
+            buffer.position(HEADER);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        /**
+         * Write the header of the record
+         *
+         * @return the whole record, from position 0 to its limit
+         */
+        private ByteBuffer finish(CRC32 crc) {
+            int length = buffer.position() - HEADER;
+            crc.reset();
+            crc.update(buffer.array(), HEADER, length);
+            buffer.putInt(0, length);
+            buffer.putInt(Integer.BYTES, (int) crc.getValue());
+            return buffer.flip();
+        }
+
+        @Override
+        public void writeLong(long value) {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        @Override
+        public void writeInt(int value) {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        @Override
+        public void writeDouble(double value) {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        @Override
+        public void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(Integer.BYTES + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * {@link FieldSource} decoding the fields of the current record of a buffer
+     */
+    private static final class RecordSource implements FieldSource {
+
+        private final ByteBuffer buffer;
+
+        private RecordSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long readLong() {
+            return buffer.getLong();
+        }
+
+        @Override
+        public int readInt() {
+            return buffer.getInt();
+        }
+
+        @Override
+        public double readDouble() {
+            return buffer.getDouble();
+        }
+
+        @Override
+        public String readString() {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining())
+                throw new BufferUnderflowException();
+            String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+    }
+}
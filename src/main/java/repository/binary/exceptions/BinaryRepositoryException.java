@@ -0,0 +1,13 @@
+package repository.binary.exceptions;
+
+import repository.RepositoryException;
+
+public class BinaryRepositoryException extends RepositoryException {
+
+    public BinaryRepositoryException(String message){ super(message); }
+
+    public BinaryRepositoryException(String message, Throwable cause){ super(message,cause); }
+
+    public BinaryRepositoryException(Throwable cause){ super(cause); }
+
+}
@@ -0,0 +1,56 @@
+package repository.file;
+
+import repository.schema.FieldSink;
+
+/**
+ * Builds a comma-separated csv line, the format written by the FileRepository* classes.
+ */
+public class CsvFieldSink implements FieldSink {
+
+    private final StringBuilder builder = new StringBuilder(64);
+    private int fields = 0;
+
+    /**
+     * Clear the line built so far so that the sink can be reused
+     *
+     * @return this sink
+     */
+    public CsvFieldSink reset() {
+        builder.setLength(0);
+        fields = 0;
+        return this;
+    }
+
+    private StringBuilder next() {
+        if (fields++ > 0)
+            builder.append(',');
+        return builder;
+    }
+
+    @Override
+    public void writeLong(long value) {
+        next().append(value);
+    }
+
+    @Override
+    public void writeInt(int value) {
+        next().append(value);
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        next().append(value);
+    }
+
+    @Override
+    public void writeString(String value) {
+        next().append(value);
+    }
+
+    /**
+     * @return the line built so far
+     */
+    public String getLine() {
+        return builder.toString();
+    }
+}
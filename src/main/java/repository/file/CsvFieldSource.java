@@ -0,0 +1,91 @@
+package repository.file;
+
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.FieldSource;
+
+/**
+ * Reads the comma-separated fields of a single csv line.
+ * The same instance can be reused for several lines through {@link #reset(String)},
+ * numbers are parsed in place without splitting the line into a String[] first.
+ */
+public class CsvFieldSource implements FieldSource {
+
+    private String line;
+    private int position;
+
+    public CsvFieldSource() {
+    }
+
+    public CsvFieldSource(String line) {
+        this.reset(line);
+    }
+
+    /**
+     * Point the reader at the beginning of a new line
+     *
+     * @param line : String csv line (without the line separator)
+     * @return this reader
+     */
+    public CsvFieldSource reset(String line) {
+        this.line = line;
+        this.position = 0;
+        return this;
+    }
+
+    /**
+     * @return the index right after the end of the current field
+     * @throws FileRepositoryException
+     *          if the line has no more fields
+     */
+    private int fieldEnd() {
+        if (position > line.length())
+            throw new FileRepositoryException("CsvFieldSource: missing field in line \"" + line + "\"");
+        int end = line.indexOf(',', position);
+        return end < 0 ? line.length() : end;
+    }
+
+    @Override
+    public long readLong() {
+        int end = fieldEnd();
+        try {
+            return Long.parseLong(line, position, end, 10);
+        } catch (NumberFormatException e) {
+            throw new FileRepositoryException("CsvFieldSource: invalid number in line \"" + line + "\"", e);
+        } finally {
+            position = end + 1;
+        }
+    }
+
+    @Override
+    public int readInt() {
+        int end = fieldEnd();
+        try {
+            return Integer.parseInt(line, position, end, 10);
+        } catch (NumberFormatException e) {
+            throw new FileRepositoryException("CsvFieldSource: invalid number in line \"" + line + "\"", e);
+        } finally {
+            position = end + 1;
+        }
+    }
+
+    @Override
+    public double readDouble() {
+        return parseDouble(readString());
+    }
+
+    private double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new FileRepositoryException("CsvFieldSource: invalid number in line \"" + line + "\"", e);
+        }
+    }
+
+    @Override
+    public String readString() {
+        int end = fieldEnd();
+        String value = line.substring(position, end);
+        position = end + 1;
+        return value;
+    }
+}
@@ -0,0 +1,171 @@
+package repository.file;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.BatchResult;
+import repository.schema.EntitySchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Batch operations for the csv files of the FileRepository* classes, each one costing a single read and a single
+ * write of the file whatever the size of the batch (a single save, update or delete of those classes reads the
+ * whole file, and the updates and deletes rewrite it).
+ *
+ * Saves are appended together at the end of the file. Updates and deletes load the file into an id index, apply
+ * every change to it and write it once, to a temporary file that replaces the original, so a failed write leaves
+ * the old content intact.
+ */
+final class CsvFileBatch {
+
+    private CsvFileBatch() {
+    }
+
+    /**
+     * Save the entities that are valid and whose id is free, with one append
+     *
+     * @param file : Path of the csv file
+     *        schema : EntitySchema<T> describing the columns
+     *        validator : Validator<T> applied to every entity before anything is written
+     *        entities : Iterable<T> entities to be saved
+     * @return the saved entities and the ones whose id was taken (in the file or earlier in the batch)
+     * @throws ValidatorException
+     *          if an entity is not valid, nothing is written
+     * @throws IOException
+     *          if the file can not be read or written
+     */
+    static <ID, T extends BaseEntity<ID>> BatchResult<T> saveAll(Path file, EntitySchema<T> schema,
+                                                                 Validator<T> validator, Iterable<T> entities)
+            throws ValidatorException, IOException {
+        List<T> batch = validateAll(validator, entities);
+        Map<ID, T> index = ParallelCsvLoader.load(file, schema);
+
+        List<T> applied = new ArrayList<>();
+        List<BatchResult.Failure<T>> failures = new ArrayList<>();
+        for (T entity : batch) {
+            if (index.putIfAbsent(entity.getId(), entity) == null)
+                applied.add(entity);
+            else
+                failures.add(new BatchResult.Failure<>(entity, BatchResult.ID_TAKEN));
+        }
+        if (!applied.isEmpty())
+            append(file, schema, applied);
+        return new BatchResult<>(applied, failures);
+    }
+
+    /**
+     * Replace the lines of the entities, with one read and one write
+     *
+     * @param file : Path of the csv file
+     *        schema : EntitySchema<T> describing the columns
+     *        validator : Validator<T> applied to every entity before anything is written
+     *        entities : Iterable<T> entities to be updated
+     * @return the updated entities and the ones whose id is not in the file
+     * @throws ValidatorException
+     *          if an entity is not valid, nothing is written
+     * @throws IOException
+     *          if the file can not be read or written
+     */
+    static <ID, T extends BaseEntity<ID>> BatchResult<T> updateAll(Path file, EntitySchema<T> schema,
+                                                                   Validator<T> validator, Iterable<T> entities)
+            throws ValidatorException, IOException {
+        List<T> batch = validateAll(validator, entities);
+        Map<ID, T> index = ParallelCsvLoader.load(file, schema);
+
+        List<T> applied = new ArrayList<>();
+        List<BatchResult.Failure<T>> failures = new ArrayList<>();
+        for (T entity : batch) {
+            if (index.replace(entity.getId(), entity) != null)
+                applied.add(entity);
+            else
+                failures.add(new BatchResult.Failure<>(entity, BatchResult.ID_MISSING));
+        }
+        if (!applied.isEmpty())
+            rewrite(file, schema, index.values());
+        return new BatchResult<>(applied, failures);
+    }
+
+    /**
+     * Remove the lines with the given ids, with one read and one write
+     *
+     * @param file : Path of the csv file
+     *        schema : EntitySchema<T> describing the columns
+     *        ids : Iterable<ID> ids of the entities to be removed
+     * @return the removed entities; ids that are not in the file are skipped
+     * @throws IllegalArgumentException
+     *          if an id is null
+     * @throws IOException
+     *          if the file can not be read or written
+     */
+    static <ID, T extends BaseEntity<ID>> List<T> deleteAll(Path file, EntitySchema<T> schema, Iterable<ID> ids)
+            throws IOException {
+        List<ID> batch = new ArrayList<>();
+        for (ID id : ids)
+            batch.add(Optional.ofNullable(id).orElseThrow(() -> new IllegalArgumentException("id must not be null")));
+
+        Map<ID, T> index = ParallelCsvLoader.load(file, schema);
+        List<T> removed = new ArrayList<>();
+        for (ID id : batch)
+            Optional.ofNullable(index.remove(id)).ifPresent(removed::add);
+        if (!removed.isEmpty())
+            rewrite(file, schema, index.values());
+        return removed;
+    }
+
+    private static <T> List<T> validateAll(Validator<T> validator, Iterable<T> entities) throws ValidatorException {
+        List<T> batch = new ArrayList<>();
+        for (T entity : entities) {
+            Optional.ofNullable(entity).orElseThrow(() -> new IllegalArgumentException("entity must not be null"));
+            validator.validate(entity);
+            batch.add(entity);
+        }
+        return batch;
+    }
+
+    /**
+     * Append the lines after the last one of the file. The single saves of the FileRepository* classes do not end
+     * the file with a line separator, so one is written first (an empty line is skipped by the readers).
+     */
+    private static <T extends BaseEntity<?>> void append(Path file, EntitySchema<T> schema, Collection<T> entities)
+            throws IOException {
+        CsvFieldSink sink = new CsvFieldSink();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            for (T entity : entities) {
+                writer.write(System.lineSeparator());
+                schema.write(entity, sink.reset());
+                writer.write(sink.getLine());
+            }
+        }
+    }
+
+    private static <T extends BaseEntity<?>> void rewrite(Path file, EntitySchema<T> schema, Collection<T> entities)
+            throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".batch");
+        CsvFieldSink sink = new CsvFieldSink();
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (T entity : entities) {
+                    schema.write(entity, sink.reset());
+                    writer.write(sink.getLine());
+                    writer.write(System.lineSeparator());
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException error) {
+            Files.deleteIfExists(temporary);
+            throw error;
+        }
+    }
+}
@@ -4,20 +4,22 @@ import domain.Adoption.Adoption;
 import domain.BaseEntity;
 import domain.validators.Validator;
 import domain.validators.exceptions.ValidatorException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.schema.EntitySchema;
+import repository.schema.AdoptionSchema;
 import repository.XML.exceptions.XMLRepositoryAdoptionException;
 import repository.file.exceptions.FileRepositoryAdoptionException;
 import repository.file.exceptions.FileRepositoryClientException;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-public class FileRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class FileRepositoryAdoption<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final AdoptionSchema SCHEMA = new AdoptionSchema();
 
     private String fileName; //ex: file_name.csv
     private Validator<T> validator;
@@ -102,32 +104,15 @@ public class FileRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Rep
 
 
     /**
-     * Read the file and get all the Adoptions as a list from it
+     * Read the file and get all the Adoptions as a list from it.
+     * The columns are described by {@link AdoptionSchema}.
      *
      * @return : A list with all adoptions from the file
      * @throws FileRepositoryAdoptionException: If some error regarding reading the file occurs
      */
     public List<Adoption> readFile() throws FileRepositoryAdoptionException {
-        /*
-        arr[0] = Id
-        arr[1] = serialNumber
-        arr[2] = clientId
-        arr[3] = petId
-        arr[4] = adoptionYear
-         */
-        Pattern pattern = Pattern.compile(",");
-
-        try (Stream<String> lines = Files.lines(Path.of(this.fileName))) {
-            List<Adoption> adoptions = lines.map(line -> {
-                String[] arr = pattern.split(line);
-                Adoption adoption = new Adoption(arr[1],
-                        Long.parseLong(arr[2]),
-                        Long.parseLong(arr[3]),
-                        Integer.parseInt(arr[4]));
-                adoption.setId(Long.parseLong(arr[0]));
-                return adoption;
-            }).collect(Collectors.toList());
-            return adoptions;
+        try {
+            return ParallelCsvLoader.read(Path.of(this.fileName), SCHEMA);
         } catch (IOException error) {
             throw new FileRepositoryAdoptionException("readFile: NoSuchFileException");
         }
@@ -159,7 +144,7 @@ public class FileRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Rep
 
         List<Adoption> adoptions = this.readFile();
 
-        return (Iterable<T>) List.copyOf(adoptions);
+        return (Iterable<T>) Collections.unmodifiableList(adoptions);
     }
 
     /**
@@ -229,4 +214,59 @@ public class FileRepositoryAdoption<ID, T extends BaseEntity<ID>> implements Rep
         this.save(entity);
         return Optional.empty();
     }
+
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save many adoptions with one read and one append to the file
+     *
+     * @param entities : Iterable<T> adoptions to be saved
+     * @return the saved adoptions and the ones whose id was taken
+     * @throws FileRepositoryAdoptionException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, FileRepositoryAdoptionException {
+        try {
+            return CsvFileBatch.saveAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryAdoptionException("FileRepositoryAdoption->saveAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Update many adoptions with one read and one rewrite of the file
+     *
+     * @param entities : Iterable<T> adoptions to be updated
+     * @return the updated adoptions and the ones whose id does not exist
+     * @throws FileRepositoryAdoptionException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, FileRepositoryAdoptionException {
+        try {
+            return CsvFileBatch.updateAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryAdoptionException("FileRepositoryAdoption->updateAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Delete many adoptions with one read and one rewrite of the file
+     *
+     * @param ids : Iterable<ID> ids of the adoptions to be deleted
+     * @return the deleted adoptions
+     * @throws FileRepositoryAdoptionException
+     *          if the file can not be read or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws FileRepositoryAdoptionException {
+        try {
+            return CsvFileBatch.deleteAll(Path.of(this.fileName), schema(), ids);
+        } catch (IOException error) {
+            throw new FileRepositoryAdoptionException("FileRepositoryAdoption->deleteAll: " + error.getMessage());
+        }
+    }
 }
@@ -4,19 +4,21 @@ import domain.BaseEntity;
 import domain.Client.Client;
 import domain.validators.Validator;
 import domain.validators.exceptions.ValidatorException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.schema.EntitySchema;
+import repository.schema.ClientSchema;
 import repository.XML.exceptions.XMLRepositoryClientException;
 import repository.file.exceptions.FileRepositoryClientException;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-public class FileRepositoryClient<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class FileRepositoryClient<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final ClientSchema SCHEMA = new ClientSchema();
 
     private String fileName; //ex: file_name.csv
     private Validator<T> validator;
@@ -101,36 +103,18 @@ public class FileRepositoryClient<ID, T extends BaseEntity<ID>> implements Repos
 
 
     /**
-     * Read the file and get all the Clients as a list from it
+     * Read the file and get all the Clients as a list from it.
+     * The columns are described by {@link ClientSchema}.
      *
      * @return : A list with all clients from the file
      * @throws FileRepositoryClientException: If some error regarding reading the file occurs
      */
     public List<Client> readFile() throws FileRepositoryClientException {
-        /*
-        arr[0] = Id
-        arr[1] = serialNumber
-        arr[2] = name
-        arr[3] = address
-        arr[4] = yearOfRegistration
-         */
-        Pattern pattern = Pattern.compile(",");
-
-        try (Stream<String> lines = Files.lines(Path.of(this.fileName))) {
-            List<Client> clients = lines.map(line -> {
-                String[] arr = pattern.split(line);
-                Client client = new Client(arr[1],
-                        arr[2],
-                        arr[3],
-                        Integer.parseInt(arr[4]));
-                client.setId(Long.parseLong(arr[0]));
-                return client;
-            }).collect(Collectors.toList());
-            return clients;
+        try {
+            return ParallelCsvLoader.read(Path.of(this.fileName), SCHEMA);
         } catch (IOException error) {
             throw new FileRepositoryClientException("readFile: NoSuchFileException");
         }
-
     }
 
     /**
@@ -160,7 +144,7 @@ public class FileRepositoryClient<ID, T extends BaseEntity<ID>> implements Repos
 
         List<Client> clients = this.readFile();
 
-        return (Iterable<T>) List.copyOf(clients);
+        return (Iterable<T>) Collections.unmodifiableList(clients);
     }
 
     /**
@@ -234,5 +218,59 @@ public class FileRepositoryClient<ID, T extends BaseEntity<ID>> implements Repos
         this.save(entity);
         return Optional.empty();
     }
-}
 
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save many clients with one read and one append to the file
+     *
+     * @param entities : Iterable<T> clients to be saved
+     * @return the saved clients and the ones whose id was taken
+     * @throws FileRepositoryClientException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, FileRepositoryClientException {
+        try {
+            return CsvFileBatch.saveAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryClientException("FileRepositoryClient->saveAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Update many clients with one read and one rewrite of the file
+     *
+     * @param entities : Iterable<T> clients to be updated
+     * @return the updated clients and the ones whose id does not exist
+     * @throws FileRepositoryClientException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, FileRepositoryClientException {
+        try {
+            return CsvFileBatch.updateAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryClientException("FileRepositoryClient->updateAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Delete many clients with one read and one rewrite of the file
+     *
+     * @param ids : Iterable<ID> ids of the clients to be deleted
+     * @return the deleted clients
+     * @throws FileRepositoryClientException
+     *          if the file can not be read or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws FileRepositoryClientException {
+        try {
+            return CsvFileBatch.deleteAll(Path.of(this.fileName), schema(), ids);
+        } catch (IOException error) {
+            throw new FileRepositoryClientException("FileRepositoryClient->deleteAll: " + error.getMessage());
+        }
+    }
+}
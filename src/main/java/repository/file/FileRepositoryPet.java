@@ -5,20 +5,22 @@ import domain.BaseEntity;
 import domain.Pet.Pet;
 import domain.validators.Validator;
 import domain.validators.exceptions.ValidatorException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.schema.EntitySchema;
+import repository.schema.PetSchema;
 import repository.XML.exceptions.XMLRepositoryPetException;
 import repository.file.exceptions.FileRepositoryAdoptionException;
 import repository.file.exceptions.FileRepositoryPetException;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-public class FileRepositoryPet<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class FileRepositoryPet<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final PetSchema SCHEMA = new PetSchema();
 
     private String fileName; //ex: file_name.csv
     private Validator<T> validator;
@@ -103,36 +105,18 @@ public class FileRepositoryPet<ID, T extends BaseEntity<ID>> implements Reposito
 
 
     /**
-     * Read the file and get all the Pets as a list from it
+     * Read the file and get all the Pets as a list from it.
+     * The columns are described by {@link PetSchema}.
      *
      * @return : A list with all Pets from the file
      * @throws FileRepositoryPetException: If some error regarding reading the file occurs
      */
     public List<Pet> readFile() throws FileRepositoryPetException {
-        /*
-        arr[0] = Id
-        arr[1] = serialNumber -String
-        arr[2] = name -String
-        arr[3] = breed -String
-        arr[4] = birthDate -int
-         */
-        Pattern pattern = Pattern.compile(",");
-
-        try (Stream<String> lines = Files.lines(Path.of(this.fileName))) {
-            List<Pet> pets = lines.map(line -> {
-                String[] arr = pattern.split(line);
-                Pet pet = new Pet(arr[1],
-                        arr[2],
-                        arr[3],
-                        Integer.parseInt(arr[4]));
-                pet.setId(Long.parseLong(arr[0]));
-                return pet;
-            }).collect(Collectors.toList());
-            return pets;
+        try {
+            return ParallelCsvLoader.read(Path.of(this.fileName), SCHEMA);
         } catch (IOException error) {
             throw new FileRepositoryPetException("readFile: NoSuchFileException");
         }
-
     }
 
     /**
@@ -162,7 +146,7 @@ public class FileRepositoryPet<ID, T extends BaseEntity<ID>> implements Reposito
 
         List<Pet> pets = this.readFile();
 
-        return (Iterable<T>) List.copyOf(pets);
+        return (Iterable<T>) Collections.unmodifiableList(pets);
     }
 
     /**
@@ -234,4 +218,59 @@ public class FileRepositoryPet<ID, T extends BaseEntity<ID>> implements Reposito
         this.save(entity);
         return Optional.empty();
     }
+
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save many pets with one read and one append to the file
+     *
+     * @param entities : Iterable<T> pets to be saved
+     * @return the saved pets and the ones whose id was taken
+     * @throws FileRepositoryPetException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, FileRepositoryPetException {
+        try {
+            return CsvFileBatch.saveAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryPetException("FileRepositoryPet->saveAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Update many pets with one read and one rewrite of the file
+     *
+     * @param entities : Iterable<T> pets to be updated
+     * @return the updated pets and the ones whose id does not exist
+     * @throws FileRepositoryPetException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, FileRepositoryPetException {
+        try {
+            return CsvFileBatch.updateAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryPetException("FileRepositoryPet->updateAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Delete many pets with one read and one rewrite of the file
+     *
+     * @param ids : Iterable<ID> ids of the pets to be deleted
+     * @return the deleted pets
+     * @throws FileRepositoryPetException
+     *          if the file can not be read or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws FileRepositoryPetException {
+        try {
+            return CsvFileBatch.deleteAll(Path.of(this.fileName), schema(), ids);
+        } catch (IOException error) {
+            throw new FileRepositoryPetException("FileRepositoryPet->deleteAll: " + error.getMessage());
+        }
+    }
 }
@@ -5,18 +5,20 @@ import domain.BaseEntity;
 import domain.Purchase.Purchase;
 import domain.validators.Validator;
 import domain.validators.exceptions.ValidatorException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.schema.EntitySchema;
+import repository.schema.PurchaseSchema;
 import repository.file.exceptions.FileRepositoryStoreException;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-public class FileRepositoryStore<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class FileRepositoryStore<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final PurchaseSchema SCHEMA = new PurchaseSchema();
 
     private String fileName; //ex: file_name.csv
     private Validator<T> validator;
@@ -101,32 +103,15 @@ public class FileRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposi
 
 
     /**
-     * Read the file and get all the Purchases as a list from it
+     * Read the file and get all the Purchases as a list from it.
+     * The columns are described by {@link PurchaseSchema}.
      *
      * @return : A list with all Purchases from the file
      * @throws FileRepositoryStoreException: If some error regarding reading the file occurs
      */
     public List<Purchase> readFile() throws FileRepositoryStoreException {
-        /*
-        arr[0] = Id
-        arr[1] = serialNumber -String
-        arr[2] = clientId -Long
-        arr[3] = toyId -Long
-        arr[4] = purchaseYear -int
-         */
-        Pattern pattern = Pattern.compile(",");
-
-        try (Stream<String> lines = Files.lines(Path.of(this.fileName))) {
-            List<Purchase> purchases = lines.map(line -> {
-                String[] arr = pattern.split(line);
-                Purchase purchase = new Purchase(arr[1],
-                        Long.parseLong(arr[2]),
-                        Long.parseLong(arr[3]),
-                        Integer.parseInt(arr[4]));
-                purchase.setId(Long.parseLong(arr[0]));
-                return purchase;
-            }).collect(Collectors.toList());
-            return purchases;
+        try {
+            return ParallelCsvLoader.read(Path.of(this.fileName), SCHEMA);
         } catch (IOException error) {
             throw new FileRepositoryStoreException("readFile: NoSuchFileException");
         }
@@ -158,7 +143,7 @@ public class FileRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposi
 
         List<Purchase> Purchases = this.readFile();
 
-        return (Iterable<T>) List.copyOf(Purchases);
+        return (Iterable<T>) Collections.unmodifiableList(Purchases);
     }
 
     /**
@@ -228,5 +213,59 @@ public class FileRepositoryStore<ID, T extends BaseEntity<ID>> implements Reposi
         this.save(entity);
         return Optional.empty();
     }
-}
 
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save many purchases with one read and one append to the file
+     *
+     * @param entities : Iterable<T> purchases to be saved
+     * @return the saved purchases and the ones whose id was taken
+     * @throws FileRepositoryStoreException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, FileRepositoryStoreException {
+        try {
+            return CsvFileBatch.saveAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryStoreException("FileRepositoryStore->saveAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Update many purchases with one read and one rewrite of the file
+     *
+     * @param entities : Iterable<T> purchases to be updated
+     * @return the updated purchases and the ones whose id does not exist
+     * @throws FileRepositoryStoreException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, FileRepositoryStoreException {
+        try {
+            return CsvFileBatch.updateAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryStoreException("FileRepositoryStore->updateAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Delete many purchases with one read and one rewrite of the file
+     *
+     * @param ids : Iterable<ID> ids of the purchases to be deleted
+     * @return the deleted purchases
+     * @throws FileRepositoryStoreException
+     *          if the file can not be read or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws FileRepositoryStoreException {
+        try {
+            return CsvFileBatch.deleteAll(Path.of(this.fileName), schema(), ids);
+        } catch (IOException error) {
+            throw new FileRepositoryStoreException("FileRepositoryStore->deleteAll: " + error.getMessage());
+        }
+    }
+}
@@ -4,19 +4,21 @@ import domain.BaseEntity;
 import domain.Toy.Toy;
 import domain.validators.Validator;
 import domain.validators.exceptions.ValidatorException;
-import repository.Repository;
+import repository.BatchRepository;
+import repository.BatchResult;
+import repository.schema.EntitySchema;
+import repository.schema.ToySchema;
 import repository.XML.exceptions.XMLRepositoryToyException;
 import repository.file.exceptions.FileRepositoryToyException;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-public class FileRepositoryToy<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+public class FileRepositoryToy<ID, T extends BaseEntity<ID>> implements BatchRepository<ID, T> {
+
+    private static final ToySchema SCHEMA = new ToySchema();
 
     private String fileName; //ex: file_name.csv
     private Validator<T> validator;
@@ -101,38 +103,18 @@ public class FileRepositoryToy<ID, T extends BaseEntity<ID>> implements Reposito
 
 
     /**
-     * Read the file and get all the Toys as a list from it
+     * Read the file and get all the Toys as a list from it.
+     * The columns are described by {@link ToySchema}.
      *
      * @return : A list with all Toys from the file
      * @throws FileRepositoryToyException: If some error regarding reading the file occurs
      */
     public List<Toy> readFile() throws FileRepositoryToyException {
-        /*
-        arr[0] = Id
-        arr[1] = serialNumber -String
-        arr[2] = name -String
-        arr[3] = weight -int
-        arr[4] = material -String
-        arr[5] = price -double
-         */
-        Pattern pattern = Pattern.compile(",");
-
-        try (Stream<String> lines = Files.lines(Path.of(this.fileName))) {
-            List<Toy> toys = lines.map(line -> {
-                String[] arr = pattern.split(line);
-                Toy toy = new Toy(arr[1],
-                        arr[2],
-                        Integer.parseInt(arr[3]),
-                        arr[4],
-                        Double.parseDouble(arr[5]));
-                toy.setId(Long.parseLong(arr[0]));
-                return toy;
-            }).collect(Collectors.toList());
-            return toys;
+        try {
+            return ParallelCsvLoader.read(Path.of(this.fileName), SCHEMA);
         } catch (IOException error) {
             throw new FileRepositoryToyException("readFile: NoSuchFileException");
         }
-
     }
 
     /**
@@ -162,7 +144,7 @@ public class FileRepositoryToy<ID, T extends BaseEntity<ID>> implements Reposito
 
         List<Toy> toys = this.readFile();
 
-        return (Iterable<T>) List.copyOf(toys);
+        return (Iterable<T>) Collections.unmodifiableList(toys);
     }
 
     /**
@@ -232,5 +214,59 @@ public class FileRepositoryToy<ID, T extends BaseEntity<ID>> implements Reposito
         this.save(entity);
         return Optional.empty();
     }
-}
 
+    private EntitySchema<T> schema() {
+        return (EntitySchema<T>) (EntitySchema<?>) SCHEMA;
+    }
+
+    /**
+     * Save many toys with one read and one append to the file
+     *
+     * @param entities : Iterable<T> toys to be saved
+     * @return the saved toys and the ones whose id was taken
+     * @throws FileRepositoryToyException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> saveAll(Iterable<T> entities) throws ValidatorException, FileRepositoryToyException {
+        try {
+            return CsvFileBatch.saveAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryToyException("FileRepositoryToy->saveAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Update many toys with one read and one rewrite of the file
+     *
+     * @param entities : Iterable<T> toys to be updated
+     * @return the updated toys and the ones whose id does not exist
+     * @throws FileRepositoryToyException
+     *          if the file can not be read or written
+     */
+    @Override
+    public BatchResult<T> updateAll(Iterable<T> entities) throws ValidatorException, FileRepositoryToyException {
+        try {
+            return CsvFileBatch.updateAll(Path.of(this.fileName), schema(), validator, entities);
+        } catch (IOException error) {
+            throw new FileRepositoryToyException("FileRepositoryToy->updateAll: " + error.getMessage());
+        }
+    }
+
+    /**
+     * Delete many toys with one read and one rewrite of the file
+     *
+     * @param ids : Iterable<ID> ids of the toys to be deleted
+     * @return the deleted toys
+     * @throws FileRepositoryToyException
+     *          if the file can not be read or written
+     */
+    @Override
+    public List<T> deleteAll(Iterable<ID> ids) throws FileRepositoryToyException {
+        try {
+            return CsvFileBatch.deleteAll(Path.of(this.fileName), schema(), ids);
+        } catch (IOException error) {
+            throw new FileRepositoryToyException("FileRepositoryToy->deleteAll: " + error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package repository.file;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.Repository;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.EntitySchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * File repository that parses its csv file only once.
+ *
+ * The file is loaded into an in-memory id index that answers every read. A save appends one line
+ * to the file, a delete or an update rewrites the file from the index (no re-parsing).
+ * Before every operation the modification time and the size of the file are compared with the ones
+ * recorded after the last load/write; if the file was changed by somebody else it is loaded again.
+ *
+ * The csv layout is the one used by the FileRepository* classes, described by an {@link EntitySchema}.
+ */
+public class IndexedFileRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T> {
+
+    private final Validator<T> validator;
+    private final EntitySchema<T> schema;
+    private final Path file;
+
+    private final Map<ID, T> index = new LinkedHashMap<>();
+    private final CsvFieldSink sink = new CsvFieldSink();
+
+    private FileTime lastModified;
+    private long size = -1;
+    private boolean endsWithNewLine = true;
+
+    /**
+     * Constructor of the class. The file is loaded lazily, on the first operation.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        schema : EntitySchema<T> describing the csv columns
+     *        fileName : String path of the csv file (ex: data/file/toys.csv)
+     */
+    public IndexedFileRepository(Validator<T> validator, EntitySchema<T> schema, String fileName) {
+        this.validator = validator;
+        this.schema = schema;
+        this.file = Path.of(fileName);
+    }
+
+    public String getFileName() {
+        return this.file.toString();
+    }
+
+    /**
+     * Reload the index if the file was modified since it was last read or written by this repository
+     *
+     * @throws FileRepositoryException
+     *          if the file can not be read
+     */
+    private void refresh() throws FileRepositoryException {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            long currentSize = Files.size(file);
+            if (currentSize != size || !modified.equals(lastModified))
+                load();
+        } catch (IOException error) {
+            throw new FileRepositoryException("IndexedFileRepository->refresh: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Parse the whole file into the index (on several threads for large files)
+     */
+    private void load() throws IOException {
+        index.clear();
+        index.putAll(ParallelCsvLoader.load(file, schema));
+        endsWithNewLine = endsWithNewLine();
+        stamp();
+    }
+
+    /**
+     * @return true if the file is empty or its last byte is a line terminator
+     */
+    private boolean endsWithNewLine() throws IOException {
+        long length = Files.size(file);
+        if (length == 0)
+            return true;
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(length - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Remember the current modification time and size of the file, after the repository changed it
+     */
+    private void stamp() throws IOException {
+        lastModified = Files.getLastModifiedTime(file);
+        size = Files.size(file);
+    }
+
+    private String toLine(T entity) {
+        schema.write(entity, sink.reset());
+        return sink.getLine();
+    }
+
+    /**
+     * Append a single entity at the end of the file
+     */
+    private void append(T entity) throws FileRepositoryException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            if (!endsWithNewLine)
+                writer.write(System.lineSeparator());
+            writer.write(toLine(entity));
+            writer.write(System.lineSeparator());
+            endsWithNewLine = true;
+            writer.flush();
+            stamp();
+        } catch (IOException error) {
+            throw new FileRepositoryException("IndexedFileRepository->append: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Rewrite the whole file from the index. The content is written to a temporary file
+     * that replaces the original one, so a failed write never leaves a truncated file behind.
+     */
+    private void rewrite() throws FileRepositoryException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (T entity : index.values()) {
+                    writer.write(toLine(entity));
+                    writer.write(System.lineSeparator());
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            endsWithNewLine = true;
+            stamp();
+        } catch (IOException error) {
+            throw new FileRepositoryException("IndexedFileRepository->rewrite: " + error.getMessage(), error);
+        }
+    }
+
+    @Override
+    public synchronized Optional<T> findOne(ID id) throws FileRepositoryException {
+        if (id == null)
+            throw new FileRepositoryException("IndexedFileRepository->findOne: id cannot be null");
+
+        refresh();
+        return Optional.ofNullable(index.get(id));
+    }
+
+    @Override
+    public synchronized Iterable<T> findAll() throws FileRepositoryException {
+        refresh();
+        return List.copyOf(index.values());
+    }
+
+    @Override
+    public synchronized Optional<T> save(T entity) throws ValidatorException, FileRepositoryException {
+        if (entity == null)
+            throw new FileRepositoryException("IndexedFileRepository->save: entity must not be null");
+
+        validator.validate(entity);
+        refresh();
+
+        T existing = index.get(entity.getId());
+        if (existing != null)
+            return Optional.of(existing);
+
+        append(entity);
+        index.put(entity.getId(), entity);
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<T> delete(ID id) throws FileRepositoryException {
+        if (id == null)
+            throw new FileRepositoryException("IndexedFileRepository->delete: id must not be null");
+
+        refresh();
+        T removed = index.remove(id);
+        if (removed != null)
+            rewrite();
+        return Optional.ofNullable(removed);
+    }
+
+    @Override
+    public synchronized Optional<T> update(T entity) throws ValidatorException, FileRepositoryException {
+        if (entity == null)
+            throw new FileRepositoryException("IndexedFileRepository->update: entity must not be null");
+
+        validator.validate(entity);
+        refresh();
+        if (!index.containsKey(entity.getId()))
+            return Optional.of(entity);
+
+        index.put(entity.getId(), entity);
+        rewrite();
+        return Optional.empty();
+    }
+}
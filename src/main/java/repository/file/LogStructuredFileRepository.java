@@ -0,0 +1,440 @@
+package repository.file;
+
+import domain.BaseEntity;
+import domain.validators.Validator;
+import domain.validators.exceptions.ValidatorException;
+import repository.Repository;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.EntitySchema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only, log-structured file repository.
+ *
+ * Every mutation appends one line to the log: a save or an update appends the csv record of the entity
+ * (the layout of the FileRepository* classes), a delete appends a tombstone ("~id"). The last record
+ * of an id wins, so a csv file whose lines are all terminated is already a valid log. An in-memory index keeps, for every live id,
+ * the position of its latest record; findOne reads just that record from the file.
+ *
+ * Superseded records and tombstones are garbage. Once the garbage passes the configured ratio of the
+ * file, a background thread rewrites the live records into a fresh log (compaction). A failed compaction leaves
+ * the log valid; its failure is kept until a compaction succeeds, see {@link #getLastCompactionFailure}.
+ * A torn record at the end of the log (crash in the middle of an append) is dropped when the log is opened.
+ */
+public class LogStructuredFileRepository<ID, T extends BaseEntity<ID>> implements Repository<ID, T>, Closeable {
+
+    private static final byte TOMBSTONE = '~';
+    private static final byte NEW_LINE = '\n';
+
+    private static final double DEFAULT_GARBAGE_RATIO = 0.5;
+    private static final long DEFAULT_MIN_GARBAGE_BYTES = 64 * 1024;
+
+    /**
+     * Position of a record inside the log (the length includes the line terminator)
+     */
+    private static final class Location {
+        private final long offset;
+        private final int length;
+
+        private Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final Validator<T> validator;
+    private final EntitySchema<T> schema;
+    private final Path file;
+    private final double garbageRatio;
+    private final long minGarbageBytes;
+
+    private final Map<ID, Location> index = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CsvFieldSink sink = new CsvFieldSink();
+
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+    // failure of the last compaction, null once a compaction succeeds
+    private volatile FileRepositoryException lastCompactionFailure;
+
+    private FileChannel channel;
+    private boolean closed = false;
+    private long fileSize;
+    private long garbageBytes;
+
+    public LogStructuredFileRepository(Validator<T> validator, EntitySchema<T> schema, String fileName) {
+        this(validator, schema, fileName, DEFAULT_GARBAGE_RATIO, DEFAULT_MIN_GARBAGE_BYTES);
+    }
+
+    /**
+     * Constructor of the class. Opens (or creates) the log and rebuilds the index from it.
+     *
+     * @param validator : Validator<T> used before every save/update
+     *        schema : EntitySchema<T> describing the csv records
+     *        fileName : String path of the log file
+     *        garbageRatio : double fraction of the file that may be garbage before a compaction starts
+     *        minGarbageBytes : long compaction never starts for less garbage than this
+     * @throws FileRepositoryException
+     *          if the log can not be opened or read
+     */
+    public LogStructuredFileRepository(Validator<T> validator, EntitySchema<T> schema, String fileName,
+                                       double garbageRatio, long minGarbageBytes) throws FileRepositoryException {
+        this.validator = validator;
+        this.schema = schema;
+        this.file = Path.of(fileName);
+        this.garbageRatio = garbageRatio;
+        this.minGarbageBytes = minGarbageBytes;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-compactor-" + file.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replay();
+        } catch (IOException error) {
+            throw new FileRepositoryException("LogStructuredFileRepository: could not open " + fileName + ": "
+                    + error.getMessage(), error);
+        }
+    }
+
+    public String getFileName() {
+        return file.toString();
+    }
+
+    /**
+     * @return the number of bytes of the log occupied by superseded records and tombstones
+     */
+    public long getGarbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scan the whole log once and rebuild the index
+     */
+    private void replay() throws IOException {
+        index.clear();
+        garbageBytes = 0;
+        long offset = 0;
+        CsvFieldSource source = new CsvFieldSource();
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        byte[] chunk = new byte[1 << 16];
+
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != NEW_LINE)
+                        continue;
+                    line.write(chunk, start, i - start);
+                    int length = line.size() + 1;
+                    apply(line.toString(StandardCharsets.UTF_8), new Location(offset, length), source);
+                    offset += length;
+                    line.reset();
+                    start = i + 1;
+                }
+                line.write(chunk, start, read - start);
+            }
+        }
+
+        // a record without its line terminator was only partially written: drop it
+        channel.truncate(offset);
+        fileSize = offset;
+    }
+
+    /**
+     * Apply one record of the log to the index, while replaying it
+     */
+    private void apply(String record, Location location, CsvFieldSource source) {
+        String text = record.endsWith("\r") ? record.substring(0, record.length() - 1) : record;
+        if (text.isEmpty()) {
+            garbageBytes += location.length;
+            return;
+        }
+        if (text.charAt(0) == TOMBSTONE) {
+            ID id = (ID) (Long) source.reset(text.substring(1)).readLong();
+            Location old = index.remove(id);
+            garbageBytes += location.length + (old == null ? 0 : old.length);
+            return;
+        }
+        T entity = schema.read(source.reset(text));
+        Location old = index.put(entity.getId(), location);
+        garbageBytes += old == null ? 0 : old.length;
+    }
+
+    /**
+     * Read the record stored at the given location
+     */
+    private T read(Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        long position = location.offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new IOException("unexpected end of log");
+        }
+        String text = new String(buffer.array(), 0, location.length - 1, StandardCharsets.UTF_8);
+        if (text.endsWith("\r"))
+            text = text.substring(0, text.length() - 1);
+        return schema.read(new CsvFieldSource(text));
+    }
+
+    /**
+     * Append one record at the end of the log
+     *
+     * @return the location of the appended record
+     */
+    private Location append(String record) throws IOException {
+        byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long offset = fileSize;
+        while (buffer.hasRemaining())
+            channel.write(buffer, offset + buffer.position());
+        fileSize += bytes.length;
+        return new Location(offset, bytes.length);
+    }
+
+    private String toRecord(T entity) {
+        schema.write(entity, sink.reset());
+        return sink.getLine();
+    }
+
+    /**
+     * Start a background compaction if the garbage passed the configured threshold.
+     * Must be called while holding the write lock.
+     */
+    private void scheduleCompactionIfNeeded() {
+        boolean tooMuchGarbage = garbageBytes >= minGarbageBytes && garbageBytes >= fileSize * garbageRatio;
+        if (tooMuchGarbage && compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    this.compact();
+                } catch (FileRepositoryException e) {
+                    // the log is still valid, the next write will try again
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Rewrite the live records into a new log that replaces the current one.
+     * Writers wait for the compaction to finish; the old log stays valid until the new one is in place.
+     *
+     * @throws FileRepositoryException
+     *          if the new log can not be written
+     */
+    public void compact() throws FileRepositoryException {
+        lock.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+            List<Map.Entry<ID, Location>> live = new ArrayList<>(index.entrySet());
+            live.sort(Comparator.comparingLong(entry -> entry.getValue().offset));
+
+            Map<ID, Location> compacted = new HashMap<>();
+            long offset = 0;
+            try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Map.Entry<ID, Location> entry : live) {
+                    Location location = entry.getValue();
+                    channel.transferTo(location.offset, location.length, target);
+                    compacted.put(entry.getKey(), new Location(offset, location.length));
+                    offset += location.length;
+                }
+                target.force(true);
+            }
+
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            index.clear();
+            index.putAll(compacted);
+            fileSize = offset;
+            garbageBytes = 0;
+            lastCompactionFailure = null;
+        } catch (IOException error) {
+            lastCompactionFailure = new FileRepositoryException("LogStructuredFileRepository->compact: "
+                    + error.getMessage(), error);
+            reopenAfterFailedCompaction();
+            throw lastCompactionFailure;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the failure of the last compaction (started in the background or not), empty if it succeeded
+     */
+    public Optional<FileRepositoryException> getLastCompactionFailure() {
+        return Optional.ofNullable(lastCompactionFailure);
+    }
+
+    /**
+     * The old log is still in place when a compaction fails, make sure it stays usable
+     */
+    private void reopenAfterFailedCompaction() {
+        if (channel.isOpen())
+            return;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException error) {
+            throw new FileRepositoryException("LogStructuredFileRepository: log can not be reopened: "
+                    + error.getMessage(), error);
+        }
+    }
+
+    @Override
+    public Optional<T> findOne(ID id) throws FileRepositoryException {
+        if (id == null)
+            throw new FileRepositoryException("LogStructuredFileRepository->findOne: id cannot be null");
+
+        lock.readLock().lock();
+        try {
+            Location location = index.get(id);
+            return location == null ? Optional.empty() : Optional.of(read(location));
+        } catch (IOException error) {
+            throw new FileRepositoryException("LogStructuredFileRepository->findOne: " + error.getMessage(), error);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterable<T> findAll() throws FileRepositoryException {
+        lock.readLock().lock();
+        try {
+            List<Location> locations = new ArrayList<>(index.values());
+            locations.sort(Comparator.comparingLong(location -> location.offset));
+            List<T> entities = new ArrayList<>(locations.size());
+            for (Location location : locations)
+                entities.add(read(location));
+            return entities;
+        } catch (IOException error) {
+            throw new FileRepositoryException("LogStructuredFileRepository->findAll: " + error.getMessage(), error);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<T> save(T entity) throws ValidatorException, FileRepositoryException {
+        if (entity == null)
+            throw new FileRepositoryException("LogStructuredFileRepository->save: entity must not be null");
+
+        validator.validate(entity);
+        lock.writeLock().lock();
+        try {
+            Location existing = index.get(entity.getId());
+            if (existing != null)
+                return Optional.of(read(existing));
+
+            index.put(entity.getId(), append(toRecord(entity)));
+            return Optional.empty();
+        } catch (IOException error) {
+            throw new FileRepositoryException("LogStructuredFileRepository->save: " + error.getMessage(), error);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<T> delete(ID id) throws FileRepositoryException {
+        if (id == null)
+            throw new FileRepositoryException("LogStructuredFileRepository->delete: id must not be null");
+
+        lock.writeLock().lock();
+        try {
+            Location existing = index.get(id);
+            if (existing == null)
+                return Optional.empty();
+
+            T removed = read(existing);
+            Location tombstone = append((char) TOMBSTONE + id.toString());
+            index.remove(id);
+            garbageBytes += existing.length + tombstone.length;
+            scheduleCompactionIfNeeded();
+            return Optional.of(removed);
+        } catch (IOException error) {
+            throw new FileRepositoryException("LogStructuredFileRepository->delete: " + error.getMessage(), error);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<T> update(T entity) throws ValidatorException, FileRepositoryException {
+        if (entity == null)
+            throw new FileRepositoryException("LogStructuredFileRepository->update: entity must not be null");
+
+        validator.validate(entity);
+        lock.writeLock().lock();
+        try {
+            Location existing = index.get(entity.getId());
+            if (existing == null)
+                return Optional.of(entity);
+
+            index.put(entity.getId(), append(toRecord(entity)));
+            garbageBytes += existing.length;
+            scheduleCompactionIfNeeded();
+            return Optional.empty();
+        } catch (IOException error) {
+            throw new FileRepositoryException("LogStructuredFileRepository->update: " + error.getMessage(), error);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop the compactor and flush the log to disk
+     *
+     * @throws IOException
+     *          if the log can not be flushed or closed
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            channel.force(true);
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
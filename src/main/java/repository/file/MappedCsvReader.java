@@ -0,0 +1,279 @@
+package repository.file;
+
+import domain.BaseEntity;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.EntitySchema;
+import repository.schema.FieldSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Csv reader that parses the fields of an entity straight from the bytes of the file.
+ *
+ * Large files are memory-mapped with {@link FileChannel#map} (in windows that end on a line boundary),
+ * small ones are read into a single heap buffer. Numbers are decoded from the bytes without going
+ * through a String; only the String fields of the entity are materialised. There is no per-line String
+ * and no String[] from a split, which is what dominated the garbage produced by Files.lines + Pattern.split.
+ */
+public class MappedCsvReader {
+
+    /**
+     * Files smaller than this are read into a heap buffer instead of being mapped
+     */
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    /**
+     * Largest window mapped at once (a mapping is limited to Integer.MAX_VALUE bytes)
+     */
+    private static final long MAX_WINDOW = 1 << 28;
+
+    private MappedCsvReader() {
+    }
+
+    /**
+     * Read every entity of a csv file
+     *
+     * @param file : Path of the csv file
+     *        schema : EntitySchema<T> describing the columns
+     * @return a list with the entities, in file order
+     * @throws IOException
+     *          if the file can not be read
+     * @throws FileRepositoryException
+     *          if a line is malformed
+     */
+    public static <T extends BaseEntity<?>> List<T> read(Path file, EntitySchema<T> schema) throws IOException {
+        List<T> entities = new ArrayList<>();
+        forEach(file, schema, entities::add);
+        return entities;
+    }
+
+    /**
+     * Stream every entity of a csv file to the given consumer, without keeping them
+     *
+     * @param file : Path of the csv file
+     *        schema : EntitySchema<T> describing the columns
+     *        consumer : Consumer<T> receiving the entities, in file order
+     * @throws IOException
+     *          if the file can not be read
+     */
+    public static <T extends BaseEntity<?>> void forEach(Path file, EntitySchema<T> schema, Consumer<T> consumer)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long window = Math.min(size - position, MAX_WINDOW);
+                ByteBuffer buffer = buffer(channel, position, window, size);
+                int end = window == size - position ? buffer.limit() : lastLineEnd(buffer);
+                if (end <= 0)
+                    throw new FileRepositoryException("MappedCsvReader: line longer than " + MAX_WINDOW + " bytes");
+                parse(buffer, 0, end, schema, consumer);
+                position += end;
+            }
+        }
+    }
+
+    /**
+     * Map (or read, for small files) the given region of the file
+     */
+    private static ByteBuffer buffer(FileChannel channel, long position, long length, long fileSize) throws IOException {
+        if (fileSize >= MAP_THRESHOLD)
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @return the index right after the last line terminator of the buffer, 0 if there is none
+     */
+    static int lastLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= 0; i--)
+            if (buffer.get(i) == '\n')
+                return i + 1;
+        return 0;
+    }
+
+    /**
+     * Parse the lines found between two offsets of a buffer. The range must start at the beginning of a line.
+     *
+     * @param buffer : ByteBuffer holding the csv bytes
+     *        start : int offset of the first byte of the range
+     *        end : int offset right after the last byte of the range
+     *        schema : EntitySchema<T> describing the columns
+     *        consumer : Consumer<T> receiving the entities, in order
+     */
+    public static <T extends BaseEntity<?>> void parse(ByteBuffer buffer, int start, int end,
+                                                       EntitySchema<T> schema, Consumer<T> consumer) {
+        ByteFieldSource source = new ByteFieldSource(buffer);
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n')
+                lineEnd++;
+            int contentEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart)
+                consumer.accept(schema.read(source.reset(lineStart, contentEnd)));
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * {@link FieldSource} decoding the comma-separated fields of one line of a ByteBuffer
+     */
+    static final class ByteFieldSource implements FieldSource {
+
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+        private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+        private final ByteBuffer buffer;
+        private final ByteBuffer view;
+        private byte[] scratch = new byte[64];
+        private int lineStart;
+        private int position;
+        private int lineEnd;
+
+        ByteFieldSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.view = buffer.duplicate();
+        }
+
+        ByteFieldSource reset(int lineStart, int lineEnd) {
+            this.lineStart = lineStart;
+            this.position = lineStart;
+            this.lineEnd = lineEnd;
+            return this;
+        }
+
+        /**
+         * @return the offset right after the current field
+         */
+        private int fieldEnd() {
+            if (position > lineEnd)
+                throw new FileRepositoryException("MappedCsvReader: missing field in line \""
+                        + text(lineStart, lineEnd) + "\"");
+            int end = position;
+            while (end < lineEnd && buffer.get(end) != ',')
+                end++;
+            return end;
+        }
+
+        private String text(int start, int end) {
+            int length = end - start;
+            if (scratch.length < length)
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            view.position(start);
+            view.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private FileRepositoryException invalidNumber(int start, int end) {
+            return new FileRepositoryException("MappedCsvReader: invalid number \"" + text(start, end) + "\"");
+        }
+
+        @Override
+        public long readLong() {
+            int start = position;
+            int end = fieldEnd();
+            position = end + 1;
+
+            int i = start;
+            boolean negative = i < end && buffer.get(i) == '-';
+            if (negative || (i < end && buffer.get(i) == '+'))
+                i++;
+            if (i == end)
+                throw invalidNumber(start, end);
+            if (end - i > 18) {
+                try {
+                    return Long.parseLong(text(start, end));
+                } catch (NumberFormatException e) {
+                    throw invalidNumber(start, end);
+                }
+            }
+
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9)
+                    throw invalidNumber(start, end);
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        @Override
+        public int readInt() {
+            int start = position;
+            long value = readLong();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+                throw invalidNumber(start, position - 1);
+            return (int) value;
+        }
+
+        /**
+         * Decimal numbers with at most 15 significant digits and no exponent (every price written by the
+         * repositories) are computed exactly as mantissa / 10^decimals; anything else goes through
+         * Double.parseDouble.
+         */
+        @Override
+        public double readDouble() {
+            int start = position;
+            int end = fieldEnd();
+            position = end + 1;
+
+            int i = start;
+            boolean negative = i < end && buffer.get(i) == '-';
+            if (negative || (i < end && buffer.get(i) == '+'))
+                i++;
+
+            long mantissa = 0;
+            int digits = 0;
+            int decimals = -1;
+            boolean fastPath = i < end;
+            for (; i < end && fastPath; i++) {
+                byte current = buffer.get(i);
+                if (current == '.' && decimals < 0) {
+                    decimals = 0;
+                } else if (current >= '0' && current <= '9') {
+                    mantissa = mantissa * 10 + (current - '0');
+                    digits++;
+                    decimals += decimals >= 0 ? 1 : 0;
+                    fastPath = digits <= 15;
+                } else {
+                    fastPath = false;
+                }
+            }
+
+            if (fastPath && digits > 0 && mantissa < MAX_EXACT_MANTISSA) {
+                double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+                return negative ? -value : value;
+            }
+            try {
+                return Double.parseDouble(text(start, end));
+            } catch (NumberFormatException e) {
+                throw invalidNumber(start, end);
+            }
+        }
+
+        @Override
+        public String readString() {
+            int start = position;
+            int end = fieldEnd();
+            position = end + 1;
+            return text(start, end);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package repository.file;
+
+import domain.BaseEntity;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.EntitySchema;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Bulk csv loader that parses a file on several threads.
+ *
+ * The file is split into byte ranges that start and end on a line boundary; every range is memory-mapped
+ * and parsed by {@link MappedCsvReader} as a task of a ForkJoinPool. The results are merged back
+ * in file order, so the outcome (including which id is reported as a duplicate) does not depend on the
+ * order in which the tasks finish. Files smaller than two chunks are parsed on the calling thread.
+ */
+public class ParallelCsvLoader {
+
+    /**
+     * Smallest range handed to a task; below this the scheduling costs more than the parsing
+     */
+    private static final long MIN_CHUNK = 4 << 20;
+
+    /**
+     * Largest range handed to a task (a mapping must fit in an int)
+     */
+    private static final long MAX_CHUNK = 1 << 28;
+
+    /**
+     * Number of ranges created per worker thread, so that a slow range does not leave the other threads idle
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelCsvLoader() {
+    }
+
+    public static <T extends BaseEntity<?>> List<T> read(Path file, EntitySchema<T> schema) throws IOException {
+        return read(file, schema, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Read every entity of a csv file
+     *
+     * @param file : Path of the csv file
+     *        schema : EntitySchema<T> describing the columns
+     *        pool : ForkJoinPool running the parsing tasks
+     * @return a list with the entities, in file order
+     * @throws IOException
+     *          if the file can not be read
+     */
+    public static <T extends BaseEntity<?>> List<T> read(Path file, EntitySchema<T> schema, ForkJoinPool pool)
+            throws IOException {
+        List<List<T>> chunks = parseChunks(file, schema, pool);
+        if (chunks.size() == 1)
+            return chunks.get(0);
+
+        List<T> entities = new ArrayList<>(chunks.stream().mapToInt(List::size).sum());
+        chunks.forEach(entities::addAll);
+        return entities;
+    }
+
+    public static <ID, T extends BaseEntity<ID>> Map<ID, T> load(Path file, EntitySchema<T> schema) throws IOException {
+        return load(file, schema, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Read every entity of a csv file into an id index
+     *
+     * @param file : Path of the csv file
+     *        schema : EntitySchema<T> describing the columns
+     *        pool : ForkJoinPool running the parsing tasks
+     * @return a map id -> entity, iterating in file order
+     * @throws IOException
+     *          if the file can not be read
+     * @throws FileRepositoryException
+     *          if two records have the same id; the first repeated record in file order is reported
+     */
+    public static <ID, T extends BaseEntity<ID>> Map<ID, T> load(Path file, EntitySchema<T> schema, ForkJoinPool pool)
+            throws IOException {
+        List<List<T>> chunks = parseChunks(file, schema, pool);
+        Map<ID, T> index = new LinkedHashMap<>(Math.max(16, chunks.stream().mapToInt(List::size).sum() * 4 / 3 + 1));
+        long record = 0;
+        for (List<T> chunk : chunks) {
+            for (T entity : chunk) {
+                record++;
+                if (index.putIfAbsent(entity.getId(), entity) != null)
+                    throw new FileRepositoryException("ParallelCsvLoader: duplicate id " + entity.getId()
+                            + " in record #" + record + " of " + file);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Split the file into line-aligned ranges and parse them on the pool
+     *
+     * @return the entities of every range, in file order
+     */
+    private static <T extends BaseEntity<?>> List<List<T>> parseChunks(Path file, EntitySchema<T> schema,
+                                                                      ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkCount = Math.max(pool.getParallelism() * CHUNKS_PER_THREAD, (size + MAX_CHUNK - 1) / MAX_CHUNK);
+            chunkCount = Math.min(chunkCount, Math.max(1, size / MIN_CHUNK));
+
+            if (chunkCount <= 1 && size <= MAX_CHUNK) {
+                List<T> entities = new ArrayList<>();
+                MappedCsvReader.forEach(file, schema, entities::add);
+                return List.of(entities);
+            }
+
+            List<ForkJoinTask<List<T>>> tasks = new ArrayList<>();
+            long start = 0;
+            for (long i = 1; i <= chunkCount; i++) {
+                long end = i == chunkCount ? size : nextLineStart(channel, size * i / chunkCount, size);
+                if (end <= start)
+                    continue;
+                if (end - start > MAX_CHUNK)
+                    throw new FileRepositoryException("ParallelCsvLoader: line longer than " + MAX_CHUNK + " bytes");
+                long from = start;
+                long length = end - start;
+                tasks.add(pool.submit(() -> parseRange(channel, from, length, schema)));
+                start = end;
+            }
+
+            List<List<T>> chunks = new ArrayList<>(tasks.size());
+            try {
+                for (ForkJoinTask<List<T>> task : tasks)
+                    chunks.add(task.join());
+            } catch (UncheckedIOException error) {
+                throw error.getCause();
+            }
+            return chunks;
+        }
+    }
+
+    private static <T extends BaseEntity<?>> List<T> parseRange(FileChannel channel, long from, long length,
+                                                               EntitySchema<T> schema) {
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+            List<T> entities = new ArrayList<>((int) Math.min(length / 32, Integer.MAX_VALUE - 8));
+            MappedCsvReader.parse(buffer, 0, (int) length, schema, entities::add);
+            return entities;
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    /**
+     * @return the offset of the first line that starts at or after the given position
+     */
+    static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        if (position == 0)
+            return 0;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long offset = position - 1;
+        while (offset < size) {
+            probe.clear();
+            int read = channel.read(probe, offset);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++)
+                if (probe.get(i) == '\n')
+                    return offset + i + 1;
+            offset += read;
+        }
+        return size;
+    }
+}
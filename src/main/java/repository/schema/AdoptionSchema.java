@@ -0,0 +1,57 @@
+package repository.schema;
+
+import domain.Adoption.Adoption;
+
+import java.util.List;
+
+public class AdoptionSchema implements EntitySchema<Adoption> {
+
+    /** the adoptions of a client */
+    public static final SecondaryIndex<Adoption, Long> CLIENT_ID = new SecondaryIndex<>("clientId", Adoption::getClientId);
+    /** the adoptions of a pet */
+    public static final SecondaryIndex<Adoption, Long> PET_ID = new SecondaryIndex<>("petId", Adoption::getPetId);
+    /** the adoptions by year, ordered for the time windows */
+    public static final SecondaryIndex<Adoption, Integer> ADOPTION_YEAR =
+            SecondaryIndex.ordered("adoptionYear", Adoption::getAdoptionYear);
+
+    private static final List<String> NAMES = List.of("id", "serialNumber", "clientId", "petId", "adoptionYear");
+    private static final List<FieldType> TYPES = List.of(
+            FieldType.LONG, FieldType.STRING, FieldType.LONG, FieldType.LONG, FieldType.INT);
+
+    @Override
+    public String getEntityName() {
+        return "adoption";
+    }
+
+    @Override
+    public String getCollectionName() {
+        return "adoptions";
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return NAMES;
+    }
+
+    @Override
+    public List<FieldType> getFieldTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public Adoption read(FieldSource source) {
+        long id = source.readLong();
+        Adoption adoption = new Adoption(source.readString(), source.readLong(), source.readLong(), source.readInt());
+        adoption.setId(id);
+        return adoption;
+    }
+
+    @Override
+    public void write(Adoption adoption, FieldSink sink) {
+        sink.writeLong(adoption.getId());
+        sink.writeString(adoption.getSerialNumber());
+        sink.writeLong(adoption.getClientId());
+        sink.writeLong(adoption.getPetId());
+        sink.writeInt(adoption.getAdoptionYear());
+    }
+}
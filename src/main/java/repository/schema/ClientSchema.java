@@ -0,0 +1,53 @@
+package repository.schema;
+
+import domain.Client.Client;
+
+import java.util.List;
+
+public class ClientSchema implements EntitySchema<Client> {
+
+    /** the clients by year of registration, ordered for the time windows */
+    public static final SecondaryIndex<Client, Integer> YEAR_OF_REGISTRATION =
+            SecondaryIndex.ordered("yearOfRegistration", Client::getYearOfRegistration);
+
+    private static final List<String> NAMES = List.of("id", "serialNumber", "name", "address", "yearOfRegistration");
+    private static final List<FieldType> TYPES = List.of(
+            FieldType.LONG, FieldType.STRING, FieldType.STRING, FieldType.STRING, FieldType.INT);
+
+    @Override
+    public String getEntityName() {
+        return "client";
+    }
+
+    @Override
+    public String getCollectionName() {
+        return "clients";
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return NAMES;
+    }
+
+    @Override
+    public List<FieldType> getFieldTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public Client read(FieldSource source) {
+        long id = source.readLong();
+        Client client = new Client(source.readString(), source.readString(), source.readString(), source.readInt());
+        client.setId(id);
+        return client;
+    }
+
+    @Override
+    public void write(Client client, FieldSink sink) {
+        sink.writeLong(client.getId());
+        sink.writeString(client.getSerialNumber());
+        sink.writeString(client.getName());
+        sink.writeString(client.getAddress());
+        sink.writeInt(client.getYearOfRegistration());
+    }
+}
@@ -0,0 +1,56 @@
+package repository.schema;
+
+import domain.BaseEntity;
+
+import java.util.List;
+
+/**
+ * Describes how an entity is laid out on disk: the ordered list of its fields
+ * (the id always comes first) together with the code that reads and writes them.
+ * The same schema drives every storage format (csv, xml, binary), so a format only has
+ * to implement a {@link FieldSource}/{@link FieldSink} pair instead of one parser per entity.
+ *
+ * @param <T> the entity type described by the schema
+ */
+public interface EntitySchema<T extends BaseEntity<?>> {
+
+    /**
+     * @return the name of a single entity (ex: "pet"), also used as its xml element name
+     */
+    String getEntityName();
+
+    /**
+     * @return the name of a collection of entities (ex: "pets"), also used as the xml root element name
+     */
+    String getCollectionName();
+
+    /**
+     * @return the field names in declaration order (the first one is always the id)
+     */
+    List<String> getFieldNames();
+
+    /**
+     * @return the field types in declaration order
+     */
+    List<FieldType> getFieldTypes();
+
+    /**
+     * Read one entity from the given source, field by field.
+     *
+     * @param source : FieldSource positioned at the beginning of a record
+     * @return the decoded entity
+     */
+    T read(FieldSource source);
+
+    /**
+     * Write one entity to the given sink, field by field.
+     *
+     * @param entity : T entity to be written
+     *        sink : FieldSink that receives the fields
+     */
+    void write(T entity, FieldSink sink);
+
+    default int getFieldCount() {
+        return getFieldTypes().size();
+    }
+}
@@ -0,0 +1,15 @@
+package repository.schema;
+
+/**
+ * Sequential writer of typed field values, the counterpart of {@link FieldSource}.
+ */
+public interface FieldSink {
+
+    void writeLong(long value);
+
+    void writeInt(int value);
+
+    void writeDouble(double value);
+
+    void writeString(String value);
+}
@@ -0,0 +1,17 @@
+package repository.schema;
+
+/**
+ * Sequential reader of typed field values.
+ * An {@link EntitySchema} pulls the fields of one record in declaration order,
+ * so an implementation only has to know how to decode the next value.
+ */
+public interface FieldSource {
+
+    long readLong();
+
+    int readInt();
+
+    double readDouble();
+
+    String readString();
+}
@@ -0,0 +1,11 @@
+package repository.schema;
+
+/**
+ * Primitive column types used to describe the persisted fields of an entity.
+ */
+public enum FieldType {
+    LONG,
+    INT,
+    DOUBLE,
+    STRING
+}
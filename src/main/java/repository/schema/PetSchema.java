@@ -0,0 +1,53 @@
+package repository.schema;
+
+import domain.Pet.Pet;
+
+import java.util.List;
+
+public class PetSchema implements EntitySchema<Pet> {
+
+    /** the pets by year of birth, ordered for the time windows */
+    public static final SecondaryIndex<Pet, Integer> BIRTH_YEAR =
+            SecondaryIndex.ordered("birthYear", Pet::getBirthDate);
+
+    private static final List<String> NAMES = List.of("id", "serialNumber", "name", "breed", "birthYear");
+    private static final List<FieldType> TYPES = List.of(
+            FieldType.LONG, FieldType.STRING, FieldType.STRING, FieldType.STRING, FieldType.INT);
+
+    @Override
+    public String getEntityName() {
+        return "pet";
+    }
+
+    @Override
+    public String getCollectionName() {
+        return "pets";
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return NAMES;
+    }
+
+    @Override
+    public List<FieldType> getFieldTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public Pet read(FieldSource source) {
+        long id = source.readLong();
+        Pet pet = new Pet(source.readString(), source.readString(), source.readString(), source.readInt());
+        pet.setId(id);
+        return pet;
+    }
+
+    @Override
+    public void write(Pet pet, FieldSink sink) {
+        sink.writeLong(pet.getId());
+        sink.writeString(pet.getSerialNumber());
+        sink.writeString(pet.getName());
+        sink.writeString(pet.getBreed());
+        sink.writeInt(pet.getBirthDate());
+    }
+}
@@ -0,0 +1,57 @@
+package repository.schema;
+
+import domain.Purchase.Purchase;
+
+import java.util.List;
+
+public class PurchaseSchema implements EntitySchema<Purchase> {
+
+    /** the purchases of a client */
+    public static final SecondaryIndex<Purchase, Long> CLIENT_ID = new SecondaryIndex<>("clientId", Purchase::getClientId);
+    /** the purchases of a toy */
+    public static final SecondaryIndex<Purchase, Long> TOY_ID = new SecondaryIndex<>("toyId", Purchase::getToyId);
+    /** the purchases by year, ordered for the time windows */
+    public static final SecondaryIndex<Purchase, Integer> PURCHASE_YEAR =
+            SecondaryIndex.ordered("purchaseYear", Purchase::getPurchaseYear);
+
+    private static final List<String> NAMES = List.of("id", "serialNumber", "clientId", "toyId", "purchaseYear");
+    private static final List<FieldType> TYPES = List.of(
+            FieldType.LONG, FieldType.STRING, FieldType.LONG, FieldType.LONG, FieldType.INT);
+
+    @Override
+    public String getEntityName() {
+        return "purchase";
+    }
+
+    @Override
+    public String getCollectionName() {
+        return "purchases";
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return NAMES;
+    }
+
+    @Override
+    public List<FieldType> getFieldTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public Purchase read(FieldSource source) {
+        long id = source.readLong();
+        Purchase purchase = new Purchase(source.readString(), source.readLong(), source.readLong(), source.readInt());
+        purchase.setId(id);
+        return purchase;
+    }
+
+    @Override
+    public void write(Purchase purchase, FieldSink sink) {
+        sink.writeLong(purchase.getId());
+        sink.writeString(purchase.getSerialNumber());
+        sink.writeLong(purchase.getClientId());
+        sink.writeLong(purchase.getToyId());
+        sink.writeInt(purchase.getPurchaseYear());
+    }
+}
@@ -0,0 +1,74 @@
+package repository.schema;
+
+import domain.BaseEntity;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Declares a secondary index of an entity: a field other than the id (usually a foreign key, ex: the petId of an
+ * adoption) by which the entities can be looked up without scanning all of them.
+ * The indexes are declared once, as constants of the entity schema, and a repository tells which of them it
+ * maintains (see {@link repository.IndexedRepository}). The name is the name of the indexed field.
+ * An ordered index (see {@link #ordered}) also answers range queries over its keys, ex: the adoptions of 2019-2021.
+ *
+ * @param <T> the indexed entity type
+ * @param <K> the type of the indexed field
+ */
+public final class SecondaryIndex<T extends BaseEntity<?>, K> {
+
+    private final String name;
+    private final Function<T, K> key;
+    private final boolean ordered;
+
+    /**
+     * Constructor of the class, for an index answering lookups by equality only.
+     *
+     * @param name : String name of the indexed field, as in the schema
+     *        key : Function<T, K> reads the indexed field of an entity
+     */
+    public SecondaryIndex(String name, Function<T, K> key) {
+        this(name, key, false);
+    }
+
+    private SecondaryIndex(String name, Function<T, K> key, boolean ordered) {
+        this.name = Objects.requireNonNull(name);
+        this.key = Objects.requireNonNull(key);
+        this.ordered = ordered;
+    }
+
+    /**
+     * Declare an index keeping its keys sorted, which answers range queries too
+     *
+     * @param name : String name of the indexed field, as in the schema
+     *        key : Function<T, K> reads the indexed field of an entity
+     * @return the index
+     */
+    public static <T extends BaseEntity<?>, K extends Comparable<? super K>> SecondaryIndex<T, K> ordered(
+            String name, Function<T, K> key) {
+        return new SecondaryIndex<>(name, key, true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if the index keeps its keys sorted and answers range queries
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * @return the value of the indexed field of the entity (entities with a null value are not indexed)
+     */
+    public K keyOf(T entity) {
+        return key.apply(entity);
+    }
+
+    @Override
+    public String toString() {
+        return "SecondaryIndex{" + name + "}";
+    }
+}
@@ -0,0 +1,51 @@
+package repository.schema;
+
+import domain.Toy.Toy;
+
+import java.util.List;
+
+public class ToySchema implements EntitySchema<Toy> {
+
+    private static final List<String> NAMES = List.of("id", "serialNumber", "name", "weight", "material", "price");
+    private static final List<FieldType> TYPES = List.of(
+            FieldType.LONG, FieldType.STRING, FieldType.STRING, FieldType.INT, FieldType.STRING, FieldType.DOUBLE);
+
+    @Override
+    public String getEntityName() {
+        return "toy";
+    }
+
+    @Override
+    public String getCollectionName() {
+        return "toys";
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return NAMES;
+    }
+
+    @Override
+    public List<FieldType> getFieldTypes() {
+        return TYPES;
+    }
+
+    @Override
+    public Toy read(FieldSource source) {
+        long id = source.readLong();
+        Toy toy = new Toy(source.readString(), source.readString(), source.readInt(),
+                source.readString(), source.readDouble());
+        toy.setId(id);
+        return toy;
+    }
+
+    @Override
+    public void write(Toy toy, FieldSink sink) {
+        sink.writeLong(toy.getId());
+        sink.writeString(toy.getSerialNumber());
+        sink.writeString(toy.getName());
+        sink.writeInt(toy.getWeight());
+        sink.writeString(toy.getMaterial());
+        sink.writeDouble(toy.getPrice());
+    }
+}
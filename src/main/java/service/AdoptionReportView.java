@@ -0,0 +1,102 @@
+package service;
+
+import domain.Adoption.Adoption;
+import domain.Pet.Pet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Materialised aggregates of the adoptions, kept current by the service on every adoption and delete instead of
+ * being recomputed from the repositories for every report: the number of adoptions per breed and, for every year,
+ * the number of adoptions per client. The reports read them in O(log n).
+ *
+ * The contribution of every adoption (its breed, client and year) is remembered by adoption id, so an adoption
+ * is taken out exactly as it was counted, even when its pet was deleted first.
+ */
+final class AdoptionReportView {
+
+    /**
+     * What one adoption adds to the aggregates
+     */
+    private static final class Row {
+        private final String breed;
+        private final Long clientId;
+        private final int year;
+
+        private Row(Adoption adoption, Pet pet) {
+            this.breed = pet == null ? null : pet.getBreed();
+            this.clientId = adoption.getClientId();
+            this.year = adoption.getAdoptionYear();
+        }
+    }
+
+    private final Map<Long, Row> rows = new HashMap<>();
+    private final RankedCounter<String> breeds = new RankedCounter<>();
+    private final Map<Integer, RankedCounter<Long>> clientsByYear = new HashMap<>();
+
+    /**
+     * Compute the aggregates of all the adoptions, reading each repository once
+     *
+     * @param adoptions : Iterable<Adoption> all the adoptions
+     *        pets : Map<Long, Pet> all the pets by id
+     * @return the view
+     */
+    static AdoptionReportView of(Iterable<Adoption> adoptions, Map<Long, Pet> pets) {
+        AdoptionReportView view = new AdoptionReportView();
+        for (Adoption adoption : adoptions)
+            view.add(adoption, pets.get(adoption.getPetId()));
+        return view;
+    }
+
+    /**
+     * Count a new adoption. An adoption already counted with the same id is replaced, which is also how
+     * the adoptions of an updated pet are counted again with its new breed.
+     *
+     * @param adoption : Adoption the new adoption
+     *        pet : Pet the adopted pet, null if it does not exist (its breed is not counted)
+     */
+    void add(Adoption adoption, Pet pet) {
+        remove(adoption.getId());
+        Row row = new Row(adoption, pet);
+        rows.put(adoption.getId(), row);
+        if (row.breed != null)
+            breeds.increment(row.breed);
+        clientsByYear.computeIfAbsent(row.year, year -> new RankedCounter<>()).increment(row.clientId);
+    }
+
+    /**
+     * Take out the adoption with the given id, if it is counted
+     */
+    void remove(Long adoptionId) {
+        Row row = rows.remove(adoptionId);
+        if (row == null)
+            return;
+        if (row.breed != null)
+            breeds.decrement(row.breed);
+        RankedCounter<Long> clients = clientsByYear.get(row.year);
+        clients.decrement(row.clientId);
+        if (clients.isEmpty())
+            clientsByYear.remove(row.year);
+    }
+
+    boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    /**
+     * @return the breed of the most adopted pets (the first by name among equals), empty if no breed is counted
+     */
+    Optional<String> mostAdoptedBreed() {
+        return breeds.mostFrequent();
+    }
+
+    /**
+     * @return the id of the client with the fewest adoptions in the year (the smallest id among equals),
+     *         empty if no adoptions were made in that year
+     */
+    Optional<Long> clientOfTheYear(int year) {
+        return Optional.ofNullable(clientsByYear.get(year)).flatMap(RankedCounter::leastFrequent);
+    }
+}
@@ -6,8 +6,16 @@ import domain.Client.Client;
 import domain.Pet.Pet;
 import domain.Pet.PetBirthYearComparator;
 import domain.validators.exceptions.ValidatorException;
+import repository.AdoptionReportRepository;
+import repository.BatchRepository;
+import repository.DelegatingRepository;
 import repository.RepositoryException;
 import repository.Repository;
+import repository.binary.ColumnScan;
+import repository.binary.ColumnarRepository;
+import repository.schema.AdoptionSchema;
+import repository.schema.PetSchema;
+import repository.schema.SecondaryIndex;
 import service.exceptions.AdoptionServiceException;
 
 import java.util.Calendar;
@@ -15,12 +23,15 @@ import java.util.*;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class AdoptionService {
     private final Repository<Long, Adoption> adoptionRepository;
     private final Repository<Long, Client> clientRepository;
     private final Repository<Long, Pet> petRepository;
+    // aggregates of the adoptions for the reports, computed by the first report then kept current by the writes
+    private AdoptionReportView reportView;
 
     public AdoptionService(Repository<Long, Adoption> adoptionRepository, Repository<Long, Client> clientRepository, Repository<Long, Pet> petRepository) {
         this.adoptionRepository = adoptionRepository;
@@ -40,16 +51,11 @@ public class AdoptionService {
         clientRepository.findOne(clientId).orElseThrow(() ->
                 new AdoptionServiceException("Could not find client with the given clientId.")
         );
-        petRepository.findOne(petId).orElseThrow(() ->
+        Pet pet = petRepository.findOne(petId).orElseThrow(() ->
                 new AdoptionServiceException("Could not find pet with the given petId.")
         );
-        // check if pet is available for adoption
-        List<Adoption> adoptions = StreamSupport
-                .stream(adoptionRepository.findAll().spliterator(), false)
-                .collect(Collectors.toList());
-
-        // filter adoptions containing the petId
-        long cnt = adoptions.stream().filter(adop -> adop.getPetId() == petId).count();
+        // check if pet is available for adoption: look for adoptions containing the petId
+        long cnt = adoptionsWith(AdoptionSchema.PET_ID, petId).count();
         Optional.of(cnt).filter(c -> c == 0).orElseThrow(() ->
                 new AdoptionServiceException("Pet was already adopted.")
         );
@@ -58,7 +64,14 @@ public class AdoptionService {
         Adoption adoption = new Adoption(serialNumber, clientId, petId, currentYear);
         adoption.setId(id);
         try {
-            adoptionRepository.save(adoption);
+            Optional<Adoption> existing = adoptionRepository.save(adoption);
+            if (reportView != null) {
+                // an id already taken: the repository may or may not have replaced the adoption, compute again
+                if (existing.filter(other -> other != adoption).isPresent())
+                    reportView = null;
+                else
+                    reportView.add(adoption, pet);
+            }
         }catch(ValidatorException | IllegalArgumentException e){
             throw new AdoptionServiceException(e.getMessage());
         }
@@ -69,29 +82,39 @@ public class AdoptionService {
      *
      * @return Long with the average adopted age
      * @throws AdoptionServiceException
-     *          if the adoptioRepository is empty
+     *          if the adoptioRepository is empty or none of the adopted pets exists
      */
 
     public long getAverageAdoptedAge() throws AdoptionServiceException{
 
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        Iterable<Adoption> adoptions = adoptionRepository.findAll();
 
-        Optional.of(!adoptions.isEmpty()).filter(a -> a).orElseThrow(() ->
+        Optional.of(adoptions.iterator().hasNext()).filter(a -> a).orElseThrow(() ->
                 new AdoptionServiceException("in averageAdoptedAge: empty repository of adoptions.")
         );
 
         int currentYear = Calendar.getInstance().get(Calendar.YEAR);
 
-        // take the adopted pets
-        List<Pet> adoptedPets = adoptions.stream()
-                .map(p -> petRepository.findOne(p.getPetId()).get())
-                .collect(Collectors.toList());
+        // stored by column: the sum of the ages is the sum of one scan of the birth years of the adopted pets
+        Optional<ColumnarJoin<Adoption, Pet>> columns = ColumnarJoin.of(adoptionRepository,
+                AdoptionSchema.PET_ID.getName(), petRepository);
+        if (columns.isPresent()) {
+            long adopted = columns.get().matched();
+            Optional.of(adopted > 0).filter(a -> a).orElseThrow(() ->
+                    new AdoptionServiceException("in averageAdoptedAge: no adopted pet found.")
+            );
+            return (adopted * currentYear - columns.get().sumOfInt(PetSchema.BIRTH_YEAR.getName())) / adopted;
+        }
 
-        long sm = adoptedPets.stream()
-                .map(p -> (currentYear - p.getBirthDate()))
-                .reduce(0, (acc, iter) -> acc += iter);
-        return sm / adoptedPets.size();
+        // take the ages of the adopted pets
+        IntSummaryStatistics ages = HashJoin.referenced(StreamSupport.stream(adoptions.spliterator(), false),
+                        Adoption::getPetId, petRepository)
+                .mapToInt(p -> (currentYear - p.getBirthDate()))
+                .summaryStatistics();
+        Optional.of(ages.getCount() > 0).filter(a -> a).orElseThrow(() ->
+                new AdoptionServiceException("in averageAdoptedAge: no adopted pet found.")
+        );
+        return ages.getSum() / ages.getCount();
     }
 
     /*
@@ -102,29 +125,15 @@ public class AdoptionService {
     */
     public String mostAdoptedBreed() throws AdoptionServiceException
     {
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        Optional<AdoptionReportRepository> reports = adoptionReports(petRepository);
+        if (reports.isPresent())
+            return reports.get().mostAdoptedBreed(petRepository).orElseThrow(() ->
+                new AdoptionServiceException("in mostAdoptedBreed: empty repository of adoptions.")
+            );
 
-        Optional.of(!adoptions.isEmpty()).filter(a -> a).orElseThrow(() ->
+        return reportView().mostAdoptedBreed().orElseThrow(() ->
             new AdoptionServiceException("in mostAdoptedBreed: empty repository of adoptions.")
         );
-
-        // take the adopted pets
-        List<Pet> adoptedPets = StreamSupport
-                .stream(adoptionRepository.findAll().spliterator(), false)
-                .map(p -> petRepository.findOne(p.getPetId()).get())
-                .collect(Collectors.toList());
-
-        Map<String, Integer> breed_and_frequency = new HashMap<String, Integer>();
-        adoptedPets.forEach(ap -> breed_and_frequency.put(ap.getBreed(), breed_and_frequency.get(ap.getBreed()) == null ? 1 : breed_and_frequency.get(ap.getBreed())+1));
-
-        return breed_and_frequency.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                .collect(Collectors.toList())
-                .stream().limit(1L)
-                .collect(Collectors.toList())
-                .get(0)
-                .getKey();
     }
     /**
     Get the youngest adopted pet.
@@ -134,19 +143,23 @@ public class AdoptionService {
      */
     public Optional<Pet> getYoungestAdoptedPet() throws AdoptionServiceException
     {
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        Iterable<Adoption> adoptions = adoptionRepository.findAll();
 
-        Optional.of(!adoptions.isEmpty()).filter(a -> a).orElseThrow(() ->
+        Optional.of(adoptions.iterator().hasNext()).filter(a -> a).orElseThrow(() ->
                 new AdoptionServiceException("in getYoungestAdoptedPet: empty repository of adoptions.")
         );
 
-        List<Pet> pets = adoptions.stream()
-                .map(adop -> petRepository.findOne(adop.getPetId()).get())
-                .collect(Collectors.toList());
+        // stored by column: one scan of the birth years of the adopted pets, only the youngest is built
+        Optional<ColumnarJoin<Adoption, Pet>> columns = ColumnarJoin.of(adoptionRepository,
+                AdoptionSchema.PET_ID.getName(), petRepository);
+        if (columns.isPresent()) {
+            int youngest = columns.get().argMaxOfInt(PetSchema.BIRTH_YEAR.getName());
+            return youngest < 0 ? Optional.empty() : Optional.of(columns.get().referencedBy(youngest));
+        }
 
-        pets.sort(new PetBirthYearComparator());
-        return Optional.of(pets.get(0));
+        return HashJoin.referenced(StreamSupport.stream(adoptions.spliterator(), false),
+                        Adoption::getPetId, petRepository)
+                .min(new PetBirthYearComparator());
     }
 
     public Set<Adoption> getAllAdoptions() {
@@ -161,14 +174,8 @@ public class AdoptionService {
      */
 
     public List<Adoption> getLastNAdoptions(int n){
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
-
-        int finalN = adoptions.size();
-        n = Optional.of(n).filter(p -> p < finalN).orElse(adoptions.size());
-
-        adoptions.sort(new AdoptionYearComparator());
-        return adoptions.subList(adoptions.size() - n, adoptions.size());
+        // the n last adoptions of the sort by year, selected without sorting them all
+        return TopK.last(adoptionRepository.findAll(), n, new AdoptionYearComparator());
     }
 
     /*
@@ -180,34 +187,38 @@ public class AdoptionService {
      */
     public Client getClientOfTheYear(int year) throws AdoptionServiceException {
 
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        Optional<AdoptionReportRepository> reports = adoptionReports(clientRepository);
+        if (reports.isPresent()) {
+            Optional<Client> client = reports.get().clientOfTheYear(clientRepository, year);
+            if (client.isPresent())
+                return client.get();
+            if (reports.get().isEmpty())
+                throw new AdoptionServiceException("in getClientOfTheYear: empty repository of adoptions.");
+            throw new AdoptionServiceException("in getClientOfTheYear: no adoptions found in the given year.");
+        }
 
-        Optional.of(!adoptions.isEmpty()).filter(a -> a).orElseThrow(() ->
+        AdoptionReportView view = reportView();
+        Optional.of(!view.isEmpty()).filter(a -> a).orElseThrow(() ->
                 new AdoptionServiceException("in getClientOfTheYear: empty repository of adoptions.")
         );
 
-        // take the clients
-        List<Client> clients = adoptions
-                .stream()
-                .filter(ad -> ad.getAdoptionYear() == year)
-                .map(c -> clientRepository.findOne(c.getClientId()).get())
-                .collect(Collectors.toList());
-
-        Optional.of(!clients.isEmpty()).filter(a -> a).orElseThrow(() ->
-                new AdoptionServiceException("in getClientOfTheYear: no adoptions found in the given year.")
-        );
-
-        Map<Client, Integer> clientAndFreq = new HashMap<Client, Integer>();
-        clients.forEach(cl -> clientAndFreq.put(cl, clientAndFreq.get(cl) == null ? 1 : clientAndFreq.get(cl) + 1));
+        return view.clientOfTheYear(year)
+                .flatMap(clientRepository::findOne)
+                .orElseThrow(() ->
+                        new AdoptionServiceException("in getClientOfTheYear: no adoptions found in the given year.")
+                );
+    }
 
-        return clientAndFreq.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue())
-                .collect(Collectors.toList())
-                .stream().limit(1L)
-                .collect(Collectors.toList())
-                .get(0)
-                .getKey();
+    /**
+     * Get the adoptions made in a window of years, with a range lookup in the year index of the repository
+     * when it has one
+     *
+     * @param fromYear : int first year of the window
+     *        toYear : int last year of the window
+     * @return List<Adoption> the adoptions made from fromYear to toYear (both included), sorted by year
+     */
+    public List<Adoption> getAdoptionsBetween(int fromYear, int toYear) {
+        return IndexLookup.between(adoptionRepository, AdoptionSchema.ADOPTION_YEAR, fromYear, toYear);
     }
 
     /**
@@ -220,15 +231,24 @@ public class AdoptionService {
 
     public Adoption getMostRecentAdoption() throws AdoptionServiceException{
 
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        // stored by column: one scan of the adoption years, only the most recent adoption is built
+        Optional<ColumnarRepository<Adoption>> columns = ColumnarJoin.columnar(adoptionRepository);
+        if (columns.isPresent()) {
+            ColumnarRepository<Adoption> adoptions = columns.get();
+            int mostRecent = ColumnScan.argMax(adoptions.intColumn(AdoptionSchema.ADOPTION_YEAR.getName()),
+                    adoptions.size());
+            if (mostRecent < 0)
+                throw new AdoptionServiceException("in getMostRecentAdoption: empty repository of adoptions.");
+            return adoptions.get(mostRecent);
+        }
 
-        Optional.of(!adoptions.isEmpty()).filter(a -> a).orElseThrow(() ->
-                new AdoptionServiceException("in getMostRecentAdoption: empty repository of adoptions.")
-        );
+        Iterable<Adoption> adoptions = adoptionRepository.findAll();
 
-        adoptions.sort(new AdoptionYearComparator());
-        return adoptions.get(0);
+        return StreamSupport.stream(adoptions.spliterator(), false)
+                .min(new AdoptionYearComparator())
+                .orElseThrow(() ->
+                        new AdoptionServiceException("in getMostRecentAdoption: empty repository of adoptions.")
+                );
     }
 
     /**
@@ -239,12 +259,10 @@ public class AdoptionService {
 
     public void deleteAdoptionsForClient(long id) throws AdoptionServiceException {
 
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
-
-        adoptions.stream()
-                .filter(client -> client.getClientId() == id)
-                .forEach(client -> adoptionRepository.delete(client.getId()));
+        // the ids are collected before anything is deleted, findAll may be a live view of the repository
+        deleteAdoptions(adoptionsWith(AdoptionSchema.CLIENT_ID, id)
+                .map(Adoption::getId)
+                .collect(Collectors.toList()));
 
     }
 
@@ -256,11 +274,72 @@ public class AdoptionService {
 
     public void deleteAdoptionsForPet(long id) throws AdoptionServiceException {
 
-        Iterable<Adoption> iterator = adoptionRepository.findAll();
-        List<Adoption> adoptions = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        // the ids are collected before anything is deleted, findAll may be a live view of the repository
+        deleteAdoptions(adoptionsWith(AdoptionSchema.PET_ID, id)
+                .map(Adoption::getId)
+                .collect(Collectors.toList()));
+    }
 
-        adoptions.stream()
-                .filter(adop -> adop.getPetId() == id)
-                .forEach(adop -> adoptionRepository.delete(adop.getId()));
+    /**
+     * Get the adoptions with the given client or pet, with a lookup in the index of the repository when it has one,
+     * otherwise by scanning all the adoptions
+     *
+     * @param index : SecondaryIndex<Adoption, Long> AdoptionSchema.CLIENT_ID or AdoptionSchema.PET_ID
+     *        key : Long id of the client or of the pet
+     * @return the matching adoptions
+     */
+    private Stream<Adoption> adoptionsWith(SecondaryIndex<Adoption, Long> index, Long key) {
+        return IndexLookup.with(adoptionRepository, index, key);
+    }
+
+    /**
+     * Delete the adoptions with the given ids, in a single batch when the repository supports it
+     *
+     * @param ids : List<Long> ids of the adoptions to be deleted
+     */
+    private void deleteAdoptions(List<Long> ids) {
+        if (adoptionRepository instanceof BatchRepository)
+            ((BatchRepository<Long, Adoption>) adoptionRepository).deleteAll(ids);
+        else
+            ids.forEach(adoptionRepository::delete);
+        if (reportView != null)
+            ids.forEach(reportView::remove);
+    }
+
+    /**
+     * Count again the adoptions of a pet in the reports, after the pet was updated (ex: its breed changed)
+     *
+     * @param petId : Long id of the updated pet
+     */
+    public void refreshPet(Long petId) {
+        if (reportView == null)
+            return;
+        Optional<Pet> pet = petRepository.findOne(petId);
+        adoptionsWith(AdoptionSchema.PET_ID, petId).forEach(adoption -> reportView.add(adoption, pet.orElse(null)));
+    }
+
+    /**
+     * Get the aggregates of the adoptions, computing them with one scan of the adoptions and of the pets
+     * the first time
+     *
+     * @return the aggregates, current with the adoptions made and deleted through this service
+     */
+    private AdoptionReportView reportView() {
+        if (reportView == null)
+            reportView = AdoptionReportView.of(adoptionRepository.findAll(), HashJoin.byId(petRepository));
+        return reportView;
+    }
+
+    /**
+     * Get the adoption repository as a report repository, if it can compute the reports over the given repository
+     * itself (ex: both are tables of the same database); otherwise the reports are computed here, with a hash join
+     * of the findAll of both
+     *
+     * @param joined : Repository<Long, ?> the pets or the clients
+     * @return the adoption repository, empty if it can not compute the reports
+     */
+    private Optional<AdoptionReportRepository> adoptionReports(Repository<Long, ?> joined) {
+        return DelegatingRepository.unwrap(adoptionRepository, AdoptionReportRepository.class)
+                .filter(reports -> reports.supportsJoin(joined));
     }
 }
@@ -6,10 +6,12 @@ import domain.validators.exceptions.ValidatorException;
 import repository.InMemoryRepositoryException;
 import repository.Repository;
 import repository.RepositoryException;
+import repository.schema.ClientSchema;
 import service.exceptions.ClientServiceException;
 import service.exceptions.PetServiceException;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -34,6 +36,18 @@ public class ClientService {
         return StreamSupport.stream(clients.spliterator(), false).collect(Collectors.toSet());
     }
 
+    /**
+     * Returns the clients registered in a window of years, with a range lookup in the year index of the repository
+     * when it has one.
+     *
+     * @param fromYear : int first year of the window
+     *        toYear : int last year of the window
+     * @return the clients registered from fromYear to toYear (both included), sorted by year of registration
+     */
+    public List<Client> getClientsRegisteredBetween(int fromYear, int toYear) {
+        return IndexLookup.between(repository, ClientSchema.YEAR_OF_REGISTRATION, fromYear, toYear);
+    }
+
     /**
      * Returns all clients whose name contain the given string.
      *
@@ -0,0 +1,103 @@
+package service;
+
+import domain.BaseEntity;
+import repository.DelegatingRepository;
+import repository.Repository;
+import repository.binary.ColumnScan;
+import repository.binary.ColumnarRepository;
+
+import java.util.Optional;
+
+/**
+ * Joins rows (ex: purchases) with the entities their foreign key refers to (ex: toys) when both repositories store
+ * their entities by column (see {@link ColumnarRepository}), even behind decorators: the foreign key column is read
+ * once to find the row of every referenced entity, then a report reads the one column it needs with the primitives
+ * of {@link ColumnScan}, without building a single entity. Only the entity of the result is built.
+ *
+ * Like {@link HashJoin}, the rows whose referenced entity does not exist are left out.
+ */
+final class ColumnarJoin<R extends BaseEntity<Long>, T extends BaseEntity<Long>> {
+
+    private final ColumnarRepository<R> rows;
+    private final ColumnarRepository<T> referenced;
+    // the row of the referenced entity of every row, -1 if it does not exist
+    private final int[] referencedRows;
+
+    private ColumnarJoin(ColumnarRepository<R> rows, String foreignKey, ColumnarRepository<T> referenced) {
+        this.rows = rows;
+        this.referenced = referenced;
+        this.referencedRows = referenced.rowsOf(rows.longColumn(foreignKey), rows.size());
+    }
+
+    /**
+     * Get the repository as a columnar repository, if it stores its entities by column
+     *
+     * @param repository : Repository<Long, T> the repository, maybe behind decorators
+     * @return the columnar repository, empty if the entities are not stored by column
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends BaseEntity<Long>> Optional<ColumnarRepository<T>> columnar(Repository<Long, T> repository) {
+        return DelegatingRepository.unwrap(repository, ColumnarRepository.class)
+                .map(candidate -> (ColumnarRepository<T>) candidate);
+    }
+
+    /**
+     * Join the rows with the entities of their foreign key, if both repositories store their entities by column
+     *
+     * @param rows : Repository<Long, R> holds the rows
+     *        foreignKey : String name of the LONG field of the rows holding the id of the referenced entity
+     *        referenced : Repository<Long, T> holds the referenced entities
+     * @return the join, empty if one of the repositories does not store its entities by column
+     */
+    static <R extends BaseEntity<Long>, T extends BaseEntity<Long>> Optional<ColumnarJoin<R, T>> of(
+            Repository<Long, R> rows, String foreignKey, Repository<Long, T> referenced) {
+        Optional<ColumnarRepository<R>> rowColumns = columnar(rows);
+        Optional<ColumnarRepository<T>> referencedColumns = columnar(referenced);
+        if (!rowColumns.isPresent() || !referencedColumns.isPresent())
+            return Optional.empty();
+        return Optional.of(new ColumnarJoin<>(rowColumns.get(), foreignKey, referencedColumns.get()));
+    }
+
+    /**
+     * @return the number of rows whose referenced entity exists
+     */
+    int matched() {
+        return ColumnScan.countFound(referencedRows, referencedRows.length);
+    }
+
+    /**
+     * @return the sum of an INT field over the referenced entity of every matched row (an entity referenced by
+     *         several rows counts several times)
+     */
+    long sumOfInt(String field) {
+        return ColumnScan.sumAt(referenced.intColumn(field), referencedRows, referencedRows.length);
+    }
+
+    /**
+     * @return the first row whose referenced entity has the largest value of an INT field, -1 if no row matched
+     */
+    int argMaxOfInt(String field) {
+        return ColumnScan.argMaxAt(referenced.intColumn(field), referencedRows, referencedRows.length);
+    }
+
+    /**
+     * @return the first row whose referenced entity has the largest value of a DOUBLE field, -1 if no row matched
+     */
+    int argMaxOfDouble(String field) {
+        return ColumnScan.argMaxAt(referenced.doubleColumn(field), referencedRows, referencedRows.length);
+    }
+
+    /**
+     * @return the entity of a row
+     */
+    R row(int row) {
+        return rows.get(row);
+    }
+
+    /**
+     * @return the referenced entity of a matched row
+     */
+    T referencedBy(int row) {
+        return referenced.get(referencedRows[row]);
+    }
+}
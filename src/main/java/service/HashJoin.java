@@ -0,0 +1,66 @@
+package service;
+
+import domain.BaseEntity;
+import repository.Repository;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Joins rows (ex: adoptions) with the entities their foreign key refers to (ex: pets) by reading each side once:
+ * the referenced repository is scanned with a single findAll into a hash table by id, then every row is matched
+ * with one table lookup. A report over n rows referencing m entities costs O(n + m), instead of one findOne per row,
+ * which re-reads the whole file on the file and xml repositories.
+ *
+ * Like an inner join, the rows whose referenced entity does not exist are left out.
+ */
+final class HashJoin {
+
+    private HashJoin() {
+    }
+
+    /**
+     * Read all the entities of the repository into a table by id
+     *
+     * @param repository : Repository<ID, T> scanned once
+     * @return the entities by id
+     */
+    static <ID, T extends BaseEntity<ID>> Map<ID, T> byId(Repository<ID, T> repository) {
+        Map<ID, T> entities = new HashMap<>();
+        for (T entity : repository.findAll())
+            entities.put(entity.getId(), entity);
+        return entities;
+    }
+
+    /**
+     * Pair every row with the entity its foreign key refers to
+     *
+     * @param rows : Stream<R> rows to join
+     *        foreignKey : Function<R, ID> reads the id of the referenced entity from a row
+     *        repository : Repository<ID, T> holds the referenced entities, scanned once
+     * @return the (row, referenced entity) pairs, in the order of the rows
+     */
+    static <ID, R, T extends BaseEntity<ID>> Stream<Map.Entry<R, T>> join(Stream<R> rows, Function<R, ID> foreignKey,
+                                                                          Repository<ID, T> repository) {
+        Map<ID, T> entities = byId(repository);
+        return rows
+                .<Map.Entry<R, T>>map(row -> new AbstractMap.SimpleImmutableEntry<>(row, entities.get(foreignKey.apply(row))))
+                .filter(pair -> pair.getValue() != null);
+    }
+
+    /**
+     * Get the entity the foreign key of every row refers to
+     *
+     * @param rows : Stream<R> rows to join
+     *        foreignKey : Function<R, ID> reads the id of the referenced entity from a row
+     *        repository : Repository<ID, T> holds the referenced entities, scanned once
+     * @return the referenced entities, one per row (an entity referenced by several rows comes several times)
+     */
+    static <ID, R, T extends BaseEntity<ID>> Stream<T> referenced(Stream<R> rows, Function<R, ID> foreignKey,
+                                                                  Repository<ID, T> repository) {
+        return join(rows, foreignKey, repository).map(Map.Entry::getValue);
+    }
+}
@@ -0,0 +1,72 @@
+package service;
+
+import domain.BaseEntity;
+import repository.DelegatingRepository;
+import repository.IndexedRepository;
+import repository.Repository;
+import repository.schema.SecondaryIndex;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds entities by an indexed field: with a lookup in the index when the repository maintains it
+ * (see {@link IndexedRepository}), even behind decorators, otherwise by scanning findAll, so the services work on every repository.
+ */
+final class IndexLookup {
+
+    private IndexLookup() {
+    }
+
+    private static <ID, T extends BaseEntity<ID>> Optional<IndexedRepository<ID, T>> indexed(
+            Repository<ID, T> repository, SecondaryIndex<T, ?> index) {
+        return DelegatingRepository.unwrap(repository, IndexedRepository.class)
+                .map(candidate -> (IndexedRepository<ID, T>) candidate)
+                .filter(candidate -> candidate.isIndexed(index));
+    }
+
+    /**
+     * Get the entities whose indexed field has the given value
+     *
+     * @param repository : Repository<ID, T> holds the entities
+     *        index : SecondaryIndex<T, K> the field
+     *        key : K value of the field
+     * @return the matching entities
+     */
+    static <ID, T extends BaseEntity<ID>, K> Stream<T> with(Repository<ID, T> repository, SecondaryIndex<T, K> index,
+                                                           K key) {
+        Optional<IndexedRepository<ID, T>> indexed = indexed(repository, index);
+        if (indexed.isPresent())
+            return indexed.get().findBy(index, key).stream();
+
+        return StreamSupport.stream(repository.findAll().spliterator(), false)
+                .filter(entity -> Objects.equals(key, index.keyOf(entity)));
+    }
+
+    /**
+     * Get the entities whose indexed field is between the given values, both included
+     *
+     * @param repository : Repository<ID, T> holds the entities
+     *        index : SecondaryIndex<T, K> the field, used as a range index when the repository keeps it ordered
+     *        from : K smallest value
+     *        to : K greatest value
+     * @return the matching entities, sorted by the field
+     */
+    static <ID, T extends BaseEntity<ID>, K extends Comparable<? super K>> List<T> between(
+            Repository<ID, T> repository, SecondaryIndex<T, K> index, K from, K to) {
+        Optional<IndexedRepository<ID, T>> indexed = indexed(repository, index).filter(candidate -> index.isOrdered());
+        if (indexed.isPresent())
+            return indexed.get().findBetween(index, from, to);
+
+        return StreamSupport.stream(repository.findAll().spliterator(), false)
+                .filter(entity -> index.keyOf(entity) != null)
+                .filter(entity -> index.keyOf(entity).compareTo(from) >= 0 && index.keyOf(entity).compareTo(to) <= 0)
+                .sorted(Comparator.comparing(index::keyOf))
+                .collect(Collectors.toList());
+    }
+}
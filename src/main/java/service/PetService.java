@@ -4,9 +4,11 @@ import domain.Pet.Pet;
 import domain.validators.exceptions.ValidatorException;
 import repository.Repository;
 import repository.RepositoryException;
+import repository.schema.PetSchema;
 import service.exceptions.PetServiceException;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -33,6 +35,18 @@ public class PetService {
     }
 
 
+    /**
+     * Returns the pets born in a window of years, with a range lookup in the year index of the repository
+     * when it has one.
+     *
+     * @param fromYear : int first year of the window
+     *        toYear : int last year of the window
+     * @return the pets born from fromYear to toYear (both included), sorted by year of birth
+     */
+    public List<Pet> getPetsBornBetween(int fromYear, int toYear) {
+        return IndexLookup.between(repository, PetSchema.BIRTH_YEAR, fromYear, toYear);
+    }
+
     /**
      * Returns all pets whose name contain the given string.
      *
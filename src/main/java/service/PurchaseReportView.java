@@ -0,0 +1,112 @@
+package service;
+
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Materialised aggregates of the purchases, kept current by the service on every purchase and delete instead of
+ * being recomputed from the repositories for every report: the number of purchases per year, the number of
+ * purchased toys per material and the running sum of their weights. The reports read them in O(1)/O(log n).
+ *
+ * The contribution of every purchase (its year, material and weight) is remembered by purchase id, so a purchase
+ * is taken out exactly as it was counted, even when its toy was deleted first.
+ */
+final class PurchaseReportView {
+
+    /**
+     * What one purchase adds to the aggregates
+     */
+    private static final class Row {
+        private final int year;
+        private final String material;
+        private final int weight;
+
+        private Row(Purchase purchase, Toy toy) {
+            this.year = purchase.getPurchaseYear();
+            this.material = toy == null ? null : toy.getMaterial();
+            this.weight = toy == null ? 0 : toy.getWeight();
+        }
+    }
+
+    private final Map<Long, Row> rows = new HashMap<>();
+    private final Map<Integer, Long> purchasesByYear = new HashMap<>();
+    private final RankedCounter<String> materials = new RankedCounter<>();
+    // over the purchases whose toy exists
+    private long weightSum;
+    private long weighed;
+
+    /**
+     * Compute the aggregates of all the purchases, reading each repository once
+     *
+     * @param purchases : Iterable<Purchase> all the purchases
+     *        toys : Map<Long, Toy> all the toys by id
+     * @return the view
+     */
+    static PurchaseReportView of(Iterable<Purchase> purchases, Map<Long, Toy> toys) {
+        PurchaseReportView view = new PurchaseReportView();
+        for (Purchase purchase : purchases)
+            view.add(purchase, toys.get(purchase.getToyId()));
+        return view;
+    }
+
+    /**
+     * Count a new purchase. A purchase already counted with the same id is replaced, which is also how
+     * the purchases of an updated toy are counted again with its new material and weight.
+     *
+     * @param purchase : Purchase the new purchase
+     *        toy : Toy the purchased toy, null if it does not exist (its material and weight are not counted)
+     */
+    void add(Purchase purchase, Toy toy) {
+        remove(purchase.getId());
+        Row row = new Row(purchase, toy);
+        rows.put(purchase.getId(), row);
+        purchasesByYear.merge(row.year, 1L, Long::sum);
+        if (row.material != null) {
+            materials.increment(row.material);
+            weightSum += row.weight;
+            weighed++;
+        }
+    }
+
+    /**
+     * Take out the purchase with the given id, if it is counted
+     */
+    void remove(Long purchaseId) {
+        Row row = rows.remove(purchaseId);
+        if (row == null)
+            return;
+        purchasesByYear.computeIfPresent(row.year, (year, count) -> count == 1 ? null : count - 1);
+        if (row.material != null) {
+            materials.decrement(row.material);
+            weightSum -= row.weight;
+            weighed--;
+        }
+    }
+
+    boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    long purchasesIn(int year) {
+        return purchasesByYear.getOrDefault(year, 0L);
+    }
+
+    /**
+     * @return the material of the most purchased toys (the first by name among equals), empty if none is counted
+     */
+    Optional<String> mostPopularMaterial() {
+        return materials.mostFrequent();
+    }
+
+    /**
+     * @return the average weight of the purchased toys (truncated), empty if none is counted
+     */
+    OptionalLong averagePurchasedToyWeight() {
+        return weighed == 0 ? OptionalLong.empty() : OptionalLong.of(weightSum / weighed);
+    }
+}
@@ -0,0 +1,73 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Counts occurrences of keys and keeps them ranked by count, so the most and the least frequent key are known
+ * at any time: a change of a count and a lookup of either end both cost O(log n).
+ * Among keys with the same count the smallest key wins, which keeps the answers independent of hash order.
+ */
+final class RankedCounter<K extends Comparable<K>> {
+
+    private final Map<K, Long> counts = new HashMap<>();
+    // count -> keys having it
+    private final TreeMap<Long, TreeSet<K>> ranking = new TreeMap<>();
+
+    /**
+     * Count one more occurrence of the key
+     */
+    void increment(K key) {
+        move(key, counts.getOrDefault(key, 0L), 1);
+    }
+
+    /**
+     * Count one occurrence less of the key, forgetting it when none is left
+     */
+    void decrement(K key) {
+        Long count = counts.get(key);
+        if (count != null)
+            move(key, count, -1);
+    }
+
+    private void move(K key, long count, int change) {
+        if (count > 0) {
+            TreeSet<K> keys = ranking.get(count);
+            keys.remove(key);
+            if (keys.isEmpty())
+                ranking.remove(count);
+        }
+        long updated = count + change;
+        if (updated > 0) {
+            counts.put(key, updated);
+            ranking.computeIfAbsent(updated, c -> new TreeSet<>()).add(key);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    long count(K key) {
+        return counts.getOrDefault(key, 0L);
+    }
+
+    boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * @return the key with the highest count, empty if nothing is counted
+     */
+    Optional<K> mostFrequent() {
+        return ranking.isEmpty() ? Optional.empty() : Optional.of(ranking.lastEntry().getValue().first());
+    }
+
+    /**
+     * @return the key with the lowest count, empty if nothing is counted
+     */
+    Optional<K> leastFrequent() {
+        return ranking.isEmpty() ? Optional.empty() : Optional.of(ranking.firstEntry().getValue().first());
+    }
+}
@@ -7,18 +7,26 @@ import domain.Toy.Toy;
 import domain.Toy.ToyPriceComparator;
 import domain.Toy.ToyWeightComparator;
 import domain.validators.exceptions.ValidatorException;
+import repository.BatchRepository;
+import repository.DelegatingRepository;
+import repository.PurchaseReportRepository;
 import repository.RepositoryException;
 import repository.Repository;
+import repository.schema.PurchaseSchema;
+import repository.schema.SecondaryIndex;
 import service.exceptions.StoreServiceException;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class StoreService {
     private final Repository<Long, Purchase> purchaseRepository;
     private final Repository<Long, Client> clientRepository;
     private final Repository<Long, Toy> toyRepository;
+    // aggregates of the purchases for the reports, computed by the first report then kept current by the writes
+    private PurchaseReportView reportView;
 
     public StoreService(Repository<Long, Purchase> purchaseRepository, Repository<Long, Client> clientRepository, Repository<Long, Toy> toyRepository) {
         this.purchaseRepository = purchaseRepository;
@@ -39,16 +47,11 @@ public class StoreService {
         clientRepository.findOne(clientId).orElseThrow(() ->
                 new StoreServiceException("Could not find client with the given clientId.")
         );
-        toyRepository.findOne(toyId).orElseThrow(() ->
+        Toy toy = toyRepository.findOne(toyId).orElseThrow(() ->
                 new StoreServiceException("Could not find toy with the given toyId.")
         );
-        // check if toy is available for purchase
-        List<Purchase> purchases = StreamSupport
-                .stream(purchaseRepository.findAll().spliterator(), false)
-                .collect(Collectors.toList());
-
-        // filter purchases containing the toyId
-        long cnt = purchases.stream().filter(purc -> purc.getToyId() == toyId).count();
+        // check if toy is available for purchase: look for purchases containing the toyId
+        long cnt = purchasesWith(PurchaseSchema.TOY_ID, toyId).count();
         Optional.of(cnt).filter(c -> c == 0).orElseThrow(() ->
                 new StoreServiceException("Toy was already purchased.")
         );
@@ -56,7 +59,14 @@ public class StoreService {
         Purchase purchase = new Purchase(serialNumber,clientId, toyId, Calendar.getInstance().get(Calendar.YEAR));
         purchase.setId(id);
         try {
-            purchaseRepository.save(purchase);
+            Optional<Purchase> existing = purchaseRepository.save(purchase);
+            if (reportView != null) {
+                // an id already taken: the repository may or may not have replaced the purchase, compute again
+                if (existing.filter(other -> other != purchase).isPresent())
+                    reportView = null;
+                else
+                    reportView.add(purchase, toy);
+            }
         }catch(ValidatorException | IllegalArgumentException e){
             throw new StoreServiceException(e.getMessage());
         }
@@ -69,14 +79,8 @@ public class StoreService {
                  if n is bigger than the number of purchases
     */
     public List<Purchase> getLastNPurchases(int n) throws StoreServiceException {
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
-
-        int finalN = purchases.size();
-        n = Optional.of(n).filter(p -> p < finalN).orElse(purchases.size());
-
-        purchases.sort(new PurchaseYearComparator());
-        return purchases.subList(purchases.size() - n, purchases.size());
+        // the n last purchases of the sort by year, selected without sorting them all
+        return TopK.last(purchaseRepository.findAll(), n, new PurchaseYearComparator());
     }
 
     /**
@@ -89,16 +93,32 @@ public class StoreService {
 
     public long getNumberOfPurchasesForYear(int year) throws StoreServiceException{
 
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        // a database counts by itself, the aggregates are kept for the repositories of this process
+        Optional<PurchaseReportRepository> reports = purchaseReports();
+        if (reports.isPresent()) {
+            Optional.of(!reports.get().isEmpty()).filter(a -> a).orElseThrow(() ->
+                    new StoreServiceException("getNumberOfPurchasesForYear: empty repository of purchases.")
+            );
+            return reports.get().purchasesIn(year);
+        }
 
-        Optional.of(!purchases.isEmpty()).filter(a -> a).orElseThrow(() ->
+        PurchaseReportView view = reportView();
+        Optional.of(!view.isEmpty()).filter(a -> a).orElseThrow(() ->
                 new StoreServiceException("getNumberOfPurchasesForYear: empty repository of purchases.")
         );
+        return view.purchasesIn(year);
+    }
 
-        return purchases.stream()
-                .filter(p -> p.getPurchaseYear() == year)
-                .count();
+    /**
+     * Get the purchases made in a window of years, with a range lookup in the year index of the repository
+     * when it has one
+     *
+     * @param fromYear : int first year of the window
+     *        toYear : int last year of the window
+     * @return List<Purchase> the purchases made from fromYear to toYear (both included), sorted by year
+     */
+    public List<Purchase> getPurchasesBetween(int fromYear, int toYear) {
+        return IndexLookup.between(purchaseRepository, PurchaseSchema.PURCHASE_YEAR, fromYear, toYear);
     }
 
     /**
@@ -111,28 +131,15 @@ public class StoreService {
 
     public String getMostPopularMaterial() throws StoreServiceException{
 
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        Optional<PurchaseReportRepository> reports = purchaseReports();
+        if (reports.isPresent())
+            return reports.get().mostPopularMaterial(toyRepository).orElseThrow(() ->
+                    new StoreServiceException("getMostPopularMaterial: empty repository of purchases.")
+            );
 
-        Optional.of(!purchases.isEmpty()).filter(a -> a).orElseThrow(() ->
+        return reportView().mostPopularMaterial().orElseThrow(() ->
                 new StoreServiceException("getMostPopularMaterial: empty repository of purchases.")
         );
-
-        // take the purchased toys
-        List<Toy> purchasedToys = purchases.stream()
-                .map(t -> toyRepository.findOne(t.getToyId()).get())
-                .collect(Collectors.toList());
-
-        Map<String, Integer> material_and_frequency = new HashMap<String, Integer>();
-        purchasedToys.forEach(t -> material_and_frequency.put(t.getMaterial(), material_and_frequency.get(t.getMaterial()) == null ? 1 : material_and_frequency.get(t.getMaterial())+1));
-
-        return material_and_frequency.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                .collect(Collectors.toList())
-                .stream().limit(1L)
-                .collect(Collectors.toList())
-                .get(0)
-                .getKey();
     }
 
     /**
@@ -144,20 +151,25 @@ public class StoreService {
     public Toy getHeaviestPurchasedToy() throws StoreServiceException
     {
 
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
-
-        Optional.of(!purchases.isEmpty()).filter(a -> a).orElseThrow(() ->
-                new StoreServiceException("in getHeaviestPurchasedToy: empty repository for purchase.")
-        );
+        // stored by column: one scan of the weights of the purchased toys, only the heaviest is built
+        Optional<ColumnarJoin<Purchase, Toy>> columns = ColumnarJoin.of(purchaseRepository,
+                PurchaseSchema.TOY_ID.getName(), toyRepository);
+        if (columns.isPresent()) {
+            int heaviest = columns.get().argMaxOfInt("weight");
+            if (heaviest < 0)
+                throw new StoreServiceException("in getHeaviestPurchasedToy: empty repository for purchase.");
+            return columns.get().referencedBy(heaviest);
+        }
 
-        // take the purchased toys
-        List<Toy> purchasedToys = purchases.stream()
-                .map(t -> toyRepository.findOne(t.getToyId()).get())
-                .collect(Collectors.toList());
+        Iterable<Purchase> purchases = purchaseRepository.findAll();
 
-        purchasedToys.sort(new ToyWeightComparator());
-        return purchasedToys.get(0);
+        // the heaviest of the purchased toys (the comparator orders by decreasing weight)
+        return HashJoin.referenced(StreamSupport.stream(purchases.spliterator(), false),
+                        Purchase::getToyId, toyRepository)
+                .min(new ToyWeightComparator())
+                .orElseThrow(() ->
+                        new StoreServiceException("in getHeaviestPurchasedToy: empty repository for purchase.")
+                );
 }
 
     /**
@@ -169,38 +181,26 @@ public class StoreService {
      */
     public Purchase getMostExpensivePurchase() throws StoreServiceException{
 
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
-
-        Optional.of(!purchases.isEmpty()).filter(p -> p).orElseThrow(() ->
-            new StoreServiceException("StoreServiceException in getMostExpensivePurchase: empty repository of purchases.")
-        );
+        // stored by column: one scan of the prices of the purchased toys, only the purchase found is built
+        Optional<ColumnarJoin<Purchase, Toy>> columns = ColumnarJoin.of(purchaseRepository,
+                PurchaseSchema.TOY_ID.getName(), toyRepository);
+        if (columns.isPresent()) {
+            int mostExpensive = columns.get().argMaxOfDouble("price");
+            if (mostExpensive < 0)
+                throw new StoreServiceException("StoreServiceException in getMostExpensivePurchase: empty repository of purchases.");
+            return columns.get().row(mostExpensive);
+        }
 
-        // take the purchased toys
-        List<Toy> purchasedToys = StreamSupport
-                .stream(purchaseRepository.findAll().spliterator(), false)
-                .map(p -> toyRepository.findOne(p.getToyId()).get())
-                .collect(Collectors.toList());
-
-        purchasedToys.sort(new ToyPriceComparator());
-        // the most expensive toy
-        Toy toy = purchasedToys.get(0);
-
-        // go through purchases and find the one with the given toy id
-        long a = toy.getId();
-        String b = toy.getSerialNumber();
-        long cnt = purchases.stream()
-                .filter(p -> p.getToyId() == toy.getId())
-                .count();
-
-        Optional.of(cnt).filter(c -> c > 0).orElseThrow(() ->
-                new StoreServiceException("Could not find anything.")
-        );
+        Iterable<Purchase> purchases = purchaseRepository.findAll();
 
-        return purchases.stream()
-                .filter(p -> p.getToyId() == toy.getId())
-                .collect(Collectors.toList())
-                .get(0);
+        // the purchase of the most expensive toy (the comparator orders by decreasing price)
+        Comparator<Toy> byPrice = new ToyPriceComparator();
+        return HashJoin.join(StreamSupport.stream(purchases.spliterator(), false), Purchase::getToyId, toyRepository)
+                .min((first, second) -> byPrice.compare(first.getValue(), second.getValue()))
+                .map(Map.Entry::getKey)
+                .orElseThrow(() ->
+                        new StoreServiceException("StoreServiceException in getMostExpensivePurchase: empty repository of purchases.")
+                );
     }
 
     /**
@@ -213,22 +213,15 @@ public class StoreService {
 
     public long getAveragePurchasedToysWeight() throws StoreServiceException{
 
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        Optional<PurchaseReportRepository> reports = purchaseReports();
+        if (reports.isPresent())
+            return reports.get().averagePurchasedToyWeight(toyRepository).orElseThrow(() ->
+                    new StoreServiceException("StoreService Exception in getAveragePurchasedToysWeight: empty repository of purchases.")
+            );
 
-        Optional.of(!purchases.isEmpty()).filter(a -> a).orElseThrow(() ->
+        return reportView().averagePurchasedToyWeight().orElseThrow(() ->
                 new StoreServiceException("StoreService Exception in getAveragePurchasedToysWeight: empty repository of purchases.")
         );
-
-        // take the purchased toys
-        List<Toy> purchasedToys = purchases.stream()
-                .map(t -> toyRepository.findOne(t.getToyId()).get())
-                .collect(Collectors.toList());
-
-        long sm = purchasedToys.stream()
-                .map(t -> t.getWeight())
-                .reduce(0, (acc, iter) -> acc += iter);
-        return sm / purchasedToys.size();
     }
 
     /**
@@ -251,12 +244,10 @@ public class StoreService {
 
     public void deletePurchasesForClient(long id) throws StoreServiceException {
 
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
-
-        purchases.stream()
-                .filter(client -> client.getClientId() == id)
-                .forEach(client -> purchaseRepository.delete(client.getId()));
+        // the ids are collected before anything is deleted, findAll may be a live view of the repository
+        deletePurchases(purchasesWith(PurchaseSchema.CLIENT_ID, id)
+                .map(Purchase::getId)
+                .collect(Collectors.toList()));
     }
 
     /**
@@ -266,11 +257,71 @@ public class StoreService {
      */
 
     public void deletePurchasesForToy(long id) throws StoreServiceException {
-        Iterable<Purchase> iterator = purchaseRepository.findAll();
-        List<Purchase> purchases = StreamSupport.stream(iterator.spliterator(), false).collect(Collectors.toList());
+        // the ids are collected before anything is deleted, findAll may be a live view of the repository
+        deletePurchases(purchasesWith(PurchaseSchema.TOY_ID, id)
+                .map(Purchase::getId)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Get the purchase repository as a report repository, if it can compute the reports over the toys itself
+     * (ex: both are tables of the same database); otherwise the reports are computed here, with a hash join of the
+     * findAll of both
+     *
+     * @return the purchase repository, empty if it can not compute the reports
+     */
+    private Optional<PurchaseReportRepository> purchaseReports() {
+        return DelegatingRepository.unwrap(purchaseRepository, PurchaseReportRepository.class)
+                .filter(reports -> reports.supportsJoin(toyRepository));
+    }
+
+    /**
+     * Get the purchases with the given client or toy, with a lookup in the index of the repository when it has one,
+     * otherwise by scanning all the purchases
+     *
+     * @param index : SecondaryIndex<Purchase, Long> PurchaseSchema.CLIENT_ID or PurchaseSchema.TOY_ID
+     *        key : Long id of the client or of the toy
+     * @return the matching purchases
+     */
+    private Stream<Purchase> purchasesWith(SecondaryIndex<Purchase, Long> index, Long key) {
+        return IndexLookup.with(purchaseRepository, index, key);
+    }
 
-        purchases.stream()
-                .filter(pet -> pet.getToyId() == id)
-                .forEach(pet -> purchaseRepository.delete(pet.getId()));
+    /**
+     * Delete the purchases with the given ids, in a single batch when the repository supports it
+     *
+     * @param ids : List<Long> ids of the purchases to be deleted
+     */
+    private void deletePurchases(List<Long> ids) {
+        if (purchaseRepository instanceof BatchRepository)
+            ((BatchRepository<Long, Purchase>) purchaseRepository).deleteAll(ids);
+        else
+            ids.forEach(purchaseRepository::delete);
+        if (reportView != null)
+            ids.forEach(reportView::remove);
     }
-}
\ No newline at end of file
+
+    /**
+     * Count again the purchases of a toy in the reports, after the toy was updated (ex: its material or weight changed)
+     *
+     * @param toyId : Long id of the updated toy
+     */
+    public void refreshToy(Long toyId) {
+        if (reportView == null)
+            return;
+        Optional<Toy> toy = toyRepository.findOne(toyId);
+        purchasesWith(PurchaseSchema.TOY_ID, toyId).forEach(purchase -> reportView.add(purchase, toy.orElse(null)));
+    }
+
+    /**
+     * Get the aggregates of the purchases, computing them with one scan of the purchases and of the toys
+     * the first time
+     *
+     * @return the aggregates, current with the purchases made and deleted through this service
+     */
+    private PurchaseReportView reportView() {
+        if (reportView == null)
+            reportView = PurchaseReportView.of(purchaseRepository.findAll(), HashJoin.byId(toyRepository));
+        return reportView;
+    }
+}
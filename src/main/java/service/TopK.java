@@ -0,0 +1,67 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the last k elements of a sequence in the order of a comparator without sorting the whole sequence:
+ * a heap bounded to k elements keeps the k greatest seen so far, and its smallest one is replaced whenever a
+ * greater element comes. Selecting from n elements costs O(n log k) time and O(k) memory, and the sequence
+ * is only iterated, never copied.
+ *
+ * The result is exactly what a stable sort followed by taking its last k elements would give: among equal
+ * elements the later ones in the sequence are taken, and the result is in sorted order.
+ */
+final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * An element with its position in the sequence, to break ties like a stable sort
+     */
+    private static final class Ranked<T> {
+        private final T element;
+        private final long position;
+
+        private Ranked(T element, long position) {
+            this.element = element;
+            this.position = position;
+        }
+    }
+
+    /**
+     * @param elements : Iterable<T> the sequence, iterated once
+     *        k : int number of elements to select
+     *        comparator : Comparator<? super T> order of the elements
+     * @return the last k elements of the sequence once sorted with the comparator, in that order
+     *         (all of them if there are fewer, none if k is not positive)
+     */
+    static <T> List<T> last(Iterable<T> elements, int k, Comparator<? super T> comparator) {
+        if (k <= 0)
+            return new ArrayList<>();
+
+        Comparator<Ranked<T>> order = Comparator.<Ranked<T>, T>comparing(ranked -> ranked.element, comparator)
+                .thenComparingLong(ranked -> ranked.position);
+        // the smallest of the selected elements on top
+        PriorityQueue<Ranked<T>> heap = new PriorityQueue<>(Math.min(k, 1024), order);
+        long position = 0;
+        for (T element : elements) {
+            if (heap.size() < k)
+                heap.add(new Ranked<>(element, position));
+            else if (comparator.compare(element, heap.peek().element) >= 0) {
+                // equal to the smallest but later in the sequence, so it wins the tie
+                heap.poll();
+                heap.add(new Ranked<>(element, position));
+            }
+            position++;
+        }
+
+        List<T> selected = new ArrayList<>(heap.size());
+        while (!heap.isEmpty())
+            selected.add(heap.poll().element);
+        return selected;
+    }
+}
@@ -7,10 +7,19 @@ import domain.Purchase.Purchase;
 import domain.Toy.Toy;
 import domain.validators.*;
 import domain.validators.exceptions.*;
+import repository.CachingRepository;
+import repository.DB.*;
 import repository.InMemoryRepository;
+import repository.IndexingRepository;
 import repository.Repository;
+import repository.RepositoryException;
 import repository.XML.*;
+import repository.binary.BinarySnapshotRepository;
+import repository.binary.ColumnarRepository;
+import repository.binary.DurableInMemoryRepository;
+import repository.binary.OffHeapRepository;
 import repository.file.*;
+import repository.schema.*;
 import service.*;
 import service.exceptions.ServiceException;
 
@@ -23,6 +32,10 @@ import java.util.Set;
 
 public class Console {
 
+    private static final Set<String> INDEXED_BACKENDS = Set.of("memory", "durable-memory");
+    private static final Set<String> CACHED_BACKENDS = Set.of("xml", "file", "log-file", "database", "embedded-database");
+    private static final int CACHE_CAPACITY = 1024;
+
     private PetService petService;
     private ClientService clientService;
     private ToyService toyService;
@@ -58,6 +71,14 @@ public class Console {
         System.out.println("2. File based");
         System.out.println("3. XML based");
         System.out.println("4. JDBC");
+        System.out.println("5. File based (indexed)");
+        System.out.println("6. File based (log-structured)");
+        System.out.println("7. Binary snapshot");
+        System.out.println("8. XML based (append-only)");
+        System.out.println("9. JDBC (embedded H2)");
+        System.out.println("10. In memory, durable (write-ahead log)");
+        System.out.println("11. In memory, adoptions and purchases off-heap");
+        System.out.println("12. In memory, columnar");
     }
 
     /**
@@ -100,6 +121,10 @@ public class Console {
         System.out.println("29. Get pets by name");
         System.out.println("30. Get clients by name");
         System.out.println("31. Get toys by name");
+        System.out.println("32. Get the adoptions between two years");
+        System.out.println("33. Get the purchases between two years");
+        System.out.println("34. Get the clients registered between two years");
+        System.out.println("35. Get the pets born between two years");
         System.out.println("----- 0. Exit -----");
     }
 
@@ -129,6 +154,22 @@ public class Console {
                         return Optional.of("xml");
                     case 4:
                         return Optional.of("database");
+                    case 5:
+                        return Optional.of("indexed-file");
+                    case 6:
+                        return Optional.of("log-file");
+                    case 7:
+                        return Optional.of("binary");
+                    case 8:
+                        return Optional.of("append-xml");
+                    case 9:
+                        return Optional.of("embedded-database");
+                    case 10:
+                        return Optional.of("durable-memory");
+                    case 11:
+                        return Optional.of("off-heap");
+                    case 12:
+                        return Optional.of("columnar");
                     default:
                         System.out.println("Invalid choice!");
                 }
@@ -187,6 +228,24 @@ public class Console {
                 adoptionRepository = new InMemoryRepository<>(adoptionValidator);
                 purchaseRepository = new InMemoryRepository<>(purchaseValidator);
                 break;
+            case "off-heap":
+                // the adoptions and the purchases keep their indexes off the heap too
+                petRepository = new IndexingRepository<>(new InMemoryRepository<>(petValidator), PetSchema.BIRTH_YEAR);
+                clientRepository = new IndexingRepository<>(new InMemoryRepository<>(clientValidator),
+                        ClientSchema.YEAR_OF_REGISTRATION);
+                toyRepository = new InMemoryRepository<>(toyValidator);
+                adoptionRepository = new OffHeapRepository<>(adoptionValidator, new AdoptionSchema(),
+                        AdoptionSchema.CLIENT_ID, AdoptionSchema.PET_ID, AdoptionSchema.ADOPTION_YEAR);
+                purchaseRepository = new OffHeapRepository<>(purchaseValidator, new PurchaseSchema(),
+                        PurchaseSchema.CLIENT_ID, PurchaseSchema.TOY_ID, PurchaseSchema.PURCHASE_YEAR);
+                break;
+            case "columnar":
+                petRepository = new ColumnarRepository<>(petValidator, new PetSchema());
+                clientRepository = new ColumnarRepository<>(clientValidator, new ClientSchema());
+                toyRepository = new ColumnarRepository<>(toyValidator, new ToySchema());
+                adoptionRepository = new ColumnarRepository<>(adoptionValidator, new AdoptionSchema());
+                purchaseRepository = new ColumnarRepository<>(purchaseValidator, new PurchaseSchema());
+                break;
             case "xml":
                 petRepository = new XMLRepositoryPet<>(petValidator, "pets");
                 clientRepository = new XMLRepositoryClient<>(clientValidator, "clients");
@@ -201,12 +260,90 @@ public class Console {
                 adoptionRepository = new FileRepositoryAdoption<>(adoptionValidator, "data/file/adoptions.csv");
                 purchaseRepository = new FileRepositoryStore<>(purchaseValidator, "data/file/purchases.csv");
                 break;
+            case "indexed-file":
+                petRepository = new IndexedFileRepository<>(petValidator, new PetSchema(), "data/file/pets.csv");
+                clientRepository = new IndexedFileRepository<>(clientValidator, new ClientSchema(), "data/file/clients.csv");
+                toyRepository = new IndexedFileRepository<>(toyValidator, new ToySchema(), "data/file/toys.csv");
+                adoptionRepository = new IndexedFileRepository<>(adoptionValidator, new AdoptionSchema(), "data/file/adoptions.csv");
+                purchaseRepository = new IndexedFileRepository<>(purchaseValidator, new PurchaseSchema(), "data/file/purchases.csv");
+                break;
+            case "log-file":
+                petRepository = new LogStructuredFileRepository<>(petValidator, new PetSchema(), "data/file/log/pets.log");
+                clientRepository = new LogStructuredFileRepository<>(clientValidator, new ClientSchema(), "data/file/log/clients.log");
+                toyRepository = new LogStructuredFileRepository<>(toyValidator, new ToySchema(), "data/file/log/toys.log");
+                adoptionRepository = new LogStructuredFileRepository<>(adoptionValidator, new AdoptionSchema(), "data/file/log/adoptions.log");
+                purchaseRepository = new LogStructuredFileRepository<>(purchaseValidator, new PurchaseSchema(), "data/file/log/purchases.log");
+                break;
+            case "binary":
+                petRepository = new BinarySnapshotRepository<>(petValidator, new PetSchema(), "data/binary/pets.snapshot");
+                clientRepository = new BinarySnapshotRepository<>(clientValidator, new ClientSchema(), "data/binary/clients.snapshot");
+                toyRepository = new BinarySnapshotRepository<>(toyValidator, new ToySchema(), "data/binary/toys.snapshot");
+                adoptionRepository = new BinarySnapshotRepository<>(adoptionValidator, new AdoptionSchema(), "data/binary/adoptions.snapshot");
+                purchaseRepository = new BinarySnapshotRepository<>(purchaseValidator, new PurchaseSchema(), "data/binary/purchases.snapshot");
+                break;
+            case "durable-memory":
+                petRepository = new DurableInMemoryRepository<>(petValidator, new PetSchema(), "data/wal/pets");
+                clientRepository = new DurableInMemoryRepository<>(clientValidator, new ClientSchema(), "data/wal/clients");
+                toyRepository = new DurableInMemoryRepository<>(toyValidator, new ToySchema(), "data/wal/toys");
+                adoptionRepository = new DurableInMemoryRepository<>(adoptionValidator, new AdoptionSchema(), "data/wal/adoptions");
+                purchaseRepository = new DurableInMemoryRepository<>(purchaseValidator, new PurchaseSchema(), "data/wal/purchases");
+                break;
+            case "append-xml":
+                petRepository = new AppendOnlyXMLRepository<>(petValidator, new PetSchema(), "data/xml/append/pets.xml");
+                clientRepository = new AppendOnlyXMLRepository<>(clientValidator, new ClientSchema(), "data/xml/append/clients.xml");
+                toyRepository = new AppendOnlyXMLRepository<>(toyValidator, new ToySchema(), "data/xml/append/toys.xml");
+                adoptionRepository = new AppendOnlyXMLRepository<>(adoptionValidator, new AdoptionSchema(), "data/xml/append/adoptions.xml");
+                purchaseRepository = new AppendOnlyXMLRepository<>(purchaseValidator, new PurchaseSchema(), "data/xml/append/purchases.xml");
+                break;
+            case "database":
+            case "embedded-database":
+                ConnectionPool pool = null;
+                try {
+                    DataSourceConfig config = typeOfRepo.get().equals("database")
+                            ? DataSourceConfig.load() : DataSourceConfig.embedded();
+                    // one pool for the five tables, so the reports can join them
+                    pool = config.createPool();
+                    petRepository = new DBRepositoryPet<>(petValidator, "pets", pool);
+                    clientRepository = new DBRepositoryClient<>(clientValidator, "clients", pool);
+                    toyRepository = new DBRepositoryToy<>(toyValidator, "toys", pool);
+                    adoptionRepository = new DBRepositoryAdoption<>(adoptionValidator, "adoptions", pool);
+                    purchaseRepository = new DBRepositoryPurchase<>(purchaseValidator, "purchases", pool);
+                } catch (RepositoryException | IllegalArgumentException e) {
+                    Optional.ofNullable(pool).ifPresent(ConnectionPool::close);
+                    throw new ConsoleException("Could not use the database: " + e.getMessage());
+                }
+                break;
             default:
                 System.out.println("Should not be here (yet).");
                 break;
 
         }
 
+        // index the adoptions and the purchases by client, by pet/toy and by year, and the pets and the clients
+        // by year, on the backends keeping their entities in memory without lookups of their own: the others
+        // re-read edits made outside of the application (file, xml) or keep their own lookups (indexed-file,
+        // log-file, database, off-heap, columnar)
+        if (INDEXED_BACKENDS.contains(typeOfRepo.get())) {
+            try {
+                adoptionRepository = new IndexingRepository<>(adoptionRepository,
+                        AdoptionSchema.CLIENT_ID, AdoptionSchema.PET_ID, AdoptionSchema.ADOPTION_YEAR);
+                purchaseRepository = new IndexingRepository<>(purchaseRepository,
+                        PurchaseSchema.CLIENT_ID, PurchaseSchema.TOY_ID, PurchaseSchema.PURCHASE_YEAR);
+                petRepository = new IndexingRepository<>(petRepository, PetSchema.BIRTH_YEAR);
+                clientRepository = new IndexingRepository<>(clientRepository, ClientSchema.YEAR_OF_REGISTRATION);
+            } catch (RepositoryException e) {
+                throw new ConsoleException("Could not index the repositories: " + e.getMessage());
+            }
+        }
+
+        // keep the pets, clients and toys last read by id in memory, on the backends reading them from disk or from
+        // the database on every findOne
+        if (CACHED_BACKENDS.contains(typeOfRepo.get())) {
+            petRepository = new CachingRepository<>(petRepository, CACHE_CAPACITY);
+            clientRepository = new CachingRepository<>(clientRepository, CACHE_CAPACITY);
+            toyRepository = new CachingRepository<>(toyRepository, CACHE_CAPACITY);
+        }
+
         // initialize the services
         this.petService = new PetService(petRepository);
         this.clientService = new ClientService(clientRepository);
@@ -327,6 +464,18 @@ public class Console {
                     case "31": // 31. Get toys by name
                         this.getToysByName(bufferRead);
                         break;
+                    case "32": // 32. Get the adoptions between two years
+                        this.getAdoptionsBetween(bufferRead);
+                        break;
+                    case "33": // 33. Get the purchases between two years
+                        this.getPurchasesBetween(bufferRead);
+                        break;
+                    case "34": // 34. Get the clients registered between two years
+                        this.getClientsRegisteredBetween(bufferRead);
+                        break;
+                    case "35": // 35. Get the pets born between two years
+                        this.getPetsBornBetween(bufferRead);
+                        break;
                     default:
                         System.out.println("Invalid input");
                         break;
@@ -616,6 +765,7 @@ public class Console {
             this.petValidator.validate(pet);
 
             this.petService.updatePet(id, pet);
+            this.adoptionService.refreshPet(id);
 
         }catch(ValidatorException | NumberFormatException | ServiceException e){
             throw new ConsoleException(e.getMessage());
@@ -695,6 +845,7 @@ public class Console {
             this.toyValidator.validate(toy);
 
             this.toyService.updateToy(id, toy);
+            this.storeService.refreshToy(id);
 
         }catch(ValidatorException | NumberFormatException | ServiceException e){
             throw new ConsoleException(e.getMessage());
@@ -955,4 +1106,89 @@ public class Console {
         toys.forEach(toy -> System.out.println(toy.toString()));
     }
 
+    /**
+     * Read a window of years
+     *
+     * @param bufferRead: BufferedReader buffer for reading the input
+     * @return int[] the first and the last year of the window
+     * @throws IOException
+     *         if the buffered reader fails for some reason
+     * @throws ConsoleException if a year is not a valid value or the first year is after the last one
+     */
+    private int[] readYears(BufferedReader bufferRead) throws IOException, ConsoleException {
+        try {
+            System.out.print("From year: ");
+            int fromYear = Integer.parseInt(bufferRead.readLine());
+            System.out.print("To year: ");
+            int toYear = Integer.parseInt(bufferRead.readLine());
+
+            Optional.of(fromYear).filter(v -> v >= 0 && v <= toYear).orElseThrow(() ->
+                    new ConsoleException("Error: Invalid years.")
+            );
+            return new int[]{fromYear, toYear};
+        } catch (NumberFormatException e) {
+            throw new ConsoleException("Error: Invalid year value.");
+        }
+    }
+
+    /**
+     * Handle the call for getAdoptionsBetween methods from AdoptionService
+     *
+     * @param bufferRead: BufferedReader buffer for reading the input
+     * @throws IOException
+     *         if the buffered reader fails for some reason
+     * @throws ConsoleException if the years are not valid
+     */
+    public void getAdoptionsBetween(BufferedReader bufferRead) throws IOException, ConsoleException {
+        int[] years = this.readYears(bufferRead);
+        List<Adoption> adoptions = this.adoptionService.getAdoptionsBetween(years[0], years[1]);
+        System.out.println(adoptions.size() + " adoptions were found from " + years[0] + " to " + years[1] + ".");
+        adoptions.forEach(adoption -> System.out.println(adoption.toString()));
+    }
+
+    /**
+     * Handle the call for getPurchasesBetween methods from StoreService
+     *
+     * @param bufferRead: BufferedReader buffer for reading the input
+     * @throws IOException
+     *         if the buffered reader fails for some reason
+     * @throws ConsoleException if the years are not valid
+     */
+    public void getPurchasesBetween(BufferedReader bufferRead) throws IOException, ConsoleException {
+        int[] years = this.readYears(bufferRead);
+        List<Purchase> purchases = this.storeService.getPurchasesBetween(years[0], years[1]);
+        System.out.println(purchases.size() + " purchases were found from " + years[0] + " to " + years[1] + ".");
+        purchases.forEach(purchase -> System.out.println(purchase.toString()));
+    }
+
+    /**
+     * Handle the call for getClientsRegisteredBetween methods from ClientService
+     *
+     * @param bufferRead: BufferedReader buffer for reading the input
+     * @throws IOException
+     *         if the buffered reader fails for some reason
+     * @throws ConsoleException if the years are not valid
+     */
+    public void getClientsRegisteredBetween(BufferedReader bufferRead) throws IOException, ConsoleException {
+        int[] years = this.readYears(bufferRead);
+        List<Client> clients = this.clientService.getClientsRegisteredBetween(years[0], years[1]);
+        System.out.println(clients.size() + " clients were registered from " + years[0] + " to " + years[1] + ".");
+        clients.forEach(client -> System.out.println(client.toString()));
+    }
+
+    /**
+     * Handle the call for getPetsBornBetween methods from PetService
+     *
+     * @param bufferRead: BufferedReader buffer for reading the input
+     * @throws IOException
+     *         if the buffered reader fails for some reason
+     * @throws ConsoleException if the years are not valid
+     */
+    public void getPetsBornBetween(BufferedReader bufferRead) throws IOException, ConsoleException {
+        int[] years = this.readYears(bufferRead);
+        List<Pet> pets = this.petService.getPetsBornBetween(years[0], years[1]);
+        System.out.println(pets.size() + " pets were born from " + years[0] + " to " + years[1] + ".");
+        pets.forEach(pet -> System.out.println(pet.toString()));
+    }
+
 }
@@ -0,0 +1,132 @@
+package benchmark;
+
+import domain.Client.Client;
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import domain.validators.ClientValidator;
+import domain.validators.PurchaseValidator;
+import domain.validators.ToyValidator;
+import repository.DB.ConnectionPool;
+import repository.DB.DBRepositoryClient;
+import repository.DB.DBRepositoryPurchase;
+import repository.DB.DBRepositoryToy;
+import repository.DB.DataSourceConfig;
+import repository.InMemoryRepository;
+import repository.Repository;
+import repository.XML.AppendOnlyXMLRepository;
+import repository.binary.BinarySnapshotRepository;
+import repository.file.IndexedFileRepository;
+import repository.schema.ClientSchema;
+import repository.schema.PurchaseSchema;
+import repository.schema.ToySchema;
+import service.StoreService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Runs the same store workload (saves, findAll, findOne, reports) on every kind of repository the console offers,
+ * the JDBC one included, on one box. The database is an embedded H2 one in a temporary directory, unless one is
+ * configured (see {@link DataSourceConfig}: -Ddb.url=..., DB_URL=...).
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test:h2.jar benchmark.BackendBenchmark [toys]
+ */
+public class BackendBenchmark {
+
+    private static final int ITERATIONS = 5;
+    private static final int LOOKUPS = 2_000;
+
+    public static void main(String[] args) throws IOException {
+        int toys = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        Path directory = Files.createTempDirectory("backend-benchmark");
+
+        run("memory", toys, new InMemoryRepository<>(new ToyValidator()),
+                new InMemoryRepository<>(new PurchaseValidator()), new InMemoryRepository<>(new ClientValidator()));
+        run("indexed-file", toys,
+                new IndexedFileRepository<>(new ToyValidator(), new ToySchema(), empty(directory, "toys.csv")),
+                new IndexedFileRepository<>(new PurchaseValidator(), new PurchaseSchema(), empty(directory, "purchases.csv")),
+                new IndexedFileRepository<>(new ClientValidator(), new ClientSchema(), empty(directory, "clients.csv")));
+        run("append-xml", toys,
+                new AppendOnlyXMLRepository<>(new ToyValidator(), new ToySchema(), directory.resolve("toys.xml").toString()),
+                new AppendOnlyXMLRepository<>(new PurchaseValidator(), new PurchaseSchema(),
+                        directory.resolve("purchases.xml").toString()),
+                new AppendOnlyXMLRepository<>(new ClientValidator(), new ClientSchema(),
+                        directory.resolve("clients.xml").toString()));
+        run("binary", toys,
+                new BinarySnapshotRepository<>(new ToyValidator(), new ToySchema(), directory.resolve("toys.snapshot").toString()),
+                new BinarySnapshotRepository<>(new PurchaseValidator(), new PurchaseSchema(),
+                        directory.resolve("purchases.snapshot").toString()),
+                new BinarySnapshotRepository<>(new ClientValidator(), new ClientSchema(),
+                        directory.resolve("clients.snapshot").toString()));
+
+        DataSourceConfig config = System.getProperty(DataSourceConfig.URL) != null || System.getenv("DB_URL") != null
+                ? DataSourceConfig.load()
+                : new DataSourceConfig("jdbc:h2:" + directory.resolve("benchmark").toAbsolutePath(),
+                        DataSourceConfig.EMBEDDED_USER, "", ConnectionPool.DEFAULT_SIZE);
+        try (ConnectionPool pool = config.createPool()) {
+            DBRepositoryToy<Long, Toy> toyRepository = new DBRepositoryToy<>(new ToyValidator(), "benchmarktoys", pool);
+            DBRepositoryPurchase<Long, Purchase> purchaseRepository =
+                    new DBRepositoryPurchase<>(new PurchaseValidator(), "benchmarkpurchases", pool);
+            DBRepositoryClient<Long, Client> clientRepository =
+                    new DBRepositoryClient<>(new ClientValidator(), "benchmarkclients", pool);
+            try {
+                run("jdbc " + config.getUrl(), toys, toyRepository, purchaseRepository, clientRepository);
+            } finally {
+                toyRepository.dropTable();
+                purchaseRepository.dropTable();
+                clientRepository.dropTable();
+            }
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static String empty(Path directory, String name) throws IOException {
+        return Files.createFile(directory.resolve(name)).toString();
+    }
+
+    private static void run(String name, int toys, Repository<Long, Toy> toyRepository,
+                            Repository<Long, Purchase> purchaseRepository, Repository<Long, Client> clientRepository) {
+        System.out.println(name);
+        long start = System.nanoTime();
+        Client client = new Client("10000", "client", "address", 2020);
+        client.setId(1L);
+        clientRepository.save(client);
+        for (long id = 0; id < toys; id++) {
+            Toy toy = new Toy("2" + id, "toy" + id, (int) (id % 50), "material" + (id % 7), 10);
+            toy.setId(id);
+            toyRepository.save(toy);
+            Purchase purchase = new Purchase("3" + id, 1L, id, 2020);
+            purchase.setId(id);
+            purchaseRepository.save(purchase);
+        }
+        System.out.printf("  %-12s %8d ms%n", "save", (System.nanoTime() - start) / 1_000_000);
+
+        StoreService storeService = new StoreService(purchaseRepository, clientRepository, toyRepository);
+        measure("findAll", () -> purchaseRepository.findAll().iterator().hasNext());
+        measure("findOne", () -> {
+            for (long id = 0; id < LOOKUPS; id++)
+                toyRepository.findOne((id * 7919) % toys);
+        });
+        measure("reports", () -> {
+            storeService.getMostPopularMaterial();
+            storeService.getAveragePurchasedToysWeight();
+        });
+    }
+
+    private static void measure(String name, Runnable operation) {
+        operation.run(); // warm up
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+        System.out.printf("  %-12s %8.2f ms%n", name, bestTime / 1e6);
+    }
+}
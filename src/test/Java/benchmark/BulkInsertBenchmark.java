@@ -0,0 +1,56 @@
+package benchmark;
+
+import domain.Purchase.Purchase;
+import domain.validators.PurchaseValidator;
+import repository.DB.ConnectionPool;
+import repository.DB.DBRepositoryPurchase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares saving purchases one by one (a SELECT for the id check and an INSERT per purchase) with
+ * DBRepositoryPurchase.saveAll (JDBC batches in one transaction, duplicate keys taken from the constraint),
+ * against an embedded H2 database (or any other database given as arguments).
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test:h2.jar benchmark.BulkInsertBenchmark
+ *           [rows [url user password]]
+ */
+public class BulkInsertBenchmark {
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String url = args.length > 1 ? args[1] : "jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1";
+        String user = args.length > 2 ? args[2] : "sa";
+        String password = args.length > 3 ? args[3] : "";
+
+        List<Purchase> purchases = new ArrayList<>();
+        for (long id = 0; id < rows; id++) {
+            Purchase purchase = new Purchase("2000" + id, id % 5000, id, 2000 + (int) (id % 21));
+            purchase.setId(id);
+            purchases.add(purchase);
+        }
+
+        try (ConnectionPool pool = new ConnectionPool(url, user, password, 1)) {
+            DBRepositoryPurchase<Long, Purchase> purchaseRepository =
+                    new DBRepositoryPurchase<>(new PurchaseValidator(), "bulkpurchases", pool);
+            try {
+                long start = System.nanoTime();
+                purchases.forEach(purchaseRepository::save);
+                System.out.printf("save one by one: %6d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+                purchaseRepository.deleteAll(purchases.stream().map(Purchase::getId)::iterator);
+                for (int batchSize : new int[]{100, 1000, 10_000}) {
+                    purchaseRepository.setBatchSize(batchSize);
+                    start = System.nanoTime();
+                    int saved = purchaseRepository.saveAll(purchases).getApplied().size();
+                    System.out.printf("saveAll (batch %5d): %6d ms  %d rows%n", batchSize,
+                            (System.nanoTime() - start) / 1_000_000, saved);
+                    purchaseRepository.deleteAll(purchases.stream().map(Purchase::getId)::iterator);
+                }
+            } finally {
+                purchaseRepository.dropTable();
+            }
+        }
+    }
+}
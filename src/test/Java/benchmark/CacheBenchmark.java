@@ -0,0 +1,90 @@
+package benchmark;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import repository.CachingRepository;
+import repository.Repository;
+import repository.file.FileRepositoryToy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time of findOne on a CSV file of toys (FileRepositoryToy reads the whole file on every findOne), alone and behind
+ * a CachingRepository, with skewed ids: like the purchases of a store, a few popular toys get most of the lookups
+ * (Zipf distribution, exponent 1).
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.CacheBenchmark [toys] [capacity]
+ */
+public class CacheBenchmark {
+
+    private static final int LOOKUPS = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Path file = Files.createTempFile("toys", ".csv");
+        try {
+            FileRepositoryToy<Long, Toy> toys = new FileRepositoryToy<>(new ToyValidator(), file.toString());
+            List<Toy> entities = new ArrayList<>();
+            for (long id = 0; id < count; id++) {
+                Toy toy = new Toy("5" + id, "toy" + id, 100 + (int) id % 900, "wood", 1.5);
+                toy.setId(id);
+                entities.add(toy);
+            }
+            toys.saveEntitiesToFile(entities);
+            long[] ids = zipf(count, LOOKUPS);
+
+            System.out.printf("toys: %d, lookups: %d, cache capacity: %d%n", count, LOOKUPS, capacity);
+            // the file is read on every lookup without the cache, so fewer lookups are timed and scaled
+            measure("file        ", toys, ids, 50);
+            CachingRepository<Long, Toy> cached = new CachingRepository<>(toys, capacity);
+            measure("file + cache", cached, ids, 1);
+            System.out.printf("hit rate %.1f%%, %d evictions%n", 100 * cached.getHitRate(), cached.getEvictions());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return ids between 0 and n - 1, id k drawn with a probability proportional to 1 / (k + 1)
+     */
+    private static long[] zipf(int n, int draws) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++)
+            cumulative[k] = sum += 1.0 / (k + 1);
+
+        long[] ids = new long[draws];
+        long seed = 42;
+        for (int i = 0; i < draws; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            double target = (seed >>> 11) / (double) (1L << 53) * sum;
+            int low = 0;
+            int high = n - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] < target)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            ids[i] = low;
+        }
+        return ids;
+    }
+
+    private static void measure(String name, Repository<Long, Toy> repository, long[] ids, int step) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ids.length; i += step)
+            if (repository.findOne(ids[i]).isPresent())
+                found++;
+        long time = System.nanoTime() - start;
+        System.out.printf("%s  %8.1f us/findOne  (%d found)%n", name, time / 1000.0 / found, found);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import domain.Client.Client;
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import domain.validators.ClientValidator;
+import domain.validators.PurchaseValidator;
+import domain.validators.ToyValidator;
+import repository.InMemoryRepository;
+import repository.Repository;
+import repository.binary.ColumnarRepository;
+import repository.schema.PurchaseSchema;
+import repository.schema.ToySchema;
+import service.StoreService;
+
+import java.util.function.Supplier;
+
+/**
+ * Time of the store reports scanning every purchase and its toy (the heaviest purchased toy, the most expensive
+ * purchase) with the entities kept as objects (InMemoryRepository, a hash join of the findAll of both) and by
+ * column (ColumnarRepository, one scan of the toyId column and of the weight or price column).
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.ColumnarScanBenchmark [purchases]
+ */
+public class ColumnarScanBenchmark {
+
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int toyCount = count / 10;
+        System.out.println(count + " purchases of " + toyCount + " toys");
+
+        measure("objects", count, toyCount, () -> new InMemoryRepository<>(new ToyValidator()),
+                () -> new InMemoryRepository<>(new PurchaseValidator()));
+        measure("columns", count, toyCount, () -> new ColumnarRepository<>(new ToyValidator(), new ToySchema(), toyCount),
+                () -> new ColumnarRepository<>(new PurchaseValidator(), new PurchaseSchema(), count));
+    }
+
+    private static void measure(String name, int count, int toyCount, Supplier<Repository<Long, Toy>> toySupplier,
+                                Supplier<Repository<Long, Purchase>> purchaseSupplier) {
+        Repository<Long, Toy> toys = toySupplier.get();
+        Repository<Long, Purchase> purchases = purchaseSupplier.get();
+        for (long id = 0; id < toyCount; id++) {
+            Toy toy = new Toy("5" + id, "toy" + id, 100 + (int) (id * 7919 % 900), "wood", (id * 104729 % 10_000) / 100.0);
+            toy.setId(id);
+            toys.save(toy);
+        }
+        for (long id = 0; id < count; id++) {
+            Purchase purchase = new Purchase("9" + id, id % 1000, id % toyCount, 2020);
+            purchase.setId(id);
+            purchases.save(purchase);
+        }
+        StoreService store = new StoreService(purchases, new InMemoryRepository<Long, Client>(new ClientValidator()), toys);
+
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++)
+            checksum += store.getHeaviestPurchasedToy().getId() + store.getMostExpensivePurchase().getId();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++)
+            checksum += store.getHeaviestPurchasedToy().getId() + store.getMostExpensivePurchase().getId();
+        long time = System.nanoTime() - start;
+
+        System.out.printf("%s  %7.2f ms per pair of reports (%d)%n", name, time / 1e6 / ROUNDS, checksum);
+    }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+
+import domain.Pet.Pet;
+import domain.validators.PetValidator;
+import repository.DB.ConnectionPool;
+import repository.DB.DBRepositoryPet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures the throughput of concurrent DBRepositoryPet.findOne calls for growing pool sizes,
+ * always with the same number of client threads, against an embedded H2 database
+ * (or any other database given as arguments).
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test:h2.jar benchmark.ConnectionPoolBenchmark
+ *           [url user password]
+ */
+public class ConnectionPoolBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int PETS = 1000;
+    private static final int CALLS_PER_THREAD = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+        String user = args.length > 1 ? args[1] : "sa";
+        String password = args.length > 2 ? args[2] : "";
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int size : new int[]{1, 2, 4, 8}) {
+            try (ConnectionPool pool = new ConnectionPool(url, user, password, size)) {
+                DBRepositoryPet<Long, Pet> petRepository = new DBRepositoryPet<>(new PetValidator(), "benchmarkpets", pool);
+                try {
+                    for (long id = 0; id < PETS; id++) {
+                        Pet pet = new Pet("900" + id, "name" + id, "breed", 2019);
+                        pet.setId(id);
+                        petRepository.save(pet);
+                    }
+
+                    long start = System.nanoTime();
+                    List<Future<?>> tasks = new ArrayList<>();
+                    for (int thread = 0; thread < THREADS; thread++) {
+                        long seed = thread;
+                        tasks.add(executor.submit(() -> {
+                            for (int call = 0; call < CALLS_PER_THREAD; call++)
+                                petRepository.findOne((seed * 7919 + call) % PETS);
+                        }));
+                    }
+                    for (Future<?> task : tasks)
+                        task.get();
+                    long time = System.nanoTime() - start;
+                    System.out.printf("pool %d: %8.0f findOne/s%n", size,
+                            THREADS * (double) CALLS_PER_THREAD * 1e9 / time);
+                } finally {
+                    petRepository.dropTable();
+                }
+            }
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import domain.BaseEntity;
+import domain.Pet.Pet;
+import domain.validators.PetValidator;
+import domain.validators.exceptions.ValidatorException;
+import repository.ConcurrentInMemoryRepository;
+import repository.InMemoryRepository;
+import repository.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Throughput of a mixed workload (80% findOne, 10% save, 5% update, 5% delete on random ids) from 1 to 64 threads,
+ * on ConcurrentInMemoryRepository and on an InMemoryRepository behind one lock (the simplest thread safe option).
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.ContentionBenchmark [operations]
+ */
+public class ContentionBenchmark {
+
+    private static final int PETS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        Pet[] pets = new Pet[PETS];
+        for (int id = 0; id < PETS; id++) {
+            pets[id] = new Pet("90" + id, "name" + id, "breed", 2019);
+            pets[id].setId((long) id);
+        }
+
+        System.out.println(Runtime.getRuntime().availableProcessors() + " cpus, " + operations + " operations");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            double locked = run(threads, operations, pets,
+                    () -> new SynchronizedRepository<>(new InMemoryRepository<>(new PetValidator())));
+            double concurrent = run(threads, operations, pets,
+                    () -> new ConcurrentInMemoryRepository<>(new PetValidator()));
+            System.out.printf("%2d threads  one lock %10.0f ops/s  concurrent %10.0f ops/s%n", threads, locked, concurrent);
+        }
+    }
+
+    private static double run(int threads, int operations, Pet[] pets, Supplier<Repository<Long, Pet>> factory)
+            throws Exception {
+        Repository<Long, Pet> repository = factory.get();
+        for (int id = 0; id < PETS; id += 2)
+            repository.save(pets[id]);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            long firstSeed = thread;
+            tasks.add(executor.submit(() -> {
+                start.await();
+                long seed = firstSeed;
+                for (int operation = 0; operation < operations / threads; operation++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    Pet pet = pets[(int) ((seed >>> 33) % PETS)];
+                    int kind = (int) ((seed >>> 20) % 20);
+                    if (kind < 16)
+                        repository.findOne(pet.getId());
+                    else if (kind < 18)
+                        repository.save(pet);
+                    else if (kind == 18)
+                        repository.update(pet);
+                    else
+                        repository.delete(pet.getId());
+                }
+                return null;
+            }));
+        }
+        start.await();
+        long time = System.nanoTime();
+        for (Future<?> task : tasks)
+            task.get();
+        time = System.nanoTime() - time;
+        executor.shutdown();
+        return (operations / threads) * (double) threads * 1e9 / time;
+    }
+
+    /**
+     * A repository behind a single lock
+     */
+    private static class SynchronizedRepository<T extends BaseEntity<Long>> implements Repository<Long, T> {
+
+        private final Repository<Long, T> repository;
+
+        SynchronizedRepository(Repository<Long, T> repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public synchronized Optional<T> findOne(Long id) {
+            return repository.findOne(id);
+        }
+
+        @Override
+        public synchronized Iterable<T> findAll() {
+            return repository.findAll();
+        }
+
+        @Override
+        public synchronized Optional<T> save(T entity) throws ValidatorException {
+            return repository.save(entity);
+        }
+
+        @Override
+        public synchronized Optional<T> delete(Long id) {
+            return repository.delete(id);
+        }
+
+        @Override
+        public synchronized Optional<T> update(T entity) throws ValidatorException {
+            return repository.update(entity);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package benchmark;
+
+import com.sun.management.ThreadMXBean;
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import repository.file.MappedCsvReader;
+import repository.schema.PurchaseSchema;
+import repository.schema.ToySchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares the Files.lines + Pattern.split parsing of the FileRepository* classes with MappedCsvReader
+ * on generated 1M-row toys.csv and purchases.csv files.
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.CsvReadBenchmark [rows]
+ */
+public class CsvReadBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("csv-benchmark");
+        Path toys = directory.resolve("toys.csv");
+        Path purchases = directory.resolve("purchases.csv");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(toys)) {
+            for (int i = 0; i < rows; i++)
+                writer.write(i + "," + (10000 + i) + ",Toy " + i + "," + (i % 500) + ",material" + (i % 13)
+                        + "," + (i % 1000) + ".99" + System.lineSeparator());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(purchases)) {
+            for (int i = 0; i < rows; i++)
+                writer.write(i + "," + (20000 + i) + "," + (i % 5000) + "," + i + "," + (2000 + i % 21)
+                        + System.lineSeparator());
+        }
+
+        System.out.println("rows: " + rows);
+        measure("toys.csv      Files.lines", () -> linesToys(toys).size());
+        measure("toys.csv      mapped     ", () -> MappedCsvReader.read(toys, new ToySchema()).size());
+        measure("purchases.csv Files.lines", () -> linesPurchases(purchases).size());
+        measure("purchases.csv mapped     ", () -> MappedCsvReader.read(purchases, new PurchaseSchema()).size());
+
+        Files.delete(toys);
+        Files.delete(purchases);
+        Files.delete(directory);
+    }
+
+    private interface Load {
+        int run() throws IOException;
+    }
+
+    private static void measure(String name, Load load) throws IOException {
+        load.run(); // warm up
+        long bestTime = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long threadId = Thread.currentThread().getId();
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            load.run();
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+            allocated = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+        System.out.printf("%s  best %6d ms  allocated %6d MB%n", name, bestTime / 1_000_000, allocated >> 20);
+    }
+
+    /**
+     * The parsing done by FileRepositoryToy.readFile before it used MappedCsvReader
+     */
+    private static List<Toy> linesToys(Path file) throws IOException {
+        Pattern pattern = Pattern.compile(",");
+        try (Stream<String> lines = Files.lines(file)) {
+            return lines.map(line -> {
+                String[] arr = pattern.split(line);
+                Toy toy = new Toy(arr[1], arr[2], Integer.parseInt(arr[3]), arr[4], Double.parseDouble(arr[5]));
+                toy.setId(Long.parseLong(arr[0]));
+                return toy;
+            }).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * The parsing done by FileRepositoryStore.readFile before it used MappedCsvReader
+     */
+    private static List<Purchase> linesPurchases(Path file) throws IOException {
+        Pattern pattern = Pattern.compile(",");
+        try (Stream<String> lines = Files.lines(file)) {
+            return lines.map(line -> {
+                String[] arr = pattern.split(line);
+                Purchase purchase = new Purchase(arr[1], Long.parseLong(arr[2]), Long.parseLong(arr[3]),
+                        Integer.parseInt(arr[4]));
+                purchase.setId(Long.parseLong(arr[0]));
+                return purchase;
+            }).collect(Collectors.toList());
+        }
+    }
+}
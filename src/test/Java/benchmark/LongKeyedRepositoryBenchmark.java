@@ -0,0 +1,78 @@
+package benchmark;
+
+import domain.Purchase.Purchase;
+import domain.validators.PurchaseValidator;
+import repository.InMemoryRepository;
+import repository.LongKeyedRepository;
+import repository.Repository;
+
+import java.util.function.Supplier;
+
+/**
+ * Compares InMemoryRepository (HashMap<Long, T>) with LongKeyedRepository (open addressing on primitive ids)
+ * holding the same purchases: heap taken by the index (the purchases themselves are shared and not counted)
+ * and the latency of findOne on random ids.
+ *
+ * Run with: java -Xmx4g -cp build/classes/java/main:build/classes/java/test benchmark.LongKeyedRepositoryBenchmark
+ *           [purchases]
+ */
+public class LongKeyedRepositoryBenchmark {
+
+    private static final int ITERATIONS = 5;
+    private static final int LOOKUPS = 5_000_000;
+
+    private static Purchase[] purchases;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        purchases = new Purchase[count];
+        for (int i = 0; i < count; i++) {
+            purchases[i] = new Purchase("2" + i, (long) (i % 5000), (long) i, 2000 + i % 21);
+            // sparse ids, like ids coming from several sources
+            purchases[i].setId(i * 3L + 1);
+        }
+
+        System.out.println("purchases: " + count);
+        measure("HashMap     ", () -> new InMemoryRepository<>(new PurchaseValidator()));
+        measure("LongKeyed   ", () -> new LongKeyedRepository<>(new PurchaseValidator()));
+        measure("LongKeyed(n)", () -> new LongKeyedRepository<>(new PurchaseValidator(), count));
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void measure(String name, Supplier<Repository<Long, Purchase>> factory) {
+        long before = usedHeap();
+        Repository<Long, Purchase> repository = factory.get();
+        long start = System.nanoTime();
+        for (Purchase purchase : purchases)
+            repository.save(purchase);
+        long saveTime = System.nanoTime() - start;
+        long heap = usedHeap() - before;
+
+        long bestTime = Long.MAX_VALUE;
+        long found = 0;
+        for (int iteration = 0; iteration <= ITERATIONS; iteration++) {
+            long seed = iteration;
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                // two thirds of the ids exist
+                long id = (seed >>> 1) % (purchases.length * 3L);
+                if (repository.findOne(id).isPresent())
+                    found++;
+            }
+            // the first round is the warm up
+            if (iteration > 0)
+                bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+
+        System.out.printf("%s  index %6d MB (%5.1f B/entry)  save %6d ms  findOne %6.1f ns  (%d found)%n", name,
+                heap >> 20, heap / (double) purchases.length, saveTime / 1_000_000,
+                bestTime / (double) LOOKUPS, found);
+    }
+}
@@ -0,0 +1,124 @@
+package benchmark;
+
+import domain.Purchase.Purchase;
+import domain.validators.PurchaseValidator;
+import repository.LongKeyedRepository;
+import repository.Repository;
+import repository.binary.OffHeapRepository;
+import repository.schema.PurchaseSchema;
+import ui.Console;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Heap left in use, time spent in the garbage collector and time of a load of purchases followed by a scan of all
+ * of them, with the purchases kept as objects (LongKeyedRepository) and as off-heap rows (OffHeapRepository).
+ * Run each repository in its own JVM, so the heap of one does not weigh on the collections of the other.
+ *
+ * The console-* kinds load the purchases through a console set up with the memory or the off-heap backend
+ * instead (one buyToy per purchase, each of a new toy), so the decorators the console adds are measured too.
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.OffHeapBenchmark
+ *           [heap|off-heap|console-memory|console-off-heap] [purchases]
+ */
+public class OffHeapBenchmark {
+
+    public static void main(String[] args) {
+        String kind = args.length > 0 ? args[0] : "off-heap";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        System.out.println(kind + ", " + count + " purchases");
+        if (kind.startsWith("console-"))
+            measureConsole(kind.substring("console-".length()), count);
+        else if (kind.equals("heap"))
+            measure(count, () -> new LongKeyedRepository<>(new PurchaseValidator(), count));
+        else
+            measure(count, () -> new OffHeapRepository<>(new PurchaseValidator(), new PurchaseSchema()));
+    }
+
+    private static void measure(int count, Supplier<Repository<Long, Purchase>> supplier) {
+        long heapBefore = usedHeap();
+        long gcBefore = gcMillis();
+        long start = System.nanoTime();
+
+        Repository<Long, Purchase> purchases = supplier.get();
+        for (long id = 0; id < count; id++) {
+            Purchase purchase = new Purchase(String.valueOf(1_000_000 + id), id % 50_000, id % 5_000, 2000 + (int) (id % 21));
+            purchase.setId(id);
+            purchases.save(purchase);
+        }
+        long load = System.nanoTime() - start;
+
+        long sum = 0;
+        for (Purchase purchase : purchases.findAll())
+            sum += purchase.getPurchaseYear();
+        long scan = System.nanoTime() - start - load;
+        long gc = gcMillis() - gcBefore;
+
+        System.out.printf("load %6d ms, scan %5d ms, gc %5d ms, heap in use %6.1f MB (%d)%n",
+                load / 1_000_000, scan / 1_000_000, gc, (usedHeap() - heapBefore) / 1e6, sum);
+        if (purchases instanceof OffHeapRepository)
+            System.out.printf("off heap %6.1f MB%n", ((OffHeapRepository<Purchase>) purchases).getOffHeapBytes() / 1e6);
+    }
+
+    private static void measureConsole(String backend, int count) {
+        long heapBefore = usedHeap();
+        long gcBefore = gcMillis();
+        long start = System.nanoTime();
+
+        Console console = new Console();
+        console.setUpMembers(Optional.of(backend));
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            console.addClient(lines(1, 51, "client", "address", 2019));
+            for (long id = 0; id < count; id++) {
+                console.addToy(lines(id, 6_000_000 + id, "toy", 100 + id % 900, "wood", 9.99));
+                console.buyToy(lines(id, 1_000_000 + id, 1, id));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            System.setOut(out);
+        }
+        long load = System.nanoTime() - start;
+        long gc = gcMillis() - gcBefore;
+
+        System.out.printf("load %6d ms, gc %5d ms, heap in use %6.1f MB%n",
+                load / 1_000_000, gc, (usedHeap() - heapBefore) / 1e6);
+        Reference.reachabilityFence(console);
+    }
+
+    /**
+     * @return the answers to the questions of one console command
+     */
+    private static BufferedReader lines(Object... answers) {
+        return new BufferedReader(new StringReader(
+                Arrays.stream(answers).map(String::valueOf).collect(Collectors.joining("\n"))));
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            millis += Math.max(0, collector.getCollectionTime());
+        return millis;
+    }
+}
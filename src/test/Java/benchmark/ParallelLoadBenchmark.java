@@ -0,0 +1,59 @@
+package benchmark;
+
+import repository.file.MappedCsvReader;
+import repository.file.ParallelCsvLoader;
+import repository.schema.PurchaseSchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the load time of a large purchases.csv scales with the number of ForkJoinPool threads.
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.ParallelLoadBenchmark [rows]
+ */
+public class ParallelLoadBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path purchases = Files.createTempFile("purchases", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(purchases)) {
+            for (int i = 0; i < rows; i++)
+                writer.write(i + "," + (20000 + i) + "," + (i % 5000) + "," + i + "," + (2000 + i % 21)
+                        + System.lineSeparator());
+        }
+        System.out.printf("rows: %d, file: %d MB, cores: %d%n", rows, Files.size(purchases) >> 20,
+                Runtime.getRuntime().availableProcessors());
+
+        long sequential = best(() -> MappedCsvReader.read(purchases, new PurchaseSchema()).size());
+        System.out.printf("sequential MappedCsvReader  %6d ms%n", sequential);
+
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors() * 2; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long time = best(() -> ParallelCsvLoader.load(purchases, new PurchaseSchema(), pool).size());
+            System.out.printf("ParallelCsvLoader %2d threads %6d ms  (x%.2f)%n", threads, time, (double) sequential / time);
+            pool.shutdown();
+        }
+        Files.delete(purchases);
+    }
+
+    private interface Load {
+        int run() throws IOException;
+    }
+
+    private static long best(Load load) throws IOException {
+        load.run(); // warm up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            load.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000;
+    }
+}
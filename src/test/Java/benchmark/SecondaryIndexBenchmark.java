@@ -0,0 +1,61 @@
+package benchmark;
+
+import domain.Purchase.Purchase;
+import domain.validators.PurchaseValidator;
+import repository.InMemoryRepository;
+import repository.IndexingRepository;
+import repository.Repository;
+import repository.schema.PurchaseSchema;
+
+import java.util.stream.StreamSupport;
+
+/**
+ * Time of finding the purchases of a toy and of a client (what buyToy and deletePurchasesFor* do) with a scan of
+ * findAll and with the secondary indexes of IndexingRepository, on the same purchases.
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.SecondaryIndexBenchmark [purchases]
+ */
+public class SecondaryIndexBenchmark {
+
+    private static final int CLIENTS = 10_000;
+    private static final int LOOKUPS = 2_000;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Repository<Long, Purchase> purchases = new InMemoryRepository<>(new PurchaseValidator());
+        for (long id = 0; id < count; id++) {
+            Purchase purchase = new Purchase("2" + id, id % CLIENTS, id, 2019);
+            purchase.setId(id);
+            purchases.save(purchase);
+        }
+
+        long start = System.nanoTime();
+        IndexingRepository<Long, Purchase> indexed =
+                new IndexingRepository<>(purchases, PurchaseSchema.CLIENT_ID, PurchaseSchema.TOY_ID);
+        System.out.printf("purchases: %d, indexes built in %d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+
+        for (int round = 0; round < 3; round++) {
+            long found = 0;
+            start = System.nanoTime();
+            for (long key = 0; key < LOOKUPS; key++) {
+                long toyId = key * 7919 % count;
+                long clientId = key % CLIENTS;
+                found += StreamSupport.stream(purchases.findAll().spliterator(), false)
+                        .filter(purchase -> purchase.getToyId() == toyId).count();
+                found += StreamSupport.stream(purchases.findAll().spliterator(), false)
+                        .filter(purchase -> purchase.getClientId() == clientId).count();
+            }
+            long scan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (long key = 0; key < LOOKUPS; key++) {
+                found -= indexed.findBy(PurchaseSchema.TOY_ID, key * 7919 % count).size();
+                found -= indexed.findBy(PurchaseSchema.CLIENT_ID, key % CLIENTS).size();
+            }
+            long index = System.nanoTime() - start;
+
+            System.out.printf("scan %10.1f us/lookup  index %8.2f us/lookup  (difference %d)%n",
+                    scan / 2e3 / LOOKUPS, index / 2e3 / LOOKUPS, found);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import domain.Toy.Toy;
+import repository.binary.ColumnarSnapshot;
+import repository.file.MappedCsvReader;
+import repository.schema.ToySchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compares loading a generated toys.csv with MappedCsvReader against loading the same toys
+ * from a ColumnarSnapshot, both as entities and as bare columns.
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.SnapshotLoadBenchmark [rows]
+ */
+public class SnapshotLoadBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("snapshot-benchmark");
+        Path csv = directory.resolve("toys.csv");
+        Path snapshot = directory.resolve("toys.snapshot");
+        ToySchema schema = new ToySchema();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            for (int i = 0; i < rows; i++)
+                writer.write(i + "," + (10000 + i) + ",Toy " + (i % 2000) + "," + (i % 500) + ",material" + (i % 13)
+                        + "," + (i % 1000) + ".99" + System.lineSeparator());
+        }
+        List<Toy> toys = MappedCsvReader.read(csv, schema);
+        ColumnarSnapshot.write(snapshot, schema, toys);
+
+        System.out.println("rows: " + rows + "  csv " + (Files.size(csv) >> 10) + " KB  snapshot "
+                + (Files.size(snapshot) >> 10) + " KB");
+        measure("csv      entities", () -> MappedCsvReader.read(csv, schema).size());
+        measure("snapshot entities", () -> ColumnarSnapshot.read(snapshot, schema).size());
+        measure("snapshot columns ", () -> ColumnarSnapshot.readTable(snapshot, schema).getRowCount());
+
+        Files.delete(csv);
+        Files.delete(snapshot);
+        Files.delete(directory);
+    }
+
+    private interface Load {
+        int run() throws IOException;
+    }
+
+    private static void measure(String name, Load load) throws IOException {
+        load.run(); // warm up
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            load.run();
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+        System.out.printf("%s  best %6d ms%n", name, bestTime / 1_000_000);
+    }
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import domain.Adoption.Adoption;
+import domain.Adoption.AdoptionYearComparator;
+import domain.validators.AdoptionValidator;
+import repository.InMemoryRepository;
+import repository.Repository;
+import service.AdoptionService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * getLastNAdoptions(k) with the bounded heap of the service against the former copy + full sort of all the adoptions,
+ * for n adoptions and k = 10.
+ *
+ * Run with: java -Xmx4g -cp build/classes/java/main:build/classes/java/test benchmark.TopKBenchmark [adoptions] [k]
+ */
+public class TopKBenchmark {
+
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Repository<Long, Adoption> adoptions = new InMemoryRepository<>(new AdoptionValidator());
+        Long[] clients = new Long[1000];
+        for (int client = 0; client < clients.length; client++)
+            clients[client] = (long) client;
+        long seed = 7;
+        for (long id = 0; id < count; id++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            Adoption adoption = new Adoption("1234", clients[(int) (id % clients.length)], id,
+                    1990 + (int) ((seed >>> 33) % 30));
+            adoption.setId(id);
+            adoptions.save(adoption);
+        }
+        AdoptionService service = new AdoptionService(adoptions, null, null);
+        System.out.println("adoptions: " + count + ", k: " + k);
+
+        long bestHeap = Long.MAX_VALUE;
+        long bestSort = Long.MAX_VALUE;
+        for (int iteration = 0; iteration <= ITERATIONS; iteration++) {
+            long start = System.nanoTime();
+            List<Adoption> selected = service.getLastNAdoptions(k);
+            long heap = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<Adoption> sorted = sortAndTake(adoptions, k);
+            long sort = System.nanoTime() - start;
+
+            if (!selected.equals(sorted))
+                throw new IllegalStateException("the two selections differ");
+            // the first round is the warm up
+            if (iteration > 0) {
+                bestHeap = Math.min(bestHeap, heap);
+                bestSort = Math.min(bestSort, sort);
+            }
+        }
+        System.out.printf("bounded heap %8.1f ms%ncopy + sort  %8.1f ms%n", bestHeap / 1e6, bestSort / 1e6);
+    }
+
+    /**
+     * The former implementation of getLastNAdoptions
+     */
+    private static List<Adoption> sortAndTake(Repository<Long, Adoption> repository, int k) {
+        List<Adoption> adoptions = StreamSupport.stream(repository.findAll().spliterator(), false)
+                .collect(Collectors.toList());
+        adoptions.sort(new AdoptionYearComparator());
+        return new ArrayList<>(adoptions.subList(Math.max(0, adoptions.size() - k), adoptions.size()));
+    }
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import repository.InMemoryRepository;
+import repository.Repository;
+import repository.binary.DurableInMemoryRepository;
+import repository.file.LogStructuredFileRepository;
+import repository.schema.ToySchema;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Latency of a save on InMemoryRepository (lost on exit), on LogStructuredFileRepository (appended to the page
+ * cache, forced on close only) and on DurableInMemoryRepository (forced to the disk before the save returns), then
+ * the throughput of DurableInMemoryRepository from 1 to 16 writing threads, with the number of forces they shared.
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.WalBenchmark [saves]
+ */
+public class WalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int saves = args.length > 0 ? Integer.parseInt(args[0]) : 4_000;
+        Path directory = Files.createTempDirectory("wal");
+        try {
+            System.out.println(Runtime.getRuntime().availableProcessors() + " cpus, " + saves + " saves");
+            report("in memory       ", 1, saves, time(new InMemoryRepository<>(new ToyValidator()), 1, saves));
+            LogStructuredFileRepository<Long, Toy> log = new LogStructuredFileRepository<>(new ToyValidator(),
+                    new ToySchema(), directory.resolve("toys.log").toString());
+            report("log-file        ", 1, saves, time(log, 1, saves));
+            log.close();
+
+            for (int threads = 1; threads <= 16; threads *= 2) {
+                String name = "toys" + threads;
+                DurableInMemoryRepository<Long, Toy> durable = new DurableInMemoryRepository<>(new ToyValidator(),
+                        new ToySchema(), directory.resolve(name).toString(), Integer.MAX_VALUE);
+                long time = time(durable, threads, saves);
+                report("durable memory  ", threads, saves, time);
+                System.out.printf("                  %d forces, %.1f saves per force%n",
+                        durable.getLogForces(), saves / (double) durable.getLogForces());
+                durable.close();
+            }
+        } finally {
+            for (Path path : Files.list(directory).toArray(Path[]::new))
+                Files.delete(path);
+            Files.delete(directory);
+        }
+    }
+
+    private static long time(Repository<Long, Toy> toys, int threads, int saves) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int share = saves / threads;
+        long start = System.nanoTime();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            long first = thread * (long) share;
+            tasks.add(executor.submit(() -> {
+                for (long id = first; id < first + share; id++)
+                    toys.save(toy(id));
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks)
+            task.get();
+        long time = System.nanoTime() - start;
+        executor.shutdown();
+        return time;
+    }
+
+    private static void report(String name, int threads, int saves, long time) {
+        System.out.printf("%s %2d threads  %8.2f us/save  %9.0f saves/s%n", name, threads,
+                time / 1_000.0 / saves, saves * 1e9 / time);
+    }
+
+    private static Toy toy(long id) {
+        Toy toy = new Toy("5" + id, "toy" + id, 100 + (int) id % 900, "wood", 1.5);
+        toy.setId(id);
+        return toy;
+    }
+}
@@ -0,0 +1,58 @@
+package benchmark;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import repository.Repository;
+import repository.WriteBehindRepository;
+import repository.file.FileRepositoryToy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Time of an import into a csv file of toys (saves, then an update of every toy, then a delete of half of them)
+ * made directly on FileRepositoryToy, which reads the whole file on every write and rewrites it on every update
+ * and delete, and through a WriteBehindRepository flushing every 256 changed toys and at the end.
+ *
+ * Run with: java -cp build/classes/java/main:build/classes/java/test benchmark.WriteBehindBenchmark [toys]
+ */
+public class WriteBehindBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        System.out.println("toys: " + count);
+        measure("file               ", count, toys -> toys);
+        measure("write-behind + file", count, toys -> new WriteBehindRepository<>(toys, new ToyValidator(), 256, 0));
+    }
+
+    private static void measure(String name, int count, Function<Repository<Long, Toy>, Repository<Long, Toy>> wrap)
+            throws IOException {
+        Path file = Files.createTempFile("toys", ".csv");
+        try {
+            FileRepositoryToy<Long, Toy> toys = new FileRepositoryToy<>(new ToyValidator(), file.toString());
+            long start = System.nanoTime();
+            Repository<Long, Toy> repository = wrap.apply(toys);
+            for (long id = 0; id < count; id++)
+                repository.save(toy(id, 1.5));
+            for (long id = 0; id < count; id++)
+                repository.update(toy(id, 2.5));
+            for (long id = 0; id < count; id += 2)
+                repository.delete(id);
+            if (repository instanceof WriteBehindRepository)
+                ((WriteBehindRepository<Long, Toy>) repository).close();
+            long time = System.nanoTime() - start;
+
+            System.out.printf("%s  %6d ms  (%d toys left in the file)%n", name, time / 1_000_000, toys.readFile().size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static Toy toy(long id, double price) {
+        Toy toy = new Toy("5" + id, "toy" + id, 100 + (int) id % 900, "wood", price);
+        toy.setId(id);
+        return toy;
+    }
+}
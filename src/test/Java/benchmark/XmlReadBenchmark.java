@@ -0,0 +1,86 @@
+package benchmark;
+
+import domain.Purchase.Purchase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import repository.XML.XMLRepositoryStore;
+import repository.XML.XMLStreamEntityReader;
+import repository.schema.PurchaseSchema;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the peak heap and the time of a DOM parse (what XMLRepositoryStore.loadFromXML used to do) with
+ * the StAX streaming of XMLStreamEntityReader, on generated purchases.xml files of growing size.
+ * The streaming side only counts the purchases, as findOne does while looking for an id.
+ * The peak includes garbage not yet collected; run with a small heap (ex: -Xmx32m) to see that the
+ * streaming read completes for any file size while the DOM parse runs out of memory.
+ *
+ * Run with: java -Xmx2g -cp build/classes/java/main:build/classes/java/test benchmark.XmlReadBenchmark
+ */
+public class XmlReadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("xml-benchmark");
+        Path file = directory.resolve("purchases.xml");
+        for (int rows : new int[]{10_000, 100_000, 1_000_000}) {
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><purchases>\n");
+                for (int i = 0; i < rows; i++)
+                    writer.write("    <purchase>\n        <id>" + i + "</id>\n        <serialNumber>" + (20000 + i)
+                            + "</serialNumber>\n        <clientId>" + (i % 5000) + "</clientId>\n        <toyId>" + i
+                            + "</toyId>\n        <purchaseYear>" + (2000 + i % 21) + "</purchaseYear>\n    </purchase>\n");
+                writer.write("</purchases>");
+            }
+            System.out.println("rows: " + rows + "  file " + (Files.size(file) >> 20) + " MB");
+
+            measure("  DOM  ", () -> {
+                Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file.toFile());
+                NodeList nodes = document.getDocumentElement().getChildNodes();
+                long count = 0;
+                for (int i = 0; i < nodes.getLength(); i++)
+                    if (nodes.item(i) instanceof Element)
+                        count += XMLRepositoryStore.createPurchaseFromNode((Element) nodes.item(i)).getId() >= 0 ? 1 : 0;
+                return count;
+            });
+            measure("  StAX ", () -> {
+                AtomicLong count = new AtomicLong();
+                XMLStreamEntityReader.forEach(file, new PurchaseSchema(), (Purchase purchase) -> count.incrementAndGet());
+                return count.get();
+            });
+        }
+        Files.delete(file);
+        Files.delete(directory);
+    }
+
+    private interface Load {
+        long run() throws Exception;
+    }
+
+    private static void measure(String name, Load load) throws Exception {
+        System.gc();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        long start = System.nanoTime();
+        long count;
+        try {
+            count = load.run();
+        } catch (OutOfMemoryError error) {
+            System.out.printf("%s out of memory%n", name);
+            return;
+        }
+        long time = System.nanoTime() - start;
+        long peak = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+        System.out.printf("%s %8d entities  %6d ms  peak heap %5d MB%n", name, count, time / 1_000_000, peak >> 20);
+    }
+}
@@ -2,6 +2,7 @@ package domain;
 
 import domain.Pet.Pet;
 import domain.Toy.Toy;
+import domain.Toy.ToyPriceComparator;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -179,4 +180,17 @@ public class ToyTest {
         Toy toy2 = toy1;
         assertTrue(toy1.toString().equals(toy2.toString()));
     }
+
+    /**
+     * Tests whether the price comparator orders by decreasing price, even prices less than one unit apart
+     */
+    @Test
+    public void testPriceComparator() {
+        Toy toy1 = new Toy("50001","name1",100,"material1",9.2);
+        Toy toy2 = new Toy("50002","name2",200,"material2",9.8);
+        ToyPriceComparator comparator = new ToyPriceComparator();
+        assertTrue(comparator.compare(toy1, toy2) > 0);
+        assertTrue(comparator.compare(toy2, toy1) < 0);
+        assertEquals(0, comparator.compare(toy1, toy1));
+    }
 }
@@ -0,0 +1,149 @@
+package repository;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import org.junit.Before;
+import org.junit.Test;
+import repository.schema.SecondaryIndex;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class CachingRepositoryTest {
+
+    private CountingRepository toys;
+    private CachingRepository<Long, Toy> repository;
+
+    private static Toy toy(long id, String name) {
+        Toy toy = new Toy("12" + id, name, 100, "wood", 10);
+        toy.setId(id);
+        return toy;
+    }
+
+    @Before
+    public void setUp() {
+        toys = new CountingRepository();
+        toys.save(toy(1L, "ball"));
+        toys.save(toy(2L, "kite"));
+        toys.save(toy(3L, "yoyo"));
+        repository = new CachingRepository<>(toys, 2);
+    }
+
+    @Test
+    public void testRepeatedFindOneReadsTheRepositoryOnce() {
+        assertEquals("ball", repository.findOne(1L).get().getName());
+        assertEquals("ball", repository.findOne(1L).get().getName());
+        assertEquals("ball", repository.findOne(1L).get().getName());
+        assertEquals(1, toys.reads);
+        assertEquals(2, repository.getHits());
+        assertEquals(1, repository.getMisses());
+        assertEquals(2 / 3.0, repository.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testMissingIdsAreNotCached() {
+        assertFalse(repository.findOne(9L).isPresent());
+        assertFalse(repository.findOne(9L).isPresent());
+        assertEquals(2, toys.reads);
+        assertEquals(0, repository.size());
+    }
+
+    @Test
+    public void testEvictsTheLeastRecentlyUsed() {
+        repository.findOne(1L);
+        repository.findOne(2L);
+        repository.findOne(1L);
+        repository.findOne(3L);
+        assertEquals(2, repository.size());
+        assertEquals(1, repository.getEvictions());
+
+        // 2 was evicted, 1 was used after it
+        toys.reads = 0;
+        repository.findOne(1L);
+        assertEquals(0, toys.reads);
+        repository.findOne(2L);
+        assertEquals(1, toys.reads);
+    }
+
+    @Test
+    public void testUpdateInvalidates() {
+        repository.findOne(1L);
+        assertFalse(repository.update(toy(1L, "ball2")).isPresent());
+        assertEquals("ball2", repository.findOne(1L).get().getName());
+        assertEquals("ball2", toys.findOne(1L).get().getName());
+    }
+
+    @Test
+    public void testDeleteInvalidates() {
+        repository.findOne(1L);
+        assertTrue(repository.delete(1L).isPresent());
+        assertFalse(repository.findOne(1L).isPresent());
+    }
+
+    @Test
+    public void testSaveOfATakenIdFollowsTheRepository() {
+        repository.findOne(1L);
+        // InMemoryRepository overwrites the entity even though it reports the id as taken
+        assertTrue(repository.save(toy(1L, "ball2")).isPresent());
+        assertEquals(toys.findOne(1L).get().getName(), repository.findOne(1L).get().getName());
+    }
+
+    @Test
+    public void testBatchWritesInvalidate() {
+        repository.findOne(1L);
+        repository.findOne(2L);
+        assertEquals(2, repository.updateAll(Arrays.asList(toy(1L, "ball2"), toy(2L, "kite2"))).getApplied().size());
+        assertEquals("ball2", repository.findOne(1L).get().getName());
+        assertEquals("kite2", repository.findOne(2L).get().getName());
+
+        assertEquals(2, repository.deleteAll(Arrays.asList(1L, 2L)).size());
+        assertFalse(repository.findOne(1L).isPresent());
+        assertFalse(repository.findOne(2L).isPresent());
+    }
+
+    @Test
+    public void testClear() {
+        repository.findOne(1L);
+        toys.update(toy(1L, "ball2"));
+        assertEquals("ball", repository.findOne(1L).get().getName());
+        repository.clear();
+        assertEquals("ball2", repository.findOne(1L).get().getName());
+    }
+
+    @Test
+    public void testUnwrapFindsTheWrappedFeatures() {
+        IndexingRepository<Long, Toy> indexed = new IndexingRepository<>(toys,
+                SecondaryIndex.ordered("weight", Toy::getWeight));
+        CachingRepository<Long, Toy> cached = new CachingRepository<>(indexed, 16);
+
+        assertSame(indexed, DelegatingRepository.unwrap(cached, IndexedRepository.class).get());
+        assertSame(toys, DelegatingRepository.unwrap(cached, InMemoryRepository.class).get());
+        assertSame(cached, DelegatingRepository.unwrap(cached, BatchRepository.class).get());
+        assertEquals(Optional.empty(), DelegatingRepository.unwrap(cached, PurchaseReportRepository.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePositive() {
+        new CachingRepository<>(toys, 0);
+    }
+
+    /**
+     * In memory repository counting its findOne
+     */
+    private static class CountingRepository extends InMemoryRepository<Long, Toy> {
+
+        private int reads;
+
+        CountingRepository() {
+            super(new ToyValidator());
+        }
+
+        @Override
+        public Optional<Toy> findOne(Long id) {
+            reads++;
+            return super.findOne(id);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package repository;
+
+import domain.Pet.Pet;
+import domain.validators.PetValidator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentInMemoryRepositoryTest {
+
+    private static final int THREADS = 8;
+    private static final int PETS = 2_000;
+
+    private ConcurrentInMemoryRepository<Long, Pet> petRepository;
+
+    @Before
+    public void setUp() {
+        petRepository = new ConcurrentInMemoryRepository<>(new PetValidator());
+    }
+
+    private static Pet pet(long id, String name) {
+        Pet pet = new Pet("90" + id, name, "breed1", 2019);
+        pet.setId(id);
+        return pet;
+    }
+
+    /**
+     * Runs the same task on every thread at once and sums the results
+     */
+    private static long race(Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int current = thread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(current);
+                }));
+            }
+            long total = 0;
+            for (Future<Long> result : results)
+                total += result.get();
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface Task {
+        long run(int thread) throws Exception;
+    }
+
+    @Test
+    public void testEveryIdIsSavedOnce() throws Exception {
+        long saved = race(thread -> {
+            long count = 0;
+            for (long id = 0; id < PETS; id++)
+                if (!petRepository.save(pet(id, "thread" + thread)).isPresent())
+                    count++;
+            return count;
+        });
+
+        assertEquals(PETS, saved);
+        assertEquals(PETS, petRepository.size());
+        assertEquals(PETS, ((Collection<Pet>) petRepository.findAll()).size());
+    }
+
+    @Test
+    public void testEveryIdIsDeletedOnce() throws Exception {
+        for (long id = 0; id < PETS; id++)
+            petRepository.save(pet(id, "name"));
+
+        long deleted = race(thread -> {
+            long count = 0;
+            for (long id = 0; id < PETS; id++) {
+                // updates of deleted ids must fail, not bring them back
+                petRepository.update(pet(id, "thread" + thread));
+                if (petRepository.delete(id).isPresent())
+                    count++;
+            }
+            return count;
+        });
+
+        assertEquals(PETS, deleted);
+        assertEquals(0, petRepository.size());
+        assertTrue(petRepository.update(pet(1L, "late")).isPresent());
+    }
+}
@@ -0,0 +1,151 @@
+package repository.DB;
+
+import domain.Pet.Pet;
+import domain.validators.PetValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against an embedded in-memory H2 database, no server needed
+ */
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1";
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setup() {
+        pool = new ConnectionPool(URL, "sa", "", 2, 2, 200);
+    }
+
+    @AfterEach
+    public void teardown() {
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws SQLException {
+        PooledConnection first = pool.borrow();
+        first.close();
+        // closing twice must not hand the connection out twice
+        first.close();
+
+        PooledConnection second = pool.borrow();
+        assertSame(first, second);
+        PooledConnection third = pool.borrow();
+        assertNotSame(second, third);
+        assertEquals(2, pool.getOpenConnections());
+
+        try {
+            pool.borrow();
+            fail();
+        } catch (SQLTransientConnectionException e) {
+        }
+        second.close();
+        third.close();
+        assertEquals(2, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testStatementsAreCachedPerConnection() throws SQLException {
+        try (PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare("SELECT ? + 1");
+            statement.setInt(1, 1);
+            assertSame(statement, connection.prepare("SELECT ? + 1"));
+
+            connection.prepare("SELECT ? + 2");
+            connection.prepare("SELECT ? + 3");
+            // the least recently used statement was closed to stay within the cache size
+            assertEquals(2, connection.getCachedStatements());
+            assertTrue(statement.isClosed());
+            assertNotSame(statement, connection.prepare("SELECT ? + 1"));
+        }
+    }
+
+    @Test
+    public void testUnfinishedTransactionIsRolledBack() throws SQLException {
+        try (PooledConnection connection = pool.borrow();
+             Statement statement = connection.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE tx (id INT)");
+            connection.getConnection().setAutoCommit(false);
+            connection.prepare("INSERT INTO tx VALUES (1)").executeUpdate();
+        }
+        try (PooledConnection connection = pool.borrow();
+             Statement statement = connection.getConnection().createStatement()) {
+            assertTrue(connection.getConnection().getAutoCommit());
+            try (ResultSet rs = connection.prepare("SELECT id FROM tx").executeQuery()) {
+                assertFalse(rs.next());
+            }
+            statement.execute("DROP TABLE tx");
+        }
+    }
+
+    @Test
+    public void testSchemaChangeDropsTheCachedStatements() throws SQLException {
+        PooledConnection reader = pool.borrow();
+        try (PooledConnection writer = pool.borrow()) {
+            writer.executeSchemaChange("CREATE TABLE shape (id INT, name VARCHAR(20))");
+            PreparedStatement statement = reader.prepare("SELECT * FROM shape");
+            assertEquals(2, statement.getMetaData().getColumnCount());
+
+            // the table is created again, with other columns, on another connection
+            writer.executeSchemaChange("DROP TABLE shape");
+            writer.executeSchemaChange("CREATE TABLE shape (id INT, weight INT, price INT)");
+            PreparedStatement prepared = reader.prepare("SELECT * FROM shape");
+            assertNotSame(statement, prepared);
+            assertTrue(statement.isClosed());
+            assertEquals(3, prepared.getMetaData().getColumnCount());
+            assertSame(prepared, reader.prepare("SELECT * FROM shape"));
+            writer.executeSchemaChange("DROP TABLE shape");
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testRepositoryOnSharedPool() throws Exception {
+        DBRepositoryPet<Long, Pet> petRepository = new DBRepositoryPet<>(new PetValidator(), "poolpets", pool);
+        try {
+            for (long id = 1; id <= 20; id++) {
+                Pet pet = new Pet("900" + id, "name" + id, "breed", 2019);
+                pet.setId(id);
+                petRepository.save(pet);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Long>> found = new ArrayList<>();
+            for (int task = 0; task < 4; task++)
+                found.add(executor.submit(() -> {
+                    long count = 0;
+                    for (int round = 0; round < 50; round++)
+                        for (long id = 1; id <= 20; id++)
+                            count += petRepository.findOne(id).isPresent() ? 1 : 0;
+                    return count;
+                }));
+            for (Future<Long> future : found)
+                assertEquals(1000L, future.get());
+            executor.shutdown();
+
+            assertEquals(20, ((List<Pet>) petRepository.findAll()).size());
+            assertEquals("name3", petRepository.delete(3L).get().getName());
+            assertTrue(pool.getOpenConnections() <= 2);
+        } finally {
+            petRepository.dropTable();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package repository.DB;
+
+import domain.Purchase.Purchase;
+import domain.validators.PurchaseValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.BatchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against an embedded in-memory H2 database, no server needed
+ */
+public class DBRepositoryBatchTest {
+
+    private ConnectionPool pool;
+    private DBRepositoryPurchase<Long, Purchase> purchaseRepository;
+
+    @BeforeEach
+    public void setup() {
+        pool = new ConnectionPool("jdbc:h2:mem:batch;DB_CLOSE_DELAY=-1", "sa", "", 2);
+        purchaseRepository = new DBRepositoryPurchase<>(new PurchaseValidator(), "batchpurchases", pool);
+        // several executeBatch calls per operation
+        purchaseRepository.setBatchSize(3);
+    }
+
+    @AfterEach
+    public void teardown() {
+        purchaseRepository.dropTable();
+        pool.close();
+    }
+
+    private Purchase purchase(long id, long clientId) {
+        Purchase purchase = new Purchase("2000" + id, clientId, id, 2020);
+        purchase.setId(id);
+        return purchase;
+    }
+
+    @Test
+    public void testSaveAllReportsDuplicateKeys() {
+        purchaseRepository.save(purchase(2L, 1L));
+
+        List<Purchase> purchases = new ArrayList<>();
+        for (long id = 1; id <= 7; id++)
+            purchases.add(purchase(id, 1L));
+        purchases.add(purchase(5L, 9L));
+        BatchResult<Purchase> result = purchaseRepository.saveAll(purchases);
+
+        assertEquals(6, result.getApplied().size());
+        assertEquals(2, result.getFailures().size());
+        assertEquals(2L, (long) result.getFailures().get(0).getEntity().getId());
+        assertEquals(BatchResult.ID_TAKEN, result.getFailures().get(0).getReason());
+        assertEquals(9L, (long) result.getFailures().get(1).getEntity().getClientId());
+        assertEquals(7, ((List<Purchase>) purchaseRepository.findAll()).size());
+        assertEquals(1L, (long) purchaseRepository.findOne(5L).get().getClientId());
+    }
+
+    @Test
+    public void testUpdateAllAndDeleteAll() {
+        List<Purchase> purchases = new ArrayList<>();
+        for (long id = 1; id <= 5; id++)
+            purchases.add(purchase(id, 1L));
+        assertTrue(purchaseRepository.saveAll(purchases).isComplete());
+
+        BatchResult<Purchase> updated = purchaseRepository.updateAll(List.of(purchase(1L, 2L), purchase(4L, 2L),
+                purchase(8L, 2L)));
+        assertEquals(2, updated.getApplied().size());
+        assertEquals(BatchResult.ID_MISSING, updated.getFailures().get(0).getReason());
+        assertEquals(2L, (long) purchaseRepository.findOne(4L).get().getClientId());
+
+        List<Purchase> removed = purchaseRepository.deleteAll(List.of(1L, 2L, 3L, 4L, 9L));
+        assertEquals(4, removed.size());
+        assertEquals(List.of(5L), List.of(((List<Purchase>) purchaseRepository.findAll()).get(0).getId()));
+        assertTrue(purchaseRepository.deleteAll(List.of()).isEmpty());
+    }
+}
@@ -0,0 +1,175 @@
+package repository.DB;
+
+import domain.Adoption.Adoption;
+import domain.Client.Client;
+import domain.Pet.Pet;
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import domain.validators.AdoptionValidator;
+import domain.validators.ClientValidator;
+import domain.validators.PetValidator;
+import domain.validators.PurchaseValidator;
+import domain.validators.ToyValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryRepository;
+import repository.schema.AdoptionSchema;
+import repository.schema.ClientSchema;
+import repository.schema.PetSchema;
+import repository.schema.PurchaseSchema;
+import service.AdoptionService;
+import service.StoreService;
+import service.exceptions.AdoptionServiceException;
+import service.exceptions.StoreServiceException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against an embedded in-memory H2 database, no server needed
+ */
+public class DBRepositoryReportTest {
+
+    private ConnectionPool pool;
+    private DBRepositoryClient<Long, Client> clientRepository;
+    private DBRepositoryPet<Long, Pet> petRepository;
+    private DBRepositoryToy<Long, Toy> toyRepository;
+    private DBRepositoryAdoption<Long, Adoption> adoptionRepository;
+    private DBRepositoryPurchase<Long, Purchase> purchaseRepository;
+
+    @BeforeEach
+    public void setup() {
+        pool = new ConnectionPool("jdbc:h2:mem:report;DB_CLOSE_DELAY=-1", "sa", "", 2);
+        clientRepository = new DBRepositoryClient<>(new ClientValidator(), "reportclients", pool);
+        petRepository = new DBRepositoryPet<>(new PetValidator(), "reportpets", pool);
+        toyRepository = new DBRepositoryToy<>(new ToyValidator(), "reporttoys", pool);
+        adoptionRepository = new DBRepositoryAdoption<>(new AdoptionValidator(), "reportadoptions", pool);
+        purchaseRepository = new DBRepositoryPurchase<>(new PurchaseValidator(), "reportpurchases", pool);
+
+        for (long id = 1; id <= 3; id++) {
+            Client client = new Client("5000" + id, "name" + id, "addr" + id, 2015);
+            client.setId(id);
+            clientRepository.save(client);
+        }
+        String[] breeds = {"birman", "bulldog", "birman", "birman"};
+        String[] materials = {"plastic", "wood", "plastic", "metal"};
+        int[] weights = {10, 25, 12, 40};
+        for (long id = 1; id <= 4; id++) {
+            Pet pet = new Pet("6000" + id, "name" + id, breeds[(int) id - 1], 2018);
+            pet.setId(id);
+            petRepository.save(pet);
+            Toy toy = new Toy("7000" + id, "toy" + id, weights[(int) id - 1], materials[(int) id - 1], 20);
+            toy.setId(id);
+            toyRepository.save(toy);
+        }
+    }
+
+    @AfterEach
+    public void teardown() {
+        purchaseRepository.dropTable();
+        adoptionRepository.dropTable();
+        toyRepository.dropTable();
+        petRepository.dropTable();
+        clientRepository.dropTable();
+        pool.close();
+    }
+
+    @Test
+    public void testJoinNeedsTheSameDatabase() {
+        assertTrue(purchaseRepository.supportsJoin(toyRepository));
+        assertTrue(adoptionRepository.supportsJoin(petRepository));
+        assertTrue(adoptionRepository.supportsJoin(clientRepository));
+        assertFalse(adoptionRepository.supportsJoin(toyRepository));
+        assertFalse(purchaseRepository.supportsJoin(new InMemoryRepository<Long, Toy>(new ToyValidator())));
+    }
+
+    @Test
+    public void testStoreReports() {
+        StoreService storeService = new StoreService(purchaseRepository, clientRepository, toyRepository);
+        try {
+            storeService.getMostPopularMaterial();
+            fail();
+        } catch (StoreServiceException e) {
+        }
+        assertTrue(purchaseRepository.isEmpty());
+        assertThrows(StoreServiceException.class, () -> storeService.getNumberOfPurchasesForYear(2020));
+
+        for (long id = 1; id <= 4; id++) {
+            Purchase purchase = new Purchase("8000" + id, 1L, id, 2020);
+            purchase.setId(id);
+            purchaseRepository.save(purchase);
+        }
+        assertFalse(purchaseRepository.isEmpty());
+        assertEquals(4, storeService.getNumberOfPurchasesForYear(2020));
+        assertEquals(0, storeService.getNumberOfPurchasesForYear(2021));
+        assertEquals("plastic", storeService.getMostPopularMaterial());
+        // (10 + 25 + 12 + 40) / 4, truncated
+        assertEquals(21, storeService.getAveragePurchasedToysWeight());
+    }
+
+    @Test
+    public void testAdoptionReports() {
+        AdoptionService adoptionService = new AdoptionService(adoptionRepository, clientRepository, petRepository);
+        try {
+            adoptionService.getClientOfTheYear(2020);
+            fail();
+        } catch (AdoptionServiceException e) {
+            assertTrue(e.getMessage().contains("empty repository"));
+        }
+
+        long[][] adoptions = {{1, 1}, {1, 2}, {2, 3}, {3, 4}};
+        for (int index = 0; index < adoptions.length; index++) {
+            Adoption adoption = new Adoption("9000" + index, adoptions[index][0], adoptions[index][1],
+                    index < 3 ? 2020 : 2021);
+            adoption.setId((long) index);
+            adoptionRepository.save(adoption);
+        }
+        assertEquals("birman", adoptionService.mostAdoptedBreed());
+        // same ranking as the in-memory report
+        assertEquals(clientRepository.findOne(2L).get(), adoptionService.getClientOfTheYear(2020));
+        assertEquals(clientRepository.findOne(3L).get(), adoptionService.getClientOfTheYear(2021));
+        try {
+            adoptionService.getClientOfTheYear(2005);
+            fail();
+        } catch (AdoptionServiceException e) {
+            assertTrue(e.getMessage().contains("no adoptions"));
+        }
+    }
+
+    @Test
+    public void testFindByForeignKey() {
+        for (long id = 1; id <= 4; id++) {
+            Purchase purchase = new Purchase("8000" + id, id % 2, id, 2020);
+            purchase.setId(id);
+            purchaseRepository.save(purchase);
+        }
+        assertTrue(purchaseRepository.isIndexed(PurchaseSchema.TOY_ID));
+        assertEquals(2, purchaseRepository.findBy(PurchaseSchema.CLIENT_ID, 1L).size());
+        assertEquals(3L, (long) purchaseRepository.findBy(PurchaseSchema.TOY_ID, 3L).iterator().next().getId());
+        assertTrue(purchaseRepository.findBy(PurchaseSchema.TOY_ID, 9L).isEmpty());
+
+        StoreService storeService = new StoreService(purchaseRepository, clientRepository, toyRepository);
+        storeService.deletePurchasesForClient(1L);
+        assertTrue(purchaseRepository.findBy(PurchaseSchema.CLIENT_ID, 1L).isEmpty());
+        assertEquals(2, purchaseRepository.findBy(PurchaseSchema.CLIENT_ID, 0L).size());
+    }
+
+    @Test
+    public void testFindBetweenYears() {
+        int[] years = {2016, 2020, 2018, 2022};
+        for (long id = 1; id <= 4; id++) {
+            Adoption adoption = new Adoption("9000" + id, 1L, id, years[(int) id - 1]);
+            adoption.setId(id);
+            adoptionRepository.save(adoption);
+        }
+        assertTrue(adoptionRepository.isIndexed(AdoptionSchema.ADOPTION_YEAR));
+        List<Adoption> found = adoptionRepository.findBetween(AdoptionSchema.ADOPTION_YEAR, 2017, 2021);
+        assertEquals(2, found.size());
+        // sorted by year
+        assertEquals(3L, (long) found.get(0).getId());
+        assertEquals(4, petRepository.findBetween(PetSchema.BIRTH_YEAR, 2018, 2018).size());
+        assertTrue(clientRepository.findBetween(ClientSchema.YEAR_OF_REGISTRATION, 2016, 2030).isEmpty());
+    }
+}
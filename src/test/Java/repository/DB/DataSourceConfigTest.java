@@ -0,0 +1,60 @@
+package repository.DB;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataSourceConfigTest {
+
+    private static Properties properties(String... keysAndValues) {
+        Properties properties = new Properties();
+        for (int index = 0; index < keysAndValues.length; index += 2)
+            properties.setProperty(keysAndValues[index], keysAndValues[index + 1]);
+        return properties;
+    }
+
+    @Test
+    public void testEmbeddedWhenNothingIsConfigured() {
+        DataSourceConfig config = DataSourceConfig.fromProperties(new Properties(), Collections.emptyMap(), new Properties());
+
+        assertEquals(DataSourceConfig.EMBEDDED_URL, config.getUrl());
+        assertEquals(DataSourceConfig.EMBEDDED_USER, config.getUser());
+        assertEquals(ConnectionPool.DEFAULT_SIZE, config.getPoolSize());
+        assertTrue(config.isEmbedded());
+    }
+
+    @Test
+    public void testEnvironmentAndSystemPropertiesOverrideTheFile() {
+        Properties file = properties(DataSourceConfig.URL, "jdbc:postgresql://db:5432/shop",
+                DataSourceConfig.USER, "shop", DataSourceConfig.PASSWORD, "secret", DataSourceConfig.POOL_SIZE, "4");
+        Map<String, String> environment = Map.of("DB_PASSWORD", "fromenv", "DB_POOL_SIZE", "6");
+        Properties system = properties(DataSourceConfig.POOL_SIZE, "2");
+
+        DataSourceConfig config = DataSourceConfig.fromProperties(file, environment, system);
+        assertEquals("jdbc:postgresql://db:5432/shop", config.getUrl());
+        assertEquals("shop", config.getUser());
+        assertEquals("fromenv", config.getPassword());
+        assertEquals(2, config.getPoolSize());
+        assertFalse(config.isEmbedded());
+        assertFalse(config.toString().contains("fromenv"));
+    }
+
+    @Test
+    public void testInvalidPoolSize() {
+        try {
+            DataSourceConfig.fromProperties(properties(DataSourceConfig.POOL_SIZE, "many"), Collections.emptyMap(),
+                    new Properties());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new DataSourceConfig("jdbc:h2:mem:config", "sa", "", 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
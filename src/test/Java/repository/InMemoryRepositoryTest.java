@@ -185,4 +185,26 @@ public class InMemoryRepositoryTest {
         petRepository.update(pet1);
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests whether findAll returns a read-only view that follows the changes of the repository.
+     */
+    @Test
+    public void testFindAllIsLiveView() throws ValidatorException {
+        Pet pet = new Pet("921","name1","breed1",2019);
+        pet.setId(ID);
+        Iterable<Pet> pets = petRepository.findAll();
+        assertFalse(pets.iterator().hasNext());
+
+        petRepository.save(pet);
+        assertEquals(pet, pets.iterator().next());
+
+        try{
+            Iterator<Pet> iterator = pets.iterator();
+            iterator.next();
+            iterator.remove();
+            fail();
+        }catch(UnsupportedOperationException e) {}
+        assertTrue(petRepository.findOne(ID).isPresent());
+    }
+}
@@ -0,0 +1,149 @@
+package repository;
+
+import domain.Adoption.Adoption;
+import domain.validators.AdoptionValidator;
+import org.junit.Before;
+import org.junit.Test;
+import repository.schema.AdoptionSchema;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class IndexingRepositoryTest {
+
+    private InMemoryRepository<Long, Adoption> adoptions;
+    private IndexingRepository<Long, Adoption> repository;
+
+    private static Adoption adoption(long id, long clientId, long petId) {
+        return adoption(id, clientId, petId, 2019);
+    }
+
+    private static Adoption adoption(long id, long clientId, long petId, int year) {
+        Adoption adoption = new Adoption("33" + id, clientId, petId, year);
+        adoption.setId(id);
+        return adoption;
+    }
+
+    private static Set<Long> ids(Collection<Adoption> adoptions) {
+        return adoptions.stream().map(Adoption::getId).collect(Collectors.toSet());
+    }
+
+    @Before
+    public void setUp() {
+        adoptions = new InMemoryRepository<>(new AdoptionValidator());
+        adoptions.save(adoption(1L, 10L, 100L));
+        adoptions.save(adoption(2L, 10L, 200L));
+        repository = new IndexingRepository<>(adoptions, AdoptionSchema.CLIENT_ID, AdoptionSchema.PET_ID);
+    }
+
+    @Test
+    public void testIndexesTheExistingEntities() {
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 10L)));
+        assertEquals(Set.of(2L), ids(repository.findBy(AdoptionSchema.PET_ID, 200L)));
+        assertTrue(repository.findBy(AdoptionSchema.PET_ID, 300L).isEmpty());
+    }
+
+    @Test
+    public void testSave() {
+        assertFalse(repository.save(adoption(3L, 20L, 300L)).isPresent());
+        assertEquals(Set.of(3L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 20L)));
+        assertEquals(Set.of(3L), ids(repository.findBy(AdoptionSchema.PET_ID, 300L)));
+    }
+
+    @Test
+    public void testSaveTakenIdFollowsTheRepository() {
+        // InMemoryRepository stores the entity even when it reports the id as taken, the index follows it
+        assertTrue(repository.save(adoption(1L, 30L, 100L)).isPresent());
+        assertEquals(Set.of(1L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 30L)));
+        assertEquals(Set.of(2L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 10L)));
+    }
+
+    @Test
+    public void testUpdateMovesTheEntity() {
+        assertFalse(repository.update(adoption(2L, 20L, 300L)).isPresent());
+        assertEquals(Set.of(1L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 10L)));
+        assertEquals(Set.of(2L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 20L)));
+        assertTrue(repository.findBy(AdoptionSchema.PET_ID, 200L).isEmpty());
+        assertEquals(Set.of(2L), ids(repository.findBy(AdoptionSchema.PET_ID, 300L)));
+    }
+
+    @Test
+    public void testUpdateMissingIdIsNotIndexed() {
+        repository.update(adoption(9L, 20L, 300L));
+        assertTrue(repository.findBy(AdoptionSchema.CLIENT_ID, 20L).isEmpty());
+    }
+
+    @Test
+    public void testDelete() {
+        assertTrue(repository.delete(1L).isPresent());
+        assertEquals(Set.of(2L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 10L)));
+        assertTrue(repository.findBy(AdoptionSchema.PET_ID, 100L).isEmpty());
+        assertFalse(repository.delete(1L).isPresent());
+    }
+
+    @Test
+    public void testBatchOperations() {
+        repository.saveAll(Arrays.asList(adoption(3L, 20L, 300L), adoption(4L, 20L, 400L)));
+        assertEquals(Set.of(3L, 4L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 20L)));
+
+        repository.deleteAll(Arrays.asList(1L, 3L));
+        assertEquals(Set.of(2L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 10L)));
+        assertEquals(Set.of(4L), ids(repository.findBy(AdoptionSchema.CLIENT_ID, 20L)));
+    }
+
+    @Test
+    public void testFindByReturnsACopy() {
+        Collection<Adoption> found = repository.findBy(AdoptionSchema.CLIENT_ID, 10L);
+        repository.delete(1L);
+        assertEquals(2, found.size());
+    }
+
+    @Test
+    public void testIsIndexed() {
+        IndexingRepository<Long, Adoption> byPet = new IndexingRepository<>(adoptions, AdoptionSchema.PET_ID);
+        assertTrue(byPet.isIndexed(AdoptionSchema.PET_ID));
+        assertFalse(byPet.isIndexed(AdoptionSchema.CLIENT_ID));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindByOnMissingIndex() {
+        new IndexingRepository<>(adoptions, AdoptionSchema.PET_ID).findBy(AdoptionSchema.CLIENT_ID, 10L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindByNullKey() {
+        repository.findBy(AdoptionSchema.PET_ID, null);
+    }
+
+    @Test
+    public void testFindBetween() {
+        IndexingRepository<Long, Adoption> byYear = new IndexingRepository<>(adoptions, AdoptionSchema.ADOPTION_YEAR);
+        byYear.save(adoption(3L, 20L, 300L, 2015));
+        byYear.save(adoption(4L, 20L, 400L, 2021));
+        byYear.save(adoption(5L, 30L, 500L, 2017));
+
+        List<Adoption> found = byYear.findBetween(AdoptionSchema.ADOPTION_YEAR, 2016, 2019);
+        // sorted by year
+        assertEquals(Long.valueOf(5L), found.get(0).getId());
+        assertEquals(Set.of(1L, 2L, 5L), ids(found));
+        assertEquals(5, byYear.findBetween(AdoptionSchema.ADOPTION_YEAR, 2000, 2030).size());
+        assertEquals(Set.of(4L), ids(byYear.findBetween(AdoptionSchema.ADOPTION_YEAR, 2021, 2021)));
+        assertTrue(byYear.findBetween(AdoptionSchema.ADOPTION_YEAR, 2019, 2016).isEmpty());
+
+        byYear.update(adoption(5L, 30L, 500L, 2020));
+        byYear.delete(1L);
+        assertEquals(Set.of(2L), ids(byYear.findBetween(AdoptionSchema.ADOPTION_YEAR, 2016, 2019)));
+        assertEquals(Set.of(5L), ids(byYear.findBy(AdoptionSchema.ADOPTION_YEAR, 2020)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindBetweenNeedsAnOrderedIndex() {
+        repository.findBetween(AdoptionSchema.PET_ID, 100L, 200L);
+    }
+}
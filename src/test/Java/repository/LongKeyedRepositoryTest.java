@@ -0,0 +1,64 @@
+package repository;
+
+import domain.Pet.Pet;
+import domain.validators.PetValidator;
+import domain.validators.exceptions.ValidatorException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+public class LongKeyedRepositoryTest {
+
+    private LongKeyedRepository<Pet> petRepository;
+
+    @Before
+    public void setUp() {
+        petRepository = new LongKeyedRepository<>(new PetValidator(), 2);
+    }
+
+    private Pet pet(long id, String name) {
+        Pet pet = new Pet("90" + id, name, "breed1", 2019);
+        pet.setId(id);
+        return pet;
+    }
+
+    @Test
+    public void testSaveAndFind() {
+        for (long id = 1; id <= 100; id++)
+            assertFalse(petRepository.save(pet(id, "name" + id)).isPresent());
+
+        assertEquals("name7", petRepository.save(pet(7L, "other")).get().getName());
+        assertEquals("name7", petRepository.findOne(7L).get().getName());
+        assertEquals("name8", petRepository.findOne(Long.valueOf(8)).get().getName());
+        assertFalse(petRepository.findOne(101L).isPresent());
+        assertEquals(100, ((Collection<Pet>) petRepository.findAll()).size());
+
+        try {
+            petRepository.findOne((Long) null);
+            fail();
+        } catch (InMemoryRepositoryException e) {
+        }
+        try {
+            petRepository.save(pet(200L, ""));
+            fail();
+        } catch (ValidatorException e) {
+        }
+    }
+
+    @Test
+    public void testUpdateAndDelete() {
+        petRepository.save(pet(1L, "name1"));
+
+        assertFalse(petRepository.update(pet(1L, "renamed")).isPresent());
+        assertEquals("renamed", petRepository.findOne(1L).get().getName());
+        assertTrue(petRepository.update(pet(2L, "missing")).isPresent());
+        assertFalse(petRepository.findOne(2L).isPresent());
+
+        assertEquals("renamed", petRepository.delete(Long.valueOf(1)).get().getName());
+        assertFalse(petRepository.delete(1L).isPresent());
+        assertEquals(0, petRepository.size());
+    }
+}
@@ -0,0 +1,90 @@
+package repository;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.put(1L, "one"));
+        assertEquals("one", map.put(1L, "uno"));
+        assertNull(map.putIfAbsent(-7L, "minus seven"));
+        assertEquals("minus seven", map.putIfAbsent(-7L, "other"));
+        assertNull(map.replace(3L, "three"));
+        assertFalse(map.containsKey(3L));
+
+        assertEquals(2, map.size());
+        assertEquals("uno", map.get(1L));
+        assertEquals("uno", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertNull(map.get(1L));
+        assertEquals(1, map.size());
+
+        try {
+            map.put(2L, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    /**
+     * Random puts and removes on a small key range (long probe chains, many shifts on removal),
+     * checked against a HashMap after every step
+     */
+    @Test
+    public void testAgainstHashMap() {
+        Random random = new Random(42);
+        LongObjectMap<Long> map = new LongObjectMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (int step = 0; step < 200_000; step++) {
+            long key = random.nextInt(2_000) * 1024L;
+            if (random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), map.remove(key));
+            else
+                assertEquals(expected.put(key, (long) step), map.put(key, (long) step));
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.get(key), map.get(key));
+        }
+        for (long key = 0; key < 2_000 * 1024L; key += 1024)
+            assertEquals(expected.get(key), map.get(key));
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(map.values()));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0L));
+    }
+
+    @Test
+    public void testValuesView() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        Collection<String> view = map.valuesView();
+        map.put(1L, "one");
+        map.put(2L, "two");
+        assertEquals(2, view.size());
+        assertTrue(view.contains("two"));
+
+        Iterator<String> iterator = view.iterator();
+        iterator.next();
+        map.remove(1L);
+        try {
+            iterator.next();
+            fail();
+        } catch (ConcurrentModificationException e) {
+        }
+        assertEquals(Collections.singletonList("two"), new ArrayList<>(view));
+    }
+}
@@ -0,0 +1,230 @@
+package repository;
+
+import domain.Client.Client;
+import domain.validators.ClientValidator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindRepositoryTest {
+
+    private RecordingRepository clients;
+    private WriteBehindRepository<Long, Client> repository;
+
+    private static Client client(long id, String name) {
+        Client client = new Client("5" + id, name, "address", 2019);
+        client.setId(id);
+        return client;
+    }
+
+    private static List<Long> ids(Iterable<Client> clients) {
+        return StreamSupport.stream(clients.spliterator(), false).map(Client::getId).collect(Collectors.toList());
+    }
+
+    @Before
+    public void setUp() {
+        clients = new RecordingRepository();
+        clients.save(client(1L, "Ana"));
+        clients.save(client(2L, "Ion"));
+        clients.calls.clear();
+        repository = new WriteBehindRepository<>(clients, new ClientValidator(), 100, 0);
+    }
+
+    @After
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Test
+    public void testReadsSeeThePendingWrites() {
+        assertFalse(repository.save(client(3L, "Maria")).isPresent());
+        assertFalse(repository.update(client(1L, "Ana2")).isPresent());
+        assertTrue(repository.delete(2L).isPresent());
+
+        assertEquals("Ana2", repository.findOne(1L).get().getName());
+        assertFalse(repository.findOne(2L).isPresent());
+        assertEquals(Arrays.asList(1L, 3L), ids(repository.findAll()));
+        assertEquals(3, repository.getPendingCount());
+
+        // nothing is written yet
+        assertTrue(clients.calls.isEmpty());
+        assertEquals("Ana", clients.findOne(1L).get().getName());
+    }
+
+    @Test
+    public void testWritesFollowTheRepositoryContract() {
+        assertEquals("Ana", repository.save(client(1L, "Other")).get().getName());
+        assertTrue(repository.update(client(9L, "Nobody")).isPresent());
+        assertFalse(repository.delete(9L).isPresent());
+        assertEquals(0, repository.getPendingCount());
+    }
+
+    @Test
+    public void testFlushWritesOneBatchPerKindOfChange() {
+        repository.save(client(3L, "Maria"));
+        repository.save(client(4L, "Dan"));
+        repository.update(client(1L, "Ana2"));
+        repository.delete(2L);
+
+        assertEquals(4, repository.flush());
+        assertEquals(Arrays.asList("deleteAll", "updateAll", "saveAll"), clients.calls);
+        assertEquals(0, repository.getPendingCount());
+        assertEquals(Arrays.asList(1L, 3L, 4L), ids(clients.findAll()));
+        assertEquals("Ana2", clients.findOne(1L).get().getName());
+        assertEquals(0, repository.flush());
+    }
+
+    @Test
+    public void testCoalescesTheChangesOfAnId() {
+        repository.save(client(3L, "Maria"));
+        repository.update(client(3L, "Maria2"));
+        repository.update(client(3L, "Maria3"));
+        repository.update(client(1L, "Ana2"));
+        repository.update(client(1L, "Ana3"));
+        repository.save(client(4L, "Dan"));
+        repository.delete(4L);
+        repository.delete(2L);
+        repository.save(client(2L, "Ion2"));
+        assertEquals(4, repository.getPendingCount());
+
+        assertEquals(3, repository.flush());
+        assertEquals(Arrays.asList("updateAll", "saveAll"), clients.calls);
+        assertEquals("Maria3", clients.findOne(3L).get().getName());
+        assertEquals("Ana3", clients.findOne(1L).get().getName());
+        assertEquals("Ion2", clients.findOne(2L).get().getName());
+        assertFalse(clients.findOne(4L).isPresent());
+    }
+
+    @Test
+    public void testFlushesWhenTooManyIdsArePending() {
+        repository = new WriteBehindRepository<>(clients, new ClientValidator(), 2, 0);
+        repository.save(client(3L, "Maria"));
+        assertTrue(clients.calls.isEmpty());
+        repository.update(client(3L, "Maria2"));
+        assertTrue(clients.calls.isEmpty());
+        repository.save(client(4L, "Dan"));
+        assertEquals(Arrays.asList("saveAll"), clients.calls);
+        assertEquals(0, repository.getPendingCount());
+        assertEquals(2, repository.getFlushedChanges());
+    }
+
+    @Test
+    public void testFlushesInTheBackground() throws InterruptedException {
+        repository = new WriteBehindRepository<>(clients, new ClientValidator(), 100, 10);
+        repository.save(client(3L, "Maria"));
+        for (int wait = 0; wait < 200 && repository.getPendingCount() > 0; wait++)
+            Thread.sleep(10);
+        assertEquals(0, repository.getPendingCount());
+        assertTrue(clients.findOne(3L).isPresent());
+    }
+
+    @Test
+    public void testCloseFlushesAndRefusesWrites() {
+        repository.save(client(3L, "Maria"));
+        repository.close();
+        assertTrue(clients.findOne(3L).isPresent());
+        assertTrue(repository.findOne(3L).isPresent());
+        try {
+            repository.save(client(4L, "Dan"));
+            fail();
+        } catch (InMemoryRepositoryException expected) {
+            assertFalse(clients.findOne(4L).isPresent());
+        }
+    }
+
+    @Test
+    public void testRejectedChangesAreReportedAndDropped() {
+        repository.save(client(3L, "Maria"));
+        // written directly, behind the decorator
+        clients.save(client(3L, "Other"));
+        try {
+            repository.flush();
+            fail();
+        } catch (RepositoryException expected) {
+            assertTrue(expected.getMessage().contains("3"));
+        }
+        assertEquals(0, repository.getPendingCount());
+    }
+
+    @Test
+    public void testFailedFlushKeepsTheChangesPending() {
+        repository.save(client(3L, "Maria"));
+        clients.failing = true;
+        try {
+            repository.flush();
+            fail();
+        } catch (RepositoryException expected) {
+            assertEquals(1, repository.getPendingCount());
+        }
+        clients.failing = false;
+        assertEquals(1, repository.flush());
+        assertTrue(clients.findOne(3L).isPresent());
+    }
+
+    @Test
+    public void testFailedAutomaticFlushIsKeptAndReportedByTheNextFlush() {
+        repository = new WriteBehindRepository<>(clients, new ClientValidator(), 2, 0);
+        clients.failing = true;
+        repository.save(client(3L, "Maria"));
+        // the write is accepted although its flush fails
+        assertFalse(repository.save(client(4L, "Dan")).isPresent());
+        assertEquals(2, repository.getPendingCount());
+        assertTrue(repository.getLastFailure().isPresent());
+
+        clients.failing = false;
+        try {
+            repository.flush();
+            fail();
+        } catch (RepositoryException expected) {
+            assertEquals(0, repository.getPendingCount());
+            assertTrue(clients.findOne(4L).isPresent());
+        }
+        assertFalse(repository.getLastFailure().isPresent());
+        assertEquals(0, repository.flush());
+    }
+
+    /**
+     * In memory batch repository recording its batch calls, which can be made to fail
+     */
+    private static class RecordingRepository extends InMemoryRepository<Long, Client> implements BatchRepository<Long, Client> {
+
+        private final List<String> calls = new ArrayList<>();
+        private boolean failing = false;
+
+        RecordingRepository() {
+            super(new ClientValidator());
+        }
+
+        private void call(String name) {
+            if (failing)
+                throw new RepositoryException("RecordingRepository: " + name + " failed");
+            calls.add(name);
+        }
+
+        @Override
+        public BatchResult<Client> saveAll(Iterable<Client> entities) {
+            call("saveAll");
+            return BatchRepository.super.saveAll(entities);
+        }
+
+        @Override
+        public BatchResult<Client> updateAll(Iterable<Client> entities) {
+            call("updateAll");
+            return BatchRepository.super.updateAll(entities);
+        }
+
+        @Override
+        public List<Client> deleteAll(Iterable<Long> ids) {
+            call("deleteAll");
+            return BatchRepository.super.deleteAll(ids);
+        }
+    }
+}
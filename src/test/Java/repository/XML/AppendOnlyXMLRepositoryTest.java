@@ -0,0 +1,151 @@
+package repository.XML;
+
+import domain.Pet.Pet;
+import domain.validators.PetValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.XML.exceptions.XMLRepositoryException;
+import repository.schema.PetSchema;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppendOnlyXMLRepositoryTest {
+
+    private Path directory;
+    private Path file;
+    private AppendOnlyXMLRepository<Long, Pet> petRepository;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("append-xml");
+        file = directory.resolve("pets.xml");
+        petRepository = open(0.5, 1000);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        petRepository.close();
+        for (Path path : Files.list(directory).toArray(Path[]::new))
+            Files.delete(path);
+        Files.delete(directory);
+    }
+
+    private AppendOnlyXMLRepository<Long, Pet> open(double garbageRatio, int minGarbageElements) {
+        return new AppendOnlyXMLRepository<>(new PetValidator(), new PetSchema(), file.toString(),
+                garbageRatio, minGarbageElements);
+    }
+
+    private Pet pet(long id, String name) {
+        Pet pet = new Pet("900" + id, name, "breed", 2019);
+        pet.setId(id);
+        return pet;
+    }
+
+    @Test
+    public void testSaveAppendsBeforeClosingTag() throws IOException, XMLStreamException {
+        assertTrue(petRepository.save(pet(1L, "Rex")).isEmpty());
+        long size = Files.size(file);
+        assertTrue(petRepository.save(pet(2L, "Tom & <Jerry>")).isEmpty());
+        assertEquals("Rex", petRepository.save(pet(1L, "Other")).get().getName());
+
+        String content = Files.readString(file);
+        assertTrue(Files.size(file) > size);
+        assertTrue(content.endsWith("</pets>"));
+        assertTrue(content.contains("<name>Tom &amp; &lt;Jerry&gt;</name>"));
+
+        // the document stays readable by the streaming reader of the XMLRepository* classes
+        List<Pet> pets = XMLStreamEntityReader.read(file, new PetSchema());
+        assertEquals(2, pets.size());
+        assertEquals("Tom & <Jerry>", pets.get(1).getName());
+    }
+
+    @Test
+    public void testDeleteAndUpdateAfterReopen() throws IOException {
+        petRepository.save(pet(1L, "Rex"));
+        petRepository.save(pet(2L, "Tom"));
+        petRepository.save(pet(3L, "Max"));
+        assertTrue(petRepository.update(pet(1L, "Rexy")).isEmpty());
+        assertTrue(petRepository.update(pet(9L, "Nobody")).isPresent());
+        assertEquals("Tom", petRepository.delete(2L).get().getName());
+        assertTrue(petRepository.delete(2L).isEmpty());
+        assertEquals(3, petRepository.getGarbageElements());
+        petRepository.close();
+
+        petRepository = open(0.5, 1000);
+        assertEquals("Rexy", petRepository.findOne(1L).get().getName());
+        assertTrue(petRepository.findOne(2L).isEmpty());
+        assertEquals(3, petRepository.getGarbageElements());
+        assertTrue(petRepository.save(pet(2L, "Tom")).isEmpty());
+
+        try {
+            petRepository.findOne(null);
+            fail();
+        } catch (XMLRepositoryException e) {
+        }
+    }
+
+    @Test
+    public void testTornAppendIsDropped() throws IOException, XMLStreamException {
+        petRepository.save(pet(1L, "Rex"));
+        petRepository.close();
+
+        String content = Files.readString(file);
+        Files.writeString(file, content.substring(0, content.length() - "</pets>".length())
+                + "    <pet><id>2</id><serial");
+
+        petRepository = open(0.5, 1000);
+        assertTrue(petRepository.findOne(2L).isEmpty());
+        assertTrue(petRepository.save(pet(2L, "Tom")).isEmpty());
+        assertEquals(2, XMLStreamEntityReader.read(file, new PetSchema()).size());
+    }
+
+    @Test
+    public void testCompaction() throws IOException, XMLStreamException {
+        petRepository.close();
+        petRepository = open(0.5, 6);
+
+        for (long id = 1; id <= 6; id++)
+            petRepository.save(pet(id, "Pet" + id));
+        petRepository.delete(1L);
+        petRepository.delete(2L);
+        assertEquals(4, petRepository.getGarbageElements());
+
+        // 6 garbage elements out of 9: compacted right after the write
+        petRepository.delete(3L);
+
+        assertEquals(0, petRepository.getGarbageElements());
+        assertEquals(3, XMLStreamEntityReader.read(file, new PetSchema()).size());
+        assertFalse(Files.readString(file).contains(XMLStreamEntityReader.TOMBSTONE));
+
+        petRepository.update(pet(4L, "Renamed"));
+        assertEquals(1, petRepository.getGarbageElements());
+        assertEquals("Renamed", petRepository.findOne(4L).get().getName());
+
+        petRepository.save(pet(7L, "Pet7"));
+        petRepository.close();
+        petRepository = open(0.5, 6);
+        assertEquals(4, ((List<Pet>) petRepository.findAll()).size());
+    }
+
+    @Test
+    public void testOpenExistingDocument() throws IOException, XMLStreamException {
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><pets>\n"
+                + "    <pet>\n        <id>1</id>\n        <serialNumber>1</serialNumber>\n        <name>Rex</name>\n"
+                + "        <breed>dog</breed>\n        <birthYear>2015</birthYear>\n    </pet>\n</pets>\n",
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        petRepository.close();
+        petRepository = open(0.5, 1000);
+
+        assertEquals("Rex", petRepository.findOne(1L).get().getName());
+        petRepository.save(pet(2L, "Tom"));
+        assertEquals(2, XMLStreamEntityReader.read(file, new PetSchema()).size());
+    }
+}
@@ -0,0 +1,94 @@
+package repository.XML;
+
+import domain.Pet.Pet;
+import domain.validators.PetValidator;
+import domain.validators.exceptions.ValidatorException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import repository.BatchResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class XMLRepositoryBatchTest {
+
+    private static final Path FILE = Path.of("data/xml/test/batchPetsTest.xml");
+
+    private XMLRepositoryPet<Long, Pet> petRepository;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.writeString(FILE, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><pets>\n\n</pets>");
+        petRepository = new XMLRepositoryPet<>(new PetValidator(), "test/batchPetsTest");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(FILE);
+    }
+
+    private Pet pet(long id, String name) {
+        Pet pet = new Pet("900" + id, name, "breed", 2019);
+        pet.setId(id);
+        return pet;
+    }
+
+    /**
+     * Tests that a batch save writes the free ids and reports the taken ones
+     */
+    @Test
+    public void testSaveAll() {
+        petRepository.save(pet(1L, "Rex"));
+
+        BatchResult<Pet> result = petRepository.saveAll(List.of(pet(1L, "Other"), pet(2L, "Tom"), pet(3L, "Max"),
+                pet(2L, "Twice")));
+
+        assertEquals(List.of(2L, 3L), List.of(result.getApplied().get(0).getId(), result.getApplied().get(1).getId()));
+        assertEquals(2, result.getRejected().size());
+        assertFalse(result.isComplete());
+        assertEquals(3, petRepository.loadFromXML().size());
+        assertEquals("Rex", petRepository.findOne(1L).get().getName());
+        assertEquals("Tom", petRepository.findOne(2L).get().getName());
+    }
+
+    /**
+     * Tests that an invalid pet fails the whole batch before anything is written
+     */
+    @Test
+    public void testSaveAllValidatesFirst() {
+        try {
+            petRepository.saveAll(List.of(pet(1L, "Rex"), new Pet("", "", "", -1)));
+            fail();
+        } catch (ValidatorException e) {
+        }
+        assertTrue(petRepository.loadFromXML().isEmpty());
+    }
+
+    /**
+     * Tests that updates replace the pets in place and deletes remove them, each batch being one write
+     */
+    @Test
+    public void testUpdateAllAndDeleteAll() {
+        petRepository.saveAll(List.of(pet(1L, "Rex"), pet(2L, "Tom"), pet(3L, "Max")));
+
+        BatchResult<Pet> updated = petRepository.updateAll(List.of(pet(2L, "Tommy & Co"), pet(9L, "Nobody")));
+        assertEquals(1, updated.getApplied().size());
+        assertEquals(9L, (long) updated.getRejected().get(0).getId());
+        List<Pet> pets = petRepository.loadFromXML();
+        assertEquals("Tommy & Co", pets.get(1).getName());
+
+        List<Pet> removed = petRepository.deleteAll(List.of(1L, 3L, 7L));
+        assertEquals(2, removed.size());
+        assertEquals("Max", removed.get(1).getName());
+        assertEquals(1, petRepository.loadFromXML().size());
+
+        petRepository.deleteAll();
+        assertTrue(petRepository.loadFromXML().isEmpty());
+        assertTrue(petRepository.deleteAll(List.of(2L)).isEmpty());
+    }
+}
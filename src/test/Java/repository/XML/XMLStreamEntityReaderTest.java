@@ -0,0 +1,104 @@
+package repository.XML;
+
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.schema.PurchaseSchema;
+import repository.schema.ToySchema;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XMLStreamEntityReaderTest {
+
+    private Path file;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempFile("entities", ".xml");
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testRead() throws IOException, XMLStreamException {
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><toys>\n"
+                + "    <toy>\n        <id>1</id>\n        <serialNumber>10233</serialNumber>\n"
+                + "        <name>Toy &amp; Bone</name>\n        <weight> 200 </weight>\n"
+                + "        <material><![CDATA[plastic]]></material>\n        <price>3.99</price>\n    </toy>\n"
+                + "    <note>ignored</note>\n"
+                + "    <toy><price>5.99</price><material>latex</material><weight>150</weight><name>Latex Hen</name>"
+                + "<serialNumber>10402</serialNumber><id>2</id></toy>\n</toys>");
+
+        List<Toy> toys = XMLStreamEntityReader.read(file, new ToySchema());
+
+        assertEquals(2, toys.size());
+        assertEquals(1L, toys.get(0).getId());
+        assertEquals("Toy & Bone", toys.get(0).getName());
+        assertEquals(200, toys.get(0).getWeight());
+        assertEquals("plastic", toys.get(0).getMaterial());
+        assertEquals("Latex Hen", toys.get(1).getName());
+        assertEquals(5.99, toys.get(1).getPrice());
+    }
+
+    @Test
+    public void testFindStopsAtFirstMatch() throws IOException, XMLStreamException {
+        StringBuilder xml = new StringBuilder("<purchases>");
+        for (int id = 1; id <= 100; id++)
+            xml.append("<purchase><id>").append(id).append("</id><serialNumber>").append(1000 + id)
+                    .append("</serialNumber><clientId>1</clientId><toyId>").append(id)
+                    .append("</toyId><purchaseYear>2020</purchaseYear></purchase>");
+        // anything after the match must not be read
+        xml.append("<purchase><id>broken");
+        Files.writeString(file, xml.toString());
+
+        AtomicInteger visited = new AtomicInteger();
+        Purchase found = XMLStreamEntityReader.find(file, new PurchaseSchema(), purchase -> {
+            visited.incrementAndGet();
+            return purchase.getId() == 30L;
+        }).get();
+        assertEquals(30L, found.getToyId());
+        assertEquals(30, visited.get());
+
+        assertEquals(99L, XMLStreamEntityReader.findById(file, new PurchaseSchema(), 99L).get().getToyId());
+
+        try {
+            XMLStreamEntityReader.findById(file, new PurchaseSchema(), 1000L);
+            fail();
+        } catch (XMLStreamException e) {
+        }
+    }
+
+    @Test
+    public void testInvalidEntity() throws IOException {
+        Files.writeString(file, "<toys><toy><id>x</id></toy></toys>");
+        try {
+            XMLStreamEntityReader.forEach(file, new ToySchema(), toy -> fail());
+            fail();
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage().contains("<id>"));
+        }
+
+        Files.writeString(file, "<toys><toy><id>1</id><name>n</name></toy></toys>");
+        List<Toy> toys = new ArrayList<>();
+        try {
+            XMLStreamEntityReader.forEach(file, new ToySchema(), toys::add);
+            fail();
+        } catch (XMLStreamException e) {
+            assertTrue(e.getMessage().contains("missing <serialNumber>"));
+        }
+        assertTrue(toys.isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+package repository.binary;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.PetSchema;
+import repository.schema.ToySchema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinarySnapshotRepositoryTest {
+
+    private Path directory;
+    private Path file;
+    private BinarySnapshotRepository<Long, Toy> toyRepository;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        file = directory.resolve("toys.snapshot");
+        toyRepository = new BinarySnapshotRepository<>(new ToyValidator(), new ToySchema(), file.toString());
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        for (Path path : Files.list(directory).toArray(Path[]::new))
+            Files.delete(path);
+        Files.delete(directory);
+    }
+
+    private Toy toy(long id, String name, String material, double price) {
+        Toy toy = new Toy("100" + id, name, 100 + (int) id, material, price);
+        toy.setId(id);
+        return toy;
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        List<Toy> toys = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++)
+            toys.add(toy(id, "Toy " + id, "material" + id % 3, id + 0.99));
+        toys.add(toy(1001, "Os\u0103", "plastic", 1.5));
+
+        ColumnarSnapshot.write(file, new ToySchema(), toys);
+        List<Toy> read = ColumnarSnapshot.read(file, new ToySchema());
+
+        assertEquals(toys.size(), read.size());
+        for (int i = 0; i < toys.size(); i++) {
+            assertEquals(toys.get(i).getId(), read.get(i).getId());
+            assertEquals(toys.get(i).getName(), read.get(i).getName());
+            assertEquals(toys.get(i).getMaterial(), read.get(i).getMaterial());
+            assertEquals(toys.get(i).getWeight(), read.get(i).getWeight());
+            assertEquals(toys.get(i).getPrice(), read.get(i).getPrice());
+        }
+
+        ColumnTable<Toy> table = ColumnarSnapshot.readTable(file, new ToySchema());
+        assertEquals(4, table.stringColumn(4).getDictionary().size());
+        assertEquals(500, table.longColumn(0)[499]);
+    }
+
+    @Test
+    public void testSnapshotOfAnotherSchema() throws IOException {
+        ColumnarSnapshot.write(file, new ToySchema(), List.of(toy(1, "Bone", "plastic", 2.0)));
+        try {
+            ColumnarSnapshot.read(file, new PetSchema());
+            fail();
+        } catch (BinaryRepositoryException e) {
+        }
+
+        Files.write(file, new byte[]{1, 2, 3});
+        try {
+            ColumnarSnapshot.read(file, new ToySchema());
+            fail();
+        } catch (BinaryRepositoryException e) {
+        }
+    }
+
+    @Test
+    public void testRepository() {
+        assertFalse(toyRepository.findAll().iterator().hasNext());
+        assertTrue(toyRepository.save(toy(1, "Bone", "plastic", 2.0)).isEmpty());
+        assertTrue(toyRepository.save(toy(2, "Ball", "rubber", 3.0)).isEmpty());
+        assertEquals("Bone", toyRepository.save(toy(1, "Other", "wood", 1.0)).get().getName());
+
+        assertTrue(toyRepository.update(toy(2, "Ball", "latex", 3.5)).isEmpty());
+        assertTrue(toyRepository.update(toy(3, "Rope", "cotton", 1.0)).isPresent());
+        assertEquals("Bone", toyRepository.delete(1L).get().getName());
+        assertTrue(toyRepository.delete(1L).isEmpty());
+
+        BinarySnapshotRepository<Long, Toy> reopened =
+                new BinarySnapshotRepository<>(new ToyValidator(), new ToySchema(), file.toString());
+        assertTrue(reopened.findOne(1L).isEmpty());
+        assertEquals("latex", reopened.findOne(2L).get().getMaterial());
+
+        try {
+            toyRepository.findOne(null);
+            fail();
+        } catch (BinaryRepositoryException e) {
+        }
+    }
+
+    @Test
+    public void testConvertFromCsvAndXml() throws IOException {
+        Path csv = directory.resolve("toys.csv");
+        Files.writeString(csv, "1,10233,Toy Bone,200,plastic,3.99\n2,10402,Latex Hen,150,latex,5.99\n");
+        assertEquals(2, SnapshotConverter.fromCsv(csv, new ToySchema(), file));
+        assertEquals("Latex Hen", toyRepository.findOne(2L).get().getName());
+
+        Path xml = directory.resolve("toys.xml");
+        Files.writeString(xml, "<?xml version=\"1.0\" encoding=\"UTF-8\"?><toys>\n"
+                + "<toy><id>7</id><serialNumber>1</serialNumber><name>Rope</name><weight>20</weight>"
+                + "<material>cotton</material><price>1.5</price></toy>\n</toys>");
+        assertEquals(1, SnapshotConverter.fromXml(xml, new ToySchema(), file));
+        assertTrue(toyRepository.findOne(2L).isEmpty());
+        assertEquals(1.5, toyRepository.findOne(7L).get().getPrice());
+    }
+}
@@ -0,0 +1,167 @@
+package repository.binary;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.SecondaryIndex;
+import repository.schema.ToySchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarRepositoryTest {
+
+    private ColumnarRepository<Toy> toys;
+
+    @BeforeEach
+    public void setup() {
+        toys = new ColumnarRepository<>(new ToyValidator(), new ToySchema());
+    }
+
+    private Toy toy(long id, String name, int weight, String material, double price) {
+        Toy toy = new Toy("100" + id, name, weight, material, price);
+        toy.setId(id);
+        return toy;
+    }
+
+    private List<Long> ids() {
+        List<Long> ids = new ArrayList<>();
+        toys.findAll().forEach(toy -> ids.add(toy.getId()));
+        return ids;
+    }
+
+    @Test
+    public void testRepositoryContract() {
+        assertFalse(toys.save(toy(1L, "ball", 100, "rubber", 9.99)).isPresent());
+        assertEquals("ball", toys.save(toy(1L, "other", 1, "wood", 1)).get().getName());
+        assertTrue(toys.update(toy(2L, "kite", 150, "paper", 5)).isPresent());
+        assertFalse(toys.update(toy(1L, "ball2", 120, "plastic", 7.5)).isPresent());
+        assertFalse(toys.delete(2L).isPresent());
+        assertThrows(BinaryRepositoryException.class, () -> toys.findOne((Long) null));
+
+        Toy found = toys.findOne(1L).get();
+        assertEquals("ball2", found.getName());
+        assertEquals(120, found.getWeight());
+        assertEquals("plastic", found.getMaterial());
+        assertEquals(7.5, found.getPrice());
+        assertEquals(1, toys.size());
+    }
+
+    @Test
+    public void testDeleteKeepsTheColumnsDense() {
+        for (long id = 1; id <= 5; id++)
+            toys.save(toy(id, "toy" + id, (int) id * 10, "wood", id));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids());
+
+        // the last row moves into the deleted one
+        assertEquals("toy2", toys.delete(2L).get().getName());
+        assertEquals(List.of(1L, 5L, 3L, 4L), ids());
+        assertEquals(4, toys.size());
+        assertArrayEquals(new int[]{10, 50, 30, 40}, Arrays.copyOf(toys.intColumn("weight"), 4));
+        assertEquals("toy5", toys.findOne(5L).get().getName());
+
+        toys.delete(4L);
+        toys.update(toy(5L, "five", 55, "metal", 5.5));
+        assertEquals(List.of(1L, 5L, 3L), ids());
+        assertEquals(55, toys.findOne(5L).get().getWeight());
+        assertEquals("metal", toys.get(1).getMaterial());
+    }
+
+    @Test
+    public void testRowsOf() {
+        for (long id = 1; id <= 3; id++)
+            toys.save(toy(id, "toy" + id, 10, "wood", 1));
+        toys.delete(1L);
+        assertArrayEquals(new int[]{1, -1, 0, -1}, toys.rowsOf(new long[]{2L, 1L, 3L, 9L}, 4));
+    }
+
+    @Test
+    public void testUnknownOrMistypedColumn() {
+        assertThrows(BinaryRepositoryException.class, () -> toys.intColumn("colour"));
+        assertThrows(BinaryRepositoryException.class, () -> toys.intColumn("price"));
+    }
+
+    @Test
+    public void testFindAllFailsOnConcurrentChange() {
+        toys.save(toy(1L, "ball", 100, "rubber", 9.99));
+        toys.save(toy(2L, "kite", 150, "paper", 5));
+        Iterator<Toy> iterator = toys.findAll().iterator();
+        iterator.next();
+        toys.save(toy(3L, "yoyo", 50, "wood", 2));
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    public void testLookupsScanTheColumns() {
+        SecondaryIndex<Toy, Integer> weight = SecondaryIndex.ordered("weight", Toy::getWeight);
+        assertTrue(toys.isIndexed(weight));
+        assertFalse(toys.isIndexed(new SecondaryIndex<>("price", Toy::getPrice)));
+        assertFalse(toys.isIndexed(new SecondaryIndex<>("name", Toy::getName)));
+        assertFalse(toys.isIndexed(new SecondaryIndex<>("id", Toy::getId)));
+        assertThrows(IllegalArgumentException.class, () -> toys.findBy(new SecondaryIndex<>("name", Toy::getName), "x"));
+        assertThrows(IllegalArgumentException.class, () -> toys.findBy(weight, null));
+
+        for (long id = 1; id <= 5; id++)
+            toys.save(toy(id, "toy" + id, (int) (60 - id * 10), "wood", id));
+        toys.save(toy(6L, "toy6", 30, "wood", 6));
+        // toy 6 moves to the first row
+        toys.delete(1L);
+        assertEquals(List.of(6L, 3L), toys.findBy(weight, 30).stream().map(Toy::getId).collect(Collectors.toList()));
+        assertEquals(List.of(5L, 4L, 6L, 3L), toys.findBetween(weight, 10, 30).stream()
+                .map(Toy::getId).collect(Collectors.toList()));
+        assertTrue(toys.findBetween(weight, 30, 10).isEmpty());
+    }
+
+    @Test
+    public void testStringColumnDropsTheUnusedValues() {
+        StringColumn serials = new StringColumn(4);
+        serials.add("shared");
+        serials.add("shared");
+        for (int row = 2; row < 102; row++)
+            serials.add("serial" + row);
+
+        // unique values replaced or removed again and again
+        for (int round = 1; round <= 50; round++)
+            for (int row = 2; row < 102; row++)
+                serials.set(row, "serial" + row + "-" + round);
+        for (int row = 0; row < 50; row++)
+            serials.remove(2);
+        assertTrue(serials.getDictionary().size() <= serials.size() + Math.max(16, serials.size() / 4) + 1);
+
+        assertEquals(52, serials.size());
+        int shared = 0;
+        for (int row = 0; row < serials.size(); row++) {
+            assertEquals(serials.getDictionary().get(serials.getCodes()[row]), serials.get(row));
+            if (serials.get(row).equals("shared"))
+                shared++;
+            else
+                assertTrue(serials.get(row).endsWith("-50"));
+        }
+        assertEquals(2, shared);
+        assertEquals(-1, serials.codeOf("serial2-1"));
+    }
+
+    @Test
+    public void testScans() {
+        int[] values = {3, 7, 1, 7, 2, 99};
+        assertEquals(2, ColumnScan.count(values, 5, 7));
+        assertEquals(20, ColumnScan.sum(values, 5));
+        assertEquals(1, ColumnScan.argMax(values, 5));
+        assertEquals(-1, ColumnScan.argMax(values, 0));
+
+        int[] rows = {4, -1, 3, 1, -1};
+        assertEquals(3, ColumnScan.countFound(rows, 5));
+        assertEquals(16, ColumnScan.sumAt(values, rows, 5));
+        assertEquals(2, ColumnScan.argMaxAt(values, rows, 5));
+        assertEquals(-1, ColumnScan.argMaxAt(values, new int[]{-1, -1}, 2));
+        assertEquals(0, ColumnScan.argMaxAt(new double[]{0.5, 9.8, 9.2}, new int[]{1, 2, 1}, 3));
+    }
+}
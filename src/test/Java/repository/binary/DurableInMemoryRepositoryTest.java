@@ -0,0 +1,194 @@
+package repository.binary;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.ToySchema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DurableInMemoryRepositoryTest {
+
+    private Path directory;
+    private String fileName;
+    private List<DurableInMemoryRepository<Long, Toy>> opened;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("wal");
+        fileName = directory.resolve("toys").toString();
+        opened = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        for (DurableInMemoryRepository<Long, Toy> repository : opened)
+            try {
+                repository.close();
+            } catch (BinaryRepositoryException e) {
+                // already closed
+            }
+        for (Path path : Files.list(directory).toArray(Path[]::new))
+            Files.delete(path);
+        Files.delete(directory);
+    }
+
+    /**
+     * Open the repository on the files of the test; a repository opened again without closing the previous one
+     * sees what a restart after a crash would
+     */
+    private DurableInMemoryRepository<Long, Toy> open(int snapshotEvery) {
+        DurableInMemoryRepository<Long, Toy> repository =
+                new DurableInMemoryRepository<>(new ToyValidator(), new ToySchema(), fileName, snapshotEvery);
+        opened.add(repository);
+        return repository;
+    }
+
+    private Toy toy(long id, String name) {
+        Toy toy = new Toy("100" + id, name, 100 + (int) id, "wood", id + 0.99);
+        toy.setId(id);
+        return toy;
+    }
+
+    @Test
+    public void testRepositoryContract() {
+        DurableInMemoryRepository<Long, Toy> toys = open(1000);
+        assertFalse(toys.save(toy(1L, "ball")).isPresent());
+        assertEquals("ball", toys.save(toy(1L, "other")).get().getName());
+        assertTrue(toys.update(toy(2L, "kite")).isPresent());
+        assertFalse(toys.update(toy(1L, "ball2")).isPresent());
+        assertFalse(toys.delete(2L).isPresent());
+        assertEquals("ball2", toys.findOne(1L).get().getName());
+        assertThrows(BinaryRepositoryException.class, () -> toys.findOne(null));
+        // the rejected writes are not logged
+        assertEquals(2, toys.getChangesSinceSnapshot());
+    }
+
+    @Test
+    public void testChangesSurviveACrash() {
+        DurableInMemoryRepository<Long, Toy> toys = open(1000);
+        toys.save(toy(1L, "ball"));
+        toys.save(toy(2L, "kite"));
+        toys.save(toy(3L, "yoyo"));
+        toys.update(toy(1L, "ball2"));
+        toys.delete(2L);
+
+        DurableInMemoryRepository<Long, Toy> recovered = open(1000);
+        assertEquals(2, recovered.size());
+        assertEquals("ball2", recovered.findOne(1L).get().getName());
+        assertFalse(recovered.findOne(2L).isPresent());
+        assertEquals("yoyo", recovered.findOne(3L).get().getName());
+        assertEquals(5, recovered.getChangesSinceSnapshot());
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        DurableInMemoryRepository<Long, Toy> toys = open(1000);
+        toys.save(toy(1L, "ball"));
+        toys.save(toy(2L, "kite"));
+        Path wal = Path.of(fileName + ".wal");
+        long valid = Files.size(wal);
+        // the beginning of a record whose write was interrupted
+        Files.write(wal, new byte[]{40, 0, 0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        DurableInMemoryRepository<Long, Toy> recovered = open(1000);
+        assertEquals(2, recovered.size());
+        assertEquals(valid, Files.size(wal));
+
+        // the next records follow the last valid one
+        recovered.save(toy(3L, "yoyo"));
+        assertEquals(3, open(1000).size());
+    }
+
+    @Test
+    public void testSnapshotEmptiesTheLog() throws IOException {
+        DurableInMemoryRepository<Long, Toy> toys = open(1000);
+        toys.save(toy(1L, "ball"));
+        toys.save(toy(2L, "kite"));
+        toys.snapshot();
+        assertEquals(0, Files.size(Path.of(fileName + ".wal")));
+        assertEquals(0, toys.getChangesSinceSnapshot());
+        toys.delete(1L);
+
+        DurableInMemoryRepository<Long, Toy> recovered = open(1000);
+        assertEquals(1, recovered.size());
+        assertTrue(recovered.findOne(2L).isPresent());
+        assertEquals(1, recovered.getChangesSinceSnapshot());
+    }
+
+    @Test
+    public void testSnapshotsInTheBackground() throws InterruptedException {
+        DurableInMemoryRepository<Long, Toy> toys = open(10);
+        for (long id = 1; id <= 25; id++)
+            toys.save(toy(id, "toy" + id));
+        for (int wait = 0; wait < 200 && toys.getChangesSinceSnapshot() >= 10; wait++)
+            Thread.sleep(10);
+        assertTrue(toys.getChangesSinceSnapshot() < 10);
+        assertEquals(25, open(10).size());
+    }
+
+    @Test
+    public void testFailedBackgroundSnapshotIsKept() throws Exception {
+        DurableInMemoryRepository<Long, Toy> toys = open(10);
+        // the temporary file of the snapshot can not be written
+        Path blocked = Files.createDirectory(Path.of(fileName + ".snapshot.tmp"));
+        for (long id = 1; id <= 10; id++)
+            toys.save(toy(id, "toy" + id));
+        for (int wait = 0; wait < 200 && !toys.getLastSnapshotFailure().isPresent(); wait++)
+            Thread.sleep(10);
+        assertTrue(toys.getLastSnapshotFailure().isPresent());
+        assertEquals(10, open(10).size());
+
+        Files.delete(blocked);
+        toys.snapshot();
+        assertFalse(toys.getLastSnapshotFailure().isPresent());
+        assertEquals(0, toys.getChangesSinceSnapshot());
+    }
+
+    @Test
+    public void testCloseRefusesWrites() throws IOException {
+        DurableInMemoryRepository<Long, Toy> toys = open(1000);
+        toys.save(toy(1L, "ball"));
+        toys.close();
+        assertTrue(toys.findOne(1L).isPresent());
+        assertThrows(BinaryRepositoryException.class, () -> toys.save(toy(2L, "kite")));
+        assertEquals(0, Files.size(Path.of(fileName + ".wal")));
+        assertEquals(1, open(1000).size());
+    }
+
+    @Test
+    public void testConcurrentWritersAreAllDurable() throws Exception {
+        DurableInMemoryRepository<Long, Toy> toys = open(100_000);
+        int threads = 8;
+        int saves = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            long first = thread * (long) saves;
+            tasks.add(executor.submit(() -> {
+                for (long id = first; id < first + saves; id++)
+                    toys.save(toy(id, "toy" + id));
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks)
+            task.get();
+        executor.shutdown();
+
+        assertTrue(toys.getLogForces() <= threads * saves);
+        assertEquals(threads * saves, open(100_000).size());
+    }
+}
@@ -0,0 +1,214 @@
+package repository.binary;
+
+import domain.Adoption.Adoption;
+import domain.Purchase.Purchase;
+import domain.validators.AdoptionValidator;
+import domain.validators.PurchaseValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.binary.exceptions.BinaryRepositoryException;
+import repository.schema.AdoptionSchema;
+import repository.schema.PurchaseSchema;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapRepositoryTest {
+
+    private OffHeapRepository<Purchase> purchases;
+
+    @BeforeEach
+    public void setup() {
+        // small slabs and strings, so the tests cross slab boundaries and hit the string limit
+        purchases = new OffHeapRepository<>(new PurchaseValidator(), new PurchaseSchema(), 8, 4);
+    }
+
+    private Purchase purchase(long id, String serialNumber, long clientId, long toyId, int year) {
+        Purchase purchase = new Purchase(serialNumber, clientId, toyId, year);
+        purchase.setId(id);
+        return purchase;
+    }
+
+    private Set<Long> ids(Iterable<Purchase> purchases) {
+        Set<Long> ids = new HashSet<>();
+        purchases.forEach(purchase -> ids.add(purchase.getId()));
+        return ids;
+    }
+
+    @Test
+    public void testRepositoryContract() {
+        assertFalse(purchases.save(purchase(1L, "1234", 1L, 2L, 2020)).isPresent());
+        assertEquals("1234", purchases.save(purchase(1L, "9999", 5L, 5L, 2019)).get().getSerialNumber());
+        assertTrue(purchases.update(purchase(2L, "2345", 1L, 1L, 2020)).isPresent());
+        assertFalse(purchases.update(purchase(1L, "12345", 3L, 4L, 2018)).isPresent());
+        assertFalse(purchases.delete(2L).isPresent());
+        assertThrows(BinaryRepositoryException.class, () -> purchases.findOne((Long) null));
+        assertThrows(BinaryRepositoryException.class, () -> purchases.save(null));
+
+        Purchase found = purchases.findOne(1L).get();
+        assertEquals("12345", found.getSerialNumber());
+        assertEquals(3L, found.getClientId());
+        assertEquals(4L, found.getToyId());
+        assertEquals(2018, found.getPurchaseYear());
+        assertEquals(1L, found.getId());
+        assertEquals(1, purchases.size());
+    }
+
+    @Test
+    public void testEntitiesAreDecodedOnEveryAccess() {
+        Purchase saved = purchase(1L, "1234", 1L, 2L, 2020);
+        purchases.save(saved);
+        saved.setToyId(7L);
+        assertEquals(2L, purchases.findOne(1L).get().getToyId());
+        assertNotSame(purchases.findOne(1L).get(), purchases.findOne(1L).get());
+    }
+
+    @Test
+    public void testRowsSpanSlabsAndAreReused() {
+        for (long id = 1; id <= 10; id++)
+            purchases.save(purchase(id, "10" + id, id, id, 2020));
+        long allocated = purchases.getOffHeapBytes();
+        assertEquals(10, purchases.size());
+
+        purchases.delete(3L);
+        purchases.delete(8L);
+        assertEquals(8, purchases.size());
+        assertFalse(ids(purchases.findAll()).contains(3L));
+
+        purchases.save(purchase(11L, "1011", 11L, 11L, 2021));
+        purchases.save(purchase(12L, "1012", 12L, 12L, 2021));
+        assertEquals(allocated, purchases.getOffHeapBytes());
+        assertEquals(Set.of(1L, 2L, 4L, 5L, 6L, 7L, 9L, 10L, 11L, 12L), ids(purchases.findAll()));
+        assertEquals(2021, purchases.findOne(12L).get().getPurchaseYear());
+    }
+
+    @Test
+    public void testIndexGrows() {
+        OffHeapRepository<Purchase> many = new OffHeapRepository<>(new PurchaseValidator(), new PurchaseSchema());
+        int count = 200_000;
+        for (long id = 0; id < count; id++)
+            many.save(purchase(id * 7, String.valueOf(id), id % 100, id % 1000, 2000 + (int) (id % 20)));
+        for (long id = 0; id < count; id += 2)
+            many.delete(id * 7);
+
+        assertEquals(count / 2, many.size());
+        for (long id = 0; id < count; id++)
+            assertEquals(id % 2 == 1, many.findOne(id * 7).isPresent());
+        assertEquals(String.valueOf(count - 1), many.findOne((count - 1) * 7L).get().getSerialNumber());
+        int iterated = 0;
+        for (Purchase ignored : many.findAll())
+            iterated++;
+        assertEquals(count / 2, iterated);
+    }
+
+    @Test
+    public void testTooLongStringIsRefused() {
+        purchases.save(purchase(1L, "1234", 1L, 2L, 2020));
+        assertThrows(BinaryRepositoryException.class, () -> purchases.save(purchase(2L, "123456789", 1L, 2L, 2020)));
+        assertThrows(BinaryRepositoryException.class, () -> purchases.update(purchase(1L, "123456789", 9L, 9L, 2019)));
+
+        // the refused update left the row as it was
+        Purchase found = purchases.findOne(1L).get();
+        assertEquals("1234", found.getSerialNumber());
+        assertEquals(1L, found.getClientId());
+        assertEquals(1, purchases.size());
+        assertFalse(purchases.findOne(2L).isPresent());
+    }
+
+    @Test
+    public void testFindAllFailsOnConcurrentChange() {
+        purchases.save(purchase(1L, "1", 1L, 1L, 2020));
+        purchases.save(purchase(2L, "2", 1L, 1L, 2020));
+        Iterator<Purchase> iterator = purchases.findAll().iterator();
+        iterator.next();
+        purchases.delete(2L);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    public void testAdoptions() {
+        OffHeapRepository<Adoption> adoptions = new OffHeapRepository<>(new AdoptionValidator(), new AdoptionSchema());
+        List<Adoption> saved = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            Adoption adoption = new Adoption("104" + id, id, 10 + id, 2015 + (int) id);
+            adoption.setId(id);
+            adoptions.save(adoption);
+            saved.add(adoption);
+        }
+        List<Adoption> found = new ArrayList<>();
+        adoptions.findAll().forEach(found::add);
+        assertEquals(saved, found);
+        assertEquals(13L, adoptions.findOne(3L).get().getPetId());
+        assertEquals(2018, adoptions.findOne(3L).get().getAdoptionYear());
+    }
+
+    @Test
+    public void testSecondaryIndexes() {
+        purchases = new OffHeapRepository<>(new PurchaseValidator(), new PurchaseSchema(), 8, 4,
+                PurchaseSchema.TOY_ID, PurchaseSchema.PURCHASE_YEAR);
+        assertTrue(purchases.isIndexed(PurchaseSchema.TOY_ID));
+        assertFalse(purchases.isIndexed(PurchaseSchema.CLIENT_ID));
+        assertThrows(IllegalArgumentException.class, () -> purchases.findBy(PurchaseSchema.CLIENT_ID, 1L));
+        assertThrows(IllegalArgumentException.class, () -> purchases.findBy(PurchaseSchema.TOY_ID, null));
+        assertThrows(IllegalArgumentException.class, () -> purchases.findBetween(PurchaseSchema.TOY_ID, 1L, 2L));
+
+        for (long id = 1; id <= 6; id++)
+            purchases.save(purchase(id, "1", 1L, id % 2, 2015 + (int) id));
+        assertEquals(Set.of(2L, 4L, 6L), ids(purchases.findBy(PurchaseSchema.TOY_ID, 0L)));
+
+        // the middle, the first and the last row of a chain
+        purchases.delete(4L);
+        purchases.update(purchase(6L, "1", 1L, 1L, 2021));
+        assertEquals(Set.of(2L), ids(purchases.findBy(PurchaseSchema.TOY_ID, 0L)));
+        purchases.delete(2L);
+        assertTrue(purchases.findBy(PurchaseSchema.TOY_ID, 0L).isEmpty());
+        assertEquals(Set.of(1L, 3L, 5L, 6L), ids(purchases.findBy(PurchaseSchema.TOY_ID, 1L)));
+
+        // a freed row is reused with new links
+        purchases.save(purchase(7L, "1", 1L, 0L, 2017));
+        assertEquals(Set.of(7L), ids(purchases.findBy(PurchaseSchema.TOY_ID, 0L)));
+        assertEquals(List.of(7L, 3L, 5L), purchases.findBetween(PurchaseSchema.PURCHASE_YEAR, 2017, 2020).stream()
+                .map(Purchase::getId).collect(Collectors.toList()));
+        assertTrue(purchases.findBetween(PurchaseSchema.PURCHASE_YEAR, 2020, 2017).isEmpty());
+    }
+
+    @Test
+    public void testSecondaryIndexesMatchAScan() {
+        OffHeapRepository<Adoption> adoptions = new OffHeapRepository<>(new AdoptionValidator(), new AdoptionSchema(),
+                8, 16, AdoptionSchema.CLIENT_ID, AdoptionSchema.PET_ID);
+        Random random = new Random(7);
+        for (int step = 0; step < 5000; step++) {
+            long id = random.nextInt(200);
+            Adoption adoption = new Adoption("1", (long) random.nextInt(10), (long) random.nextInt(50), 2020);
+            adoption.setId(id);
+            switch (random.nextInt(3)) {
+                case 0:
+                    adoptions.save(adoption);
+                    break;
+                case 1:
+                    adoptions.update(adoption);
+                    break;
+                default:
+                    adoptions.delete(id);
+            }
+        }
+        for (long key = 0; key < 50; key++) {
+            long petId = key;
+            Set<Long> scanned = StreamSupport.stream(adoptions.findAll().spliterator(), false)
+                    .filter(adoption -> adoption.getPetId() == petId)
+                    .map(Adoption::getId)
+                    .collect(Collectors.toSet());
+            assertEquals(scanned, adoptions.findBy(AdoptionSchema.PET_ID, petId).stream()
+                    .map(Adoption::getId).collect(Collectors.toSet()));
+        }
+    }
+}
@@ -8,11 +8,13 @@ import org.junit.Assert;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import repository.BatchResult;
 import repository.Repository;
 import repository.XML.exceptions.XMLRepositoryToyException;
 import repository.file.exceptions.FileRepositoryToyException;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import static org.junit.Assert.assertSame;
@@ -237,4 +239,43 @@ public class FileRepositoryToyTest {
         forth.setId(4L);
         assertTrue(toyRepository.update(forth).isPresent());
     }
+
+    /**
+     * Saves, updates and deletes toys in batches, mixed with single writes.
+     *
+     * @throws FileRepositoryToyException
+     */
+    @Test
+    public void testBatchWrites() throws FileRepositoryToyException {
+        FileRepositoryToy<Long, Toy> toys = (FileRepositoryToy<Long, Toy>) toyRepository;
+        Toy first = new Toy("50001", "name1", 100, "material1", 1.99);
+        first.setId(1L);
+        Toy second = new Toy("50002", "name2", 200, "material2", 2.99);
+        second.setId(2L);
+        Toy third = new Toy("50003", "name3", 300, "material3", 3.99);
+        third.setId(3L);
+        toyRepository.save(first);
+
+        BatchResult<Toy> saved = toys.saveAll(Arrays.asList(first, second, third));
+        Assert.assertEquals(Arrays.asList(second, third), saved.getApplied());
+        Assert.assertEquals(Arrays.asList(first), saved.getRejected());
+        Toy forth = new Toy("6666", "name4", 400, "material4", 4.99);
+        forth.setId(4L);
+        Assert.assertFalse(toyRepository.save(forth).isPresent());
+
+        Toy renamed = new Toy("50002", "renamed", 200, "material2", 2.99);
+        renamed.setId(2L);
+        Toy missing = new Toy("50005", "name5", 500, "material5", 5.99);
+        missing.setId(5L);
+        BatchResult<Toy> updated = toys.updateAll(Arrays.asList(renamed, missing));
+        Assert.assertEquals(Arrays.asList(renamed), updated.getApplied());
+        Assert.assertEquals(Arrays.asList(missing), updated.getRejected());
+        Assert.assertEquals("renamed", toyRepository.findOne(2L).get().getName());
+
+        Assert.assertEquals(2, toys.deleteAll(Arrays.asList(1L, 3L, 5L)).size());
+        assertFalse(toyRepository.findOne(1L).isPresent());
+        assertFalse(toyRepository.findOne(3L).isPresent());
+        assertTrue(toyRepository.findOne(2L).isPresent());
+        assertTrue(toyRepository.findOne(4L).isPresent());
+    }
 }
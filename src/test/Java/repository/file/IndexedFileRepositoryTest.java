@@ -0,0 +1,89 @@
+package repository.file;
+
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.Repository;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.ToySchema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexedFileRepositoryTest {
+
+    private Path file;
+    private Repository<Long, Toy> toyRepository;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempFile("toysIndexed", ".csv");
+        Files.writeString(file, "1,10233,Toy Bone,200,plastic,3.99" + System.lineSeparator() +
+                "2,10402,Latex Hen,150,latex,5.99");
+        toyRepository = new IndexedFileRepository<>(new ToyValidator(), new ToySchema(), file.toString());
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        toyRepository = null;
+        Files.deleteIfExists(file);
+    }
+
+    private Toy toy(long id, String serialNumber, String name) {
+        Toy toy = new Toy(serialNumber, name, 100, "wood", 1.5);
+        toy.setId(id);
+        return toy;
+    }
+
+    @Test
+    public void testFindOne() {
+        assertEquals("Latex Hen", toyRepository.findOne(2L).get().getName());
+        assertEquals(5.99, toyRepository.findOne(2L).get().getPrice());
+        assertTrue(toyRepository.findOne(3L).isEmpty());
+
+        try {
+            toyRepository.findOne(null);
+            fail();
+        } catch (FileRepositoryException e) {
+        }
+    }
+
+    @Test
+    public void testSave() throws IOException {
+        assertTrue(toyRepository.save(toy(3L, "30001", "Ball")).isEmpty());
+        assertTrue(toyRepository.save(toy(3L, "30002", "Other")).isPresent());
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals("3,30001,Ball,100,wood,1.5", lines.get(2));
+    }
+
+    @Test
+    public void testDeleteAndUpdate() throws IOException {
+        assertEquals("Toy Bone", toyRepository.delete(1L).get().getName());
+        assertTrue(toyRepository.delete(1L).isEmpty());
+
+        assertTrue(toyRepository.update(toy(2L, "10402", "Renamed Hen")).isEmpty());
+        assertTrue(toyRepository.update(toy(9L, "90000", "Missing")).isPresent());
+
+        Repository<Long, Toy> reloaded = new IndexedFileRepository<>(new ToyValidator(), new ToySchema(), file.toString());
+        assertTrue(reloaded.findOne(1L).isEmpty());
+        assertEquals("Renamed Hen", reloaded.findOne(2L).get().getName());
+    }
+
+    @Test
+    public void testExternalModificationIsReloaded() throws IOException {
+        assertTrue(toyRepository.findOne(5L).isEmpty());
+
+        Files.writeString(file, "5,50000,External Toy,10,cloth,0.5" + System.lineSeparator());
+
+        assertEquals("External Toy", toyRepository.findOne(5L).get().getName());
+        assertTrue(toyRepository.findOne(1L).isEmpty());
+    }
+}
@@ -0,0 +1,144 @@
+package repository.file;
+
+import domain.Purchase.Purchase;
+import domain.validators.PurchaseValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.PurchaseSchema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogStructuredFileRepositoryTest {
+
+    private Path file;
+    private LogStructuredFileRepository<Long, Purchase> purchaseRepository;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempFile("purchases", ".log");
+        purchaseRepository = open(0.5, 0);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        purchaseRepository.close();
+        Files.deleteIfExists(file);
+    }
+
+    private LogStructuredFileRepository<Long, Purchase> open(double garbageRatio, long minGarbageBytes) {
+        return new LogStructuredFileRepository<>(new PurchaseValidator(), new PurchaseSchema(), file.toString(),
+                garbageRatio, minGarbageBytes);
+    }
+
+    private Purchase purchase(long id, long clientId, long toyId) {
+        Purchase purchase = new Purchase("100" + id, clientId, toyId, 2020);
+        purchase.setId(id);
+        return purchase;
+    }
+
+    @Test
+    public void testSaveFindOne() {
+        assertTrue(purchaseRepository.save(purchase(1L, 1L, 1L)).isEmpty());
+        assertTrue(purchaseRepository.save(purchase(2L, 1L, 2L)).isEmpty());
+        assertEquals(1L, purchaseRepository.save(purchase(1L, 5L, 5L)).get().getClientId());
+
+        assertEquals(2L, purchaseRepository.findOne(2L).get().getToyId());
+        assertTrue(purchaseRepository.findOne(3L).isEmpty());
+
+        try {
+            purchaseRepository.findOne(null);
+            fail();
+        } catch (FileRepositoryException e) {
+        }
+    }
+
+    @Test
+    public void testUpdateAndDeleteAreAppended() throws IOException {
+        // no background compaction while the log is inspected
+        purchaseRepository.close();
+        purchaseRepository = open(1.0, Long.MAX_VALUE);
+
+        purchaseRepository.save(purchase(1L, 1L, 1L));
+        purchaseRepository.save(purchase(2L, 1L, 2L));
+        long sizeAfterSaves = Files.size(file);
+
+        assertTrue(purchaseRepository.update(purchase(1L, 7L, 1L)).isEmpty());
+        assertTrue(purchaseRepository.update(purchase(9L, 7L, 1L)).isPresent());
+        assertEquals(2L, purchaseRepository.delete(2L).get().getToyId());
+        assertTrue(purchaseRepository.delete(2L).isEmpty());
+
+        List<String> log = Files.readAllLines(file);
+        assertEquals(4, log.size());
+        assertEquals("~2", log.get(3));
+        assertTrue(Files.size(file) > sizeAfterSaves);
+        assertEquals(7L, purchaseRepository.findOne(1L).get().getClientId());
+    }
+
+    @Test
+    public void testReplayAfterReopen() throws IOException {
+        purchaseRepository.save(purchase(1L, 1L, 1L));
+        purchaseRepository.save(purchase(2L, 1L, 2L));
+        purchaseRepository.update(purchase(1L, 3L, 3L));
+        purchaseRepository.delete(2L);
+        purchaseRepository.close();
+
+        // simulate a crash in the middle of an append
+        Files.writeString(file, "3,1003,1,", StandardOpenOption.APPEND);
+
+        purchaseRepository = open(0.5, 0);
+        assertEquals(3L, purchaseRepository.findOne(1L).get().getClientId());
+        assertTrue(purchaseRepository.findOne(2L).isEmpty());
+        assertTrue(purchaseRepository.findOne(3L).isEmpty());
+        assertTrue(purchaseRepository.save(purchase(3L, 1L, 3L)).isEmpty());
+        assertEquals(3L, purchaseRepository.findOne(3L).get().getToyId());
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        purchaseRepository.close();
+        purchaseRepository = open(1.0, Long.MAX_VALUE);
+
+        for (long id = 1; id <= 10; id++)
+            purchaseRepository.save(purchase(id, 1L, id));
+        for (long id = 1; id <= 5; id++)
+            purchaseRepository.delete(id);
+        purchaseRepository.update(purchase(6L, 2L, 6L));
+        assertTrue(purchaseRepository.getGarbageBytes() > 0);
+
+        purchaseRepository.compact();
+
+        assertEquals(0, purchaseRepository.getGarbageBytes());
+        assertEquals(5, Files.readAllLines(file).size());
+        assertEquals(2L, purchaseRepository.findOne(6L).get().getClientId());
+        assertEquals(10L, purchaseRepository.findOne(10L).get().getToyId());
+        assertTrue(purchaseRepository.findOne(1L).isEmpty());
+    }
+
+    @Test
+    public void testFailedBackgroundCompactionIsKept() throws Exception {
+        // the new log can not be written
+        Path blocked = Files.createDirectory(Path.of(file + ".compact"));
+        try {
+            purchaseRepository.save(purchase(1L, 1L, 1L));
+            purchaseRepository.update(purchase(1L, 2L, 1L));
+            for (int wait = 0; wait < 200 && purchaseRepository.getLastCompactionFailure().isEmpty(); wait++)
+                Thread.sleep(10);
+            assertTrue(purchaseRepository.getLastCompactionFailure().isPresent());
+            assertEquals(2L, purchaseRepository.findOne(1L).get().getClientId());
+        } finally {
+            Files.delete(blocked);
+        }
+
+        purchaseRepository.compact();
+        assertTrue(purchaseRepository.getLastCompactionFailure().isEmpty());
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+}
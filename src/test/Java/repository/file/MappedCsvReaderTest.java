@@ -0,0 +1,99 @@
+package repository.file;
+
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.PurchaseSchema;
+import repository.schema.ToySchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedCsvReaderTest {
+
+    private Path file;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempFile("mapped", ".csv");
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testReadToys() throws IOException {
+        Files.writeString(file, "1,10233,Toy Bone,200,plastic,3.99\r\n\n" +
+                "2,10402,Juc\u0103rie,150,latex,5\n" +
+                "-3,20555,Happy Sausage,300,plastic,1.0E10");
+
+        List<Toy> toys = MappedCsvReader.read(file, new ToySchema());
+
+        assertEquals(3, toys.size());
+        assertEquals(1L, toys.get(0).getId());
+        assertEquals("plastic", toys.get(0).getMaterial());
+        assertEquals(3.99, toys.get(0).getPrice());
+        assertEquals("Juc\u0103rie", toys.get(1).getName());
+        assertEquals(5.0, toys.get(1).getPrice());
+        assertEquals(-3L, toys.get(2).getId());
+        assertEquals(1.0E10, toys.get(2).getPrice());
+    }
+
+    @Test
+    public void testPricesMatchDoubleParsing() throws IOException {
+        String[] prices = {"0.1", "0.3", "19.99", "123456.789", "0.000123", "-7.25", "12345678901234567890.5"};
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < prices.length; i++)
+            content.append(i).append(",1,name,1,wood,").append(prices[i]).append('\n');
+        Files.writeString(file, content);
+
+        List<Toy> toys = MappedCsvReader.read(file, new ToySchema());
+
+        for (int i = 0; i < prices.length; i++)
+            assertEquals(Double.parseDouble(prices[i]), toys.get(i).getPrice());
+    }
+
+    @Test
+    public void testMappedLargeFile() throws IOException {
+        int rows = 100_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < rows; i++)
+                writer.write(i + "," + (10000 + i) + "," + (i % 7) + "," + i + "," + (2000 + i % 20) + "\n");
+        }
+        assertTrue(Files.size(file) > 1 << 20);
+
+        List<Purchase> purchases = MappedCsvReader.read(file, new PurchaseSchema());
+
+        assertEquals(rows, purchases.size());
+        assertEquals("10000", purchases.get(0).getSerialNumber());
+        assertEquals(99_999L, purchases.get(rows - 1).getToyId());
+        assertEquals(2019, purchases.get(rows - 1).getPurchaseYear());
+    }
+
+    @Test
+    public void testMalformedLine() throws IOException {
+        Files.writeString(file, "1,10233,2,x3,2020\n");
+        try {
+            MappedCsvReader.read(file, new PurchaseSchema());
+            fail();
+        } catch (FileRepositoryException e) {
+        }
+
+        Files.writeString(file, "1,10233,2\n");
+        try {
+            MappedCsvReader.read(file, new PurchaseSchema());
+            fail();
+        } catch (FileRepositoryException e) {
+        }
+    }
+}
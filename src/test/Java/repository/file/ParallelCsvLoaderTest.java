@@ -0,0 +1,87 @@
+package repository.file;
+
+import domain.Purchase.Purchase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.file.exceptions.FileRepositoryException;
+import repository.schema.PurchaseSchema;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelCsvLoaderTest {
+
+    private static final int ROWS = 400_000;
+
+    private Path file;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempFile("purchasesParallel", ".csv");
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    private void writeRows(long duplicateOf) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < ROWS; i++) {
+                long id = i == ROWS - 1 && duplicateOf >= 0 ? duplicateOf : i;
+                writer.write(id + "," + (100000 + i) + "," + (i % 97) + "," + i + "," + (2000 + i % 20) + "\r\n");
+            }
+        }
+    }
+
+    @Test
+    public void testReadKeepsFileOrder() throws IOException {
+        writeRows(-1);
+        assertTrue(Files.size(file) > 8 << 20);
+
+        List<Purchase> sequential = MappedCsvReader.read(file, new PurchaseSchema());
+        List<Purchase> parallel = ParallelCsvLoader.read(file, new PurchaseSchema(), pool);
+
+        assertEquals(ROWS, parallel.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(sequential.get(i).getId(), parallel.get(i).getId());
+            assertEquals(sequential.get(i), parallel.get(i));
+        }
+    }
+
+    @Test
+    public void testLoadIndex() throws IOException {
+        writeRows(-1);
+
+        Map<Long, Purchase> index = ParallelCsvLoader.load(file, new PurchaseSchema(), pool);
+
+        assertEquals(ROWS, index.size());
+        assertEquals(12345L, index.get(12345L).getToyId());
+        assertEquals(0L, index.keySet().iterator().next());
+    }
+
+    @Test
+    public void testDuplicateIdIsReportedDeterministically() throws IOException {
+        writeRows(7L);
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                ParallelCsvLoader.load(file, new PurchaseSchema(), pool);
+                fail();
+            } catch (FileRepositoryException e) {
+                assertTrue(e.getMessage().contains("duplicate id 7 in record #" + ROWS));
+            }
+        }
+    }
+}
@@ -119,6 +119,24 @@ public class AdoptionServiceTest {
         assertEquals(expectedAverage, adoptionService.getAverageAdoptedAge());
     }
 
+    @Test
+    void getAverageAdoptedAgeOfDeletedPets() {
+        Client client = new Client("50001","name1","addr1",2019);
+        client.setId(ID);
+        clientRepository.save(client);
+        Adoption adoption1 = new Adoption("12345", client.getId(), ID+1, 2019);
+        adoption1.setId(ID);
+        adoptionRepository.save(adoption1);
+        Adoption adoption2 = new Adoption("12346", client.getId(), ID+2, 2020);
+        adoption2.setId(ID+1);
+        adoptionRepository.save(adoption2);
+
+        try{
+            adoptionService.getAverageAdoptedAge();
+            fail();
+        }catch(AdoptionServiceException e){}
+    }
+
     @Test
     void mostAdoptedBreed() {
         Client client = new Client("50001","name1","addr1",2019);
@@ -0,0 +1,154 @@
+package service;
+
+import domain.Adoption.Adoption;
+import domain.Client.Client;
+import domain.Pet.Pet;
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import domain.validators.AdoptionValidator;
+import domain.validators.ClientValidator;
+import domain.validators.PetValidator;
+import domain.validators.PurchaseValidator;
+import domain.validators.ToyValidator;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryRepository;
+import repository.IndexingRepository;
+import repository.Repository;
+import repository.binary.ColumnarRepository;
+import repository.schema.AdoptionSchema;
+import repository.schema.PetSchema;
+import repository.schema.PurchaseSchema;
+import repository.schema.ToySchema;
+import service.exceptions.AdoptionServiceException;
+import service.exceptions.StoreServiceException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarJoinTest {
+
+    private static Toy toy(long id, int weight, double price) {
+        Toy toy = new Toy("6000" + id, "toy" + id, weight, "wood", price);
+        toy.setId(id);
+        return toy;
+    }
+
+    private static Pet pet(long id, int birthYear) {
+        Pet pet = new Pet("7000" + id, "pet" + id, "breed" + id % 2, birthYear);
+        pet.setId(id);
+        return pet;
+    }
+
+    private static Purchase purchase(long id, long toyId) {
+        Purchase purchase = new Purchase("2000" + id, 1L, toyId, 2020);
+        purchase.setId(id);
+        return purchase;
+    }
+
+    private static Adoption adoption(long id, long petId, int year) {
+        Adoption adoption = new Adoption("3000" + id, 1L, petId, year);
+        adoption.setId(id);
+        return adoption;
+    }
+
+    /**
+     * Fill the repositories with the same purchases (one of them referring to a deleted toy)
+     */
+    private static void purchases(Repository<Long, Toy> toys, Repository<Long, Purchase> purchases) {
+        toys.save(toy(1L, 200, 9.2));
+        toys.save(toy(2L, 400, 9.8));
+        toys.save(toy(3L, 400, 3.5));
+        toys.save(toy(4L, 900, 99));
+        for (long id = 1; id <= 4; id++)
+            purchases.save(purchase(id, id));
+        purchases.save(purchase(5L, 2L));
+        toys.delete(4L);
+    }
+
+    private static void adoptions(Repository<Long, Pet> pets, Repository<Long, Adoption> adoptions) {
+        pets.save(pet(1L, 2015));
+        pets.save(pet(2L, 2019));
+        pets.save(pet(3L, 2019));
+        pets.save(pet(4L, 2021));
+        adoptions.save(adoption(1L, 1L, 2018));
+        adoptions.save(adoption(2L, 2L, 2020));
+        adoptions.save(adoption(3L, 3L, 2020));
+        adoptions.save(adoption(4L, 4L, 2021));
+        adoptions.save(adoption(5L, 2L, 2019));
+        pets.delete(4L);
+    }
+
+    @Test
+    void testJoinNeedsBothSidesStoredByColumn() {
+        Repository<Long, Toy> toys = new ColumnarRepository<>(new ToyValidator(), new ToySchema());
+        Repository<Long, Purchase> purchases = new InMemoryRepository<>(new PurchaseValidator());
+        assertFalse(ColumnarJoin.of(purchases, "toyId", toys).isPresent());
+        assertTrue(ColumnarJoin.columnar(toys).isPresent());
+    }
+
+    @Test
+    void testJoinSkipsTheMissingEntities() {
+        ColumnarRepository<Toy> toys = new ColumnarRepository<>(new ToyValidator(), new ToySchema());
+        ColumnarRepository<Purchase> purchases = new ColumnarRepository<>(new PurchaseValidator(), new PurchaseSchema());
+        purchases(toys, purchases);
+
+        ColumnarJoin<Purchase, Toy> join = ColumnarJoin.of(purchases, "toyId", toys).get();
+        assertEquals(4, join.matched());
+        assertEquals(200 + 400 + 400 + 400, join.sumOfInt("weight"));
+        assertEquals(2L, join.referencedBy(join.argMaxOfInt("weight")).getId());
+        assertEquals(2L, join.row(join.argMaxOfDouble("price")).getId());
+    }
+
+    @Test
+    void testStoreReportsMatchTheObjectScans() {
+        Repository<Long, Toy> columnToys = new ColumnarRepository<>(new ToyValidator(), new ToySchema());
+        Repository<Long, Purchase> columnPurchases = new IndexingRepository<>(
+                new ColumnarRepository<>(new PurchaseValidator(), new PurchaseSchema()),
+                PurchaseSchema.CLIENT_ID, PurchaseSchema.TOY_ID, PurchaseSchema.PURCHASE_YEAR);
+        Repository<Long, Toy> objectToys = new InMemoryRepository<>(new ToyValidator());
+        Repository<Long, Purchase> objectPurchases = new InMemoryRepository<>(new PurchaseValidator());
+        Repository<Long, Client> clients = new InMemoryRepository<>(new ClientValidator());
+
+        StoreService columns = new StoreService(columnPurchases, clients, columnToys);
+        StoreService objects = new StoreService(objectPurchases, clients, objectToys);
+        assertThrows(StoreServiceException.class, columns::getHeaviestPurchasedToy);
+        assertThrows(StoreServiceException.class, columns::getMostExpensivePurchase);
+
+        purchases(columnToys, columnPurchases);
+        purchases(objectToys, objectPurchases);
+        assertEquals(objects.getHeaviestPurchasedToy(), columns.getHeaviestPurchasedToy());
+        assertEquals(2L, columns.getHeaviestPurchasedToy().getId());
+        assertEquals(objects.getMostExpensivePurchase(), columns.getMostExpensivePurchase());
+        assertEquals(2L, columns.getMostExpensivePurchase().getToyId());
+    }
+
+    @Test
+    void testAdoptionReportsMatchTheObjectScans() {
+        Repository<Long, Pet> columnPets = new IndexingRepository<>(
+                new ColumnarRepository<>(new PetValidator(), new PetSchema()), PetSchema.BIRTH_YEAR);
+        Repository<Long, Adoption> columnAdoptions = new ColumnarRepository<>(new AdoptionValidator(), new AdoptionSchema());
+        Repository<Long, Pet> objectPets = new InMemoryRepository<>(new PetValidator());
+        Repository<Long, Adoption> objectAdoptions = new InMemoryRepository<>(new AdoptionValidator());
+        Repository<Long, Client> clients = new InMemoryRepository<>(new ClientValidator());
+
+        AdoptionService columns = new AdoptionService(columnAdoptions, clients, columnPets);
+        AdoptionService objects = new AdoptionService(objectAdoptions, clients, objectPets);
+        assertThrows(AdoptionServiceException.class, columns::getMostRecentAdoption);
+        assertThrows(AdoptionServiceException.class, columns::getYoungestAdoptedPet);
+
+        // only adoptions of missing pets
+        columnAdoptions.save(adoption(9L, 9L, 2020));
+        objectAdoptions.save(adoption(9L, 9L, 2020));
+        assertThrows(AdoptionServiceException.class, columns::getAverageAdoptedAge);
+        assertThrows(AdoptionServiceException.class, objects::getAverageAdoptedAge);
+        columnAdoptions.delete(9L);
+        objectAdoptions.delete(9L);
+
+        adoptions(columnPets, columnAdoptions);
+        adoptions(objectPets, objectAdoptions);
+        assertEquals(objects.getAverageAdoptedAge(), columns.getAverageAdoptedAge());
+        assertEquals(objects.getYoungestAdoptedPet(), columns.getYoungestAdoptedPet());
+        assertEquals(2L, columns.getYoungestAdoptedPet().get().getId());
+        assertEquals(objects.getMostRecentAdoption(), columns.getMostRecentAdoption());
+        assertEquals(4L, columns.getMostRecentAdoption().getId());
+    }
+}
@@ -0,0 +1,92 @@
+package service;
+
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import domain.validators.ToyValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HashJoinTest {
+
+    private CountingRepository toyRepository;
+    private List<Purchase> purchases;
+
+    /**
+     * Counts the reads, to check that each side is read once
+     */
+    private static class CountingRepository extends InMemoryRepository<Long, Toy> {
+
+        private int findAllCalls;
+        private int findOneCalls;
+
+        CountingRepository() {
+            super(new ToyValidator());
+        }
+
+        @Override
+        public Optional<Toy> findOne(Long id) {
+            findOneCalls++;
+            return super.findOne(id);
+        }
+
+        @Override
+        public Iterable<Toy> findAll() {
+            findAllCalls++;
+            return super.findAll();
+        }
+    }
+
+    private static Purchase purchase(long id, long toyId) {
+        Purchase purchase = new Purchase("2000" + id, 1L, toyId, 2020);
+        purchase.setId(id);
+        return purchase;
+    }
+
+    @BeforeEach
+    void setUp() {
+        toyRepository = new CountingRepository();
+        for (long id = 1; id <= 3; id++) {
+            Toy toy = new Toy("7000" + id, "toy" + id, (int) id * 10, "wood", 20);
+            toy.setId(id);
+            toyRepository.save(toy);
+        }
+        // purchase 4 refers to a toy that does not exist
+        purchases = Arrays.asList(purchase(1, 2), purchase(2, 1), purchase(3, 2), purchase(4, 9));
+    }
+
+    @Test
+    void testReferencedKeepsTheRowOrder() {
+        List<Long> toyIds = HashJoin.referenced(purchases.stream(), Purchase::getToyId, toyRepository)
+                .map(Toy::getId)
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(2L, 1L, 2L), toyIds);
+    }
+
+    @Test
+    void testJoinPairsRowsWithTheirEntity() {
+        List<Map.Entry<Purchase, Toy>> pairs = HashJoin.join(purchases.stream(), Purchase::getToyId, toyRepository)
+                .collect(Collectors.toList());
+
+        assertEquals(3, pairs.size());
+        for (Map.Entry<Purchase, Toy> pair : pairs)
+            assertEquals(pair.getKey().getToyId(), pair.getValue().getId());
+    }
+
+    @Test
+    void testReadsTheReferencedRepositoryOnce() {
+        HashJoin.referenced(purchases.stream(), Purchase::getToyId, toyRepository).count();
+
+        assertEquals(1, toyRepository.findAllCalls);
+        assertEquals(0, toyRepository.findOneCalls);
+    }
+}
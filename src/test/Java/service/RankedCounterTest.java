@@ -0,0 +1,45 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RankedCounterTest {
+
+    @Test
+    void testMostAndLeastFrequent() {
+        RankedCounter<String> counter = new RankedCounter<>();
+        assertEquals(Optional.empty(), counter.mostFrequent());
+
+        counter.increment("wood");
+        counter.increment("metal");
+        counter.increment("wood");
+        counter.increment("plastic");
+        assertEquals(Optional.of("wood"), counter.mostFrequent());
+        // metal and plastic are counted once, the smallest wins
+        assertEquals(Optional.of("metal"), counter.leastFrequent());
+        assertEquals(2, counter.count("wood"));
+    }
+
+    @Test
+    void testDecrement() {
+        RankedCounter<Long> counter = new RankedCounter<>();
+        counter.increment(2L);
+        counter.increment(2L);
+        counter.increment(1L);
+
+        counter.decrement(2L);
+        // tie: the smallest key is the most frequent
+        assertEquals(Optional.of(1L), counter.mostFrequent());
+        counter.decrement(1L);
+        assertEquals(Optional.of(2L), counter.leastFrequent());
+        assertEquals(0, counter.count(1L));
+
+        counter.decrement(2L);
+        counter.decrement(3L);
+        assertTrue(counter.isEmpty());
+    }
+}
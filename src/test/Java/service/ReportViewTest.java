@@ -0,0 +1,129 @@
+package service;
+
+import domain.Adoption.Adoption;
+import domain.Client.Client;
+import domain.Pet.Pet;
+import domain.Purchase.Purchase;
+import domain.Toy.Toy;
+import domain.validators.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.InMemoryRepository;
+import repository.Repository;
+import service.exceptions.StoreServiceException;
+
+import java.util.Calendar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The reports answered from the aggregates kept by a service must stay equal to the reports of a new service,
+ * which computes its aggregates from the repositories.
+ */
+public class ReportViewTest {
+
+    private static final int YEAR = Calendar.getInstance().get(Calendar.YEAR);
+
+    private Repository<Long, Client> clientRepository;
+    private Repository<Long, Pet> petRepository;
+    private Repository<Long, Toy> toyRepository;
+    private Repository<Long, Adoption> adoptionRepository;
+    private Repository<Long, Purchase> purchaseRepository;
+    private AdoptionService adoptionService;
+    private StoreService storeService;
+
+    @BeforeEach
+    void setUp() {
+        clientRepository = new InMemoryRepository<>(new ClientValidator());
+        petRepository = new InMemoryRepository<>(new PetValidator());
+        toyRepository = new InMemoryRepository<>(new ToyValidator());
+        adoptionRepository = new InMemoryRepository<>(new AdoptionValidator());
+        purchaseRepository = new InMemoryRepository<>(new PurchaseValidator());
+        adoptionService = new AdoptionService(adoptionRepository, clientRepository, petRepository);
+        storeService = new StoreService(purchaseRepository, clientRepository, toyRepository);
+
+        for (long id = 1; id <= 3; id++) {
+            Client client = new Client("5000" + id, "name" + id, "addr" + id, 2019);
+            client.setId(id);
+            clientRepository.save(client);
+        }
+        String[] breeds = {"birman", "bulldog", "birman", "bulldog"};
+        String[] materials = {"wood", "metal", "wood", "metal"};
+        for (long id = 1; id <= 4; id++) {
+            Pet pet = new Pet("6000" + id, "pet" + id, breeds[(int) id - 1], 2018);
+            pet.setId(id);
+            petRepository.save(pet);
+            Toy toy = new Toy("7000" + id, "toy" + id, (int) id * 10, materials[(int) id - 1], 5);
+            toy.setId(id);
+            toyRepository.save(toy);
+        }
+    }
+
+    private void assertSameStoreReports() {
+        StoreService fresh = new StoreService(purchaseRepository, clientRepository, toyRepository);
+        assertEquals(fresh.getMostPopularMaterial(), storeService.getMostPopularMaterial());
+        assertEquals(fresh.getAveragePurchasedToysWeight(), storeService.getAveragePurchasedToysWeight());
+        assertEquals(fresh.getNumberOfPurchasesForYear(YEAR), storeService.getNumberOfPurchasesForYear(YEAR));
+    }
+
+    private void assertSameAdoptionReports() {
+        AdoptionService fresh = new AdoptionService(adoptionRepository, clientRepository, petRepository);
+        assertEquals(fresh.mostAdoptedBreed(), adoptionService.mostAdoptedBreed());
+        assertEquals(fresh.getClientOfTheYear(YEAR), adoptionService.getClientOfTheYear(YEAR));
+    }
+
+    @Test
+    void testStoreReportsFollowTheWrites() {
+        storeService.buyToy(1L, "80001", 1L, 1L);
+        assertEquals("wood", storeService.getMostPopularMaterial());
+
+        storeService.buyToy(2L, "80002", 1L, 2L);
+        storeService.buyToy(3L, "80003", 2L, 4L);
+        assertEquals("metal", storeService.getMostPopularMaterial());
+        assertEquals(23, storeService.getAveragePurchasedToysWeight());
+        assertEquals(3, storeService.getNumberOfPurchasesForYear(YEAR));
+        assertSameStoreReports();
+
+        // the toy is deleted before its purchases, like the console does
+        toyRepository.delete(4L);
+        storeService.deletePurchasesForToy(4L);
+        assertEquals(15, storeService.getAveragePurchasedToysWeight());
+        assertSameStoreReports();
+
+        Toy toy = new Toy("70002", "toy2", 50, "wood", 5);
+        toy.setId(2L);
+        new ToyService(toyRepository).updateToy(2L, toy);
+        storeService.refreshToy(2L);
+        assertEquals("wood", storeService.getMostPopularMaterial());
+        assertEquals(30, storeService.getAveragePurchasedToysWeight());
+        assertSameStoreReports();
+
+        storeService.deletePurchasesForClient(1L);
+        assertThrows(StoreServiceException.class, () -> storeService.getMostPopularMaterial());
+    }
+
+    @Test
+    void testAdoptionReportsFollowTheWrites() {
+        adoptionService.adoptPet(1L, "90001", 1L, 1L);
+        assertEquals("birman", adoptionService.mostAdoptedBreed());
+
+        adoptionService.adoptPet(2L, "90002", 1L, 2L);
+        adoptionService.adoptPet(3L, "90003", 2L, 4L);
+        assertEquals("bulldog", adoptionService.mostAdoptedBreed());
+        assertEquals(clientRepository.findOne(2L).get(), adoptionService.getClientOfTheYear(YEAR));
+        assertSameAdoptionReports();
+
+        petRepository.delete(4L);
+        adoptionService.deleteAdoptionsForPet(4L);
+        assertEquals(clientRepository.findOne(1L).get(), adoptionService.getClientOfTheYear(YEAR));
+        assertSameAdoptionReports();
+
+        Pet pet = new Pet("60002", "pet2", "birman", 2018);
+        pet.setId(2L);
+        new PetService(petRepository).updatePet(2L, pet);
+        adoptionService.refreshPet(2L);
+        assertEquals("birman", adoptionService.mostAdoptedBreed());
+        assertSameAdoptionReports();
+    }
+}
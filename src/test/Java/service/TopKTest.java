@@ -0,0 +1,46 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopKTest {
+
+    /**
+     * What the services did before: a stable sort of everything, then the tail
+     */
+    private static <T> List<T> sortAndTake(List<T> elements, int k, Comparator<? super T> comparator) {
+        List<T> sorted = new ArrayList<>(elements);
+        sorted.sort(comparator);
+        return sorted.subList(Math.max(0, sorted.size() - k), sorted.size());
+    }
+
+    @Test
+    void testSameAsStableSort() {
+        Random random = new Random(42);
+        // pairs of (year, position), compared on the year only, so the ties show in the result
+        List<int[]> elements = new ArrayList<>();
+        for (int position = 0; position < 2_000; position++)
+            elements.add(new int[]{2000 + random.nextInt(20), position});
+        Comparator<int[]> byYear = Comparator.comparingInt(element -> element[0]);
+
+        for (int k : new int[]{1, 7, 100, 1_999, 2_000, 5_000}) {
+            assertEquals(sortAndTake(elements, k, byYear), TopK.last(elements, k, byYear));
+            assertEquals(sortAndTake(elements, k, byYear.reversed()), TopK.last(elements, k, byYear.reversed()));
+        }
+    }
+
+    @Test
+    void testNothingToSelect() {
+        assertTrue(TopK.last(Arrays.asList(3, 1, 2), 0, Comparator.<Integer>naturalOrder()).isEmpty());
+        assertTrue(TopK.last(new ArrayList<Integer>(), 3, Comparator.<Integer>naturalOrder()).isEmpty());
+        assertEquals(Arrays.asList(2, 3), TopK.last(Arrays.asList(3, 1, 2), 2, Comparator.<Integer>naturalOrder()));
+    }
+}